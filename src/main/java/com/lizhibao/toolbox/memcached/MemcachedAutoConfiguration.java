@@ -1,10 +1,26 @@
 package com.lizhibao.toolbox.memcached;
 
 import com.danga.MemCached.MemCachedClient;
+import com.lizhibao.toolbox.memcached.counter.MemcachedCounterBuffer;
+import com.lizhibao.toolbox.memcached.health.MemcachedEndpoint;
+import com.lizhibao.toolbox.memcached.health.MemcachedHealthContributor;
+import com.lizhibao.toolbox.memcached.health.MemcachedHealthProbe;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedInterceptor;
+import com.lizhibao.toolbox.memcached.ratelimit.MemcachedRateLimiter;
+import com.lizhibao.toolbox.memcached.slab.MemcachedSlabAnalyzer;
+import com.lizhibao.toolbox.memcached.snapshot.MemcachedExporter;
+import com.lizhibao.toolbox.memcached.snapshot.MemcachedWarmer;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedTrafficReplayer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.CompositeHealthContributor;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.stream.Collectors;
 
 /**
  * 自动配置类
@@ -22,7 +38,73 @@ public class MemcachedAutoConfiguration {
     }
 
     @Bean
-    public MemcachedTemplate memcachedTemplate(MemcachedManager manager) {
-        return new MemcachedTemplate(manager);
+    public MemcachedTemplate memcachedTemplate(MemcachedManager manager, ObjectProvider<MemcachedInterceptor> interceptors) {
+        return new MemcachedTemplate(manager, interceptors.orderedStream().collect(Collectors.toList()));
+    }
+
+    @Bean
+    public MemcachedWarmer memcachedWarmer(MemcachedManager manager) {
+        return new MemcachedWarmer(manager);
+    }
+
+    @Bean
+    public MemcachedExporter memcachedExporter(MemcachedManager manager) {
+        return new MemcachedExporter(manager);
+    }
+
+    @Bean
+    public MemcachedTrafficReplayer memcachedTrafficReplayer(MemcachedTemplate template) {
+        return new MemcachedTrafficReplayer(template);
+    }
+
+    @Bean
+    public MemcachedCounterBuffer memcachedCounterBuffer(MemcachedManager manager) {
+        return new MemcachedCounterBuffer(manager);
+    }
+
+    @Bean
+    public MemcachedRateLimiter memcachedRateLimiter(MemcachedManager manager) {
+        return new MemcachedRateLimiter(manager);
+    }
+
+    @Bean
+    public MemcachedSlabAnalyzer memcachedSlabAnalyzer(MemcachedManager manager, MemcachedTemplate template) {
+        return new MemcachedSlabAnalyzer(manager, template);
+    }
+
+    /**
+     * 引入 Spring Cloud 时，配置刷新后重新配置服务器列表；其他情况可以直接调用 {@link MemcachedManager#reconfigure(java.util.List)}
+     */
+    @Configuration
+    @ConditionalOnClass(name = MemcachedRefreshListener.ENVIRONMENT_CHANGE_EVENT)
+    public static class MemcachedRefreshConfiguration {
+
+        @Bean
+        public MemcachedRefreshListener memcachedRefreshListener(MemcachedManager manager, Environment environment) {
+            return new MemcachedRefreshListener(manager, environment);
+        }
+    }
+
+    /**
+     * 引入 spring-boot-actuator 时注册健康检查(/actuator/health/memcached/{name})和监控端点(/actuator/memcached)
+     */
+    @Configuration
+    @ConditionalOnClass(HealthIndicator.class)
+    public static class MemcachedActuatorConfiguration {
+
+        @Bean
+        public MemcachedHealthProbe memcachedHealthProbe(MemcachedManager manager) {
+            return new MemcachedHealthProbe(manager);
+        }
+
+        @Bean
+        public CompositeHealthContributor memcachedHealthContributor(MemcachedManager manager, MemcachedHealthProbe probe) {
+            return new MemcachedHealthContributor(manager, probe);
+        }
+
+        @Bean
+        public MemcachedEndpoint memcachedEndpoint(MemcachedManager manager, MemcachedHealthProbe probe) {
+            return new MemcachedEndpoint(manager, probe);
+        }
     }
 }
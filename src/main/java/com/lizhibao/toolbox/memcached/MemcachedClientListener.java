@@ -0,0 +1,17 @@
+package com.lizhibao.toolbox.memcached;
+
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+
+/**
+ * 客户端变更监听，服务器列表重新配置并切换到新的客户端后回调，回调结束后旧的客户端才开始排空
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@FunctionalInterface
+public interface MemcachedClientListener {
+    /**
+     * @param name 缓存名称
+     * @param current 新的客户端，缓存名称被移除时为 null
+     */
+    void onChanged(String name, MyMemCachedClient current);
+}
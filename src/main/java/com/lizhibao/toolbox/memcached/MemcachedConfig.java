@@ -40,6 +40,7 @@ public class MemcachedConfig {
     private Integer maxConn = 50;
     /**
      * 可用连接池的最长等待时间。
+     * 直连协议的连接池(virtualThreadFriendly、批量预热等)中空闲超过该时间(毫秒)的连接在借出或归还时关闭，0 表示不关闭
      */
     private Integer maxIdle = 1000;
     /**
@@ -93,6 +94,11 @@ public class MemcachedConfig {
      * false: 禁用键清理，允许存储原始键，即使它们包含某些非法或不符合规范的字符。
      */
     private Boolean enableKeyStrictMode;
+    /**
+     * true: 由 starter 在调用客户端前编码 key 并关闭客户端自身的 key 清理，合法的 key 不再经过 URLEncoder，
+     * 编码结果与客户端一致；超过 250 字节的 key 替换为摘要。开启后直接使用 getClient() 时需自行通过 MemcachedKeys.clientKey 转换 key
+     */
+    private Boolean fastKeyEncoding;
     /**
      * 设置缓存的默认编码方式，如 "UTF-8"、"ISO-8859-1" 等。
      */
@@ -107,4 +113,57 @@ public class MemcachedConfig {
      * 设置一个自定义的 TransCoder，它用于编码和解码存储到缓存中的数据。
      */
     private String transCoderClass;
+    /**
+     * 过期时间随机抖动比例，例如 0.1 表示 set/add 时在原过期时间的基础上随机增加 0 ~ 10%，避免同一批写入的数据集中过期。
+     * 为空或 0 时不抖动；过期时间为 0(永不过期) 或绝对时间戳时不抖动。
+     */
+    private Double expiredJitter;
+    /**
+     * 本地缓冲计数器的刷新间隔(毫秒)，到期后将累积的增量通过流水线 incr 批量写入服务器
+     */
+    private Long counterFlushInterval = 1000L;
+    /**
+     * 单个计数器累积的增量绝对值达到该值时立即触发一次异步刷新，为空或 0 时只按间隔刷新
+     */
+    private Long counterFlushThreshold = 10000L;
+    /**
+     * 堆外近端缓存的容量(字节)，大于 0 时 get 先读本地直接内存中的数据，未命中再访问服务器。
+     * 容量按 16 段平均分配，每段至少 4 个 slab，实际占用不超过该值(最小 4MB)；为空或 0 时不启用
+     */
+    private Long nearCacheCapacity;
+    /**
+     * 近端缓存数据的本地有效期(毫秒)，其他实例修改的数据最多延迟该时间可见
+     */
+    private Long nearCacheTtl = 1000L;
+    /**
+     * 命名空间版本号在本地缓存的时间(毫秒)，其他实例使命名空间失效后最多延迟该时间可见，0 表示每次都从服务器读取
+     */
+    private Long namespaceCacheTtl = 1000L;
+    /**
+     * 标签版本号在本地缓存的时间(毫秒)，其他实例使标签失效后最多延迟该时间可见，0 表示每次都从服务器读取
+     */
+    private Long tagCacheTtl = 1000L;
+    /**
+     * 健康检查的间隔(毫秒)，后台并发探测各台服务器并缓存结果，健康检查接口只读取缓存；为空或 0 时不探测
+     */
+    private Long healthCheckInterval = 10000L;
+    /**
+     * 是否记录直连协议读取到的 item 大小样本，供 slab 内存分析使用，默认关闭；
+     * 关闭时读取数据不做任何记录，{@link com.lizhibao.toolbox.memcached.slab.MemcachedSlabAnalyzer#sample} 仍可临时采集样本
+     */
+    private Boolean sizeSampling;
+    /**
+     * update(gets + cas)单次调用最多尝试的次数，冲突超过该次数后放弃更新
+     */
+    private Integer casMaxAttempts = 10;
+    /**
+     * update 冲突后退避的基准时间(毫秒)，第 n 次冲突后随机等待 0 ~ casBackoff * 2^(n-1)，最多 casBackoff * 64；0 表示立即重试
+     */
+    private Long casBackoff = 2L;
+    /**
+     * true: 常用的读写(get/gets/set/add/replace/append/prepend/cas/delete/incr/decr/计数器/批量读取)不再经过 danga 客户端，
+     * 改由直连协议的连接池完成，连接池和读写过程中没有 synchronized，在虚拟线程中阻塞时不会占住载体线程；
+     * 此时每台服务器借出的连接数不超过 maxConn，连接用完后最多等待 socketConnectTimeout。stats/flushAll/sync 等管理操作仍由 danga 客户端完成
+     */
+    private Boolean virtualThreadFriendly;
 }
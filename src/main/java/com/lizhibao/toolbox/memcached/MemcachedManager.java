@@ -2,16 +2,35 @@ package com.lizhibao.toolbox.memcached;
 
 import com.danga.MemCached.MemCachedClient;
 import com.danga.MemCached.SockIOPool;
+import com.lizhibao.toolbox.memcached.cas.MemcachedCasContention;
 import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.nearcache.MemcachedNearCache;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedDecoder;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedDirectClient;
 import com.schooner.MemCached.TransCoder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 管理多个 Memcached 客户端
@@ -23,12 +42,29 @@ import java.util.Map;
 public class MemcachedManager {
     private final MemcachedProperties properties;
 
+    /**
+     * 缓存名称和客户端，重新配置服务器列表时整体替换单个缓存名称对应的客户端
+     */
     @Getter
-    private final Map<String, MyMemCachedClient> clients = new HashMap<>();
+    private final Map<String, MyMemCachedClient> clients = new ConcurrentHashMap<>();
+    /**
+     * 第一个配置的缓存名称，调用时没有传递缓存名称时使用
+     */
+    @Getter
+    private final String defaultName;
+    /**
+     * update(gets + cas)按 key 的冲突统计，各缓存名称共用，重新配置服务器列表时保留
+     */
+    @Getter
+    private final MemcachedCasContention casContention = new MemcachedCasContention();
+    private final List<MemcachedClientListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile ScheduledExecutorService reconfigureExecutor;
 
     public MemcachedManager(MemcachedProperties properties) {
         this.properties = properties;
         init();
+        this.defaultName = properties.getNodes().get(0).getName();
     }
 
     private void init() {
@@ -40,66 +76,245 @@ public class MemcachedManager {
             if(!StringUtils.hasText(node.getName())) node.setName(node.getServers());
             log.info("{}", node);
 
-            SockIOPool pool = SockIOPool.getInstance(node.getName());
-            // memcached服务器地址配置
-            pool.setServers(node.getServers().split(","));
-            // 设置连接池可用cache服务器的权重，和server数组的位置一一对应
-            pool.setWeights(Arrays.stream(node.getWeights().split(",")).map(Integer::parseInt).toArray(Integer[]::new));
-            // 初始化时对每个服务器建立的连接数目
-            pool.setInitConn(node.getInitConn());
-            // 每个服务器建立最小的连接数，当维护线程发现与某个服务器建立连接数目小于这个数目时会弥补剩下的连接
-            pool.setMinConn(node.getMinConn());
-            // 每个服务器建立最大的连接数，当维护线程发现与某个服务器建立连接数目大于这个数目时就会逐个检查这些连接的空闲时间是否大于maxConn，如果大于会关闭这些连接，直到连接数等于maxConn
-            pool.setMaxConn(node.getMaxConn());
-            // 最大空闲时间
-            pool.setMaxIdle(node.getMaxIdle());
-            // 最长租用时间，其使用主要有两点，一是维护线程会检查正在被租用的连接，如果发现已经被租用的时间超过这个值得，
-            // 会将其从被租用的记录里剔除，并关闭这个连接；另一个应用是上层进行MUTIL操作时，读取所有的数据的时间不能超过这个时间。
-            pool.setMaxBusyTime(node.getMaxBusyTime());
-            // 维护线程周期进行工作，其每次休眠时间。设置为0，维护线程不启动。维护线程主要通过log输出socket的运行状况，监测连接数目及空闲等待时间等参数以控制连接创建和关闭。
-            pool.setMaintSleep(node.getMaintSleep());
-            // Socket的参数，设置是否使用Nagle算法，因为我们的通讯数据量通常都比较大（相对TCP控制数据）而且要求响应及时，因此该值需要设置为false（默认是true）如果是true在写数据时不缓冲，立即发送出去
-            pool.setNagle(node.getNagle());
-            // Socket阻塞读取数据的超时时间
-            pool.setSocketTO(node.getSocketTimeout());
-            // Socket阻塞建立连接的等待时间
-            pool.setSocketConnectTO(node.getSocketConnectTimeout());
-            // 设置连接心跳监测开关
-            // 根据key&hashCode获取SockIO时，通过hash bucket得到SockIO后，如果这个值是true会检查Socket是否已经连接，
-            // 如果连接建立正常还会向服务器发送“version\r\n”的指令，并读取数据，这个过程没有出错才会返回SockIO给上层用，否则返回NULL。所以一般设置为false。
-            // 设为true则每次通信都要进行连接是否有效的监测，造成通信次数倍增，加大网络负载，因此该参数应该在对HA要求比较高的场合设为TRUE，默认状态是false。
-            pool.setAliveCheck(node.getAliveCheck());
-            // 设置连接失败恢复开关，设置为TRUE，当宕机的服务器启动或中断的网络连接后，这个socket连接还可继续使用，否则将不再使用，默认状态是true，建议保持默认。
-            pool.setFailback(node.getFailBack());
-            // 设置容错开关，设置为TRUE，当当前socket不可用时，程序会自动查找可用连接并返回，否则返回NULL，默认状态是true，建议保持默认。
-            pool.setFailover(node.getFailOver());
-            // 设置hash算法，采用前三种hash算法的时候，查找cache服务器使用余数方法。采用最后一种hash算法查找cache服务时使用consistent方法
-            //   0 使用String.hashCode()获得hash code,该方法依赖JDK，可能和其他客户端不兼容，建议不使用
-            //   1 使用original 兼容hash算法，兼容其他客户端
-            //   2 使用CRC32兼容hash算法，兼容其他客户端，性能优于original算法
-            //   3 使用MD5 hash算法
-            pool.setHashingAlg(node.getHashingAlg());
-            pool.initialize();
-
-            MyMemCachedClient client = getMemCachedClient(node);
-            if(client != null) clients.put(node.getName(), client);
+            MemcachedConfig config = copy(node);
+            initPool(config, config.getName());
+
+            MyMemCachedClient client = getMemCachedClient(config, config.getName());
+            if(client != null) clients.put(config.getName(), client);
+        }
+    }
+
+    /**
+     * 注册客户端变更监听
+     * @param listener 监听
+     */
+    public void addListener(MemcachedClientListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 按 properties 中当前的配置重新配置，配置绑定刷新(如 Spring Cloud 的 EnvironmentChangeEvent)后调用
+     * @return 发生变化的缓存名称
+     */
+    public CompletableFuture<Set<String>> refresh() {
+        return this.reconfigure(properties.getNodes());
+    }
+
+    /**
+     * 运行时重新配置服务器列表，不需要重启。
+     * 配置发生变化的缓存名称在后台线程中创建新的连接池并预热连接，然后原子地替换客户端，
+     * 已经开始的调用继续在旧的连接池上完成，新的调用使用新的连接池；旧的连接池等待 max(socketTimeout, maxBusyTime) 后关闭。
+     * 新的服务器全部无法连接时不切换，保留原来的客户端。
+     * 配置中不再存在的缓存名称会被移除，默认缓存名称保持为启动时第一个配置的缓存名称。
+     * @param nodes 新的配置
+     * @return 发生变化的缓存名称
+     */
+    public CompletableFuture<Set<String>> reconfigure(List<MemcachedConfig> nodes) {
+        if(nodes == null || nodes.isEmpty()) {
+            CompletableFuture<Set<String>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalArgumentException("Please configure the cache connection address"));
+            return failed;
+        }
+
+        List<MemcachedConfig> configs = new ArrayList<>(nodes.size());
+        for (MemcachedConfig node : nodes) {
+            MemcachedConfig config = copy(node);
+            if(!StringUtils.hasText(config.getName())) config.setName(config.getServers());
+            configs.add(config);
         }
+        return CompletableFuture.supplyAsync(() -> this.doReconfigure(configs), executor());
+    }
+
+    private Set<String> doReconfigure(List<MemcachedConfig> configs) {
+        Set<String> changed = new LinkedHashSet<>();
+        Set<String> names = new HashSet<>();
+        for (MemcachedConfig config : configs) {
+            String name = config.getName();
+            names.add(name);
+            MyMemCachedClient previous = clients.get(name);
+            if(previous != null && previous.getConfig().equals(config)) continue;
+
+            log.info("{} => reconfigure {}", name, config);
+            String poolName = name + '#' + generation.incrementAndGet();
+            MyMemCachedClient created = null;
+            try {
+                initPool(config, poolName);
+                created = getMemCachedClient(config, poolName);
+            } catch (RuntimeException e) {
+                log.error("{} => reconfigure failed", name, e);
+            }
+            if(created == null || !warm(created)) {
+                log.warn("{} => reconfigure failed, keep the previous servers", name);
+                if(created != null) drain(created);
+                else shutDown(poolName);
+                continue;
+            }
+
+            clients.put(name, created);
+            this.fireChanged(name, created);
+            if(previous != null) this.scheduleDrain(previous);
+            changed.add(name);
+        }
+
+        for (String name : new ArrayList<>(clients.keySet())) {
+            if(names.contains(name)) continue;
+
+            log.info("{} => removed", name);
+            if(name.equals(defaultName)) log.warn("{} => default client removed", name);
+            MyMemCachedClient previous = clients.remove(name);
+            this.fireChanged(name, null);
+            casContention.reset(name);
+            if(previous != null) this.scheduleDrain(previous);
+            changed.add(name);
+        }
+        return changed;
+    }
+
+    private void fireChanged(String name, MyMemCachedClient current) {
+        for (MemcachedClientListener listener : listeners) {
+            try {
+                listener.onChanged(name, current);
+            } catch (RuntimeException e) {
+                log.error("{} => client listener failed", name, e);
+            }
+        }
+    }
+
+    /**
+     * 预热直连连接池，每台服务器建立 initConn 个连接(至少一个)；SockIOPool 的连接在 initialize 时已经建立
+     * @return 至少有一台服务器可以连接
+     */
+    private static boolean warm(MyMemCachedClient cachedClient) {
+        MemcachedConnectionPool pool = cachedClient.getConnectionPool();
+        MemcachedConfig config = cachedClient.getConfig();
+        int count = Math.max(1, Math.min(config.getInitConn(), config.getMaxConn()));
+        boolean reachable = false;
+        for (String server : pool.getServers()) {
+            List<MemcachedConnection> connections = new ArrayList<>(count);
+            try {
+                for (int i = 0; i < count; i++) connections.add(pool.borrow(server, 0));
+                reachable = true;
+            } catch (IOException e) {
+                log.warn("{} => warm up {} failed: {}", config.getName(), server, e.getMessage());
+            } finally {
+                for (MemcachedConnection connection : connections) pool.release(connection);
+            }
+        }
+        return reachable;
+    }
+
+    private void scheduleDrain(MyMemCachedClient previous) {
+        MemcachedConfig config = previous.getConfig();
+        long delay = Math.max(config.getSocketTimeout(), config.getMaxBusyTime());
+        executor().schedule(() -> drain(previous), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭旧的连接池：直连连接池关闭空闲连接，借出的连接归还时关闭
+     */
+    private static void drain(MyMemCachedClient previous) {
+        if(log.isDebugEnabled()) log.debug("{} => drain {}", previous.getConfig().getName(), previous.getPoolName());
+        if(previous.getConnectionPool() != null) previous.getConnectionPool().close();
+        if(previous.getNearCache() != null) previous.getNearCache().clear();
+        shutDown(previous.getPoolName());
+    }
+
+    private static void shutDown(String poolName) {
+        SockIOPool pool = SockIOPool.getInstance(poolName);
+        if(pool.isInitialized()) pool.shutDown();
+    }
+
+    private ScheduledExecutorService executor() {
+        ScheduledExecutorService executor = this.reconfigureExecutor;
+        if(executor != null) return executor;
+
+        synchronized (this) {
+            if(this.reconfigureExecutor == null) {
+                this.reconfigureExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "memcached-reconfigure");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return this.reconfigureExecutor;
+        }
+    }
+
+    /**
+     * 复制一份配置，配置绑定刷新时可能原地修改 properties 中的对象
+     */
+    private static MemcachedConfig copy(MemcachedConfig node) {
+        MemcachedConfig config = new MemcachedConfig();
+        BeanUtils.copyProperties(node, config);
+        return config;
+    }
+
+    private static void initPool(MemcachedConfig node, String poolName) {
+        SockIOPool pool = SockIOPool.getInstance(poolName);
+        // memcached服务器地址配置
+        pool.setServers(node.getServers().split(","));
+        // 设置连接池可用cache服务器的权重，和server数组的位置一一对应
+        pool.setWeights(Arrays.stream(node.getWeights().split(",")).map(Integer::parseInt).toArray(Integer[]::new));
+        // 初始化时对每个服务器建立的连接数目
+        pool.setInitConn(node.getInitConn());
+        // 每个服务器建立最小的连接数，当维护线程发现与某个服务器建立连接数目小于这个数目时会弥补剩下的连接
+        pool.setMinConn(node.getMinConn());
+        // 每个服务器建立最大的连接数，当维护线程发现与某个服务器建立连接数目大于这个数目时就会逐个检查这些连接的空闲时间是否大于maxConn，如果大于会关闭这些连接，直到连接数等于maxConn
+        pool.setMaxConn(node.getMaxConn());
+        // 最大空闲时间
+        pool.setMaxIdle(node.getMaxIdle());
+        // 最长租用时间，其使用主要有两点，一是维护线程会检查正在被租用的连接，如果发现已经被租用的时间超过这个值得，
+        // 会将其从被租用的记录里剔除，并关闭这个连接；另一个应用是上层进行MUTIL操作时，读取所有的数据的时间不能超过这个时间。
+        pool.setMaxBusyTime(node.getMaxBusyTime());
+        // 维护线程周期进行工作，其每次休眠时间。设置为0，维护线程不启动。维护线程主要通过log输出socket的运行状况，监测连接数目及空闲等待时间等参数以控制连接创建和关闭。
+        pool.setMaintSleep(node.getMaintSleep());
+        // Socket的参数，设置是否使用Nagle算法，因为我们的通讯数据量通常都比较大（相对TCP控制数据）而且要求响应及时，因此该值需要设置为false（默认是true）如果是true在写数据时不缓冲，立即发送出去
+        pool.setNagle(node.getNagle());
+        // Socket阻塞读取数据的超时时间
+        pool.setSocketTO(node.getSocketTimeout());
+        // Socket阻塞建立连接的等待时间
+        pool.setSocketConnectTO(node.getSocketConnectTimeout());
+        // 设置连接心跳监测开关
+        // 根据key&hashCode获取SockIO时，通过hash bucket得到SockIO后，如果这个值是true会检查Socket是否已经连接，
+        // 如果连接建立正常还会向服务器发送“version\r\n”的指令，并读取数据，这个过程没有出错才会返回SockIO给上层用，否则返回NULL。所以一般设置为false。
+        // 设为true则每次通信都要进行连接是否有效的监测，造成通信次数倍增，加大网络负载，因此该参数应该在对HA要求比较高的场合设为TRUE，默认状态是false。
+        pool.setAliveCheck(node.getAliveCheck());
+        // 设置连接失败恢复开关，设置为TRUE，当宕机的服务器启动或中断的网络连接后，这个socket连接还可继续使用，否则将不再使用，默认状态是true，建议保持默认。
+        pool.setFailback(node.getFailBack());
+        // 设置容错开关，设置为TRUE，当当前socket不可用时，程序会自动查找可用连接并返回，否则返回NULL，默认状态是true，建议保持默认。
+        pool.setFailover(node.getFailOver());
+        // 设置hash算法，采用前三种hash算法的时候，查找cache服务器使用余数方法。采用最后一种hash算法查找cache服务时使用consistent方法
+        //   0 使用String.hashCode()获得hash code,该方法依赖JDK，可能和其他客户端不兼容，建议不使用
+        //   1 使用original 兼容hash算法，兼容其他客户端
+        //   2 使用CRC32兼容hash算法，兼容其他客户端，性能优于original算法
+        //   3 使用MD5 hash算法
+        pool.setHashingAlg(node.getHashingAlg());
+        pool.initialize();
     }
 
-    private static MyMemCachedClient getMemCachedClient(MemcachedConfig config) {
+    private static MyMemCachedClient getMemCachedClient(MemcachedConfig config, String poolName) {
         try {
-            MemCachedClient client = new MemCachedClient(config.getName());
+            MemCachedClient client = new MemCachedClient(poolName);
             if(config.getEnableKeyStrictMode() != null) client.setSanitizeKeys(config.getEnableKeyStrictMode());
+            // key 由 MemcachedKeys 编码，不再重复清理
+            if(Boolean.TRUE.equals(config.getFastKeyEncoding())) client.setSanitizeKeys(false);
             if(config.getIsPrimitiveAsString() != null) client.setPrimitiveAsString(config.getIsPrimitiveAsString());
             if(StringUtils.hasText(config.getDefaultEncoding())) client.setDefaultEncoding(config.getDefaultEncoding());
+            TransCoder transCoder = null;
             if(StringUtils.hasText(config.getTransCoderClass())) {
                 Class<?> clazz = Class.forName(config.getTransCoderClass());
                 if(TransCoder.class.isAssignableFrom(clazz)) {
-                    TransCoder transCoder = (TransCoder) clazz.getDeclaredConstructor().newInstance();
+                    transCoder = (TransCoder) clazz.getDeclaredConstructor().newInstance();
                     client.setTransCoder(transCoder);
                 }
             }
-            return new MyMemCachedClient(config, client);
+            MemcachedConnectionPool connectionPool = new MemcachedConnectionPool(config);
+            MemcachedDecoder decoder = new MemcachedDecoder(config, transCoder);
+            MemcachedNearCache nearCache = config.getNearCacheCapacity() != null && config.getNearCacheCapacity() > 0
+                    ? new MemcachedNearCache(config, connectionPool, decoder) : null;
+            // 常用读写改走直连协议，SockIOPool 只用于 stats/flushAll 等管理操作
+            if(Boolean.TRUE.equals(config.getVirtualThreadFriendly())) client = new MemcachedDirectClient(client, connectionPool, decoder);
+            return new MyMemCachedClient(config, client, connectionPool, decoder, nearCache, poolName);
         } catch (Exception e) {
             log.error("", e);
         }
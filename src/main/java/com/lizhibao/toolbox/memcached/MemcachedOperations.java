@@ -0,0 +1,830 @@
+package com.lizhibao.toolbox.memcached;
+
+import com.danga.MemCached.MemCachedClient;
+import com.lizhibao.toolbox.memcached.cas.MemcachedCasContention;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedInterceptorChain;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedOperation;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedOperationType;
+import com.lizhibao.toolbox.memcached.model.MemcachedMetaResult;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.nearcache.MemcachedNearCache;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedBytes;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedDeadline;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedDecoder;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedKeys;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMeta;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMetaOptions;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMultiGet;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMultiGetOptions;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedPrimitives;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedTouch;
+import com.schooner.MemCached.MemcachedItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * 绑定到单个缓存名称(name)的操作句柄，通过 {@link MemcachedTemplate#forName(String)} 获取后保存复用。
+ * 创建时已经解析好客户端和配置，调用时不再按名称查找，也不再包装 Optional：未命中返回 null，计数器失败返回 -1。
+ * 服务器列表重新配置后句柄自动切换到新的客户端，见 {@link MemcachedManager#reconfigure(java.util.List)}。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public final class MemcachedOperations {
+    private final String name;
+    private volatile MemcachedConfig config;
+    private volatile MemCachedClient client;
+    private volatile MemcachedConnectionPool connectionPool;
+    private volatile MemcachedDecoder decoder;
+    private volatile MemcachedNearCache nearCache;
+    /**
+     * 是否由 MemcachedKeys 编码 key，见 {@link MemcachedConfig#getFastKeyEncoding()}
+     */
+    private volatile boolean encodeKeys;
+    private volatile boolean sanitize;
+    /**
+     * 没有注册拦截器时为 null，操作直接执行
+     */
+    private final MemcachedInterceptorChain interceptors;
+    private final MemcachedCasContention casContention;
+
+    MemcachedOperations(String name, MyMemCachedClient cachedClient, MemcachedInterceptorChain interceptors, MemcachedCasContention casContention) {
+        this.name = name;
+        this.interceptors = interceptors;
+        this.casContention = casContention;
+        this.bind(cachedClient);
+    }
+
+    /**
+     * 服务器列表重新配置后切换到新的客户端，已保存的句柄(包括基于句柄的命名空间和标签)继续可用，
+     * 切换前已开始的调用仍在旧的连接池上完成
+     * @param cachedClient 新的客户端
+     */
+    void bind(MyMemCachedClient cachedClient) {
+        MemcachedConfig current = cachedClient.getConfig();
+        this.encodeKeys = Boolean.TRUE.equals(current.getFastKeyEncoding());
+        this.sanitize = !Boolean.FALSE.equals(current.getEnableKeyStrictMode());
+        this.connectionPool = cachedClient.getConnectionPool();
+        this.decoder = cachedClient.getDecoder();
+        this.nearCache = cachedClient.getNearCache();
+        this.client = cachedClient.getClient();
+        this.config = current;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MemcachedConfig getConfig() {
+        return config;
+    }
+
+    public MemCachedClient getClient() {
+        return client;
+    }
+
+    /**
+     * 判断 key 是否存在
+     * @param key 缓存key
+     * @return true / false
+     */
+    public boolean keyExists(String key) {
+        if(interceptors == null || !interceptors.isActive()) return doKeyExists(key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.KEY_EXISTS, name, key, false), operation -> doKeyExists(operation.getKey()));
+    }
+
+    private boolean doKeyExists(String key) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
+        return client.keyExists(key(key));
+    }
+
+    /**
+     * 删除一个数据
+     * @param key 缓存key
+     * @return true / false
+     */
+    public boolean delete(String key) {
+        if(interceptors == null || !interceptors.isActive()) return doDelete(key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.DELETE, name, key, false), operation -> doDelete(operation.getKey()));
+    }
+
+    private boolean doDelete(String key) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
+        return afterWrite(key, client.delete(writeKey(key)));
+    }
+
+    /**
+     * 存储一个数据，永不过期
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @return true / false
+     */
+    public boolean set(String key, Object value) {
+        return this.set(key, value, 0L);
+    }
+
+    /**
+     * 存储一个数据，如何存在则会覆盖旧值
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean set(String key, Object value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSet(key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET, name, key, value, expired, false), operation -> doSet(operation.getKey(), value, expired));
+    }
+
+    private boolean doSet(String key, Object value, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
+        return afterWrite(key, client.set(writeKey(key), value, new Date(MemcachedTemplate.jitter(config, expired))));
+    }
+
+    /**
+     * 存储一个数据，永不过期，如果存在则不会覆盖
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @return true / false
+     */
+    public boolean add(String key, Object value) {
+        return this.add(key, value, 0L);
+    }
+
+    /**
+     * 存储一个数据，如果存在则不会覆盖
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean add(String key, Object value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doAdd(key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.ADD, name, key, value, expired, false), operation -> doAdd(operation.getKey(), value, expired));
+    }
+
+    private boolean doAdd(String key, Object value, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
+        return afterWrite(key, client.add(writeKey(key), value, new Date(MemcachedTemplate.jitter(config, expired))));
+    }
+
+    /**
+     * 替换一个数据，如果不存在则不会存储
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean replace(String key, Object value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doReplace(key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.REPLACE, name, key, value, expired, false), operation -> doReplace(operation.getKey(), value, expired));
+    }
+
+    private boolean doReplace(String key, Object value, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
+        return afterWrite(key, client.replace(writeKey(key), value, new Date(expired)));
+    }
+
+    /**
+     * 在已有数据后追加数据
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @return true / false
+     */
+    public boolean append(String key, Object value) {
+        if(interceptors == null || !interceptors.isActive()) return doAppend(key, value);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.APPEND, name, key, value, 0L, false), operation -> doAppend(operation.getKey(), value));
+    }
+
+    private boolean doAppend(String key, Object value) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, value);
+        return afterWrite(key, client.append(writeKey(key), value));
+    }
+
+    /**
+     * 在已有数据前追加数据
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @return true / false
+     */
+    public boolean prepend(String key, Object value) {
+        if(interceptors == null || !interceptors.isActive()) return doPrepend(key, value);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.PREPEND, name, key, value, 0L, false), operation -> doPrepend(operation.getKey(), value));
+    }
+
+    private boolean doPrepend(String key, Object value) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, value);
+        return afterWrite(key, client.prepend(writeKey(key), value));
+    }
+
+    /**
+     * 获取一个数据
+     * @param key 缓存key
+     * @return 未命中时返回 null
+     */
+    public Object get(String key) {
+        if(interceptors == null || !interceptors.isActive()) return doGet(key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET, name, key, null), operation -> doGet(operation.getKey()));
+    }
+
+    private Object doGet(String key) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
+        if(nearCache != null) return nearCache.get(key);
+        // 有截止时间时通过直连协议读取，danga 客户端的读取只受 socketTimeout 限制
+        if(connectionPool != null && MemcachedDeadline.current() != 0) {
+            String[] keys = {key};
+            return MemcachedMultiGet.get(connectionPool, decoder, keys, new MemcachedMultiGetOptions()).get(key);
+        }
+        return client.get(key(key));
+    }
+
+    /**
+     * 在指定时间内获取一个数据，超时按未命中处理
+     * @param key 缓存key
+     * @param timeout 超时时间(毫秒)，可以大于或小于 socketTimeout
+     * @return 未命中或超时时返回 null
+     */
+    public Object get(String key, long timeout) {
+        return MemcachedDeadline.call(timeout, () -> this.get(key));
+    }
+
+    /**
+     * 获取一个带CAS令牌的数据
+     * @param key 缓存key
+     * @return 未命中时返回 null
+     */
+    public MemcachedItem gets(String key) {
+        if(interceptors == null || !interceptors.isActive()) return doGets(key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GETS, name, key, null), operation -> doGets(operation.getKey()));
+    }
+
+    private MemcachedItem doGets(String key) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
+        return client.gets(key(key));
+    }
+
+    /**
+     * 通过CAS令牌检查并存储数据
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @param expired 过期时间
+     * @param casUnique 令牌
+     * @return true / false
+     */
+    public boolean cas(String key, Object value, long expired, long casUnique) {
+        if(interceptors == null || !interceptors.isActive()) return doCas(key, value, expired, casUnique);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.CAS, name, key, value, expired, false), operation -> doCas(operation.getKey(), value, expired, casUnique));
+    }
+
+    private boolean doCas(String key, Object value, long expired, long casUnique) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {} / {}", name, key, value, expired, casUnique);
+        return afterWrite(key, client.cas(writeKey(key), value, new Date(expired), casUnique));
+    }
+
+    /**
+     * 乐观更新：gets 读取数据和CAS令牌，fn 计算新值后通过 cas 写回(不存在时通过 add 写入)，
+     * 被其他写入抢先时随机退避后重新读取并重试，见 {@link MemcachedTemplate#update(String, String, UnaryOperator, long)}
+     * @param key 缓存key
+     * @param fn 根据当前值(不存在时为 null)计算新值，返回 null 表示放弃更新
+     * @param expired 过期时间
+     * @return 写入的新值；fn 返回 null、重试次数用完或线程被中断时返回 null
+     */
+    public <T> T update(String key, UnaryOperator<T> fn, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doUpdate(key, fn, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.UPDATE, name, key, null, expired, null), operation -> doUpdate(operation.getKey(), fn, expired));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T doUpdate(String key, UnaryOperator<T> fn, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, expired);
+
+        MemcachedConfig current = this.config;
+        int maxAttempts = MemcachedCasContention.maxAttempts(current);
+        for (int attempt = 1; ; attempt++) {
+            MemcachedItem item = doGets(key);
+            T value = fn.apply(item == null ? null : (T) item.getValue());
+            if(value == null) return null;
+
+            boolean stored = item == null ? doAdd(key, value, expired) : doCas(key, value, expired, item.getCasUnique());
+            if(stored) {
+                casContention.updated(name, key);
+                return value;
+            }
+
+            casContention.conflict(name, key);
+            if(attempt >= maxAttempts) {
+                casContention.exhausted(name, key);
+                log.warn("{} => update {} gave up after {} attempts", name, key, attempt);
+                return null;
+            }
+            if(!MemcachedCasContention.backoff(current, attempt)) return null;
+        }
+    }
+
+    /**
+     * 批量获取数据
+     * @param keys 缓存keys
+     * @return 与 keys 一一对应，未命中的位置为 null
+     */
+    public Object[] getMultiArray(String[] keys) {
+        if(interceptors == null || !interceptors.isActive()) return doGetMultiArray(keys);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_MULTI_ARRAY, name, keys, null), operation -> doGetMultiArray(operation.getKeys()));
+    }
+
+    private Object[] doGetMultiArray(String[] keys) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, keys.length);
+        return client.getMultiArray(keys(keys));
+    }
+
+    /**
+     * 批量获取数据
+     * @param keys 缓存keys
+     * @return 只包含命中的 key
+     */
+    public Map<String, Object> getMulti(String[] keys) {
+        if(interceptors == null || !interceptors.isActive()) return doGetMulti(keys);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_MULTI, name, keys, null), operation -> doGetMulti(operation.getKeys()));
+    }
+
+    private Map<String, Object> doGetMulti(String[] keys) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, keys.length);
+        if(connectionPool != null && MemcachedDeadline.current() != 0) return MemcachedMultiGet.get(connectionPool, decoder, keys, new MemcachedMultiGetOptions());
+        String[] clientKeys = keys(keys);
+        return MemcachedKeys.restoreKeys(keys, clientKeys, client.getMulti(clientKeys));
+    }
+
+    /**
+     * 并行批量获取数据，key 按服务器分组并按 batchSize 拆分为多个请求并行发送，设置 timeout 时到期返回部分结果
+     * @param keys 缓存keys
+     * @param options 读取参数
+     * @return 命中的 key 和数据
+     */
+    public Map<String, Object> getMulti(String[] keys, MemcachedMultiGetOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doGetMulti(keys, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_MULTI, name, keys, null), operation -> doGetMulti(operation.getKeys(), options));
+    }
+
+    private Map<String, Object> doGetMulti(String[] keys, MemcachedMultiGetOptions options) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, keys.length, options);
+        return MemcachedMultiGet.get(connectionPool, decoder, keys, options);
+    }
+
+    /**
+     * 存储一个计数器，如何存在则会覆盖旧值
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean storeCounter(String key, long value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doStoreCounter(key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.STORE_COUNTER, name, key, value, expired, false), operation -> doStoreCounter(operation.getKey(), value, expired));
+    }
+
+    private boolean doStoreCounter(String key, long value, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
+        return afterWrite(key, client.storeCounter(writeKey(key), value, new Date(expired)));
+    }
+
+    /**
+     * 获取存储的计数器
+     * @param key 缓存key
+     * @return 不存在时返回 -1
+     */
+    public long getCounter(String key) {
+        if(interceptors == null || !interceptors.isActive()) return doGetCounter(key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_COUNTER, name, key, -1L), operation -> doGetCounter(operation.getKey()));
+    }
+
+    private long doGetCounter(String key) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
+        return client.getCounter(key(key));
+    }
+
+    /**
+     * 自增，不存在时返回 -1
+     * @param key 缓存key
+     * @param value 自增大小
+     * @return long
+     */
+    public long incr(String key, long value) {
+        if(interceptors == null || !interceptors.isActive()) return doIncr(key, value);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.INCR, name, key, value, 0L, -1L), operation -> doIncr(operation.getKey(), value));
+    }
+
+    private long doIncr(String key, long value) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, value);
+        return afterWrite(key, client.incr(writeKey(key), value));
+    }
+
+    /**
+     * 自减，不存在时返回 -1
+     * @param key 缓存key
+     * @param value 自减大小
+     * @return long
+     */
+    public long decr(String key, long value) {
+        if(interceptors == null || !interceptors.isActive()) return doDecr(key, value);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.DECR, name, key, value, 0L, -1L), operation -> doDecr(operation.getKey(), value));
+    }
+
+    private long doDecr(String key, long value) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, value);
+        return afterWrite(key, client.decr(writeKey(key), value));
+    }
+
+    /**
+     * 存储一个数值并立即自增
+     * @param key 缓存key
+     * @param incr 自增大小
+     * @return long
+     */
+    public long addOrIncr(String key, long incr) {
+        if(interceptors == null || !interceptors.isActive()) return doAddOrIncr(key, incr);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.ADD_OR_INCR, name, key, incr, 0L, -1L), operation -> doAddOrIncr(operation.getKey(), incr));
+    }
+
+    private long doAddOrIncr(String key, long incr) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, incr);
+        return afterWrite(key, client.addOrIncr(writeKey(key), incr));
+    }
+
+    /**
+     * 存储一个数值并立即自减
+     * @param key 缓存key
+     * @param decr 自减大小
+     * @return long
+     */
+    public long addOrDecr(String key, long decr) {
+        if(interceptors == null || !interceptors.isActive()) return doAddOrDecr(key, decr);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.ADD_OR_DECR, name, key, decr, 0L, -1L), operation -> doAddOrDecr(operation.getKey(), decr));
+    }
+
+    private long doAddOrDecr(String key, long decr) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, decr);
+        return afterWrite(key, client.addOrDecr(writeKey(key), decr));
+    }
+
+    /**
+     * 读取一个 long，不装箱
+     * @param key 缓存key
+     * @param missing 不存在、不是数值或读取失败时的返回值
+     * @return long
+     */
+    public long getLong(String key, long missing) {
+        if(interceptors == null || !interceptors.isActive()) return doGetLong(key, missing);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_LONG, name, key, missing), operation -> doGetLong(operation.getKey(), missing));
+    }
+
+    private long doGetLong(String key, long missing) {
+        return MemcachedPrimitives.getLong(connectionPool, key, missing);
+    }
+
+    /**
+     * 读取一个 int，不装箱
+     * @param key 缓存key
+     * @param missing 不存在、不是数值或读取失败时的返回值
+     * @return int
+     */
+    public int getInt(String key, int missing) {
+        return (int) this.getLong(key, missing);
+    }
+
+    /**
+     * 读取一个 boolean，不装箱
+     * @param key 缓存key
+     * @param missing 不存在、不是布尔值或读取失败时的返回值
+     * @return boolean
+     */
+    public boolean getBoolean(String key, boolean missing) {
+        long value = this.getLong(key, Long.MIN_VALUE);
+        return value == Long.MIN_VALUE ? missing : value != 0;
+    }
+
+    /**
+     * 批量读取 long 填充到 values 中
+     * @param keys 缓存keys
+     * @param values 与 keys 一一对应的结果数组
+     * @param missing 未命中位置填充的值
+     * @return 命中的数量
+     */
+    public int getLongs(String[] keys, long[] values, long missing) {
+        if(interceptors == null || !interceptors.isActive()) return doGetLongs(keys, values, missing);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_LONGS, name, keys, -1), operation -> doGetLongs(operation.getKeys(), values, missing));
+    }
+
+    private int doGetLongs(String[] keys, long[] values, long missing) {
+        return MemcachedPrimitives.getLongs(connectionPool, keys, values, missing);
+    }
+
+    /**
+     * 批量读取 int 填充到 values 中
+     * @param keys 缓存keys
+     * @param values 与 keys 一一对应的结果数组
+     * @param missing 未命中位置填充的值
+     * @return 命中的数量
+     */
+    public int getInts(String[] keys, int[] values, int missing) {
+        if(interceptors == null || !interceptors.isActive()) return doGetInts(keys, values, missing);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_INTS, name, keys, -1), operation -> doGetInts(operation.getKeys(), values, missing));
+    }
+
+    private int doGetInts(String[] keys, int[] values, int missing) {
+        return MemcachedPrimitives.getInts(connectionPool, keys, values, missing);
+    }
+
+    /**
+     * 存储一个 long，格式与 set(key, Long) 相同
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setLong(String key, long value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetLong(key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_LONG, name, key, value, expired, false), operation -> doSetLong(operation.getKey(), value, expired));
+    }
+
+    private boolean doSetLong(String key, long value, long expired) {
+        return afterWrite(key, MemcachedPrimitives.setLong(connectionPool(key), key, value, MemcachedTemplate.jitter(config, expired)));
+    }
+
+    /**
+     * 存储一个 int，格式与 set(key, Integer) 相同
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setInt(String key, int value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetInt(key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_INT, name, key, value, expired, false), operation -> doSetInt(operation.getKey(), value, expired));
+    }
+
+    private boolean doSetInt(String key, int value, long expired) {
+        return afterWrite(key, MemcachedPrimitives.setInt(connectionPool(key), key, value, MemcachedTemplate.jitter(config, expired)));
+    }
+
+    /**
+     * 存储一个 boolean，格式与 set(key, Boolean) 相同
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setBoolean(String key, boolean value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetBoolean(key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_BOOLEAN, name, key, value, expired, false), operation -> doSetBoolean(operation.getKey(), value, expired));
+    }
+
+    private boolean doSetBoolean(String key, boolean value, long expired) {
+        return afterWrite(key, MemcachedPrimitives.setBoolean(connectionPool(key), key, value, MemcachedTemplate.jitter(config, expired)));
+    }
+
+    /**
+     * 读取原始字节，不经过 TransCoder
+     * @param key 缓存key
+     * @return 不存在时返回 null
+     */
+    public byte[] getBytes(String key) {
+        if(interceptors == null || !interceptors.isActive()) return doGetBytes(key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_BYTES, name, key, null), operation -> doGetBytes(operation.getKey()));
+    }
+
+    private byte[] doGetBytes(String key) {
+        return MemcachedBytes.get(connectionPool, key);
+    }
+
+    /**
+     * 读取原始字节到 dst 中，dst 剩余空间不足时不写入，可按返回的长度重新分配后再读
+     * @param key 缓存key
+     * @param dst 目标缓冲区
+     * @return 数据长度，不存在时返回 -1
+     */
+    public int getBytes(String key, ByteBuffer dst) {
+        if(interceptors == null || !interceptors.isActive()) return doGetBytes(key, dst);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_BYTES, name, key, -1), operation -> doGetBytes(operation.getKey(), dst));
+    }
+
+    private int doGetBytes(String key, ByteBuffer dst) {
+        return MemcachedBytes.get(connectionPool, key, dst);
+    }
+
+    /**
+     * 存储原始字节，不经过 TransCoder
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setBytes(String key, byte[] value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetBytes(key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_BYTES, name, key, value, expired, false), operation -> doSetBytes(operation.getKey(), value, expired));
+    }
+
+    private boolean doSetBytes(String key, byte[] value, long expired) {
+        return afterWrite(key, MemcachedBytes.set(connectionPool(key), key, value, 0, value.length, MemcachedTemplate.jitter(config, expired)));
+    }
+
+    /**
+     * 存储 ByteBuffer 的剩余内容，不经过 TransCoder，value 的 position 不变
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setBytes(String key, ByteBuffer value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetBytes(key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_BYTES, name, key, value, expired, false), operation -> doSetBytes(operation.getKey(), value, expired));
+    }
+
+    private boolean doSetBytes(String key, ByteBuffer value, long expired) {
+        return afterWrite(key, MemcachedBytes.set(connectionPool(key), key, value, MemcachedTemplate.jitter(config, expired)));
+    }
+
+    /**
+     * 只更新过期时间，不重写数据，用于滑动过期
+     * @param key 缓存key
+     * @param expired 新的过期时间
+     * @return 不存在时返回 false
+     */
+    public boolean touch(String key, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doTouch(key, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.TOUCH, name, key, null, expired, false), operation -> doTouch(operation.getKey(), expired));
+    }
+
+    private boolean doTouch(String key, long expired) {
+        return MemcachedTouch.touch(connectionPool, key, MemcachedTemplate.jitter(config, expired));
+    }
+
+    /**
+     * 批量更新过期时间，每台服务器以流水线方式发送
+     * @param keys 缓存keys
+     * @param expired 新的过期时间
+     * @return 更新成功的 key，不存在的 key 不包含在内
+     */
+    public Set<String> touchMulti(String[] keys, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doTouchMulti(keys, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.TOUCH_MULTI, name, keys, Collections.emptySet()), operation -> doTouchMulti(operation.getKeys(), expired));
+    }
+
+    private Set<String> doTouchMulti(String[] keys, long expired) {
+        return MemcachedTouch.touch(connectionPool, keys, MemcachedTemplate.jitter(config, expired));
+    }
+
+    /**
+     * 读取数据并更新过期时间(gat)，一次往返
+     * @param key 缓存key
+     * @param expired 新的过期时间
+     * @return 不存在时返回 null
+     */
+    public Object getAndTouch(String key, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doGetAndTouch(key, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_AND_TOUCH, name, key, null, expired, null), operation -> doGetAndTouch(operation.getKey(), expired));
+    }
+
+    private Object doGetAndTouch(String key, long expired) {
+        return MemcachedTouch.getAndTouch(connectionPool, decoder, key, MemcachedTemplate.jitter(config, expired));
+    }
+
+    /**
+     * 批量读取数据并更新过期时间，每台服务器每 100 个 key 一次 gat
+     * @param keys 缓存keys
+     * @param expired 新的过期时间
+     * @return 命中的 key 和数据
+     */
+    public Map<String, Object> getAndTouchMulti(String[] keys, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doGetAndTouchMulti(keys, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_AND_TOUCH_MULTI, name, keys, Collections.emptyMap()), operation -> doGetAndTouchMulti(operation.getKeys(), expired));
+    }
+
+    private Map<String, Object> doGetAndTouchMulti(String[] keys, long expired) {
+        return MemcachedTouch.getAndTouch(connectionPool, decoder, keys, MemcachedTemplate.jitter(config, expired));
+    }
+
+    /**
+     * meta 协议读取(mg)，一次往返完成读取并返回 TTL / cas、get-and-touch、防击穿的 win / stale 标记等
+     * @param key 缓存key
+     * @param options 参数
+     * @return 读取失败时返回 null，未命中时状态为 MISS
+     */
+    public MemcachedMetaResult metaGet(String key, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaGet(key, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_GET, name, key, null), operation -> doMetaGet(operation.getKey(), options));
+    }
+
+    private MemcachedMetaResult doMetaGet(String key, MemcachedMetaOptions options) {
+        return MemcachedMeta.get(connectionPool, decoder, key, options);
+    }
+
+    /**
+     * meta 协议批量读取，同一台服务器上的请求以 opaque 流水线方式在一次往返中完成
+     * @param keys 缓存keys
+     * @param options 参数
+     * @return 有响应(命中或 vivify 创建)的 key 和结果
+     */
+    public Map<String, MemcachedMetaResult> metaGetMulti(String[] keys, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaGetMulti(keys, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_GET_MULTI, name, keys, Collections.emptyMap()), operation -> doMetaGetMulti(operation.getKeys(), options));
+    }
+
+    private Map<String, MemcachedMetaResult> doMetaGetMulti(String[] keys, MemcachedMetaOptions options) {
+        return MemcachedMeta.getMulti(connectionPool, decoder, keys, options);
+    }
+
+    /**
+     * meta 协议写入(ms)，可以带 cas 比较、返回新的 cas、以 ADD / REPLACE / APPEND 等模式写入
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @param options 参数
+     * @return 写入失败时返回 null
+     */
+    public MemcachedMetaResult metaSet(String key, Object value, long expired, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaSet(key, value, expired, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_SET, name, key, value, expired, null), operation -> doMetaSet(operation.getKey(), value, expired, options));
+    }
+
+    private MemcachedMetaResult doMetaSet(String key, Object value, long expired, MemcachedMetaOptions options) {
+        return afterWrite(key, MemcachedMeta.set(connectionPool(key), decoder, key, value, MemcachedTemplate.jitter(config, expired), options));
+    }
+
+    /**
+     * meta 协议删除(md)，可以带 cas 比较，或者只标记为过期使下一个读取方回源
+     * @param key 缓存key
+     * @param options 参数
+     * @return 删除失败时返回 null
+     */
+    public MemcachedMetaResult metaDelete(String key, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaDelete(key, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_DELETE, name, key, null), operation -> doMetaDelete(operation.getKey(), options));
+    }
+
+    private MemcachedMetaResult doMetaDelete(String key, MemcachedMetaOptions options) {
+        return afterWrite(key, MemcachedMeta.delete(connectionPool(key), key, options));
+    }
+
+    /**
+     * meta 协议计数(ma)，一次往返完成不存在时以初始值创建、增减、更新过期时间并返回新值
+     * @param key 缓存key
+     * @param options 参数
+     * @return 失败时返回 null
+     */
+    public MemcachedMetaResult metaArithmetic(String key, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaArithmetic(key, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_ARITHMETIC, name, key, null), operation -> doMetaArithmetic(operation.getKey(), options));
+    }
+
+    private MemcachedMetaResult doMetaArithmetic(String key, MemcachedMetaOptions options) {
+        return afterWrite(key, MemcachedMeta.arithmetic(connectionPool(key), key, options));
+    }
+
+    /**
+     * 写入时使用的连接池，同时失效近端缓存中的 key
+     */
+    private MemcachedConnectionPool connectionPool(String key) {
+        if(nearCache != null) nearCache.invalidate(key);
+        return connectionPool;
+    }
+
+    /**
+     * 写入操作传给客户端的 key，同时失效近端缓存中的 key
+     */
+    private String writeKey(String key) {
+        if(nearCache != null) nearCache.invalidate(key);
+        return key(key);
+    }
+
+    /**
+     * 写入完成(包括失败)后再次失效近端缓存中的 key，见 MemcachedTemplate 中的同名方法
+     * @return 原样返回写入结果
+     */
+    private boolean afterWrite(String key, boolean result) {
+        if(nearCache != null) nearCache.invalidate(key);
+        return result;
+    }
+
+    private long afterWrite(String key, long result) {
+        if(nearCache != null) nearCache.invalidate(key);
+        return result;
+    }
+
+    private <T> T afterWrite(String key, T result) {
+        if(nearCache != null) nearCache.invalidate(key);
+        return result;
+    }
+
+    private String key(String key) {
+        return encodeKeys && key != null ? MemcachedKeys.encode(key, sanitize) : key;
+    }
+
+    private String[] keys(String[] keys) {
+        return encodeKeys && keys != null ? MemcachedKeys.encode(keys, sanitize) : keys;
+    }
+}
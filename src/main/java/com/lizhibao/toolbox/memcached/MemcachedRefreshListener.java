@@ -0,0 +1,42 @@
+package com.lizhibao.toolbox.memcached;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+
+/**
+ * 配置刷新(Spring Cloud 的 EnvironmentChangeEvent)后重新读取 spring.memcached.nodes 并重新配置服务器列表。
+ * 直接从 Environment 绑定新的配置，不依赖 MemcachedProperties 重新绑定的先后顺序；配置没有变化的缓存名称不受影响
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedRefreshListener implements ApplicationListener<ApplicationEvent> {
+    static final String ENVIRONMENT_CHANGE_EVENT = "org.springframework.cloud.context.environment.EnvironmentChangeEvent";
+
+    private final MemcachedManager manager;
+    private final Environment environment;
+
+    public MemcachedRefreshListener(MemcachedManager manager, Environment environment) {
+        this.manager = manager;
+        this.environment = environment;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if(!ENVIRONMENT_CHANGE_EVENT.equals(event.getClass().getName())) return;
+
+        MemcachedProperties properties = Binder.get(environment).bind("spring.memcached", MemcachedProperties.class).orElse(null);
+        if(properties == null || properties.getNodes() == null || properties.getNodes().isEmpty()) {
+            log.warn("spring.memcached.nodes is empty, keep the current servers");
+            return;
+        }
+
+        manager.reconfigure(properties.getNodes()).whenComplete((changed, e) -> {
+            if(e != null) log.error("reconfigure memcached failed", e);
+            else if(!changed.isEmpty()) log.info("memcached reconfigured: {}", changed);
+        });
+    }
+}
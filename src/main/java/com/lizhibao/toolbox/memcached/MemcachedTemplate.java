@@ -1,13 +1,35 @@
 package com.lizhibao.toolbox.memcached;
 
 import com.danga.MemCached.MemCachedClient;
+import com.lizhibao.toolbox.memcached.cas.MemcachedCasContention;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedInterceptor;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedInterceptorChain;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedOperation;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedOperationType;
 import com.lizhibao.toolbox.memcached.model.*;
+import com.lizhibao.toolbox.memcached.namespace.MemcachedNamespace;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedBytes;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedDeadline;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedKeys;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMeta;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMetaOptions;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMultiGet;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMultiGetOptions;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedPrimitives;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedTouch;
+import com.lizhibao.toolbox.memcached.tag.MemcachedTags;
 import com.schooner.MemCached.MemcachedItem;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * 统一封装操作，当调用的方法没有传递缓存名称(name)时，使用的是 clients 中的第一个缓存对象来进行操作的。
@@ -17,12 +39,221 @@ import java.util.*;
 @Slf4j
 @Component
 public class MemcachedTemplate {
+    /**
+     * 后台刷新锁的后缀，同一个 key 在所有实例中同时只有一个刷新任务
+     */
+    private static final String REFRESH_LOCK_SUFFIX = ":refresh";
+    /**
+     * 后台刷新锁的过期时间，防止刷新线程异常退出后锁无法释放
+     */
+    private static final long REFRESH_LOCK_EXPIRED = 30_000L;
+    /**
+     * memcached 将超过 30 天的过期时间视为绝对时间戳，不能再做相对时间的计算
+     */
+    private static final long MAX_RELATIVE_EXPIRED = 30L * 24 * 3600 * 1000;
+
     private final String defaultName;
     private final Map<String, MyMemCachedClient> clients;
+    private final Map<String, MemcachedOperations> operations = new ConcurrentHashMap<>();
+    private final Map<String, MemcachedNamespace> namespaces = new ConcurrentHashMap<>();
+    private final Map<String, MemcachedTags> tags = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    /**
+     * 没有注册拦截器时为 null，操作直接执行
+     */
+    private final MemcachedInterceptorChain interceptors;
+    private final MemcachedCasContention casContention;
+    private volatile ExecutorService refreshExecutor;
 
     public MemcachedTemplate(MemcachedManager manager) {
+        this(manager, Collections.emptyList());
+    }
+
+    /**
+     * @param manager 客户端管理
+     * @param interceptors 拦截器，第一个在最外层；通过 {@link #forName(String)} 获取的句柄同样经过拦截器
+     */
+    public MemcachedTemplate(MemcachedManager manager, List<MemcachedInterceptor> interceptors) {
         this.clients = manager.getClients();
-        this.defaultName = clients.keySet().iterator().next();
+        this.defaultName = manager.getDefaultName();
+        this.interceptors = MemcachedInterceptorChain.of(interceptors);
+        this.casContention = manager.getCasContention();
+        manager.addListener(this::onClientChanged);
+    }
+
+    /**
+     * 服务器列表重新配置后，已创建的句柄切换到新的客户端；缓存名称被移除时丢弃句柄
+     */
+    private void onClientChanged(String name, MyMemCachedClient current) {
+        MemcachedOperations handle = operations.get(name);
+        if(handle == null) return;
+
+        if(current != null && current.getClient() != null) {
+            handle.bind(current);
+            return;
+        }
+        operations.remove(name);
+        namespaces.keySet().removeIf(id -> id.startsWith(name + '\n'));
+        tags.remove(name);
+    }
+
+    /**
+     * 获取绑定到指定缓存名称的操作句柄，句柄可以保存复用，调用时不再按名称查找客户端
+     * @param name 缓存名称
+     * @return MemcachedOperations
+     */
+    public MemcachedOperations forName(String name) {
+        MemcachedOperations handle = operations.get(name);
+        if(handle != null) return handle;
+
+        MyMemCachedClient cachedClient = clients == null ? null : clients.get(name);
+        if(cachedClient == null || cachedClient.getClient() == null) throw new IllegalArgumentException("Unknown memcached client: " + name);
+
+        return operations.computeIfAbsent(name, n -> new MemcachedOperations(n, cachedClient, interceptors, casContention));
+    }
+
+    /**
+     * 获取命名空间操作句柄，句柄中的 key 自动加上命名空间的版本号
+     * @param namespace 命名空间
+     * @return MemcachedNamespace
+     */
+    public MemcachedNamespace namespace(String namespace) {
+        return this.namespace(this.defaultName, namespace);
+    }
+
+    /**
+     * 获取命名空间操作句柄，句柄中的 key 自动加上命名空间的版本号
+     * @param name 缓存名称
+     * @param namespace 命名空间
+     * @return MemcachedNamespace
+     */
+    public MemcachedNamespace namespace(String name, String namespace) {
+        String id = name + '\n' + namespace;
+        MemcachedNamespace handle = namespaces.get(id);
+        if(handle != null) return handle;
+
+        MemcachedOperations handleOperations = forName(name);
+        return namespaces.computeIfAbsent(id, n -> new MemcachedNamespace(namespace, handleOperations));
+    }
+
+    /**
+     * 使命名空间中的所有数据失效，只需要一次 incr
+     * @param namespace 命名空间
+     * @return true / false
+     */
+    public boolean invalidateNamespace(String namespace) {
+        return this.invalidateNamespace(this.defaultName, namespace);
+    }
+
+    /**
+     * 使命名空间中的所有数据失效，只需要一次 incr
+     * @param name 缓存名称
+     * @param namespace 命名空间
+     * @return true / false
+     */
+    public boolean invalidateNamespace(String name, String namespace) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, namespace);
+
+        if(clients == null || clients.isEmpty()) return false;
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null || cachedClient.getClient() == null) return false;
+
+        return this.namespace(name, namespace).invalidate();
+    }
+
+    /**
+     * 存储带标签的数据，记录写入时各标签的版本号
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @param tags 标签
+     * @return true / false
+     */
+    public boolean setTagged(String key, Object value, long expired, String[] tags) {
+        return this.setTagged(this.defaultName, key, value, expired, tags);
+    }
+
+    /**
+     * 存储带标签的数据，记录写入时各标签的版本号
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @param tags 标签
+     * @return true / false
+     */
+    public boolean setTagged(String name, String key, Object value, long expired, String[] tags) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {} / {}", name, key, value, expired, Arrays.toString(tags));
+
+        MemcachedTags handle = tags(name);
+        return handle != null && handle.set(key, value, expired, tags);
+    }
+
+    /**
+     * 获取带标签的数据，任一标签已失效时视为未命中
+     * @param key 缓存key
+     * @return Object
+     */
+    public Optional<Object> getTagged(String key) {
+        return this.getTagged(this.defaultName, key);
+    }
+
+    /**
+     * 获取带标签的数据，任一标签已失效时视为未命中
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @return Object
+     */
+    public Optional<Object> getTagged(String name, String key) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
+
+        MemcachedTags handle = tags(name);
+        return handle == null ? Optional.empty() : Optional.ofNullable(handle.get(key));
+    }
+
+    /**
+     * 批量获取带标签的数据，所有数据的标签通过一次批量读取校验
+     * @param keys 缓存keys
+     * @return Map<String, Object>
+     */
+    public Optional<Map<String, Object>> getMultiTagged(String[] keys) {
+        return this.getMultiTagged(this.defaultName, keys);
+    }
+
+    /**
+     * 批量获取带标签的数据，所有数据的标签通过一次批量读取校验
+     * @param name 缓存名称
+     * @param keys 缓存keys
+     * @return Map<String, Object>
+     */
+    public Optional<Map<String, Object>> getMultiTagged(String name, String[] keys) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, Arrays.toString(keys));
+
+        MemcachedTags handle = tags(name);
+        return handle == null ? Optional.empty() : Optional.of(handle.getMulti(keys));
+    }
+
+    /**
+     * 使带有该标签的所有数据失效，只需要一次 incr
+     * @param tag 标签
+     * @return true / false
+     */
+    public boolean invalidateTag(String tag) {
+        return this.invalidateTag(this.defaultName, tag);
+    }
+
+    /**
+     * 使带有该标签的所有数据失效，只需要一次 incr
+     * @param name 缓存名称
+     * @param tag 标签
+     * @return true / false
+     */
+    public boolean invalidateTag(String name, String tag) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, tag);
+
+        MemcachedTags handle = tags(name);
+        return handle != null && handle.invalidate(tag);
     }
 
     /**
@@ -80,6 +311,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean keyExists(String name, String key) {
+        if(interceptors == null || !interceptors.isActive()) return doKeyExists(name, key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.KEY_EXISTS, name, key, false), operation -> doKeyExists(name, operation.getKey()));
+    }
+
+    private boolean doKeyExists(String name, String key) {
         if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -88,7 +324,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.keyExists(key);
+        return client != null && client.keyExists(key(cachedClient, key));
     }
 
     /**
@@ -107,6 +343,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean delete(String name, String key) {
+        if(interceptors == null || !interceptors.isActive()) return doDelete(name, key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.DELETE, name, key, false), operation -> doDelete(name, operation.getKey()));
+    }
+
+    private boolean doDelete(String name, String key) {
         if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -115,7 +356,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.delete(key);
+        return client != null && afterWrite(cachedClient, key, client.delete(writeKey(cachedClient, key)));
     }
 
     /**
@@ -159,6 +400,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean set(String name, String key, Object value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSet(name, key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET, name, key, value, expired, false), operation -> doSet(name, operation.getKey(), value, expired));
+    }
+
+    private boolean doSet(String name, String key, Object value, long expired) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -167,7 +413,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.set(key, value, new Date(expired));
+        return client != null && afterWrite(cachedClient, key, client.set(writeKey(cachedClient, key), value, new Date(jitter(cachedClient.getConfig(), expired))));
     }
 
     /**
@@ -211,6 +457,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean add(String name, String key, Object value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doAdd(name, key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.ADD, name, key, value, expired, false), operation -> doAdd(name, operation.getKey(), value, expired));
+    }
+
+    private boolean doAdd(String name, String key, Object value, long expired) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -219,7 +470,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.add(key, value, new Date(expired));
+        return client != null && afterWrite(cachedClient, key, client.add(writeKey(cachedClient, key), value, new Date(jitter(cachedClient.getConfig(), expired))));
     }
 
     /**
@@ -263,6 +514,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean replace(String name, String key, Object value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doReplace(name, key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.REPLACE, name, key, value, expired, false), operation -> doReplace(name, operation.getKey(), value, expired));
+    }
+
+    private boolean doReplace(String name, String key, Object value, long expired) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -271,7 +527,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.replace(key, value, new Date(expired));
+        return client != null && afterWrite(cachedClient, key, client.replace(writeKey(cachedClient, key), value, new Date(expired)));
     }
 
     /**
@@ -292,6 +548,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean append(String name, String key, Object value) {
+        if(interceptors == null || !interceptors.isActive()) return doAppend(name, key, value);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.APPEND, name, key, value, 0L, false), operation -> doAppend(name, operation.getKey(), value));
+    }
+
+    private boolean doAppend(String name, String key, Object value) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, value);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -300,7 +561,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.append(key, value);
+        return client != null && afterWrite(cachedClient, key, client.append(writeKey(cachedClient, key), value));
     }
 
     /**
@@ -321,6 +582,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean prepend(String name, String key, Object value) {
+        if(interceptors == null || !interceptors.isActive()) return doPrepend(name, key, value);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.PREPEND, name, key, value, 0L, false), operation -> doPrepend(name, operation.getKey(), value));
+    }
+
+    private boolean doPrepend(String name, String key, Object value) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, value);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -329,7 +595,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.prepend(key, value);
+        return client != null && afterWrite(cachedClient, key, client.prepend(writeKey(cachedClient, key), value));
     }
 
     /**
@@ -373,6 +639,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean storeCounter(String name, String key, Long value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doStoreCounter(name, key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.STORE_COUNTER, name, key, value, expired, false), operation -> doStoreCounter(name, operation.getKey(), value, expired));
+    }
+
+    private boolean doStoreCounter(String name, String key, Long value, long expired) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -381,7 +652,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.storeCounter(key, value, new Date(expired));
+        return client != null && afterWrite(cachedClient, key, client.storeCounter(writeKey(cachedClient, key), value, new Date(expired)));
     }
 
     /**
@@ -400,6 +671,11 @@ public class MemcachedTemplate {
      * @return long
      */
     public long getCounter(String name, String key) {
+        if(interceptors == null || !interceptors.isActive()) return doGetCounter(name, key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_COUNTER, name, key, -1L), operation -> doGetCounter(name, operation.getKey()));
+    }
+
+    private long doGetCounter(String name, String key) {
         if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
 
         if(clients == null || clients.isEmpty()) return -1L;
@@ -410,7 +686,7 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return -1L;
 
-        return client.getCounter(key);
+        return client.getCounter(key(cachedClient, key));
     }
 
     /**
@@ -450,6 +726,11 @@ public class MemcachedTemplate {
      * @return long
      */
     public long addOrIncr(String name, String key, long incr) {
+        if(interceptors == null || !interceptors.isActive()) return doAddOrIncr(name, key, incr);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.ADD_OR_INCR, name, key, incr, 0L, -1L), operation -> doAddOrIncr(name, operation.getKey(), incr));
+    }
+
+    private long doAddOrIncr(String name, String key, long incr) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, incr);
 
         if(clients == null || clients.isEmpty()) return -1L;
@@ -460,7 +741,7 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return -1L;
 
-        return client.addOrIncr(key, incr);
+        return afterWrite(cachedClient, key, client.addOrIncr(writeKey(cachedClient, key), incr));
     }
 
     /**
@@ -500,6 +781,11 @@ public class MemcachedTemplate {
      * @return long
      */
     public long addOrDecr(String name, String key, long decr) {
+        if(interceptors == null || !interceptors.isActive()) return doAddOrDecr(name, key, decr);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.ADD_OR_DECR, name, key, decr, 0L, -1L), operation -> doAddOrDecr(name, operation.getKey(), decr));
+    }
+
+    private long doAddOrDecr(String name, String key, long decr) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, decr);
 
         if(clients == null || clients.isEmpty()) return -1L;
@@ -510,7 +796,7 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return -1L;
 
-        return client.addOrDecr(key, decr);
+        return afterWrite(cachedClient, key, client.addOrDecr(writeKey(cachedClient, key), decr));
     }
 
     /**
@@ -529,6 +815,11 @@ public class MemcachedTemplate {
      * @return long
      */
     public long incr(String name, String key) {
+        if(interceptors == null || !interceptors.isActive()) return doIncr(name, key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.INCR, name, key, -1L), operation -> doIncr(name, operation.getKey()));
+    }
+
+    private long doIncr(String name, String key) {
         if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
 
         if(clients == null || clients.isEmpty()) return -1L;
@@ -539,7 +830,7 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return -1L;
 
-        return client.incr(key);
+        return afterWrite(cachedClient, key, client.incr(writeKey(cachedClient, key)));
     }
 
     /**
@@ -560,6 +851,11 @@ public class MemcachedTemplate {
      * @return long
      */
     public long incr(String name, String key, long value) {
+        if(interceptors == null || !interceptors.isActive()) return doIncr(name, key, value);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.INCR, name, key, value, 0L, -1L), operation -> doIncr(name, operation.getKey(), value));
+    }
+
+    private long doIncr(String name, String key, long value) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, value);
 
         if(clients == null || clients.isEmpty()) return -1L;
@@ -570,7 +866,7 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return -1L;
 
-        return client.incr(key, value);
+        return afterWrite(cachedClient, key, client.incr(writeKey(cachedClient, key), value));
     }
 
     /**
@@ -589,6 +885,11 @@ public class MemcachedTemplate {
      * @return long
      */
     public long decr(String name, String key) {
+        if(interceptors == null || !interceptors.isActive()) return doDecr(name, key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.DECR, name, key, -1L), operation -> doDecr(name, operation.getKey()));
+    }
+
+    private long doDecr(String name, String key) {
         if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
 
         if(clients == null || clients.isEmpty()) return -1L;
@@ -599,7 +900,7 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return -1L;
 
-        return client.decr(key);
+        return afterWrite(cachedClient, key, client.decr(writeKey(cachedClient, key)));
     }
 
     /**
@@ -620,6 +921,11 @@ public class MemcachedTemplate {
      * @return long
      */
     public long decr(String name, String key, long value) {
+        if(interceptors == null || !interceptors.isActive()) return doDecr(name, key, value);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.DECR, name, key, value, 0L, -1L), operation -> doDecr(name, operation.getKey(), value));
+    }
+
+    private long doDecr(String name, String key, long value) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, value);
 
         if(clients == null || clients.isEmpty()) return -1L;
@@ -630,7 +936,7 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return -1L;
 
-        return client.decr(key, value);
+        return afterWrite(cachedClient, key, client.decr(writeKey(cachedClient, key), value));
     }
 
     /**
@@ -649,6 +955,11 @@ public class MemcachedTemplate {
      * @return Object
      */
     public Optional<Object> get(String name, String key) {
+        if(interceptors == null || !interceptors.isActive()) return doGet(name, key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET, name, key, Optional.empty()), operation -> doGet(name, operation.getKey()));
+    }
+
+    private Optional<Object> doGet(String name, String key) {
         if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
 
         if(clients == null || clients.isEmpty()) return Optional.empty();
@@ -659,7 +970,184 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return Optional.empty();
 
-        return Optional.ofNullable(client.get(key));
+        if(cachedClient.getNearCache() != null) return Optional.ofNullable(cachedClient.getNearCache().get(key));
+        // 有截止时间时通过直连协议读取，danga 客户端的读取只受 socketTimeout 限制
+        if(cachedClient.getConnectionPool() != null && MemcachedDeadline.current() != 0) {
+            String[] keys = {key};
+            return Optional.ofNullable(MemcachedMultiGet.get(cachedClient.getConnectionPool(), cachedClient.getDecoder(), keys, new MemcachedMultiGetOptions()).get(key));
+        }
+        return Optional.ofNullable(client.get(key(cachedClient, key)));
+    }
+
+    /**
+     * 在指定时间内获取一个数据，超时按未命中处理
+     * @param key 缓存key
+     * @param timeout 超时时间(毫秒)，可以大于或小于 socketTimeout
+     * @return Object
+     */
+    public Optional<Object> get(String key, long timeout) {
+        return this.get(this.defaultName, key, timeout);
+    }
+
+    /**
+     * 在指定时间内获取一个数据，超时按未命中处理
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param timeout 超时时间(毫秒)，可以大于或小于 socketTimeout
+     * @return Object
+     */
+    public Optional<Object> get(String name, String key, long timeout) {
+        return MemcachedDeadline.call(timeout, () -> this.get(name, key));
+    }
+
+    /**
+     * 在指定时间内执行一组操作。范围内直连协议的操作(get、getMulti、数值读写、原始字节、近端缓存加载等)
+     * 每次读取的超时时间为剩余时间，到期后返回未命中或部分结果；danga 客户端的读写仍使用 socketTimeout
+     * @param timeout 超时时间(毫秒)，小于等于 0 时不限制
+     * @param action 操作
+     * @return 操作的返回值
+     */
+    public <T> T withTimeout(long timeout, Supplier<T> action) {
+        return MemcachedDeadline.call(timeout, action);
+    }
+
+    /**
+     * 获取数据，未命中时调用 loader 加载并写入缓存；超过软过期时间后仍然立即返回旧数据，并在后台刷新一次
+     * @param key 缓存key
+     * @param softExpired 软过期时间，超过后触发后台刷新
+     * @param expired 过期时间，服务器上的硬过期时间
+     * @param loader 数据加载方法，返回 null 时不写入缓存
+     * @return T
+     */
+    public <T> Optional<T> getOrLoad(String key, long softExpired, long expired, Supplier<T> loader) {
+        return this.getOrLoad(this.defaultName, key, softExpired, expired, loader);
+    }
+
+    /**
+     * 获取数据，未命中时调用 loader 加载并写入缓存；超过软过期时间后仍然立即返回旧数据，并在后台刷新一次
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param softExpired 软过期时间，超过后触发后台刷新
+     * @param expired 过期时间，服务器上的硬过期时间
+     * @param loader 数据加载方法，返回 null 时不写入缓存
+     * @return T
+     */
+    public <T> Optional<T> getOrLoad(String name, String key, long softExpired, long expired, Supplier<T> loader) {
+        if(interceptors == null || !interceptors.isActive()) return doGetOrLoad(name, key, softExpired, expired, loader);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_OR_LOAD, name, key, Optional.empty()), operation -> doGetOrLoad(name, operation.getKey(), softExpired, expired, loader));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Optional<T> doGetOrLoad(String name, String key, long softExpired, long expired, Supplier<T> loader) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, softExpired, expired);
+
+        if(clients == null || clients.isEmpty()) return Optional.empty();
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null) return Optional.empty();
+
+        MemCachedClient client = cachedClient.getClient();
+        if(client == null) return Optional.empty();
+
+        Object cached = client.get(key(cachedClient, key));
+        if(cached instanceof MemcachedEnvelope) {
+            MemcachedEnvelope envelope = (MemcachedEnvelope) cached;
+            if(envelope.isStale(System.currentTimeMillis())) refresh(name, cachedClient, key, softExpired, expired, loader);
+            return Optional.ofNullable((T) envelope.getValue());
+        }
+
+        return Optional.ofNullable(load(cachedClient, key, softExpired, expired, loader));
+    }
+
+    /**
+     * 获取数据，未命中时调用 loader 加载并写入缓存。
+     * 采用概率提前过期(XFetch)：缓存中同时记录数据的计算耗时，越接近过期时间、计算耗时越长，读取时提前重新计算的概率越高，
+     * 使大量实例不会在同一时刻一起重新计算同一个 key。
+     * @param key 缓存key
+     * @param expired 过期时间
+     * @param beta 提前程度，默认为 1，大于 1 时更倾向于提前计算
+     * @param loader 数据加载方法，返回 null 时不写入缓存
+     * @return T
+     */
+    public <T> Optional<T> getOrLoadEarly(String key, long expired, double beta, Supplier<T> loader) {
+        return this.getOrLoadEarly(this.defaultName, key, expired, beta, loader);
+    }
+
+    /**
+     * 获取数据，未命中时调用 loader 加载并写入缓存。
+     * 采用概率提前过期(XFetch)：缓存中同时记录数据的计算耗时，越接近过期时间、计算耗时越长，读取时提前重新计算的概率越高，
+     * 使大量实例不会在同一时刻一起重新计算同一个 key。
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param expired 过期时间
+     * @param beta 提前程度，默认为 1，大于 1 时更倾向于提前计算
+     * @param loader 数据加载方法，返回 null 时不写入缓存
+     * @return T
+     */
+    public <T> Optional<T> getOrLoadEarly(String name, String key, long expired, double beta, Supplier<T> loader) {
+        if(interceptors == null || !interceptors.isActive()) return doGetOrLoadEarly(name, key, expired, beta, loader);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_OR_LOAD_EARLY, name, key, Optional.empty()), operation -> doGetOrLoadEarly(name, operation.getKey(), expired, beta, loader));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Optional<T> doGetOrLoadEarly(String name, String key, long expired, double beta, Supplier<T> loader) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, expired, beta);
+
+        if(clients == null || clients.isEmpty()) return Optional.empty();
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null) return Optional.empty();
+
+        MemCachedClient client = cachedClient.getClient();
+        if(client == null) return Optional.empty();
+
+        Object cached = client.get(key(cachedClient, key));
+        if(cached instanceof MemcachedEnvelope) {
+            MemcachedEnvelope envelope = (MemcachedEnvelope) cached;
+            if(!envelope.shouldRecompute(System.currentTimeMillis(), beta, ThreadLocalRandom.current().nextDouble())) {
+                return Optional.ofNullable((T) envelope.getValue());
+            }
+        }
+
+        return Optional.ofNullable(load(cachedClient, key, expired, expired, loader));
+    }
+
+    /**
+     * 存储带软过期时间的数据，配合 {@link #getOrLoad(String, String, long, long, Supplier)} 使用
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @param softExpired 软过期时间
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setWithSoftExpired(String key, Object value, long softExpired, long expired) {
+        return this.setWithSoftExpired(this.defaultName, key, value, softExpired, expired);
+    }
+
+    /**
+     * 存储带软过期时间的数据，配合 {@link #getOrLoad(String, String, long, long, Supplier)} 使用
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @param softExpired 软过期时间
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setWithSoftExpired(String name, String key, Object value, long softExpired, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetWithSoftExpired(name, key, value, softExpired, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_WITH_SOFT_EXPIRED, name, key, value, expired, false), operation -> doSetWithSoftExpired(name, operation.getKey(), value, softExpired, expired));
+    }
+
+    private boolean doSetWithSoftExpired(String name, String key, Object value, long softExpired, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {} / {}", name, key, value, softExpired, expired);
+
+        if(clients == null || clients.isEmpty()) return false;
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null) return false;
+
+        MemCachedClient client = cachedClient.getClient();
+        return client != null && storeEnvelope(cachedClient, key, value, softExpired, expired, 0L);
     }
 
     /**
@@ -678,6 +1166,11 @@ public class MemcachedTemplate {
      * @return MemcachedItem
      */
     public Optional<MemcachedItem> gets(String name, String key) {
+        if(interceptors == null || !interceptors.isActive()) return doGets(name, key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GETS, name, key, Optional.empty()), operation -> doGets(name, operation.getKey()));
+    }
+
+    private Optional<MemcachedItem> doGets(String name, String key) {
         if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
 
         if(clients == null || clients.isEmpty()) return Optional.empty();
@@ -688,7 +1181,7 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return Optional.empty();
 
-        return Optional.ofNullable(client.gets(key));
+        return Optional.ofNullable(client.gets(key(cachedClient, key)));
     }
 
     /**
@@ -711,6 +1204,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean cas(String name, String key, Object value, long casUnique) {
+        if(interceptors == null || !interceptors.isActive()) return doCas(name, key, value, casUnique);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.CAS, name, key, value, 0L, false), operation -> doCas(name, operation.getKey(), value, casUnique));
+    }
+
+    private boolean doCas(String name, String key, Object value, long casUnique) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, casUnique);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -719,7 +1217,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.cas(key, value, casUnique);
+        return client != null && afterWrite(cachedClient, key, client.cas(writeKey(cachedClient, key), value, casUnique));
     }
 
     /**
@@ -731,7 +1229,7 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean cas(String key, Object value, long expired, long casUnique) {
-        return this.cas(this.defaultName, key, value, casUnique, expired);
+        return this.cas(this.defaultName, key, value, expired, casUnique);
     }
 
     /**
@@ -744,6 +1242,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean cas(String name, String key, Object value, long expired, long casUnique) {
+        if(interceptors == null || !interceptors.isActive()) return doCas(name, key, value, expired, casUnique);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.CAS, name, key, value, expired, false), operation -> doCas(name, operation.getKey(), value, expired, casUnique));
+    }
+
+    private boolean doCas(String name, String key, Object value, long expired, long casUnique) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {} / {} / {}", name, key, value, expired, casUnique);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -752,25 +1255,117 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
-        return client != null && client.cas(key, value, new Date(expired), casUnique);
+        return client != null && afterWrite(cachedClient, key, client.cas(writeKey(cachedClient, key), value, new Date(expired), casUnique));
     }
 
     /**
-     * 批量获取数据
-     * @param keys 缓存keys
-     * @return Object[]
+     * 乐观更新：gets 读取数据和CAS令牌，fn 计算新值后通过 cas 写回(不存在时通过 add 写入)，
+     * 被其他写入抢先时随机退避后重新读取并重试，最多尝试 casMaxAttempts 次。
+     * fn 可能被调用多次，不能有副作用；冲突次数见 {@link #getCasHotKeys(String, int)}
+     * @param key 缓存key
+     * @param fn 根据当前值(不存在时为 null)计算新值，返回 null 表示放弃更新
+     * @param expired 过期时间
+     * @return 写入的新值；fn 返回 null、重试次数用完或线程被中断时返回空
      */
-    public Optional<Object[]> getMultiArray(String[] keys) {
-        return this.getMultiArray(this.defaultName, keys);
+    public <T> Optional<T> update(String key, UnaryOperator<T> fn, long expired) {
+        return this.update(this.defaultName, key, fn, expired);
     }
 
     /**
-     * 批量获取数据
+     * 乐观更新：gets 读取数据和CAS令牌，fn 计算新值后通过 cas 写回(不存在时通过 add 写入)，
+     * 被其他写入抢先时随机退避后重新读取并重试，最多尝试 casMaxAttempts 次。
+     * fn 可能被调用多次，不能有副作用；冲突次数见 {@link #getCasHotKeys(String, int)}
      * @param name 缓存名称
-     * @param keys 缓存keys
-     * @return Object[]
+     * @param key 缓存key
+     * @param fn 根据当前值(不存在时为 null)计算新值，返回 null 表示放弃更新
+     * @param expired 过期时间
+     * @return 写入的新值；fn 返回 null、重试次数用完或线程被中断时返回空
      */
-    public Optional<Object[]> getMultiArray(String name, String[] keys) {
+    public <T> Optional<T> update(String name, String key, UnaryOperator<T> fn, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doUpdate(name, key, fn, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.UPDATE, name, key, null, expired, Optional.empty()), operation -> doUpdate(name, operation.getKey(), fn, expired));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Optional<T> doUpdate(String name, String key, UnaryOperator<T> fn, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, expired);
+
+        if(clients == null || clients.isEmpty()) return Optional.empty();
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null || cachedClient.getClient() == null) return Optional.empty();
+
+        MemcachedConfig config = cachedClient.getConfig();
+        int maxAttempts = MemcachedCasContention.maxAttempts(config);
+        for (int attempt = 1; ; attempt++) {
+            MemcachedItem item = doGets(name, key).orElse(null);
+            T value = fn.apply(item == null ? null : (T) item.getValue());
+            if(value == null) return Optional.empty();
+
+            // 不存在时 add 失败、存在时 cas 失败(EXISTS / NOT_FOUND)都说明期间有其他写入
+            boolean stored = item == null ? doAdd(name, key, value, expired) : doCas(name, key, value, expired, item.getCasUnique());
+            if(stored) {
+                casContention.updated(name, key);
+                return Optional.of(value);
+            }
+
+            casContention.conflict(name, key);
+            if(attempt >= maxAttempts) {
+                casContention.exhausted(name, key);
+                log.warn("{} => update {} gave up after {} attempts", name, key, attempt);
+                return Optional.empty();
+            }
+            if(!MemcachedCasContention.backoff(config, attempt)) return Optional.empty();
+        }
+    }
+
+    /**
+     * update 冲突次数最多的 key，用于找出需要重新设计的热点 key
+     * @param limit 最多返回的数量
+     * @return 按冲突次数从多到少排列
+     */
+    public List<MemcachedCasStats> getCasHotKeys(int limit) {
+        return casContention.getHotKeys(null, limit);
+    }
+
+    /**
+     * update 冲突次数最多的 key，用于找出需要重新设计的热点 key
+     * @param name 缓存名称
+     * @param limit 最多返回的数量
+     * @return 按冲突次数从多到少排列
+     */
+    public List<MemcachedCasStats> getCasHotKeys(String name, int limit) {
+        return casContention.getHotKeys(name, limit);
+    }
+
+    /**
+     * 清空 update 的冲突统计
+     */
+    public void resetCasStats() {
+        casContention.reset();
+    }
+
+    /**
+     * 批量获取数据
+     * @param keys 缓存keys
+     * @return Object[]
+     */
+    public Optional<Object[]> getMultiArray(String[] keys) {
+        return this.getMultiArray(this.defaultName, keys);
+    }
+
+    /**
+     * 批量获取数据
+     * @param name 缓存名称
+     * @param keys 缓存keys
+     * @return Object[]
+     */
+    public Optional<Object[]> getMultiArray(String name, String[] keys) {
+        if(interceptors == null || !interceptors.isActive()) return doGetMultiArray(name, keys);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_MULTI_ARRAY, name, keys, Optional.empty()), operation -> doGetMultiArray(name, operation.getKeys()));
+    }
+
+    private Optional<Object[]> doGetMultiArray(String name, String[] keys) {
         if(log.isDebugEnabled()) log.debug("{} => {}", name, Arrays.toString(keys));
 
         if(clients == null || clients.isEmpty()) return Optional.empty();
@@ -781,7 +1376,7 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return Optional.empty();
 
-        return Optional.ofNullable(client.getMultiArray(keys));
+        return Optional.ofNullable(client.getMultiArray(MemcachedKeys.clientKeys(cachedClient.getConfig(), keys)));
     }
 
     /**
@@ -800,6 +1395,11 @@ public class MemcachedTemplate {
      * @return Map<String, Object>
      */
     public Optional<Map<String, Object>> getMulti(String name, String[] keys) {
+        if(interceptors == null || !interceptors.isActive()) return doGetMulti(name, keys);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_MULTI, name, keys, Optional.empty()), operation -> doGetMulti(name, operation.getKeys()));
+    }
+
+    private Optional<Map<String, Object>> doGetMulti(String name, String[] keys) {
         if(log.isDebugEnabled()) log.debug("{} => {}", name, Arrays.toString(keys));
 
         if(clients == null || clients.isEmpty()) return Optional.empty();
@@ -810,7 +1410,674 @@ public class MemcachedTemplate {
         MemCachedClient client = cachedClient.getClient();
         if(client == null) return Optional.empty();
 
-        return Optional.ofNullable(client.getMulti(keys));
+        if(cachedClient.getConnectionPool() != null && MemcachedDeadline.current() != 0) {
+            return Optional.of(MemcachedMultiGet.get(cachedClient.getConnectionPool(), cachedClient.getDecoder(), keys, new MemcachedMultiGetOptions()));
+        }
+        String[] clientKeys = MemcachedKeys.clientKeys(cachedClient.getConfig(), keys);
+        return Optional.ofNullable(MemcachedKeys.restoreKeys(keys, clientKeys, client.getMulti(clientKeys)));
+    }
+
+    /**
+     * 并行批量获取数据，key 按服务器分组并按 batchSize 拆分为多个请求并行发送，设置 timeout 时到期返回部分结果
+     * @param keys 缓存keys
+     * @param options 读取参数
+     * @return Map<String, Object>
+     */
+    public Optional<Map<String, Object>> getMulti(String[] keys, MemcachedMultiGetOptions options) {
+        return this.getMulti(this.defaultName, keys, options);
+    }
+
+    /**
+     * 并行批量获取数据，key 按服务器分组并按 batchSize 拆分为多个请求并行发送，设置 timeout 时到期返回部分结果
+     * @param name 缓存名称
+     * @param keys 缓存keys
+     * @param options 读取参数
+     * @return Map<String, Object>
+     */
+    public Optional<Map<String, Object>> getMulti(String name, String[] keys, MemcachedMultiGetOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doGetMulti(name, keys, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_MULTI, name, keys, Optional.empty()), operation -> doGetMulti(name, operation.getKeys(), options));
+    }
+
+    private Optional<Map<String, Object>> doGetMulti(String name, String[] keys, MemcachedMultiGetOptions options) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, keys.length, options);
+
+        if(clients == null || clients.isEmpty()) return Optional.empty();
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null || cachedClient.getConnectionPool() == null) return Optional.empty();
+
+        return Optional.of(MemcachedMultiGet.get(cachedClient.getConnectionPool(), cachedClient.getDecoder(), keys, options));
+    }
+
+    /**
+     * 读取一个 long，不装箱
+     * @param key 缓存key
+     * @param missing 不存在、不是数值或读取失败时的返回值
+     * @return long
+     */
+    public long getLong(String key, long missing) {
+        return this.getLong(this.defaultName, key, missing);
+    }
+
+    /**
+     * 读取一个 long，不装箱
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param missing 不存在、不是数值或读取失败时的返回值
+     * @return long
+     */
+    public long getLong(String name, String key, long missing) {
+        if(interceptors == null || !interceptors.isActive()) return doGetLong(name, key, missing);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_LONG, name, key, missing), operation -> doGetLong(name, operation.getKey(), missing));
+    }
+
+    private long doGetLong(String name, String key, long missing) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
+
+        MemcachedConnectionPool pool = connectionPool(name);
+        return pool == null ? missing : MemcachedPrimitives.getLong(pool, key, missing);
+    }
+
+    /**
+     * 读取一个 int，不装箱
+     * @param key 缓存key
+     * @param missing 不存在、不是数值或读取失败时的返回值
+     * @return int
+     */
+    public int getInt(String key, int missing) {
+        return this.getInt(this.defaultName, key, missing);
+    }
+
+    /**
+     * 读取一个 int，不装箱
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param missing 不存在、不是数值或读取失败时的返回值
+     * @return int
+     */
+    public int getInt(String name, String key, int missing) {
+        return (int) this.getLong(name, key, missing);
+    }
+
+    /**
+     * 读取一个 boolean，不装箱
+     * @param key 缓存key
+     * @param missing 不存在、不是布尔值或读取失败时的返回值
+     * @return boolean
+     */
+    public boolean getBoolean(String key, boolean missing) {
+        return this.getBoolean(this.defaultName, key, missing);
+    }
+
+    /**
+     * 读取一个 boolean，不装箱
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param missing 不存在、不是布尔值或读取失败时的返回值
+     * @return boolean
+     */
+    public boolean getBoolean(String name, String key, boolean missing) {
+        long value = this.getLong(name, key, Long.MIN_VALUE);
+        return value == Long.MIN_VALUE ? missing : value != 0;
+    }
+
+    /**
+     * 批量读取 long 填充到 values 中
+     * @param keys 缓存keys
+     * @param values 与 keys 一一对应的结果数组
+     * @param missing 未命中位置填充的值
+     * @return 命中的数量，缓存名称不存在时返回 -1
+     */
+    public int getLongs(String[] keys, long[] values, long missing) {
+        return this.getLongs(this.defaultName, keys, values, missing);
+    }
+
+    /**
+     * 批量读取 long 填充到 values 中
+     * @param name 缓存名称
+     * @param keys 缓存keys
+     * @param values 与 keys 一一对应的结果数组
+     * @param missing 未命中位置填充的值
+     * @return 命中的数量，缓存名称不存在时返回 -1
+     */
+    public int getLongs(String name, String[] keys, long[] values, long missing) {
+        if(interceptors == null || !interceptors.isActive()) return doGetLongs(name, keys, values, missing);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_LONGS, name, keys, -1), operation -> doGetLongs(name, operation.getKeys(), values, missing));
+    }
+
+    private int doGetLongs(String name, String[] keys, long[] values, long missing) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, keys.length);
+
+        MemcachedConnectionPool pool = connectionPool(name);
+        return pool == null ? -1 : MemcachedPrimitives.getLongs(pool, keys, values, missing);
+    }
+
+    /**
+     * 批量读取 int 填充到 values 中
+     * @param keys 缓存keys
+     * @param values 与 keys 一一对应的结果数组
+     * @param missing 未命中位置填充的值
+     * @return 命中的数量，缓存名称不存在时返回 -1
+     */
+    public int getInts(String[] keys, int[] values, int missing) {
+        return this.getInts(this.defaultName, keys, values, missing);
+    }
+
+    /**
+     * 批量读取 int 填充到 values 中
+     * @param name 缓存名称
+     * @param keys 缓存keys
+     * @param values 与 keys 一一对应的结果数组
+     * @param missing 未命中位置填充的值
+     * @return 命中的数量，缓存名称不存在时返回 -1
+     */
+    public int getInts(String name, String[] keys, int[] values, int missing) {
+        if(interceptors == null || !interceptors.isActive()) return doGetInts(name, keys, values, missing);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_INTS, name, keys, -1), operation -> doGetInts(name, operation.getKeys(), values, missing));
+    }
+
+    private int doGetInts(String name, String[] keys, int[] values, int missing) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, keys.length);
+
+        MemcachedConnectionPool pool = connectionPool(name);
+        return pool == null ? -1 : MemcachedPrimitives.getInts(pool, keys, values, missing);
+    }
+
+    /**
+     * 存储一个 long，格式与 set(key, Long) 相同
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setLong(String key, long value, long expired) {
+        return this.setLong(this.defaultName, key, value, expired);
+    }
+
+    /**
+     * 存储一个 long，格式与 set(key, Long) 相同
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setLong(String name, String key, long value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetLong(name, key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_LONG, name, key, value, expired, false), operation -> doSetLong(name, operation.getKey(), value, expired));
+    }
+
+    private boolean doSetLong(String name, String key, long value, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
+
+        MemcachedConnectionPool pool = connectionPool(name, key);
+        return pool != null && afterWrite(name, key, MemcachedPrimitives.setLong(pool, key, value, jitter(pool.getConfig(), expired)));
+    }
+
+    /**
+     * 存储一个 int，格式与 set(key, Integer) 相同
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setInt(String key, int value, long expired) {
+        return this.setInt(this.defaultName, key, value, expired);
+    }
+
+    /**
+     * 存储一个 int，格式与 set(key, Integer) 相同
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setInt(String name, String key, int value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetInt(name, key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_INT, name, key, value, expired, false), operation -> doSetInt(name, operation.getKey(), value, expired));
+    }
+
+    private boolean doSetInt(String name, String key, int value, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
+
+        MemcachedConnectionPool pool = connectionPool(name, key);
+        return pool != null && afterWrite(name, key, MemcachedPrimitives.setInt(pool, key, value, jitter(pool.getConfig(), expired)));
+    }
+
+    /**
+     * 存储一个 boolean，格式与 set(key, Boolean) 相同
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setBoolean(String key, boolean value, long expired) {
+        return this.setBoolean(this.defaultName, key, value, expired);
+    }
+
+    /**
+     * 存储一个 boolean，格式与 set(key, Boolean) 相同
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setBoolean(String name, String key, boolean value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetBoolean(name, key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_BOOLEAN, name, key, value, expired, false), operation -> doSetBoolean(name, operation.getKey(), value, expired));
+    }
+
+    private boolean doSetBoolean(String name, String key, boolean value, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, value, expired);
+
+        MemcachedConnectionPool pool = connectionPool(name, key);
+        return pool != null && afterWrite(name, key, MemcachedPrimitives.setBoolean(pool, key, value, jitter(pool.getConfig(), expired)));
+    }
+
+    /**
+     * 读取原始字节，不经过 TransCoder
+     * @param key 缓存key
+     * @return byte[]
+     */
+    public Optional<byte[]> getBytes(String key) {
+        return this.getBytes(this.defaultName, key);
+    }
+
+    /**
+     * 读取原始字节，不经过 TransCoder
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @return byte[]
+     */
+    public Optional<byte[]> getBytes(String name, String key) {
+        if(interceptors == null || !interceptors.isActive()) return doGetBytes(name, key);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_BYTES, name, key, Optional.empty()), operation -> doGetBytes(name, operation.getKey()));
+    }
+
+    private Optional<byte[]> doGetBytes(String name, String key) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
+
+        MemcachedConnectionPool pool = connectionPool(name);
+        return pool == null ? Optional.empty() : Optional.ofNullable(MemcachedBytes.get(pool, key));
+    }
+
+    /**
+     * 读取原始字节到 dst 中，dst 剩余空间不足时不写入，可按返回的长度重新分配后再读
+     * @param key 缓存key
+     * @param dst 目标缓冲区
+     * @return 数据长度，不存在时返回 -1
+     */
+    public int getBytes(String key, ByteBuffer dst) {
+        return this.getBytes(this.defaultName, key, dst);
+    }
+
+    /**
+     * 读取原始字节到 dst 中，dst 剩余空间不足时不写入，可按返回的长度重新分配后再读
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param dst 目标缓冲区
+     * @return 数据长度，不存在时返回 -1
+     */
+    public int getBytes(String name, String key, ByteBuffer dst) {
+        if(interceptors == null || !interceptors.isActive()) return doGetBytes(name, key, dst);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_BYTES, name, key, -1), operation -> doGetBytes(name, operation.getKey(), dst));
+    }
+
+    private int doGetBytes(String name, String key, ByteBuffer dst) {
+        if(log.isDebugEnabled()) log.debug("{} => {}", name, key);
+
+        MemcachedConnectionPool pool = connectionPool(name);
+        return pool == null ? -1 : MemcachedBytes.get(pool, key, dst);
+    }
+
+    /**
+     * 存储原始字节，不经过 TransCoder
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setBytes(String key, byte[] value, long expired) {
+        return this.setBytes(this.defaultName, key, value, expired);
+    }
+
+    /**
+     * 存储原始字节，不经过 TransCoder
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setBytes(String name, String key, byte[] value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetBytes(name, key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_BYTES, name, key, value, expired, false), operation -> doSetBytes(name, operation.getKey(), value, expired));
+    }
+
+    private boolean doSetBytes(String name, String key, byte[] value, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} bytes / {}", name, key, value.length, expired);
+
+        MemcachedConnectionPool pool = connectionPool(name, key);
+        return pool != null && afterWrite(name, key, MemcachedBytes.set(pool, key, value, 0, value.length, jitter(pool.getConfig(), expired)));
+    }
+
+    /**
+     * 存储 ByteBuffer 的剩余内容，不经过 TransCoder，value 的 position 不变
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setBytes(String key, ByteBuffer value, long expired) {
+        return this.setBytes(this.defaultName, key, value, expired);
+    }
+
+    /**
+     * 存储 ByteBuffer 的剩余内容，不经过 TransCoder，value 的 position 不变
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @return true / false
+     */
+    public boolean setBytes(String name, String key, ByteBuffer value, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doSetBytes(name, key, value, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.SET_BYTES, name, key, value, expired, false), operation -> doSetBytes(name, operation.getKey(), value, expired));
+    }
+
+    private boolean doSetBytes(String name, String key, ByteBuffer value, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} bytes / {}", name, key, value.remaining(), expired);
+
+        MemcachedConnectionPool pool = connectionPool(name, key);
+        return pool != null && afterWrite(name, key, MemcachedBytes.set(pool, key, value, jitter(pool.getConfig(), expired)));
+    }
+
+    /**
+     * 只更新过期时间，不重写数据，用于滑动过期
+     * @param key 缓存key
+     * @param expired 新的过期时间
+     * @return 不存在时返回 false
+     */
+    public boolean touch(String key, long expired) {
+        return this.touch(this.defaultName, key, expired);
+    }
+
+    /**
+     * 只更新过期时间，不重写数据，用于滑动过期
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param expired 新的过期时间
+     * @return 不存在时返回 false
+     */
+    public boolean touch(String name, String key, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doTouch(name, key, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.TOUCH, name, key, null, expired, false), operation -> doTouch(name, operation.getKey(), expired));
+    }
+
+    private boolean doTouch(String name, String key, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, expired);
+
+        MemcachedConnectionPool pool = connectionPool(name);
+        return pool != null && MemcachedTouch.touch(pool, key, jitter(pool.getConfig(), expired));
+    }
+
+    /**
+     * 批量更新过期时间，每台服务器以流水线方式发送
+     * @param keys 缓存keys
+     * @param expired 新的过期时间
+     * @return 更新成功的 key，不存在的 key 不包含在内
+     */
+    public Set<String> touchMulti(String[] keys, long expired) {
+        return this.touchMulti(this.defaultName, keys, expired);
+    }
+
+    /**
+     * 批量更新过期时间，每台服务器以流水线方式发送
+     * @param name 缓存名称
+     * @param keys 缓存keys
+     * @param expired 新的过期时间
+     * @return 更新成功的 key，不存在的 key 不包含在内
+     */
+    public Set<String> touchMulti(String name, String[] keys, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doTouchMulti(name, keys, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.TOUCH_MULTI, name, keys, Collections.emptySet()), operation -> doTouchMulti(name, operation.getKeys(), expired));
+    }
+
+    private Set<String> doTouchMulti(String name, String[] keys, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, keys.length, expired);
+
+        MemcachedConnectionPool pool = connectionPool(name);
+        return pool == null ? Collections.emptySet() : MemcachedTouch.touch(pool, keys, jitter(pool.getConfig(), expired));
+    }
+
+    /**
+     * 读取数据并更新过期时间(gat)，一次往返
+     * @param key 缓存key
+     * @param expired 新的过期时间
+     * @return 不存在时返回 Optional.empty()
+     */
+    public Optional<Object> getAndTouch(String key, long expired) {
+        return this.getAndTouch(this.defaultName, key, expired);
+    }
+
+    /**
+     * 读取数据并更新过期时间(gat)，一次往返
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param expired 新的过期时间
+     * @return 不存在时返回 Optional.empty()
+     */
+    public Optional<Object> getAndTouch(String name, String key, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doGetAndTouch(name, key, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_AND_TOUCH, name, key, null, expired, Optional.empty()), operation -> doGetAndTouch(name, operation.getKey(), expired));
+    }
+
+    private Optional<Object> doGetAndTouch(String name, String key, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, expired);
+
+        if(clients == null || clients.isEmpty()) return Optional.empty();
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null || cachedClient.getConnectionPool() == null) return Optional.empty();
+
+        MemcachedConnectionPool pool = cachedClient.getConnectionPool();
+        return Optional.ofNullable(MemcachedTouch.getAndTouch(pool, cachedClient.getDecoder(), key, jitter(pool.getConfig(), expired)));
+    }
+
+    /**
+     * 批量读取数据并更新过期时间，每台服务器每 100 个 key 一次 gat
+     * @param keys 缓存keys
+     * @param expired 新的过期时间
+     * @return 命中的 key 和数据
+     */
+    public Optional<Map<String, Object>> getAndTouchMulti(String[] keys, long expired) {
+        return this.getAndTouchMulti(this.defaultName, keys, expired);
+    }
+
+    /**
+     * 批量读取数据并更新过期时间，每台服务器每 100 个 key 一次 gat
+     * @param name 缓存名称
+     * @param keys 缓存keys
+     * @param expired 新的过期时间
+     * @return 命中的 key 和数据
+     */
+    public Optional<Map<String, Object>> getAndTouchMulti(String name, String[] keys, long expired) {
+        if(interceptors == null || !interceptors.isActive()) return doGetAndTouchMulti(name, keys, expired);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.GET_AND_TOUCH_MULTI, name, keys, Optional.empty()), operation -> doGetAndTouchMulti(name, operation.getKeys(), expired));
+    }
+
+    private Optional<Map<String, Object>> doGetAndTouchMulti(String name, String[] keys, long expired) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, keys.length, expired);
+
+        if(clients == null || clients.isEmpty()) return Optional.empty();
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null || cachedClient.getConnectionPool() == null) return Optional.empty();
+
+        MemcachedConnectionPool pool = cachedClient.getConnectionPool();
+        return Optional.of(MemcachedTouch.getAndTouch(pool, cachedClient.getDecoder(), keys, jitter(pool.getConfig(), expired)));
+    }
+
+    /**
+     * meta 协议读取(mg)，一次往返完成读取并返回 TTL / cas、get-and-touch、防击穿的 win / stale 标记等
+     * @param key 缓存key
+     * @param options 参数
+     * @return 读取失败时返回 Optional.empty()，未命中时状态为 MISS
+     */
+    public Optional<MemcachedMetaResult> metaGet(String key, MemcachedMetaOptions options) {
+        return this.metaGet(this.defaultName, key, options);
+    }
+
+    /**
+     * meta 协议读取(mg)，一次往返完成读取并返回 TTL / cas、get-and-touch、防击穿的 win / stale 标记等
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param options 参数
+     * @return 读取失败时返回 Optional.empty()，未命中时状态为 MISS
+     */
+    public Optional<MemcachedMetaResult> metaGet(String name, String key, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaGet(name, key, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_GET, name, key, Optional.empty()), operation -> doMetaGet(name, operation.getKey(), options));
+    }
+
+    private Optional<MemcachedMetaResult> doMetaGet(String name, String key, MemcachedMetaOptions options) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, options);
+
+        if(clients == null || clients.isEmpty()) return Optional.empty();
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null || cachedClient.getConnectionPool() == null) return Optional.empty();
+
+        return Optional.ofNullable(MemcachedMeta.get(cachedClient.getConnectionPool(), cachedClient.getDecoder(), key, options));
+    }
+
+    /**
+     * meta 协议批量读取，同一台服务器上的请求以 opaque 流水线方式在一次往返中完成
+     * @param keys 缓存keys
+     * @param options 参数
+     * @return 有响应(命中或 vivify 创建)的 key 和结果
+     */
+    public Optional<Map<String, MemcachedMetaResult>> metaGetMulti(String[] keys, MemcachedMetaOptions options) {
+        return this.metaGetMulti(this.defaultName, keys, options);
+    }
+
+    /**
+     * meta 协议批量读取，同一台服务器上的请求以 opaque 流水线方式在一次往返中完成
+     * @param name 缓存名称
+     * @param keys 缓存keys
+     * @param options 参数
+     * @return 有响应(命中或 vivify 创建)的 key 和结果
+     */
+    public Optional<Map<String, MemcachedMetaResult>> metaGetMulti(String name, String[] keys, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaGetMulti(name, keys, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_GET_MULTI, name, keys, Optional.empty()), operation -> doMetaGetMulti(name, operation.getKeys(), options));
+    }
+
+    private Optional<Map<String, MemcachedMetaResult>> doMetaGetMulti(String name, String[] keys, MemcachedMetaOptions options) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, keys.length, options);
+
+        if(clients == null || clients.isEmpty()) return Optional.empty();
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null || cachedClient.getConnectionPool() == null) return Optional.empty();
+
+        return Optional.of(MemcachedMeta.getMulti(cachedClient.getConnectionPool(), cachedClient.getDecoder(), keys, options));
+    }
+
+    /**
+     * meta 协议写入(ms)，可以带 cas 比较、返回新的 cas、以 ADD / REPLACE / APPEND 等模式写入
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @param options 参数
+     * @return 写入失败时返回 Optional.empty()
+     */
+    public Optional<MemcachedMetaResult> metaSet(String key, Object value, long expired, MemcachedMetaOptions options) {
+        return this.metaSet(this.defaultName, key, value, expired, options);
+    }
+
+    /**
+     * meta 协议写入(ms)，可以带 cas 比较、返回新的 cas、以 ADD / REPLACE / APPEND 等模式写入
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @param options 参数
+     * @return 写入失败时返回 Optional.empty()
+     */
+    public Optional<MemcachedMetaResult> metaSet(String name, String key, Object value, long expired, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaSet(name, key, value, expired, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_SET, name, key, value, expired, Optional.empty()), operation -> doMetaSet(name, operation.getKey(), value, expired, options));
+    }
+
+    private Optional<MemcachedMetaResult> doMetaSet(String name, String key, Object value, long expired, MemcachedMetaOptions options) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {} / {}", name, key, expired, options);
+
+        MemcachedConnectionPool pool = connectionPool(name, key);
+        if(pool == null) return Optional.empty();
+
+        return Optional.ofNullable(afterWrite(name, key, MemcachedMeta.set(pool, clients.get(name).getDecoder(), key, value, jitter(pool.getConfig(), expired), options)));
+    }
+
+    /**
+     * meta 协议删除(md)，可以带 cas 比较，或者只标记为过期使下一个读取方回源
+     * @param key 缓存key
+     * @param options 参数
+     * @return 删除失败时返回 Optional.empty()
+     */
+    public Optional<MemcachedMetaResult> metaDelete(String key, MemcachedMetaOptions options) {
+        return this.metaDelete(this.defaultName, key, options);
+    }
+
+    /**
+     * meta 协议删除(md)，可以带 cas 比较，或者只标记为过期使下一个读取方回源
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param options 参数
+     * @return 删除失败时返回 Optional.empty()
+     */
+    public Optional<MemcachedMetaResult> metaDelete(String name, String key, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaDelete(name, key, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_DELETE, name, key, Optional.empty()), operation -> doMetaDelete(name, operation.getKey(), options));
+    }
+
+    private Optional<MemcachedMetaResult> doMetaDelete(String name, String key, MemcachedMetaOptions options) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, options);
+
+        MemcachedConnectionPool pool = connectionPool(name, key);
+        return pool == null ? Optional.empty() : Optional.ofNullable(afterWrite(name, key, MemcachedMeta.delete(pool, key, options)));
+    }
+
+    /**
+     * meta 协议计数(ma)，一次往返完成不存在时以初始值创建、增减、更新过期时间并返回新值
+     * @param key 缓存key
+     * @param options 参数
+     * @return 失败时返回 Optional.empty()
+     */
+    public Optional<MemcachedMetaResult> metaArithmetic(String key, MemcachedMetaOptions options) {
+        return this.metaArithmetic(this.defaultName, key, options);
+    }
+
+    /**
+     * meta 协议计数(ma)，一次往返完成不存在时以初始值创建、增减、更新过期时间并返回新值
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param options 参数
+     * @return 失败时返回 Optional.empty()
+     */
+    public Optional<MemcachedMetaResult> metaArithmetic(String name, String key, MemcachedMetaOptions options) {
+        if(interceptors == null || !interceptors.isActive()) return doMetaArithmetic(name, key, options);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.META_ARITHMETIC, name, key, Optional.empty()), operation -> doMetaArithmetic(name, operation.getKey(), options));
+    }
+
+    private Optional<MemcachedMetaResult> doMetaArithmetic(String name, String key, MemcachedMetaOptions options) {
+        if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, key, options);
+
+        MemcachedConnectionPool pool = connectionPool(name, key);
+        return pool == null ? Optional.empty() : Optional.ofNullable(afterWrite(name, key, MemcachedMeta.arithmetic(pool, key, options)));
     }
 
     /**
@@ -827,6 +2094,11 @@ public class MemcachedTemplate {
      * @return true / false
      */
     public boolean flushAll(String name) {
+        if(interceptors == null || !interceptors.isActive()) return doFlushAll(name);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.FLUSH_ALL, name, false), operation -> doFlushAll(name));
+    }
+
+    private boolean doFlushAll(String name) {
         if(log.isDebugEnabled()) log.debug("{}", name);
 
         if(clients == null || clients.isEmpty()) return false;
@@ -835,6 +2107,7 @@ public class MemcachedTemplate {
         if(cachedClient == null) return false;
 
         MemCachedClient client = cachedClient.getClient();
+        if(cachedClient.getNearCache() != null) cachedClient.getNearCache().clear();
         return client != null && client.flushAll();
     }
 
@@ -852,6 +2125,11 @@ public class MemcachedTemplate {
      * @return Map<String, Map<String, String>>
      */
     public Optional<Map<String, Map<String, String>>> stats(String name) {
+        if(interceptors == null || !interceptors.isActive()) return doStats(name);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.STATS, name, Optional.empty()), operation -> doStats(name));
+    }
+
+    private Optional<Map<String, Map<String, String>>> doStats(String name) {
         if(log.isDebugEnabled()) log.debug("{}", name);
 
         if(clients == null || clients.isEmpty()) return Optional.empty();
@@ -879,6 +2157,11 @@ public class MemcachedTemplate {
      * @return Map<String, Map<String, String>>
      */
     public Optional<Map<String, Map<String, String>>> statsItems(String name) {
+        if(interceptors == null || !interceptors.isActive()) return doStatsItems(name);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.STATS_ITEMS, name, Optional.empty()), operation -> doStatsItems(name));
+    }
+
+    private Optional<Map<String, Map<String, String>>> doStatsItems(String name) {
         if(log.isDebugEnabled()) log.debug("{}", name);
 
         if(clients == null || clients.isEmpty()) return Optional.empty();
@@ -906,6 +2189,11 @@ public class MemcachedTemplate {
      * @return Map<String, Map<String, String>>
      */
     public Optional<Map<String, Map<String, String>>> statsSlabs(String name) {
+        if(interceptors == null || !interceptors.isActive()) return doStatsSlabs(name);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.STATS_SLABS, name, Optional.empty()), operation -> doStatsSlabs(name));
+    }
+
+    private Optional<Map<String, Map<String, String>>> doStatsSlabs(String name) {
         if(log.isDebugEnabled()) log.debug("{}", name);
 
         if(clients == null || clients.isEmpty()) return Optional.empty();
@@ -937,6 +2225,11 @@ public class MemcachedTemplate {
      * @return Map<String, Map<String, String>>
      */
     public Optional<Map<String, Map<String, String>>> statsCacheDump(String name, int slabId, int limit) {
+        if(interceptors == null || !interceptors.isActive()) return doStatsCacheDump(name, slabId, limit);
+        return interceptors.invoke(MemcachedOperation.of(MemcachedOperationType.STATS_CACHE_DUMP, name, Optional.empty()), operation -> doStatsCacheDump(name, slabId, limit));
+    }
+
+    private Optional<Map<String, Map<String, String>>> doStatsCacheDump(String name, int slabId, int limit) {
         if(log.isDebugEnabled()) log.debug("{} => {} / {}", name, slabId, limit);
 
         if(clients == null || clients.isEmpty()) return Optional.empty();
@@ -1312,6 +2605,161 @@ public class MemcachedTemplate {
     //     return client.syncAll(var1);
     // }
 
+    /**
+     * 后台刷新过期数据。本实例内通过 refreshing 去重，多实例之间通过 add 一个刷新锁去重，
+     * 保证同一个 key 同时只有一个 loader 在执行。刷新锁在后台线程中获取，读取方不等待任何网络请求
+     */
+    private <T> void refresh(String name, MyMemCachedClient cachedClient, String key, long softExpired, long expired, Supplier<T> loader) {
+        String refreshKey = name + "/" + key;
+        if(!refreshing.add(refreshKey)) return;
+
+        try {
+            getRefreshExecutor().execute(() -> {
+                MemCachedClient client = cachedClient.getClient();
+                String lockKey = key(cachedClient, key + REFRESH_LOCK_SUFFIX);
+                try {
+                    if(!client.add(lockKey, Boolean.TRUE, new Date(REFRESH_LOCK_EXPIRED))) return;
+
+                    try {
+                        load(cachedClient, key, softExpired, expired, loader);
+                    } finally {
+                        client.delete(lockKey);
+                    }
+                } catch (Exception e) {
+                    log.warn("{} => refresh {} failed", name, key, e);
+                } finally {
+                    refreshing.remove(refreshKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("{} => refresh {} rejected, too many pending refresh tasks", name, key);
+            refreshing.remove(refreshKey);
+        }
+    }
+
+    /**
+     * 调用 loader 计算数据并连同计算耗时一起写入缓存
+     */
+    private <T> T load(MyMemCachedClient cachedClient, String key, long softExpired, long expired, Supplier<T> loader) {
+        long start = System.currentTimeMillis();
+        T value = loader.get();
+        if(value != null) storeEnvelope(cachedClient, key, value, softExpired, expired, System.currentTimeMillis() - start);
+        return value;
+    }
+
+    private boolean storeEnvelope(MyMemCachedClient cachedClient, String key, Object value, long softExpired, long expired, long delta) {
+        long now = System.currentTimeMillis();
+        long hardExpired = jitter(cachedClient.getConfig(), expired);
+        long expireAt = hardExpired <= 0 || hardExpired > MAX_RELATIVE_EXPIRED ? hardExpired : now + hardExpired;
+        MemcachedEnvelope envelope = new MemcachedEnvelope(value, now + softExpired, expireAt, delta);
+        return afterWrite(cachedClient, key, cachedClient.getClient().set(writeKey(cachedClient, key), envelope, new Date(hardExpired)));
+    }
+
+    private MemcachedConnectionPool connectionPool(String name) {
+        if(clients == null || clients.isEmpty()) return null;
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        return cachedClient == null ? null : cachedClient.getConnectionPool();
+    }
+
+    private MemcachedTags tags(String name) {
+        MemcachedTags handle = tags.get(name);
+        if(handle != null) return handle;
+
+        MyMemCachedClient cachedClient = clients == null ? null : clients.get(name);
+        if(cachedClient == null || cachedClient.getClient() == null) return null;
+
+        MemcachedOperations handleOperations = forName(name);
+        return tags.computeIfAbsent(name, n -> new MemcachedTags(handleOperations));
+    }
+
+    /**
+     * 获取直连协议的连接池，用于写入，同时失效近端缓存中的 key
+     */
+    private MemcachedConnectionPool connectionPool(String name, String key) {
+        if(clients == null || clients.isEmpty()) return null;
+
+        MyMemCachedClient cachedClient = clients.get(name);
+        if(cachedClient == null) return null;
+
+        if(cachedClient.getNearCache() != null) cachedClient.getNearCache().invalidate(key);
+        return cachedClient.getConnectionPool();
+    }
+
+    /**
+     * 转换写入操作传给客户端的 key，同时失效近端缓存中的 key
+     */
+    private static String writeKey(MyMemCachedClient cachedClient, String key) {
+        if(cachedClient.getNearCache() != null) cachedClient.getNearCache().invalidate(key);
+        return key(cachedClient, key);
+    }
+
+    /**
+     * 写入完成(包括失败)后再次失效近端缓存中的 key：写入前的失效和服务器生效之间并发读取到的旧数据，
+     * 以写入前的版本号放入近端缓存，这里递增版本号后旧数据被丢弃
+     * @return 原样返回写入结果
+     */
+    private static boolean afterWrite(MyMemCachedClient cachedClient, String key, boolean result) {
+        if(cachedClient.getNearCache() != null) cachedClient.getNearCache().invalidate(key);
+        return result;
+    }
+
+    private static long afterWrite(MyMemCachedClient cachedClient, String key, long result) {
+        if(cachedClient.getNearCache() != null) cachedClient.getNearCache().invalidate(key);
+        return result;
+    }
+
+    private boolean afterWrite(String name, String key, boolean result) {
+        MyMemCachedClient cachedClient = clients == null ? null : clients.get(name);
+        return cachedClient == null ? result : afterWrite(cachedClient, key, result);
+    }
+
+    private <T> T afterWrite(String name, String key, T result) {
+        MyMemCachedClient cachedClient = clients == null ? null : clients.get(name);
+        if(cachedClient != null && cachedClient.getNearCache() != null) cachedClient.getNearCache().invalidate(key);
+        return result;
+    }
+
+    /**
+     * 转换传给客户端的 key，开启 fastKeyEncoding 时由 MemcachedKeys 编码
+     */
+    private static String key(MyMemCachedClient cachedClient, String key) {
+        return MemcachedKeys.clientKey(cachedClient.getConfig(), key);
+    }
+
+    /**
+     * 对相对过期时间增加随机抖动，使同一批写入的数据不会在同一时刻集中过期。
+     * 抖动后不超过 30 天，否则服务器会把它当作绝对时间戳，数据立即过期
+     * @param config 缓存配置
+     * @param expired 过期时间
+     * @return 抖动后的过期时间
+     */
+    static long jitter(MemcachedConfig config, long expired) {
+        Double ratio = config == null ? null : config.getExpiredJitter();
+        if(ratio == null || ratio <= 0 || expired <= 0 || expired > MAX_RELATIVE_EXPIRED) return expired;
+
+        return Math.min(expired + (long) (expired * ratio * ThreadLocalRandom.current().nextDouble()), MAX_RELATIVE_EXPIRED);
+    }
+
+    private ExecutorService getRefreshExecutor() {
+        ExecutorService executor = this.refreshExecutor;
+        if(executor != null) return executor;
+
+        synchronized (this) {
+            if(this.refreshExecutor == null) {
+                AtomicInteger index = new AtomicInteger();
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1024), r -> {
+                    Thread thread = new Thread(r, "memcached-refresh-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                pool.allowCoreThreadTimeOut(true);
+                this.refreshExecutor = pool;
+            }
+            return this.refreshExecutor;
+        }
+    }
+
     private void setFieldValue(String field, String value, Object clazz) {
         try {
             String setMethodName = "set" + Character.toUpperCase(field.charAt(0)) + field.substring(1);
@@ -0,0 +1,168 @@
+package com.lizhibao.toolbox.memcached.cas;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.model.MemcachedCasStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * update(gets + cas 重试)的退避策略和按 key 的冲突统计。
+ * 只有发生过冲突的 key 才会被记录，冲突次数排在前面的 key 是需要重新设计(拆分、改用计数器等)的热点
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedCasContention {
+    private static final int DEFAULT_MAX_ATTEMPTS = 10;
+    private static final long DEFAULT_BACKOFF = 2L;
+    /**
+     * 退避上限为 casBackoff * 2^6
+     */
+    private static final int MAX_BACKOFF_SHIFT = 6;
+    /**
+     * 记录的 key 超过该数量时清理只冲突过一次的 key，清理后仍然超过则不再记录新的 key
+     */
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 单次 update 最多尝试的次数
+     * @param config 配置
+     * @return 至少为 1
+     */
+    public static int maxAttempts(MemcachedConfig config) {
+        Integer attempts = config == null ? null : config.getCasMaxAttempts();
+        return attempts == null ? DEFAULT_MAX_ATTEMPTS : Math.max(1, attempts);
+    }
+
+    /**
+     * 第 attempt 次冲突之后随机等待 0 ~ casBackoff * 2^(attempt - 1) 毫秒，避免冲突的实例同时重试
+     * @param config 配置
+     * @param attempt 已经尝试的次数
+     * @return 等待时线程被中断时返回 false，中断标记会被保留
+     */
+    public static boolean backoff(MemcachedConfig config, int attempt) {
+        Long base = config == null ? null : config.getCasBackoff();
+        if(base == null) base = DEFAULT_BACKOFF;
+        if(base <= 0) return !Thread.currentThread().isInterrupted();
+
+        long bound = base << Math.min(MAX_BACKOFF_SHIFT, Math.max(0, attempt - 1));
+        long sleep = ThreadLocalRandom.current().nextLong(TimeUnit.MILLISECONDS.toNanos(bound) + 1);
+        try {
+            TimeUnit.NANOSECONDS.sleep(sleep);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 记录一次冲突
+     * @param name 缓存名称
+     * @param key 缓存key
+     */
+    public void conflict(String name, String key) {
+        Counter counter = this.counter(name, key);
+        if(counter == null) return;
+
+        counter.conflicts.increment();
+        counter.lastConflictAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 记录一次重试次数用完
+     * @param name 缓存名称
+     * @param key 缓存key
+     */
+    public void exhausted(String name, String key) {
+        Counter counter = counters.get(name + '\n' + key);
+        if(counter != null) counter.exhausted.increment();
+    }
+
+    /**
+     * 记录一次成功更新，没有冲突过的 key 不记录
+     * @param name 缓存名称
+     * @param key 缓存key
+     */
+    public void updated(String name, String key) {
+        if(counters.isEmpty()) return;
+
+        Counter counter = counters.get(name + '\n' + key);
+        if(counter != null) counter.updates.increment();
+    }
+
+    /**
+     * 冲突次数最多的 key
+     * @param name 缓存名称，为 null 时包含所有缓存名称
+     * @param limit 最多返回的数量
+     * @return 按冲突次数从多到少排列
+     */
+    public List<MemcachedCasStats> getHotKeys(String name, int limit) {
+        List<MemcachedCasStats> result = new ArrayList<>();
+        for (Counter counter : counters.values()) {
+            if(name == null || name.equals(counter.name)) result.add(counter.toStats());
+        }
+        result.sort(Comparator.comparingLong(MemcachedCasStats::getConflicts).reversed());
+        return limit >= 0 && result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public void reset() {
+        counters.clear();
+    }
+
+    /**
+     * 清空指定缓存名称的统计
+     * @param name 缓存名称
+     */
+    public void reset(String name) {
+        counters.values().removeIf(counter -> counter.name.equals(name));
+    }
+
+    private Counter counter(String name, String key) {
+        String id = name + '\n' + key;
+        Counter counter = counters.get(id);
+        if(counter != null) return counter;
+
+        if(counters.size() >= SWEEP_THRESHOLD) {
+            counters.values().removeIf(c -> c.conflicts.sum() <= 1);
+            if(counters.size() >= SWEEP_THRESHOLD) return null;
+        }
+        return counters.computeIfAbsent(id, n -> new Counter(name, key));
+    }
+
+    private static class Counter {
+        private final String name;
+        private final String key;
+        private final LongAdder updates = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private volatile long lastConflictAt;
+
+        private Counter(String name, String key) {
+            this.name = name;
+            this.key = key;
+        }
+
+        private MemcachedCasStats toStats() {
+            MemcachedCasStats stats = new MemcachedCasStats();
+            stats.setName(name);
+            stats.setKey(key);
+            stats.setUpdates(updates.sum());
+            stats.setConflicts(conflicts.sum());
+            stats.setExhausted(exhausted.sum());
+            stats.setLastConflictAt(lastConflictAt);
+            return stats;
+        }
+    }
+}
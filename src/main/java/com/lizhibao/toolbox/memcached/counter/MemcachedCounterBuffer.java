@@ -0,0 +1,385 @@
+package com.lizhibao.toolbox.memcached.counter;
+
+import com.danga.MemCached.MemCachedClient;
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedKeys;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 本地缓冲计数器。
+ * 自增只累加到本地按 key 划分的 LongAdder(内部分段，无锁竞争)，由后台线程按间隔(counterFlushInterval)
+ * 或单个 key 的累积量达到阈值(counterFlushThreshold)时，按服务器分组以流水线方式批量发送 incr/decr。
+ * 计数器不存在时使用 add 创建，格式与 {@link MemCachedClient#addOrIncr} 相同，可以继续通过 getCounter/incr 读写。
+ * 网络异常时未确认的增量会退回本地等待下次刷新，因此同一增量在超时等情况下可能被重复计入。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedCounterBuffer implements Closeable {
+    /**
+     * MemCachedClient 存储字符串时使用的 flags
+     */
+    private static final int MARKER_STRING = 32;
+
+    private final MemcachedManager manager;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    public MemcachedCounterBuffer(MemcachedManager manager) {
+        this.manager = manager;
+        manager.addListener(this::onClientChanged);
+    }
+
+    /**
+     * 计数器加1
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @return 缓存名称不存在或已关闭时返回 false
+     */
+    public boolean incr(String name, String key) {
+        return this.incr(name, key, 1L);
+    }
+
+    /**
+     * 计数器增加指定值，负数表示减少。服务器上的计数器不会小于0
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param delta 增量
+     * @return 缓存名称不存在或已关闭时返回 false
+     */
+    public boolean incr(String name, String key, long delta) {
+        Counters buffer = this.counters(name);
+        if(buffer == null) return false;
+
+        LongAdder adder = buffer.pending.get(key);
+        if(adder == null) adder = buffer.pending.computeIfAbsent(key, k -> new LongAdder());
+        adder.add(delta);
+        // 累加之后 adder 已被刷新移除(或整个缓存名称已移除)时，增量可能错过最后一次收集，由写入方自己转移
+        if(buffer.removed) {
+            flush(buffer);
+            return true;
+        }
+        if(buffer.pending.get(key) != adder) buffer.transfer(key, adder);
+
+        long threshold = buffer.threshold;
+        if(threshold > 0 && Math.abs(adder.sum()) >= threshold && buffer.requested.compareAndSet(false, true)) {
+            scheduler().execute(() -> {
+                buffer.requested.set(false);
+                flush(buffer);
+            });
+        }
+        return true;
+    }
+
+    /**
+     * 同步读取计数器：服务器上的值加上本地尚未写入(包括正在写入)的增量。
+     * 刷新进行中时结果可能短暂地多计或少计一次正在写入的增量
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @return 缓存名称不存在时返回 -1
+     */
+    public long get(String name, String key) {
+        MyMemCachedClient cachedClient = manager.getClients().get(name);
+        if(cachedClient == null || cachedClient.getClient() == null) return -1L;
+
+        long remote = cachedClient.getClient().getCounter(MemcachedKeys.clientKey(cachedClient.getConfig(), key));
+        long value = Math.max(0L, remote) + this.getPending(name, key);
+        return Math.max(0L, value);
+    }
+
+    /**
+     * 获取本地尚未写入服务器的增量
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @return long
+     */
+    public long getPending(String name, String key) {
+        Counters buffer = counters.get(name);
+        if(buffer == null) return 0L;
+
+        LongAdder adder = buffer.pending.get(key);
+        Long inflight = buffer.inflight.get(key);
+        return (adder == null ? 0L : adder.sum()) + (inflight == null ? 0L : inflight);
+    }
+
+    /**
+     * 立即同步刷新指定缓存名称下所有计数器
+     * @param name 缓存名称
+     */
+    public void flush(String name) {
+        Counters buffer = counters.get(name);
+        if(buffer != null) flush(buffer);
+    }
+
+    /**
+     * 立即同步刷新所有计数器
+     */
+    public void flush() {
+        for (Counters buffer : counters.values()) flush(buffer);
+    }
+
+    /**
+     * 停止后台刷新并写入剩余的增量
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        ScheduledExecutorService executor = this.scheduler;
+        if(executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Counters buffer : counters.values()) buffer.removed = true;
+        flush();
+    }
+
+    /**
+     * 服务器列表重新配置后，之后的刷新写入新的连接池；缓存名称被移除时写入剩余的增量
+     */
+    private void onClientChanged(String name, MyMemCachedClient current) {
+        Counters buffer = counters.get(name);
+        if(buffer == null) return;
+
+        if(current != null && current.getConnectionPool() != null) {
+            buffer.pool = current.getConnectionPool();
+            return;
+        }
+        counters.remove(name);
+        buffer.removed = true;
+        flush(buffer);
+    }
+
+    private Counters counters(String name) {
+        if(closed) return null;
+
+        Counters buffer = counters.get(name);
+        if(buffer != null) return buffer;
+
+        MyMemCachedClient cachedClient = manager.getClients().get(name);
+        if(cachedClient == null || cachedClient.getConnectionPool() == null) return null;
+
+        return counters.computeIfAbsent(name, n -> {
+            Counters created = new Counters(cachedClient.getConnectionPool());
+            long interval = created.interval;
+            if(interval > 0) {
+                scheduler().scheduleWithFixedDelay(() -> flush(created), interval, interval, TimeUnit.MILLISECONDS);
+            }
+            return created;
+        });
+    }
+
+    private ScheduledExecutorService scheduler() {
+        ScheduledExecutorService executor = this.scheduler;
+        if(executor != null) return executor;
+
+        synchronized (this) {
+            if(this.scheduler == null) {
+                this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "memcached-counter-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return this.scheduler;
+        }
+    }
+
+    private void flush(Counters buffer) {
+        buffer.lock.lock();
+        try {
+            Map<String, Long> deltas = buffer.drain();
+            if(deltas.isEmpty()) return;
+
+            buffer.inflight = deltas;
+            MemcachedConnectionPool pool = buffer.pool;
+            Map<String, List<String>> servers = new LinkedHashMap<>();
+            for (String key : deltas.keySet()) {
+                servers.computeIfAbsent(pool.locate(pool.encodeKey(key)), s -> new ArrayList<>()).add(key);
+            }
+            for (Map.Entry<String, List<String>> entry : servers.entrySet()) {
+                flushServer(buffer, pool, entry.getKey(), entry.getValue(), deltas);
+            }
+        } catch (RuntimeException e) {
+            log.warn("{} => flush counters failed: {}", buffer.pool.getConfig().getName(), e.getMessage());
+        } finally {
+            buffer.inflight = Collections.emptyMap();
+            buffer.lock.unlock();
+        }
+    }
+
+    private void flushServer(Counters buffer, MemcachedConnectionPool pool, String server, List<String> keys, Map<String, Long> deltas) {
+        MemcachedConnection connection = null;
+        int confirmed = 0;
+        try {
+            connection = pool.borrow(server);
+            for (String key : keys) {
+                long delta = deltas.get(key);
+                connection.writeAscii(delta > 0 ? "incr " : "decr ").writeAscii(pool.encodeKey(key)).write((byte) ' ')
+                        .writeDecimal(delta > 0 ? delta : -delta).writeCrlf();
+            }
+            connection.flush();
+
+            List<String> missing = new ArrayList<>();
+            for (String key : keys) {
+                String line = connection.readLine();
+                confirmed++;
+                if("NOT_FOUND".equals(line)) {
+                    // 计数器不存在时只创建正数，与服务器 decr 不小于 0 的语义一致
+                    if(deltas.get(key) > 0) missing.add(key);
+                } else if(line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+                    log.warn("{} => incr {} on {} failed: {}", pool.getConfig().getName(), key, server, line);
+                }
+            }
+            if(!missing.isEmpty()) create(buffer, pool, connection, missing, deltas);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => flush {} counters to {} failed: {}", pool.getConfig().getName(), keys.size() - confirmed, server, e.getMessage());
+            for (int i = confirmed; i < keys.size(); i++) buffer.restore(keys.get(i), deltas.get(keys.get(i)));
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private void create(Counters buffer, MemcachedConnectionPool pool, MemcachedConnection connection, List<String> keys, Map<String, Long> deltas) throws IOException {
+        for (String key : keys) {
+            byte[] value = Long.toString(deltas.get(key)).getBytes(StandardCharsets.US_ASCII);
+            connection.writeAscii("add ").writeAscii(pool.encodeKey(key)).write((byte) ' ')
+                    .writeDecimal(MARKER_STRING).writeAscii(" 0 ").writeDecimal(value.length).writeCrlf()
+                    .write(value).writeCrlf();
+        }
+        connection.flush();
+
+        int confirmed = 0;
+        try {
+            for (String key : keys) {
+                String line = connection.readLine();
+                confirmed++;
+                // 并发创建时 add 失败，增量退回本地，下次刷新时通过 incr 写入
+                if(!"STORED".equals(line)) buffer.restore(key, deltas.get(key));
+            }
+        } catch (IOException e) {
+            for (int i = confirmed; i < keys.size(); i++) buffer.restore(keys.get(i), deltas.get(keys.get(i)));
+            throw e;
+        }
+    }
+
+    /**
+     * 单个缓存名称下的计数器
+     */
+    private static class Counters {
+        /**
+         * 服务器列表重新配置后替换为新的连接池
+         */
+        private volatile MemcachedConnectionPool pool;
+        private final long interval;
+        private final long threshold;
+        private final ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicBoolean requested = new AtomicBoolean();
+        /**
+         * 上次刷新时没有增量的 key，再次没有增量时从 pending 中移除
+         */
+        private final Set<String> idle = new HashSet<>();
+        /**
+         * 已移除的计数器，下次刷新时再收集一次移除前后并发写入的增量
+         */
+        private List<Map.Entry<String, LongAdder>> retired = new ArrayList<>();
+        private volatile Map<String, Long> inflight = Collections.emptyMap();
+        /**
+         * 缓存名称已移除或已关闭，之后写入的增量由写入方同步刷新
+         */
+        private volatile boolean removed;
+
+        private Counters(MemcachedConnectionPool pool) {
+            MemcachedConfig config = pool.getConfig();
+            this.pool = pool;
+            this.interval = config.getCounterFlushInterval() == null ? 0L : config.getCounterFlushInterval();
+            this.threshold = config.getCounterFlushThreshold() == null ? 0L : config.getCounterFlushThreshold();
+        }
+
+        /**
+         * 取出所有累积的增量，只在持有 lock 时调用
+         */
+        private Map<String, Long> drain() {
+            Map<String, Long> deltas = new HashMap<>();
+            for (Map.Entry<String, LongAdder> entry : retired) {
+                long sum = entry.getValue().sum();
+                if(sum != 0) {
+                    entry.getValue().add(-sum);
+                    deltas.merge(entry.getKey(), sum, Long::sum);
+                }
+            }
+
+            List<Map.Entry<String, LongAdder>> removed = new ArrayList<>();
+            for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+                String key = entry.getKey();
+                LongAdder adder = entry.getValue();
+                // 先读后减，期间并发写入的增量保留在 adder 中
+                long sum = adder.sum();
+                if(sum != 0) {
+                    adder.add(-sum);
+                    deltas.merge(key, sum, Long::sum);
+                    idle.remove(key);
+                } else if(!idle.add(key)) {
+                    idle.remove(key);
+                    if(pending.remove(key, adder)) removed.add(entry);
+                }
+            }
+            this.retired = removed;
+
+            deltas.values().removeIf(delta -> delta == 0);
+            return deltas;
+        }
+
+        /**
+         * 把已从 pending 移除的 adder 中剩余的增量转移到当前的 adder。
+         * 与 drain 一样在持有 lock 时先读后减，同一增量只会被其中一方收集
+         */
+        private void transfer(String key, LongAdder adder) {
+            lock.lock();
+            try {
+                long sum = adder.sum();
+                if(sum != 0) {
+                    adder.add(-sum);
+                    restore(key, sum);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void restore(String key, long delta) {
+            pending.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+        }
+    }
+}
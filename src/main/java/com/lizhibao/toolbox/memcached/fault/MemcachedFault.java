@@ -0,0 +1,66 @@
+package com.lizhibao.toolbox.memcached.fault;
+
+import lombok.Getter;
+
+/**
+ * {@link MemcachedFaultProxy} 注入的故障
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Getter
+public final class MemcachedFault {
+    /**
+     * 故障类型
+     */
+    public enum Type {
+        /**
+         * 每个请求数据块转发前等待固定时间，模拟网络抖动或服务器变慢
+         */
+        LATENCY,
+        /**
+         * 连接保持，两个方向都暂停转发，故障结束后继续转发积压的数据，模拟丢包重传或服务器卡顿
+         */
+        STALL,
+        /**
+         * 已有连接和新连接立即以 RST 关闭，模拟进程崩溃或重启
+         */
+        RESET,
+        /**
+         * 连接保持，两个方向的数据全部丢弃，故障结束后连接上的请求和响应已经错位，模拟网络分区
+         */
+        BLACKHOLE
+    }
+
+    private final Type type;
+    /**
+     * LATENCY 每个数据块的延迟(毫秒)，其他类型为 0
+     */
+    private final long delay;
+
+    private MemcachedFault(Type type, long delay) {
+        this.type = type;
+        this.delay = delay;
+    }
+
+    public static MemcachedFault latency(long millis) {
+        if(millis < 0) throw new IllegalArgumentException("Invalid latency: " + millis);
+        return new MemcachedFault(Type.LATENCY, millis);
+    }
+
+    public static MemcachedFault stall() {
+        return new MemcachedFault(Type.STALL, 0);
+    }
+
+    public static MemcachedFault reset() {
+        return new MemcachedFault(Type.RESET, 0);
+    }
+
+    public static MemcachedFault blackhole() {
+        return new MemcachedFault(Type.BLACKHOLE, 0);
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.LATENCY ? "latency " + delay + "ms" : type.name().toLowerCase();
+    }
+}
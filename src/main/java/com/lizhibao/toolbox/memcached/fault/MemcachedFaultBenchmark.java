@@ -0,0 +1,270 @@
+package com.lizhibao.toolbox.memcached.fault;
+
+import com.danga.MemCached.SockIOPool;
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedOperations;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.model.MemcachedFaultReport;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLatencyHistogram;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 故障压测：两台 {@link MemcachedLoopbackServer}，第一台前面放 {@link MemcachedFaultProxy}，
+ * 多线程读写的同时依次注入每种故障，统计基准、故障期间和恢复阶段的耗时分位数、失败数，以及故障结束后多久恢复正常。
+ * 用于比较 failOver / failBack / aliveCheck / socketTimeout 不同取值下节点异常的实际代价。
+ * 可以直接运行 main，参数为 key=value，例如 failOver=false aliveCheck=true socketTimeout=500。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedFaultBenchmark {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    public static void main(String[] args) throws IOException {
+        MemcachedFaultBenchmarkOptions options = new MemcachedFaultBenchmarkOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if(eq <= 0) throw new IllegalArgumentException("Invalid argument: " + arg);
+
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(0, eq)) {
+                case "failOver": options.setFailOver(Boolean.parseBoolean(value)); break;
+                case "failBack": options.setFailBack(Boolean.parseBoolean(value)); break;
+                case "aliveCheck": options.setAliveCheck(Boolean.parseBoolean(value)); break;
+                case "socketTimeout": options.setSocketTimeout(Integer.parseInt(value)); break;
+                case "socketConnectTimeout": options.setSocketConnectTimeout(Integer.parseInt(value)); break;
+                case "threads": options.setThreads(Integer.parseInt(value)); break;
+                case "faultMillis": options.setFaultMillis(Long.parseLong(value)); break;
+                case "recoveryTimeoutMillis": options.setRecoveryTimeoutMillis(Long.parseLong(value)); break;
+                default: throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        for (MemcachedFaultReport report : new MemcachedFaultBenchmark().run(options)) log.info("{}", report);
+    }
+
+    /**
+     * 依次压测所有故障
+     * @param options 压测参数
+     * @return 每种故障的结果
+     */
+    public List<MemcachedFaultReport> run(MemcachedFaultBenchmarkOptions options) throws IOException {
+        List<MemcachedFaultReport> reports = new ArrayList<>();
+        for (MemcachedFault fault : options.getFaults()) reports.add(this.run(fault, options));
+        return reports;
+    }
+
+    /**
+     * 压测单个故障，每次使用新的服务器和客户端
+     * @param fault 故障
+     * @param options 压测参数
+     * @return MemcachedFaultReport
+     */
+    public MemcachedFaultReport run(MemcachedFault fault, MemcachedFaultBenchmarkOptions options) throws IOException {
+        try (MemcachedLoopbackServer primary = new MemcachedLoopbackServer();
+             MemcachedLoopbackServer secondary = new MemcachedLoopbackServer();
+             MemcachedFaultProxy proxy = new MemcachedFaultProxy(primary.getAddress())) {
+            MemcachedConfig config = new MemcachedConfig();
+            config.setName("fault-benchmark-" + SEQUENCE.incrementAndGet());
+            config.setServers(proxy.getAddress() + "," + secondary.getAddress());
+            config.setWeights("1,1");
+            config.setInitConn(options.getThreads());
+            config.setMinConn(options.getThreads());
+            config.setMaxConn(options.getThreads() * 2);
+            config.setFailOver(options.isFailOver());
+            config.setFailBack(options.isFailBack());
+            config.setAliveCheck(options.isAliveCheck());
+            config.setSocketTimeout(options.getSocketTimeout());
+            config.setSocketConnectTimeout(options.getSocketConnectTimeout());
+            config.setHealthCheckInterval(0L);
+
+            MemcachedProperties properties = new MemcachedProperties();
+            properties.setNodes(new ArrayList<>(Collections.singletonList(config)));
+            MemcachedManager manager = new MemcachedManager(properties);
+            try {
+                return this.run(fault, options, proxy, new MemcachedTemplate(manager).forName(config.getName()));
+            } finally {
+                for (MyMemCachedClient cachedClient : manager.getClients().values()) {
+                    if(cachedClient.getConnectionPool() != null) cachedClient.getConnectionPool().close();
+                    SockIOPool pool = SockIOPool.getInstance(cachedClient.getPoolName());
+                    if(pool.isInitialized()) pool.shutDown();
+                }
+            }
+        }
+    }
+
+    private MemcachedFaultReport run(MemcachedFault fault, MemcachedFaultBenchmarkOptions options, MemcachedFaultProxy proxy, MemcachedOperations operations) {
+        byte[] value = new byte[options.getValueSize()];
+        for (int i = 0; i < options.getKeys(); i++) operations.set(key(i), value);
+
+        long window = Math.max(1, options.getWindowMillis());
+        long faultAt = options.getWarmupMillis();
+        long clearAt = faultAt + options.getFaultMillis();
+        Timeline timeline = new Timeline((int) ((clearAt + options.getRecoveryTimeoutMillis()) / window) + options.getStableWindows() + 2, window);
+
+        log.info("{} => benchmark {}, failOver {}, failBack {}, aliveCheck {}", operations.getName(), fault, options.isFailOver(), options.isFailBack(), options.isAliveCheck());
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, options.getThreads()); i++) {
+            Thread worker = new Thread(() -> work(operations, options, value, timeline, faultAt, clearAt), "memcached-fault-benchmark-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        long recovery = -1;
+        try {
+            sleepUntil(timeline, faultAt);
+            proxy.inject(fault);
+            sleepUntil(timeline, clearAt);
+            proxy.clear();
+
+            int clearWindow = (int) (clearAt / window);
+            long deadline = clearAt + options.getRecoveryTimeoutMillis();
+            while (timeline.elapsed() < deadline) {
+                sleepUntil(timeline, timeline.elapsed() + window);
+                int recovered = timeline.recovered(clearWindow, options.getStableWindows());
+                if(recovered >= 0) {
+                    recovery = Math.max(0, recovered * window - clearAt);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            proxy.clear();
+            timeline.stopped = true;
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(options.getSocketTimeout() * 2L + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        MemcachedFaultReport report = new MemcachedFaultReport();
+        report.setFault(fault.toString());
+        report.setFailOver(options.isFailOver());
+        report.setFailBack(options.isFailBack());
+        report.setAliveCheck(options.isAliveCheck());
+        report.setOperations(timeline.baseline.getCount() + timeline.fault.getCount() + timeline.recovery.getCount());
+        report.setBaselineP50Latency(timeline.baseline.percentile(50));
+        report.setBaselineP99Latency(timeline.baseline.percentile(99));
+        report.setFaultP50Latency(timeline.fault.percentile(50));
+        report.setFaultP99Latency(timeline.fault.percentile(99));
+        report.setFaultMaxLatency(timeline.fault.getMax());
+        report.setFaultOperations(timeline.fault.getCount());
+        report.setFaultFailures(timeline.faultFailures.sum());
+        report.setRecoveryP99Latency(timeline.recovery.percentile(99));
+        report.setRecoveryFailures(timeline.recoveryFailures.sum());
+        report.setRecoveryMillis(recovery);
+        log.info("{} => {}", operations.getName(), report);
+        return report;
+    }
+
+    private static void work(MemcachedOperations operations, MemcachedFaultBenchmarkOptions options, byte[] value, Timeline timeline, long faultAt, long clearAt) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!timeline.stopped) {
+            String key = key(random.nextInt(Math.max(1, options.getKeys())));
+            long begin = System.nanoTime();
+            boolean success;
+            try {
+                success = random.nextDouble() < options.getReadRatio() ? operations.get(key) != null : operations.set(key, value);
+            } catch (RuntimeException e) {
+                success = false;
+            }
+            long end = System.nanoTime();
+            timeline.record(TimeUnit.NANOSECONDS.toMillis(begin - timeline.start), TimeUnit.NANOSECONDS.toMicros(end - begin), success, faultAt, clearAt);
+        }
+    }
+
+    private static void sleepUntil(Timeline timeline, long millis) throws InterruptedException {
+        long wait;
+        while ((wait = millis - timeline.elapsed()) > 0) TimeUnit.MILLISECONDS.sleep(wait);
+    }
+
+    private static String key(int index) {
+        return "fault-benchmark:" + index;
+    }
+
+    /**
+     * 按阶段和时间窗口汇总的压测数据，操作按开始时间归属
+     */
+    private static final class Timeline {
+        private final long start = System.nanoTime();
+        private final long window;
+        private final LongAdder[] operations;
+        private final LongAdder[] failures;
+        private final LongAdder[] latencies;
+        private final MemcachedLatencyHistogram baseline = new MemcachedLatencyHistogram();
+        private final MemcachedLatencyHistogram fault = new MemcachedLatencyHistogram();
+        private final MemcachedLatencyHistogram recovery = new MemcachedLatencyHistogram();
+        private final LongAdder faultFailures = new LongAdder();
+        private final LongAdder recoveryFailures = new LongAdder();
+        private volatile boolean stopped;
+
+        private Timeline(int windows, long window) {
+            this.window = window;
+            this.operations = adders(windows);
+            this.failures = adders(windows);
+            this.latencies = adders(windows);
+        }
+
+        private long elapsed() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+
+        private void record(long at, long latency, boolean success, long faultAt, long clearAt) {
+            if(at < faultAt) {
+                baseline.record(latency);
+            } else if(at < clearAt) {
+                fault.record(latency);
+                if(!success) faultFailures.increment();
+            } else {
+                recovery.record(latency);
+                if(!success) recoveryFailures.increment();
+            }
+
+            int index = (int) Math.min(operations.length - 1, at / window);
+            operations[index].increment();
+            latencies[index].add(latency);
+            if(!success) failures[index].increment();
+        }
+
+        /**
+         * 从 from 开始连续 stable 个已经结束的窗口都正常时，返回第一个窗口的序号
+         * @return 还没有恢复时返回 -1
+         */
+        private int recovered(int from, int stable) {
+            double limit = baseline.getMean() * 2 + 1000;
+            int completed = (int) Math.min(operations.length, elapsed() / window);
+            int run = 0;
+            for (int i = from; i < completed; i++) {
+                long count = operations[i].sum();
+                boolean healthy = count > 0 && failures[i].sum() == 0 && latencies[i].sum() <= limit * count;
+                run = healthy ? run + 1 : 0;
+                if(run >= Math.max(1, stable)) return i - run + 1;
+            }
+            return -1;
+        }
+
+        private static LongAdder[] adders(int length) {
+            LongAdder[] adders = new LongAdder[length];
+            for (int i = 0; i < length; i++) adders[i] = new LongAdder();
+            return adders;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.lizhibao.toolbox.memcached.fault;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 故障压测参数，客户端参数与 {@link com.lizhibao.toolbox.memcached.MemcachedConfig} 中的同名参数含义一致
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@Accessors(chain = true)
+public class MemcachedFaultBenchmarkOptions {
+    /**
+     * 依次压测的故障
+     */
+    private List<MemcachedFault> faults = new ArrayList<>(Arrays.asList(
+            MemcachedFault.latency(50), MemcachedFault.stall(), MemcachedFault.reset(), MemcachedFault.blackhole()));
+    private boolean failOver = true;
+    private boolean failBack = true;
+    private boolean aliveCheck = false;
+    private int socketTimeout = 1000;
+    private int socketConnectTimeout = 1000;
+    /**
+     * 压测线程数
+     */
+    private int threads = 8;
+    /**
+     * 预先写入的 key 数量
+     */
+    private int keys = 1000;
+    /**
+     * 数据大小(字节)
+     */
+    private int valueSize = 100;
+    /**
+     * 读操作的比例，其余为写操作
+     */
+    private double readRatio = 0.9;
+    /**
+     * 注入故障前的基准阶段(毫秒)
+     */
+    private long warmupMillis = 2000;
+    /**
+     * 故障持续时间(毫秒)
+     */
+    private long faultMillis = 3000;
+    /**
+     * 故障结束后等待恢复的最长时间(毫秒)，超过后记为未恢复
+     */
+    private long recoveryTimeoutMillis = 20000;
+    /**
+     * 统计窗口(毫秒)
+     */
+    private long windowMillis = 100;
+    /**
+     * 连续多少个窗口没有失败、平均耗时不超过基准的 2 倍(加 1 毫秒)才算恢复
+     */
+    private int stableWindows = 5;
+}
@@ -0,0 +1,318 @@
+package com.lizhibao.toolbox.memcached.fault;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 只监听 127.0.0.1 的 TCP 代理，放在客户端和 memcached(或 {@link com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer})之间，
+ * 按需或按计划注入延迟、卡顿、连接重置和黑洞，用于测试和压测 failOver / failBack / aliveCheck 的实际表现。
+ * 每个连接两个转发线程，同一时间只有一个故障生效。黑洞只能丢弃已建立连接上的数据，
+ * 新连接的握手由操作系统完成，无法模拟 SYN 丢失导致的连接超时。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedFaultProxy implements Closeable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final long STALL_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * 连续 accept 失败达到该次数后停止代理
+     */
+    private static final int MAX_ACCEPT_FAILURES = 50;
+    private static final long MAX_ACCEPT_BACKOFF = 1000;
+
+    private final InetSocketAddress target;
+    private final ServerSocket serverSocket;
+    private final Set<Link> links = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private volatile MemcachedFault fault;
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    /**
+     * 监听随机端口
+     * @param target 被代理的服务器地址，格式为 host:port
+     */
+    public MemcachedFaultProxy(String target) throws IOException {
+        this(target, 0);
+    }
+
+    /**
+     * @param target 被代理的服务器地址，格式为 host:port
+     * @param port 监听端口，0 表示随机端口
+     */
+    public MemcachedFaultProxy(String target, int port) throws IOException {
+        int colon = target.lastIndexOf(':');
+        if(colon <= 0) throw new IllegalArgumentException("Invalid target: " + target);
+        this.target = new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+        Thread acceptor = new Thread(this::accept, "memcached-fault-proxy-accept-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * 监听的端口
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 代理地址，格式与 {@link com.lizhibao.toolbox.memcached.MemcachedConfig#getServers()} 一致
+     */
+    public String getAddress() {
+        return InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort();
+    }
+
+    /**
+     * 当前生效的故障
+     * @return 没有故障时返回 null
+     */
+    public MemcachedFault getFault() {
+        return fault;
+    }
+
+    /**
+     * 立即注入故障，替换当前的故障
+     * @param fault 故障
+     */
+    public void inject(MemcachedFault fault) {
+        log.info("{} => inject {}", getAddress(), fault);
+        this.fault = fault;
+        if(fault.getType() == MemcachedFault.Type.RESET) {
+            for (Link link : links) link.abort();
+        }
+    }
+
+    /**
+     * 清除故障，恢复正常转发
+     */
+    public void clear() {
+        if(fault != null) log.info("{} => clear {}", getAddress(), fault);
+        this.fault = null;
+    }
+
+    /**
+     * 按计划注入故障，持续时间结束后如果仍是该故障则自动清除
+     * @param fault 故障
+     * @param delayMillis 多久之后注入(毫秒)
+     * @param durationMillis 持续时间(毫秒)
+     * @return 注入任务，取消后不再注入
+     */
+    public ScheduledFuture<?> schedule(MemcachedFault fault, long delayMillis, long durationMillis) {
+        ScheduledExecutorService executor = scheduler();
+        return executor.schedule(() -> {
+            this.inject(fault);
+            executor.schedule(() -> {
+                if(this.fault == fault) this.clear();
+            }, durationMillis, TimeUnit.MILLISECONDS);
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        this.fault = null;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.debug("close fault proxy failed: {}", e.getMessage());
+        }
+        for (Link link : links) link.close();
+        ScheduledExecutorService executor = this.scheduler;
+        if(executor != null) executor.shutdownNow();
+    }
+
+    private void accept() {
+        int failures = 0;
+        while (!closed) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+                failures = 0;
+            } catch (IOException e) {
+                if(closed) break;
+
+                // 持续失败(例如文件描述符耗尽)时退避，连续失败过多或监听已关闭时停止代理
+                if(++failures >= MAX_ACCEPT_FAILURES || serverSocket.isClosed()) {
+                    log.error("fault proxy stopped after {} accept failures: {}", failures, e.getMessage());
+                    close();
+                    break;
+                }
+                if(failures == 1) log.warn("fault proxy accept failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(Math.min(MAX_ACCEPT_BACKOFF, 10L << Math.min(failures, 7)));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    break;
+                }
+                continue;
+            }
+
+            MemcachedFault current = this.fault;
+            if(closed || (current != null && current.getType() == MemcachedFault.Type.RESET)) {
+                abort(client);
+                continue;
+            }
+
+            // 连接上游可能阻塞，放在转发线程中完成，不影响接收其他连接
+            Thread thread = new Thread(() -> open(client), "memcached-fault-proxy-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void open(Socket client) {
+        Socket upstream = new Socket();
+        try {
+            client.setTcpNoDelay(true);
+            upstream.setTcpNoDelay(true);
+            upstream.connect(target, CONNECT_TIMEOUT);
+        } catch (IOException e) {
+            log.debug("fault proxy connect {} failed: {}", target, e.getMessage());
+            abort(client);
+            closeQuietly(upstream);
+            return;
+        }
+
+        Link link = new Link(client, upstream);
+        links.add(link);
+        if(closed) {
+            link.close();
+            return;
+        }
+
+        Thread downstream = new Thread(() -> pump(link, upstream, client, false), "memcached-fault-proxy-" + threadIndex.incrementAndGet());
+        downstream.setDaemon(true);
+        downstream.start();
+        pump(link, client, upstream, true);
+    }
+
+    private void pump(Link link, Socket from, Socket to, boolean request) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+            InputStream in = from.getInputStream();
+            OutputStream out = to.getOutputStream();
+            int n;
+            while (!link.closed && (n = in.read(buffer)) >= 0) {
+                if(!pass(link, request)) continue;
+                out.write(buffer, 0, n);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 任意一端断开
+        } finally {
+            link.close();
+        }
+    }
+
+    /**
+     * 按当前故障处理一个数据块
+     * @return false 表示丢弃
+     */
+    private boolean pass(Link link, boolean request) {
+        while (!link.closed) {
+            MemcachedFault current = this.fault;
+            if(current == null) return true;
+
+            switch (current.getType()) {
+                case LATENCY:
+                    if(request && current.getDelay() > 0) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(current.getDelay()));
+                    return true;
+                case STALL:
+                    LockSupport.parkNanos(STALL_CHECK_NANOS);
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private ScheduledExecutorService scheduler() {
+        ScheduledExecutorService executor = this.scheduler;
+        if(executor != null) return executor;
+
+        synchronized (this) {
+            if(this.scheduler == null) {
+                this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "memcached-fault-proxy-schedule-" + getPort());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return this.scheduler;
+        }
+    }
+
+    /**
+     * 以 RST 关闭连接
+     */
+    private static void abort(Socket socket) {
+        try {
+            socket.setSoLinger(true, 0);
+        } catch (IOException e) {
+            // 连接已经关闭
+        }
+        closeQuietly(socket);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * 一个被代理的连接：客户端一侧和上游一侧
+     */
+    private final class Link {
+        private final Socket client;
+        private final Socket upstream;
+        private volatile boolean closed;
+
+        private Link(Socket client, Socket upstream) {
+            this.client = client;
+            this.upstream = upstream;
+        }
+
+        private void abort() {
+            this.closed = true;
+            links.remove(this);
+            MemcachedFaultProxy.abort(client);
+            MemcachedFaultProxy.abort(upstream);
+        }
+
+        private void close() {
+            this.closed = true;
+            links.remove(this);
+            closeQuietly(client);
+            closeQuietly(upstream);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.lizhibao.toolbox.memcached.health;
+
+import com.danga.MemCached.SockIOPool;
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.model.MemcachedCasStats;
+import com.lizhibao.toolbox.memcached.model.MemcachedServerHealth;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.nearcache.MemcachedNearCache;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监控端点 /actuator/memcached：各缓存名称的连接池状态、近端缓存命中情况，
+ * {@link MemcachedHealthProbe} 缓存的各台服务器探测耗时和 stats，以及 update 冲突最多的 key，不做任何网络 I/O
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Endpoint(id = "memcached")
+public class MemcachedEndpoint {
+    /**
+     * 展示的 update 冲突最多的 key 数量
+     */
+    private static final int HOT_KEYS = 10;
+
+    private final MemcachedManager manager;
+    private final MemcachedHealthProbe probe;
+
+    public MemcachedEndpoint(MemcachedManager manager, MemcachedHealthProbe probe) {
+        this.manager = manager;
+        this.probe = probe;
+    }
+
+    /**
+     * 所有缓存名称的状态
+     */
+    @ReadOperation
+    public Map<String, Object> clients() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : manager.getClients().keySet()) result.put(name, client(name));
+        return result;
+    }
+
+    /**
+     * 指定缓存名称的状态
+     * @param name 缓存名称
+     * @return 缓存名称不存在时返回 null(404)
+     */
+    @ReadOperation
+    public Map<String, Object> client(@Selector String name) {
+        MyMemCachedClient cachedClient = manager.getClients().get(name);
+        if(cachedClient == null) return null;
+
+        MemcachedConfig config = cachedClient.getConfig();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("servers", config.getServers());
+        result.put("initialized", SockIOPool.getInstance(cachedClient.getPoolName()).isInitialized());
+
+        Map<String, MemcachedServerHealth> probes = probe.getResults(name);
+        MemcachedConnectionPool pool = cachedClient.getConnectionPool();
+        Map<String, Object> servers = new LinkedHashMap<>();
+        String[] addresses = pool != null ? pool.getServers() : config.getServers().split(",");
+        for (String server : addresses) {
+            Map<String, Object> state = new LinkedHashMap<>();
+            if(pool != null) {
+                state.put("idleConnections", pool.getIdleCount(server));
+                state.put("activeConnections", pool.getActiveCount(server));
+            }
+            MemcachedServerHealth health = probes.get(server);
+            if(health != null) state.put("health", health);
+            servers.put(server, state);
+        }
+        result.put("pool", servers);
+
+        MemcachedNearCache nearCache = cachedClient.getNearCache();
+        if(nearCache != null) {
+            Map<String, Object> near = new LinkedHashMap<>();
+            near.put("hits", nearCache.getHits());
+            near.put("misses", nearCache.getMisses());
+            near.put("size", nearCache.size());
+            near.put("memory", nearCache.memory());
+            result.put("nearCache", near);
+        }
+
+        List<MemcachedCasStats> hotKeys = manager.getCasContention().getHotKeys(name, HOT_KEYS);
+        if(!hotKeys.isEmpty()) result.put("casHotKeys", hotKeys);
+        return result;
+    }
+}
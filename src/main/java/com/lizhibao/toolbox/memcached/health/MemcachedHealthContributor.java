@@ -0,0 +1,44 @@
+package com.lizhibao.toolbox.memcached.health;
+
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import org.springframework.boot.actuate.health.CompositeHealthContributor;
+import org.springframework.boot.actuate.health.HealthContributor;
+import org.springframework.boot.actuate.health.NamedContributor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 所有缓存名称的健康检查(/actuator/health/memcached/{name})，每次按 manager 中当前的客户端生成，
+ * 服务器列表重新配置后新增、移除的缓存名称和修改后的探测参数立即生效
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedHealthContributor implements CompositeHealthContributor {
+    private final MemcachedManager manager;
+    private final MemcachedHealthProbe probe;
+
+    public MemcachedHealthContributor(MemcachedManager manager, MemcachedHealthProbe probe) {
+        this.manager = manager;
+        this.probe = probe;
+    }
+
+    @Override
+    public HealthContributor getContributor(String name) {
+        MyMemCachedClient cachedClient = manager.getClients().get(name);
+        return cachedClient == null ? null : new MemcachedHealthIndicator(probe, cachedClient.getConfig());
+    }
+
+    @Override
+    public Iterator<NamedContributor<HealthContributor>> iterator() {
+        List<NamedContributor<HealthContributor>> contributors = new ArrayList<>();
+        for (String name : new TreeSet<>(manager.getClients().keySet())) {
+            HealthContributor contributor = getContributor(name);
+            if(contributor != null) contributors.add(NamedContributor.of(name, contributor));
+        }
+        return contributors.iterator();
+    }
+}
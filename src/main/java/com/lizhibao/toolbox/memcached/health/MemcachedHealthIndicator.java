@@ -0,0 +1,61 @@
+package com.lizhibao.toolbox.memcached.health;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.model.MemcachedServerHealth;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个缓存名称的健康状态，只读取 {@link MemcachedHealthProbe} 缓存的探测结果。
+ * 所有服务器都不可用时为 DOWN，部分服务器不可用时为 UP 并在详情中列出；
+ * 尚未完成探测或结果超过 3 个探测周期未更新时为 UNKNOWN
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedHealthIndicator implements HealthIndicator {
+    private final MemcachedHealthProbe probe;
+    private final MemcachedConfig config;
+
+    public MemcachedHealthIndicator(MemcachedHealthProbe probe, MemcachedConfig config) {
+        this.probe = probe;
+        this.config = config;
+    }
+
+    @Override
+    public Health health() {
+        Long interval = config.getHealthCheckInterval();
+        if(interval == null || interval <= 0) return Health.unknown().withDetail("message", "health check disabled").build();
+
+        Map<String, MemcachedServerHealth> results = probe.getResults(config.getName());
+        if(results.isEmpty()) return Health.unknown().withDetail("message", "not probed yet").build();
+
+        long staleBefore = System.currentTimeMillis() - interval * 3 - config.getSocketConnectTimeout() - config.getSocketTimeout();
+        int up = 0, stale = 0;
+        Map<String, Object> servers = new LinkedHashMap<>();
+        for (MemcachedServerHealth result : results.values()) {
+            if(result.isUp()) up++;
+            if(result.getCheckedAt() < staleBefore) stale++;
+
+            Map<String, Object> server = new LinkedHashMap<>();
+            server.put("up", result.isUp());
+            server.put("latency", result.getLatency());
+            server.put("averageLatency", result.getAverageLatency());
+            server.put("checkedAt", result.getCheckedAt());
+            if(!result.isUp()) {
+                server.put("failures", result.getFailures());
+                server.put("error", result.getError());
+            }
+            servers.put(result.getServer(), server);
+        }
+
+        Health.Builder builder = stale == results.size() ? Health.unknown() : up == 0 ? Health.down() : Health.up();
+        return builder.withDetail("up", up)
+                .withDetail("total", results.size())
+                .withDetail("stale", stale)
+                .withDetail("servers", servers)
+                .build();
+    }
+}
@@ -0,0 +1,202 @@
+package com.lizhibao.toolbox.memcached.health;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.model.MemcachedServerHealth;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务器探测：后台线程按 healthCheckInterval 对每台服务器并发发送 stats，记录往返耗时和返回的统计信息。
+ * 每台服务器同一时间只有一个探测在进行，慢服务器不会阻塞其他服务器的探测，
+ * 健康检查和监控端点只读取缓存的结果，不做任何网络 I/O。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedHealthProbe implements Closeable {
+    /**
+     * 检查到期缓存名称的间隔(毫秒)，也是 healthCheckInterval 实际生效的最小值
+     */
+    private static final long MIN_TICK = 100;
+    /**
+     * 平均耗时中新样本的权重
+     */
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final MemcachedManager manager;
+    private final Map<String, Map<String, MemcachedServerHealth>> results = new ConcurrentHashMap<>();
+    private final Map<String, Long> nextChecks = new ConcurrentHashMap<>();
+    private final Set<String> probing = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private volatile ScheduledExecutorService scheduler;
+    private volatile ExecutorService executor;
+    private volatile boolean closed;
+
+    public MemcachedHealthProbe(MemcachedManager manager) {
+        this.manager = manager;
+        // 重新配置后按新的配置立即探测；之前没有任何缓存名称需要探测时在这里启动
+        manager.addListener((name, current) -> {
+            nextChecks.remove(name);
+            start();
+        });
+        start();
+    }
+
+    /**
+     * 各台服务器最近一次探测的结果
+     * @param name 缓存名称
+     * @return 服务器地址和探测结果，尚未探测或缓存名称不存在时返回空
+     */
+    public Map<String, MemcachedServerHealth> getResults(String name) {
+        Map<String, MemcachedServerHealth> servers = results.get(name);
+        return servers == null ? Collections.emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<>(servers));
+    }
+
+    /**
+     * 对到期的缓存名称发起一轮探测，只提交任务不等待结果
+     */
+    public void refresh() {
+        ExecutorService executor = this.executor;
+        if(closed || executor == null) return;
+
+        long now = System.currentTimeMillis();
+        results.keySet().retainAll(manager.getClients().keySet());
+        nextChecks.keySet().retainAll(manager.getClients().keySet());
+        for (Map.Entry<String, MyMemCachedClient> entry : manager.getClients().entrySet()) {
+            String name = entry.getKey();
+            MyMemCachedClient cachedClient = entry.getValue();
+            Long interval = cachedClient.getConfig().getHealthCheckInterval();
+            MemcachedConnectionPool pool = cachedClient.getConnectionPool();
+            if(interval == null || interval <= 0 || pool == null) continue;
+
+            Long next = nextChecks.get(name);
+            if(next != null && next > now) continue;
+            nextChecks.put(name, now + interval);
+
+            String[] servers = pool.getServers();
+            Map<String, MemcachedServerHealth> current = results.computeIfAbsent(name, n -> new ConcurrentHashMap<>());
+            current.keySet().retainAll(new HashSet<>(Arrays.asList(servers)));
+            for (String server : servers) {
+                String id = name + '|' + server;
+                if(!probing.add(id)) continue;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            current.put(server, probe(pool, server, current.get(server)));
+                        } finally {
+                            probing.remove(id);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    probing.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * 有缓存名称配置了 healthCheckInterval 时启动后台线程，之后每 100 毫秒检查一次到期的缓存名称
+     */
+    private void start() {
+        if(closed || scheduler != null || !enabled()) return;
+
+        synchronized (this) {
+            if(closed || scheduler != null) return;
+
+            this.executor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "memcached-probe-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            ScheduledExecutorService created = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "memcached-health-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            created.scheduleWithFixedDelay(this::refresh, 0, MIN_TICK, TimeUnit.MILLISECONDS);
+            this.scheduler = created;
+        }
+    }
+
+    private boolean enabled() {
+        for (MyMemCachedClient cachedClient : manager.getClients().values()) {
+            Long interval = cachedClient.getConfig().getHealthCheckInterval();
+            if(interval != null && interval > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 停止探测
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            this.closed = true;
+        }
+        if(scheduler != null) scheduler.shutdownNow();
+        if(executor != null) executor.shutdownNow();
+    }
+
+    private static MemcachedServerHealth probe(MemcachedConnectionPool pool, String server, MemcachedServerHealth previous) {
+        MemcachedConfig config = pool.getConfig();
+        MemcachedServerHealth health = new MemcachedServerHealth();
+        health.setServer(server);
+
+        MemcachedConnection connection = null;
+        long start = System.nanoTime();
+        try {
+            connection = pool.borrow(server);
+            connection.writeAscii("stats").writeCrlf().flush();
+
+            Map<String, String> stats = new LinkedHashMap<>();
+            String line;
+            while (!"END".equals(line = connection.readLine())) {
+                if(!line.startsWith("STAT ")) throw new IOException("Unexpected response from " + server + ": " + line);
+                int space = line.indexOf(' ', 5);
+                if(space > 0) stats.put(line.substring(5, space), line.substring(space + 1));
+            }
+
+            long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            health.setUp(true);
+            health.setLatency(latency);
+            health.setAverageLatency(previous == null || previous.getAverageLatency() == 0 ? latency
+                    : Math.round(previous.getAverageLatency() * (1 - LATENCY_WEIGHT) + latency * LATENCY_WEIGHT));
+            health.setStats(Collections.unmodifiableMap(stats));
+        } catch (IOException | RuntimeException e) {
+            if(connection != null) connection.markBroken();
+            health.setUp(false);
+            health.setLatency(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            health.setError(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+            health.setFailures(previous == null ? 1 : previous.getFailures() + 1);
+            if(previous != null) {
+                health.setAverageLatency(previous.getAverageLatency());
+                health.setStats(previous.getStats());
+            }
+            if(health.getFailures() == 1) log.warn("{} => health check of {} failed: {}", config.getName(), server, health.getError());
+        } finally {
+            pool.release(connection);
+        }
+        health.setCheckedAt(System.currentTimeMillis());
+        return health;
+    }
+}
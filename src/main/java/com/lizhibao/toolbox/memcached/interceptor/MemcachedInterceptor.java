@@ -0,0 +1,27 @@
+package com.lizhibao.toolbox.memcached.interceptor;
+
+/**
+ * 操作拦截器，用于在所有操作上统一添加监控、链路追踪、key 前缀、熔断等逻辑。
+ * 注册为 Spring Bean 后自动生效，多个拦截器按 {@link org.springframework.core.annotation.Order} 排序，先注册的在外层。
+ * 返回值与被拦截方法的返回值一致(基本类型为装箱类型)，跳过实际调用时可以返回 {@link MemcachedOperation#getFallback()}
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public interface MemcachedInterceptor {
+
+    /**
+     * 拦截一次操作
+     * @param operation 操作描述
+     * @param invocation 下一步，不调用时不会执行实际操作
+     * @return 操作的返回值
+     */
+    <T> T intercept(MemcachedOperation operation, MemcachedInvocation<T> invocation);
+
+    /**
+     * 是否生效，未生效时调用链跳过该拦截器，所有拦截器都未生效时不创建操作描述。每次操作都会调用，实现应当足够轻量
+     * @return 默认总是生效
+     */
+    default boolean isActive() {
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+package com.lizhibao.toolbox.memcached.interceptor;
+
+import java.util.List;
+
+/**
+ * 按顺序组合多个拦截器。没有注册拦截器时 {@link #of(List)} 返回 null，所有拦截器都未生效时 {@link #isActive()} 返回 false，
+ * 调用方判断一次即可直接调用实际操作，不创建操作描述和 lambda；未生效的拦截器在调用链中被跳过
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public final class MemcachedInterceptorChain {
+    private final MemcachedInterceptor[] interceptors;
+
+    private MemcachedInterceptorChain(MemcachedInterceptor[] interceptors) {
+        this.interceptors = interceptors;
+    }
+
+    /**
+     * @param interceptors 拦截器，第一个在最外层
+     * @return 没有拦截器时返回 null
+     */
+    public static MemcachedInterceptorChain of(List<MemcachedInterceptor> interceptors) {
+        if(interceptors == null || interceptors.isEmpty()) return null;
+        return new MemcachedInterceptorChain(interceptors.toArray(new MemcachedInterceptor[0]));
+    }
+
+    /**
+     * 是否有拦截器生效
+     * @return 所有拦截器都未生效时返回 false
+     */
+    public boolean isActive() {
+        for (MemcachedInterceptor interceptor : interceptors) {
+            if(interceptor.isActive()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 依次经过所有生效的拦截器后执行实际操作
+     * @param operation 操作描述
+     * @param target 实际操作
+     * @return 操作的返回值
+     */
+    public <T> T invoke(MemcachedOperation operation, MemcachedInvocation<T> target) {
+        return invoke(0, operation, target);
+    }
+
+    private <T> T invoke(int index, MemcachedOperation operation, MemcachedInvocation<T> target) {
+        if(index == interceptors.length) return target.proceed(operation);
+        if(!interceptors[index].isActive()) return invoke(index + 1, operation, target);
+        return interceptors[index].intercept(operation, next -> invoke(index + 1, next, target));
+    }
+}
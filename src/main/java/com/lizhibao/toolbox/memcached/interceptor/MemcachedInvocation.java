@@ -0,0 +1,17 @@
+package com.lizhibao.toolbox.memcached.interceptor;
+
+/**
+ * 拦截链中的下一步：下一个拦截器或者实际的操作
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@FunctionalInterface
+public interface MemcachedInvocation<T> {
+
+    /**
+     * 继续执行
+     * @param operation 操作描述，可以是 {@link MemcachedOperation#withKey(String)} 替换 key 后的新描述
+     * @return 操作的返回值
+     */
+    T proceed(MemcachedOperation operation);
+}
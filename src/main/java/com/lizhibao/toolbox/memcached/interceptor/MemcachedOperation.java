@@ -0,0 +1,115 @@
+package com.lizhibao.toolbox.memcached.interceptor;
+
+/**
+ * 被拦截操作的描述，只在注册了拦截器时创建。
+ * 拦截器可以通过 {@link #withKey(String)} / {@link #withKeys(String[])} 替换 key 后继续调用，
+ * 其余字段只用于观察，修改不会影响实际执行的参数
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public final class MemcachedOperation {
+    private final MemcachedOperationType type;
+    private final String name;
+    private final String key;
+    private final String[] keys;
+    private final Object value;
+    private final long expired;
+    private final Object fallback;
+
+    private MemcachedOperation(MemcachedOperationType type, String name, String key, String[] keys, Object value, long expired, Object fallback) {
+        this.type = type;
+        this.name = name;
+        this.key = key;
+        this.keys = keys;
+        this.value = value;
+        this.expired = expired;
+        this.fallback = fallback;
+    }
+
+    /**
+     * 没有 key 的操作，如 flushAll、stats
+     */
+    public static MemcachedOperation of(MemcachedOperationType type, String name, Object fallback) {
+        return new MemcachedOperation(type, name, null, null, null, 0L, fallback);
+    }
+
+    /**
+     * 单个 key 的读取操作
+     */
+    public static MemcachedOperation of(MemcachedOperationType type, String name, String key, Object fallback) {
+        return new MemcachedOperation(type, name, key, null, null, 0L, fallback);
+    }
+
+    /**
+     * 单个 key 的写入操作
+     */
+    public static MemcachedOperation of(MemcachedOperationType type, String name, String key, Object value, long expired, Object fallback) {
+        return new MemcachedOperation(type, name, key, null, value, expired, fallback);
+    }
+
+    /**
+     * 批量操作
+     */
+    public static MemcachedOperation of(MemcachedOperationType type, String name, String[] keys, Object fallback) {
+        return new MemcachedOperation(type, name, null, keys, null, 0L, fallback);
+    }
+
+    public MemcachedOperation withKey(String key) {
+        return new MemcachedOperation(type, name, key, keys, value, expired, fallback);
+    }
+
+    public MemcachedOperation withKeys(String[] keys) {
+        return new MemcachedOperation(type, name, key, keys, value, expired, fallback);
+    }
+
+    public MemcachedOperationType getType() {
+        return type;
+    }
+
+    /**
+     * 缓存名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 单个 key 操作的 key，批量操作和没有 key 的操作为 null
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 批量操作的 keys，其他操作为 null
+     */
+    public String[] getKeys() {
+        return keys;
+    }
+
+    /**
+     * 写入的数据或增量，读取操作为 null
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * 过期时间，没有过期时间的操作为 0
+     */
+    public long getExpired() {
+        return expired;
+    }
+
+    /**
+     * 缓存名称不存在或服务器不可用时该操作的返回值，拦截器跳过实际调用(如熔断)时可以直接返回
+     */
+    public Object getFallback() {
+        return fallback;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + type + (key != null ? " " + key : keys != null ? " " + keys.length + " keys" : "");
+    }
+}
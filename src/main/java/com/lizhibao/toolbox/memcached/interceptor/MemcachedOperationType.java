@@ -0,0 +1,66 @@
+package com.lizhibao.toolbox.memcached.interceptor;
+
+/**
+ * 被拦截的操作类型
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public enum MemcachedOperationType {
+    KEY_EXISTS(false),
+    DELETE(true),
+    SET(true),
+    ADD(true),
+    REPLACE(true),
+    APPEND(true),
+    PREPEND(true),
+    STORE_COUNTER(true),
+    GET_COUNTER(false),
+    ADD_OR_INCR(true),
+    ADD_OR_DECR(true),
+    INCR(true),
+    DECR(true),
+    GET(false),
+    GET_OR_LOAD(false),
+    GET_OR_LOAD_EARLY(false),
+    SET_WITH_SOFT_EXPIRED(true),
+    GETS(false),
+    CAS(true),
+    UPDATE(true),
+    GET_MULTI_ARRAY(false),
+    GET_MULTI(false),
+    GET_LONG(false),
+    GET_LONGS(false),
+    GET_INTS(false),
+    SET_LONG(true),
+    SET_INT(true),
+    SET_BOOLEAN(true),
+    GET_BYTES(false),
+    SET_BYTES(true),
+    TOUCH(true),
+    TOUCH_MULTI(true),
+    GET_AND_TOUCH(true),
+    GET_AND_TOUCH_MULTI(true),
+    META_GET(false),
+    META_GET_MULTI(false),
+    META_SET(true),
+    META_DELETE(true),
+    META_ARITHMETIC(true),
+    FLUSH_ALL(true),
+    STATS(false),
+    STATS_ITEMS(false),
+    STATS_SLABS(false),
+    STATS_CACHE_DUMP(false);
+
+    private final boolean write;
+
+    MemcachedOperationType(boolean write) {
+        this.write = write;
+    }
+
+    /**
+     * 是否修改服务器上的数据
+     */
+    public boolean isWrite() {
+        return write;
+    }
+}
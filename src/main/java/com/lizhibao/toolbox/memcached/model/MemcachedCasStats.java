@@ -0,0 +1,32 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单个 key 的 CAS 冲突统计，只记录发生过冲突的 key
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+public class MemcachedCasStats {
+    private String name;
+    private String key;
+    /**
+     * 第一次冲突之后成功更新的次数
+     */
+    private long updates;
+    /**
+     * 冲突(gets 之后被其他写入抢先)的次数
+     */
+    private long conflicts;
+    /**
+     * 重试次数用完仍未更新成功的次数
+     */
+    private long exhausted;
+    /**
+     * 最近一次冲突的时间戳(毫秒)
+     */
+    private long lastConflictAt;
+}
@@ -0,0 +1,58 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 带软过期时间的缓存数据包装。
+ * 服务器上的过期时间为硬过期时间，超过软过期时间后数据仍可读取，但会触发后台刷新。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemcachedEnvelope implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 缓存数据
+     */
+    private Object value;
+    /**
+     * 软过期时间点(毫秒时间戳)
+     */
+    private long softExpireAt;
+    /**
+     * 硬过期时间点(毫秒时间戳)，0 表示永不过期
+     */
+    private long expireAt;
+    /**
+     * 数据的计算耗时(毫秒)，用于概率提前过期
+     */
+    private long delta;
+
+    /**
+     * 是否已经超过软过期时间
+     * @param now 当前时间(毫秒时间戳)
+     * @return true / false
+     */
+    public boolean isStale(long now) {
+        return now >= softExpireAt;
+    }
+
+    /**
+     * 概率提前过期(XFetch)：now - delta * beta * ln(random) >= expireAt 时需要重新计算
+     * @param now 当前时间(毫秒时间戳)
+     * @param beta 提前程度，默认为 1
+     * @param random [0, 1) 之间的随机数
+     * @return true / false
+     */
+    public boolean shouldRecompute(long now, double beta, double random) {
+        if(expireAt <= 0) return false;
+        return now - delta * beta * Math.log(1 - random) >= expireAt;
+    }
+}
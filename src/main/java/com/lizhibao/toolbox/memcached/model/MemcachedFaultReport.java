@@ -0,0 +1,50 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单个故障的压测结果，耗时单位为微秒
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+public class MemcachedFaultReport {
+    /**
+     * 故障
+     */
+    private String fault;
+    private boolean failOver;
+    private boolean failBack;
+    private boolean aliveCheck;
+    /**
+     * 总操作数
+     */
+    private long operations;
+    private long baselineP50Latency;
+    private long baselineP99Latency;
+    private long faultP50Latency;
+    private long faultP99Latency;
+    private long faultMaxLatency;
+    /**
+     * 故障期间读取未命中或写入失败的操作数
+     */
+    private long faultFailures;
+    /**
+     * 故障期间的操作数
+     */
+    private long faultOperations;
+    /**
+     * 恢复阶段的 p99
+     */
+    private long recoveryP99Latency;
+    /**
+     * 恢复阶段读取未命中或写入失败的操作数
+     */
+    private long recoveryFailures;
+    /**
+     * 故障结束到恢复正常所用的时间(毫秒)，-1 表示超时未恢复
+     */
+    private long recoveryMillis;
+}
@@ -0,0 +1,77 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * meta 协议(mg / ms / md / ma)一次请求的结果
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+public class MemcachedMetaResult {
+    private Status status;
+    /**
+     * mg 返回的数据，按 MemCachedClient 相同的规则解码
+     */
+    private Object value;
+    /**
+     * ma 返回的计数器的值，未返回时为 -1
+     */
+    private long number = -1;
+    /**
+     * 未请求返回 cas 时为 0
+     */
+    private long cas;
+    /**
+     * 剩余过期时间(毫秒)，-1 表示永不过期，未请求返回时为 null
+     */
+    private Long ttl;
+    /**
+     * 获得回源权：数据不存在(vivify)、已标记为过期或剩余时间小于 recache，当前调用方应回源并写入新数据
+     */
+    private boolean win;
+    /**
+     * 数据已被标记为过期，value 为旧数据
+     */
+    private boolean stale;
+    /**
+     * 其他调用方已经获得回源权，当前调用方可以使用旧数据或稍后重试
+     */
+    private boolean alreadyWon;
+
+    /**
+     * @return 读取命中(包括标记为过期的旧数据)或写入、删除、计数成功
+     */
+    public boolean isSuccess() {
+        return status == Status.OK || status == Status.VALUE;
+    }
+
+    public enum Status {
+        /**
+         * HD：成功，没有数据
+         */
+        OK,
+        /**
+         * VA：成功并返回数据
+         */
+        VALUE,
+        /**
+         * EN：未命中
+         */
+        MISS,
+        /**
+         * NS：未写入(ADD 时已存在、REPLACE 时不存在等)
+         */
+        NOT_STORED,
+        /**
+         * EX：cas 不一致
+         */
+        EXISTS,
+        /**
+         * NF：不存在
+         */
+        NOT_FOUND
+    }
+}
@@ -0,0 +1,69 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 流量回放的吞吐和耗时统计，耗时单位为微秒
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+public class MemcachedReplayReport {
+    /**
+     * 记录文件
+     */
+    private String file;
+    /**
+     * 记录时的采样比例
+     */
+    private double sampleRate;
+    /**
+     * 回放速度倍数
+     */
+    private double speed;
+    /**
+     * 已回放的操作数
+     */
+    private long operations;
+    /**
+     * 不回放的操作数(flush_all、stats 等)和缓存名称不存在的操作数
+     */
+    private long skipped;
+    /**
+     * 读取未命中的 key 数量
+     */
+    private long misses;
+    /**
+     * 写入失败或抛出异常的操作数
+     */
+    private long failed;
+    /**
+     * 已耗时(毫秒)
+     */
+    private long elapsedMillis;
+    /**
+     * 调度落后于记录时间的最大值(毫秒)，持续增大说明目标跟不上回放速度
+     */
+    private long maxLagMillis;
+    private double meanLatency;
+    private long p50Latency;
+    private long p90Latency;
+    private long p99Latency;
+    private long p999Latency;
+    private long maxLatency;
+    /**
+     * 各操作类型回放的次数
+     */
+    private Map<String, Long> operationsByType;
+
+    /**
+     * 每秒回放的操作数
+     */
+    public double getThroughput() {
+        return elapsedMillis <= 0 ? 0 : operations * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,42 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 单台服务器最近一次探测的结果
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+public class MemcachedServerHealth {
+    private String server;
+    private boolean up;
+    /**
+     * 最近一次探测的往返耗时(微秒)
+     */
+    private long latency;
+    /**
+     * 往返耗时的指数滑动平均值(微秒)
+     */
+    private long averageLatency;
+    /**
+     * 连续失败的次数
+     */
+    private int failures;
+    /**
+     * 探测失败的原因
+     */
+    private String error;
+    /**
+     * 探测完成的时间戳(毫秒)
+     */
+    private long checkedAt;
+    /**
+     * 最近一次成功探测时读取到的 stats
+     */
+    private Map<String, String> stats;
+}
@@ -0,0 +1,65 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单个 slab class 的内存利用率与淘汰情况
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+public class MemcachedSlabClassReport {
+    private int slabId;
+    /**
+     * chunk 大小(字节)
+     */
+    private long chunkSize;
+    /**
+     * 已分配的页数
+     */
+    private long totalPages;
+    private long usedChunks;
+    private long freeChunks;
+    /**
+     * 已使用 chunk 中实际请求的字节数
+     */
+    private long requestedBytes;
+    /**
+     * 已使用 chunk 中浪费的字节数(chunk 大小减去 item 大小)
+     */
+    private long wastedBytes;
+    /**
+     * 浪费比例 wastedBytes / (usedChunks * chunkSize)
+     */
+    private double wasteRatio;
+    /**
+     * 被淘汰的 item 数
+     */
+    private long evicted;
+    /**
+     * 最近一个被淘汰的 item 距离上次访问的秒数，越小说明越新的数据被淘汰，内存压力越大
+     */
+    private long evictedTime;
+    /**
+     * 淘汰前从未被读取过的 item 数
+     */
+    private long evictedUnfetched;
+    /**
+     * 无法分配内存的次数
+     */
+    private long outOfMemory;
+    /**
+     * 最旧 item 的存储时长(秒)
+     */
+    private long age;
+    /**
+     * 淘汰压力：evicted / (evicted + usedChunks)，近似为已淘汰数据占该 class 曾经存入数据的比例
+     */
+    private double evictionPressure;
+    /**
+     * 客户端样本中落在该 class 的数量
+     */
+    private long samples;
+}
@@ -0,0 +1,66 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单台服务器的 slab 内存利用率分析结果与调整建议
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+public class MemcachedSlabReport {
+    private String server;
+    /**
+     * 根据相邻 slab class 的 chunk 大小推算出的增长因子(-f)，无法推算时为默认值 1.25
+     */
+    private double growthFactor;
+    /**
+     * 页大小(字节)
+     */
+    private long pageSize;
+    /**
+     * 已分配的内存(字节)
+     */
+    private long totalMalloced;
+    /**
+     * 所有 class 浪费的字节数
+     */
+    private long wastedBytes;
+    /**
+     * 所有 class 的浪费比例
+     */
+    private double wasteRatio;
+    /**
+     * 所有 class 被淘汰的 item 数
+     */
+    private long evicted;
+    /**
+     * 客户端样本数
+     */
+    private int sampleCount;
+    /**
+     * 样本 item 大小的分位数(字节)
+     */
+    private long sizeP50;
+    private long sizeP90;
+    private long sizeP99;
+    /**
+     * 按当前增长因子存放样本时的浪费比例
+     */
+    private double sampleWasteRatio;
+    /**
+     * 样本浪费比例最低(且 class 数量最少)的增长因子，样本不足时为 0
+     */
+    private double recommendedGrowthFactor;
+    /**
+     * 按推荐增长因子存放样本时的浪费比例
+     */
+    private double recommendedWasteRatio;
+    private List<MemcachedSlabClassReport> classes = new ArrayList<>();
+    private List<String> recommendations = new ArrayList<>();
+}
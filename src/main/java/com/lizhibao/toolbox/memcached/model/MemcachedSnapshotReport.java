@@ -0,0 +1,77 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 快照预热/导出的进度与吞吐统计
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+public class MemcachedSnapshotReport {
+    /**
+     * 缓存名称
+     */
+    private String name;
+    /**
+     * 快照文件
+     */
+    private String file;
+    /**
+     * 已处理的记录数
+     */
+    private long records;
+    /**
+     * 已处理的字节数
+     */
+    private long bytes;
+    /**
+     * 写入成功的记录数
+     */
+    private long stored;
+    /**
+     * 服务器拒绝写入的记录数（例如预热时 key 已存在）
+     */
+    private long notStored;
+    /**
+     * 已过期（导出时包括 dump 之后已被删除或淘汰）而跳过的记录数
+     */
+    private long expired;
+    /**
+     * 因网络或服务器错误失败的记录数
+     */
+    private long failed;
+    /**
+     * 进度，0 ~ 1
+     */
+    private double progress;
+    /**
+     * 已耗时(毫秒)
+     */
+    private long elapsedMillis;
+    /**
+     * 是否已经完成
+     */
+    private boolean finished;
+
+    public MemcachedSnapshotReport(String name, String file) {
+        this.name = name;
+        this.file = file;
+    }
+
+    /**
+     * 每秒处理的记录数
+     */
+    public double getRecordsPerSecond() {
+        return elapsedMillis <= 0 ? 0 : records * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * 每秒处理的字节数
+     */
+    public double getBytesPerSecond() {
+        return elapsedMillis <= 0 ? 0 : bytes * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,32 @@
+package com.lizhibao.toolbox.memcached.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 带标签的缓存数据包装，记录写入时各个标签的版本号，读取时任一标签的版本号发生变化即视为失效
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemcachedTagged implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 缓存数据
+     */
+    private Object value;
+    /**
+     * 标签
+     */
+    private String[] tags;
+    /**
+     * 写入时与 tags 一一对应的版本号
+     */
+    private long[] versions;
+}
@@ -2,6 +2,9 @@ package com.lizhibao.toolbox.memcached.model;
 
 import com.danga.MemCached.MemCachedClient;
 import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.nearcache.MemcachedNearCache;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedDecoder;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,4 +21,20 @@ import lombok.experimental.Accessors;
 public class MyMemCachedClient {
     private MemcachedConfig config;
     private MemCachedClient client;
+    /**
+     * 直连协议的连接池，用于批量预热、导出等流水线操作
+     */
+    private MemcachedConnectionPool connectionPool;
+    /**
+     * 直连协议读取数据时使用的解码器，与 client 的解码规则一致
+     */
+    private MemcachedDecoder decoder;
+    /**
+     * 堆外近端缓存，未启用时为 null
+     */
+    private MemcachedNearCache nearCache;
+    /**
+     * SockIOPool 的名称，重新配置服务器列表后每一代使用不同的名称
+     */
+    private String poolName;
 }
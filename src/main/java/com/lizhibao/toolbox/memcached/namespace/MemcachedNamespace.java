@@ -0,0 +1,202 @@
+package com.lizhibao.toolbox.memcached.namespace;
+
+import com.lizhibao.toolbox.memcached.MemcachedOperations;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 命名空间操作句柄：key 实际存储为 "命名空间:版本号:key"，版本号保存在服务器上并在本地缓存一段时间。
+ * 使整个命名空间失效只需要一次 incr，旧版本的数据不再被访问，由服务器的 LRU 逐渐淘汰。
+ * 版本号首次创建(或被服务器淘汰后重新创建)时取当前时间戳，保证不会回退到旧版本；
+ * 其他实例使命名空间失效后，本实例最多延迟 namespaceCacheTtl 可见。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public final class MemcachedNamespace {
+    /**
+     * 版本号 key 的前缀
+     */
+    private static final String GENERATION_PREFIX = "__ns:";
+
+    private final String namespace;
+    private final String generationKey;
+    private final MemcachedOperations operations;
+    private final long cacheTtl;
+    private volatile Generation generation;
+
+    public MemcachedNamespace(String namespace, MemcachedOperations operations) {
+        this.namespace = namespace;
+        this.generationKey = GENERATION_PREFIX + namespace;
+        this.operations = operations;
+        Long ttl = operations.getConfig().getNamespaceCacheTtl();
+        this.cacheTtl = ttl == null || ttl < 0 ? 0 : ttl;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * 使命名空间中的所有数据失效
+     * @return true / false
+     */
+    public boolean invalidate() {
+        long value = operations.incr(generationKey, 1);
+        if(value < 0) {
+            // 版本号不存在时直接创建新的版本号，与旧版本不同即可
+            long now = System.currentTimeMillis();
+            value = operations.add(generationKey, String.valueOf(now)) ? now : operations.incr(generationKey, 1);
+        }
+        if(value < 0) {
+            log.warn("{} => invalidate namespace {} failed", operations.getName(), namespace);
+            this.generation = null;
+            return false;
+        }
+
+        this.generation = new Generation(value, System.currentTimeMillis() + cacheTtl);
+        return true;
+    }
+
+    /**
+     * 当前版本号
+     * @return 服务器不可用时返回 -1
+     */
+    public long generation() {
+        long now = System.currentTimeMillis();
+        Generation current = this.generation;
+        if(current != null && current.expiresAt > now) return current.value;
+
+        long value = operations.getCounter(generationKey);
+        if(value < 0 && operations.add(generationKey, String.valueOf(now))) value = now;
+        // 其他实例同时创建了版本号
+        if(value < 0) value = operations.getCounter(generationKey);
+        if(value < 0) return -1;
+
+        this.generation = new Generation(value, now + cacheTtl);
+        return value;
+    }
+
+    /**
+     * 实际存储的 key
+     * @param key 缓存key
+     * @return 服务器不可用时返回 null
+     */
+    public String key(String key) {
+        long value = generation();
+        return value < 0 ? null : key(value, key);
+    }
+
+    /**
+     * 判断命名空间中是否存在指定的key
+     */
+    public boolean keyExists(String key) {
+        String actual = key(key);
+        return actual != null && operations.keyExists(actual);
+    }
+
+    /**
+     * 删除一个数据
+     */
+    public boolean delete(String key) {
+        String actual = key(key);
+        return actual != null && operations.delete(actual);
+    }
+
+    /**
+     * 存储一个数据
+     */
+    public boolean set(String key, Object value, long expired) {
+        String actual = key(key);
+        return actual != null && operations.set(actual, value, expired);
+    }
+
+    /**
+     * 添加一个数据，已存在时返回 false
+     */
+    public boolean add(String key, Object value, long expired) {
+        String actual = key(key);
+        return actual != null && operations.add(actual, value, expired);
+    }
+
+    /**
+     * 替换一个数据，不存在时返回 false
+     */
+    public boolean replace(String key, Object value, long expired) {
+        String actual = key(key);
+        return actual != null && operations.replace(actual, value, expired);
+    }
+
+    /**
+     * 获取一个数据
+     * @return 未命中或服务器不可用时返回 null
+     */
+    public Object get(String key) {
+        String actual = key(key);
+        return actual == null ? null : operations.get(actual);
+    }
+
+    /**
+     * 批量获取数据
+     * @return 以原始 key 为键的命中结果
+     */
+    public Map<String, Object> getMulti(String[] keys) {
+        long value = generation();
+        if(value < 0) return new HashMap<>();
+
+        String[] actual = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) actual[i] = key(value, keys[i]);
+
+        Map<String, Object> values = operations.getMulti(actual);
+        Map<String, Object> result = new HashMap<>((int) (keys.length / 0.75f) + 1);
+        if(values == null) return result;
+        for (int i = 0; i < keys.length; i++) {
+            Object cached = values.get(actual[i]);
+            if(cached != null) result.put(keys[i], cached);
+        }
+        return result;
+    }
+
+    /**
+     * 计数器递增，不存在时创建
+     * @return 服务器不可用时返回 -1
+     */
+    public long addOrIncr(String key, long incr) {
+        String actual = key(key);
+        return actual == null ? -1 : operations.addOrIncr(actual, incr);
+    }
+
+    /**
+     * 计数器递增
+     * @return 不存在或服务器不可用时返回 -1
+     */
+    public long incr(String key, long value) {
+        String actual = key(key);
+        return actual == null ? -1 : operations.incr(actual, value);
+    }
+
+    /**
+     * 计数器递减
+     * @return 不存在或服务器不可用时返回 -1
+     */
+    public long decr(String key, long value) {
+        String actual = key(key);
+        return actual == null ? -1 : operations.decr(actual, value);
+    }
+
+    private String key(long generation, String key) {
+        return namespace + ':' + generation + ':' + key;
+    }
+
+    private static final class Generation {
+        private final long value;
+        private final long expiresAt;
+
+        private Generation(long value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.lizhibao.toolbox.memcached.nearcache;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedDecoder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 堆外近端缓存(L1)，保存服务器返回的原始 flags 和数据，读取时再按 MemCachedClient 的规则解码，
+ * 缓存的数据量再大也不会增加 GC 的负担。
+ * 数据按段加锁，每段由若干块直接内存(slab)组成环形日志，新数据追加写入当前 slab，写满后复用最旧的 slab：
+ * 其中最近被访问过的数据(访问计数大于 0)压缩到 slab 头部继续保留，计数减半，其余数据淘汰，近似 LRU/LFU。
+ * 索引为开放寻址哈希表(线性探测)，只保存 key 的 64 位哈希和数据地址，不为每个条目创建对象。
+ * 本实例通过 MemcachedTemplate 写入或删除时会同步失效本地数据，其他实例的修改最多延迟 nearCacheTtl 可见。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedNearCache {
+    private static final int SEGMENTS = 16;
+    private static final int MIN_SLAB_SIZE = 64 * 1024;
+    private static final int MAX_SLAB_SIZE = 4 * 1024 * 1024;
+    private static final int MIN_SLABS = 4;
+    /**
+     * 条目头: 哈希(8) 过期时间(8) flags(4) 数据长度(4) key 长度(2) 访问计数(1) 保留(1)
+     */
+    private static final int HEADER = 28;
+    private static final int MAX_FREQUENCY = 15;
+
+    private final MemcachedConnectionPool pool;
+    private final MemcachedDecoder decoder;
+    private final long ttl;
+    private final int slabSize;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public MemcachedNearCache(MemcachedConfig config, MemcachedConnectionPool pool, MemcachedDecoder decoder) {
+        long capacity = config.getNearCacheCapacity();
+        if(capacity <= 0) throw new IllegalArgumentException("Invalid near cache capacity: " + capacity);
+
+        long perSegment = capacity / SEGMENTS;
+        this.slabSize = (int) Math.max(MIN_SLAB_SIZE, Math.min(MAX_SLAB_SIZE, perSegment / MIN_SLABS));
+        int slabs = (int) Math.max(MIN_SLABS, perSegment / slabSize);
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(slabs, slabSize);
+
+        this.pool = pool;
+        this.decoder = decoder;
+        this.ttl = config.getNearCacheTtl() == null || config.getNearCacheTtl() <= 0 ? 1000L : config.getNearCacheTtl();
+    }
+
+    /**
+     * 读取并解码数据，本地不存在时从服务器读取原始数据保存到本地
+     * @param key 缓存key
+     * @return 不存在或读取失败时返回 null
+     */
+    public Object get(String key) {
+        long hash = hash(key);
+        Segment segment = segment(hash);
+        Entry entry = segment.get(hash, key, System.currentTimeMillis());
+        if(entry != null) {
+            hits.increment();
+            return decode(key, entry.flags, entry.value);
+        }
+
+        misses.increment();
+        long version = segment.version;
+        entry = load(key);
+        if(entry == null) return null;
+
+        segment.put(hash, key, entry.flags, entry.value, System.currentTimeMillis() + ttl, version);
+        return decode(key, entry.flags, entry.value);
+    }
+
+    /**
+     * 失效本地数据，本实例修改服务器上的数据时调用
+     * @param key 缓存key
+     */
+    public void invalidate(String key) {
+        long hash = hash(key);
+        segment(hash).remove(hash, key);
+    }
+
+    /**
+     * 清空本地数据，已分配的直接内存保留复用
+     */
+    public void clear() {
+        for (Segment segment : segments) segment.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 本地条目数
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) size += segment.count;
+        return size;
+    }
+
+    /**
+     * @return 已分配的直接内存字节数
+     */
+    public long memory() {
+        long memory = 0;
+        for (Segment segment : segments) memory += (long) segment.allocated * slabSize;
+        return memory;
+    }
+
+    private Segment segment(long hash) {
+        return segments[(int) (hash >>> 60)];
+    }
+
+    private Entry load(String key) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("get ").writeAscii(wireKey).writeCrlf().flush();
+
+            long header = connection.readValueHeader();
+            if(header < 0) return null;
+
+            byte[] value = new byte[(int) header];
+            connection.readFully(value, 0, value.length);
+            connection.readCrlf();
+            if(connection.readValueHeader() >= 0) throw new IOException("Unexpected VALUE after " + key);
+            return new Entry((int) (header >>> 32), value);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => near cache load {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return null;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private Object decode(String key, int flags, byte[] value) {
+        try {
+            return decoder.decode(flags, value);
+        } catch (Exception e) {
+            log.warn("{} => near cache decode {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return null;
+        }
+    }
+
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static final class Entry {
+        private final int flags;
+        private final byte[] value;
+
+        private Entry(int flags, byte[] value) {
+            this.flags = flags;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 一段数据，所有字段只在持有 lock 时访问(count、version 允许无锁读取近似值)
+     */
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ByteBuffer[] slabs;
+        /**
+         * 每个 slab 已写入数据的末尾位置
+         */
+        private final int[] limits;
+        private final int slabSize;
+        private final byte[] scratch = new byte[4096];
+        private int head;
+        private int allocated;
+        /**
+         * 索引: 地址为 0 表示空槽，否则为 (slab + 1) << 32 | offset
+         */
+        private long[] hashes = new long[1024];
+        private long[] addresses = new long[1024];
+        private volatile int count;
+        /**
+         * 每次失效递增，从服务器加载期间发生过失效时不保存加载到的旧数据
+         */
+        private volatile long version;
+
+        private Segment(int slabCount, int slabSize) {
+            this.slabs = new ByteBuffer[slabCount];
+            this.limits = new int[slabCount];
+            this.slabSize = slabSize;
+        }
+
+        private Entry get(long hash, String key, long now) {
+            lock.lock();
+            try {
+                int slot = find(hash, key);
+                if(slot < 0) return null;
+
+                ByteBuffer slab = slab(addresses[slot]);
+                int offset = offset(addresses[slot]);
+                if(slab.getLong(offset + 8) < now) {
+                    removeSlot(slot);
+                    return null;
+                }
+
+                int frequency = slab.get(offset + 26);
+                if(frequency < MAX_FREQUENCY) slab.put(offset + 26, (byte) (frequency + 1));
+
+                byte[] value = new byte[slab.getInt(offset + 20)];
+                ByteBuffer source = slab.duplicate();
+                source.position(offset + HEADER + key.length() * 2);
+                source.get(value);
+                return new Entry(slab.getInt(offset + 16), value);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void put(long hash, String key, int flags, byte[] value, long expireAt, long expectedVersion) {
+            int size = HEADER + key.length() * 2 + value.length;
+            lock.lock();
+            try {
+                if(version != expectedVersion) return;
+
+                int slot = find(hash, key);
+                if(slot >= 0) removeSlot(slot);
+                // 超过 slab 一半的数据不缓存，保证压缩后总有空间写入
+                if(size > slabSize / 2 || key.length() > Short.MAX_VALUE) return;
+
+                if(slabs[head] == null) allocate(head);
+                if(limits[head] + size > slabSize) advance();
+
+                ByteBuffer slab = slabs[head];
+                int offset = limits[head];
+                slab.putLong(offset, hash);
+                slab.putLong(offset + 8, expireAt);
+                slab.putInt(offset + 16, flags);
+                slab.putInt(offset + 20, value.length);
+                slab.putShort(offset + 24, (short) key.length());
+                slab.put(offset + 26, (byte) 0);
+                slab.put(offset + 27, (byte) 0);
+                for (int i = 0; i < key.length(); i++) slab.putChar(offset + HEADER + i * 2, key.charAt(i));
+                ByteBuffer target = slab.duplicate();
+                target.position(offset + HEADER + key.length() * 2);
+                target.put(value);
+                limits[head] = offset + size;
+
+                insert(hash, ((long) (head + 1) << 32) | offset);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void remove(long hash, String key) {
+            lock.lock();
+            try {
+                version++;
+                int slot = find(hash, key);
+                if(slot >= 0) removeSlot(slot);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                version++;
+                Arrays.fill(addresses, 0L);
+                Arrays.fill(limits, 0);
+                this.count = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void allocate(int index) {
+            slabs[index] = ByteBuffer.allocateDirect(slabSize);
+            limits[index] = 0;
+            allocated++;
+        }
+
+        /**
+         * 切换到下一个 slab，已分配过的 slab 先压缩：保留最近访问过的数据，其余淘汰
+         */
+        private void advance() {
+            int next = (head + 1) % slabs.length;
+            if(slabs[next] == null) {
+                allocate(next);
+                this.head = next;
+                return;
+            }
+
+            ByteBuffer slab = slabs[next];
+            long now = System.currentTimeMillis();
+            int end = limits[next];
+            int write = 0;
+            int read = 0;
+            while (read < end) {
+                long hash = slab.getLong(read);
+                int size = HEADER + slab.getShort(read + 24) * 2 + slab.getInt(read + 20);
+                int slot = slotOf(hash, ((long) (next + 1) << 32) | read);
+                if(slot >= 0) {
+                    int frequency = slab.get(read + 26);
+                    if(frequency > 0 && slab.getLong(read + 8) >= now && write + size <= slabSize / 2) {
+                        move(slab, read, write, size);
+                        slab.put(write + 26, (byte) (frequency >> 1));
+                        addresses[slot] = ((long) (next + 1) << 32) | write;
+                        write += size;
+                    } else {
+                        removeSlot(slot);
+                    }
+                }
+                read += size;
+            }
+            limits[next] = write;
+            this.head = next;
+        }
+
+        /**
+         * 在同一个 slab 内向前移动数据，to 不大于 from，按块顺序拷贝不会覆盖未读取的数据
+         */
+        private void move(ByteBuffer slab, int from, int to, int size) {
+            if(from == to) return;
+            ByteBuffer source = slab.duplicate();
+            ByteBuffer target = slab.duplicate();
+            target.position(to);
+            for (int done = 0; done < size; ) {
+                int length = Math.min(scratch.length, size - done);
+                source.position(from + done);
+                source.get(scratch, 0, length);
+                target.put(scratch, 0, length);
+                done += length;
+            }
+        }
+
+        private int find(long hash, String key) {
+            int mask = addresses.length - 1;
+            for (int slot = (int) hash & mask; addresses[slot] != 0; slot = (slot + 1) & mask) {
+                if(hashes[slot] == hash && keyEquals(addresses[slot], key)) return slot;
+            }
+            return -1;
+        }
+
+        private int slotOf(long hash, long address) {
+            int mask = addresses.length - 1;
+            for (int slot = (int) hash & mask; addresses[slot] != 0; slot = (slot + 1) & mask) {
+                if(addresses[slot] == address) return slot;
+            }
+            return -1;
+        }
+
+        private boolean keyEquals(long address, String key) {
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            if(slab.getShort(offset + 24) != key.length()) return false;
+            for (int i = 0; i < key.length(); i++) {
+                if(slab.getChar(offset + HEADER + i * 2) != key.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private void insert(long hash, long address) {
+            if((count + 1) * 2 > addresses.length) resize();
+
+            int mask = addresses.length - 1;
+            int slot = (int) hash & mask;
+            while (addresses[slot] != 0) slot = (slot + 1) & mask;
+            hashes[slot] = hash;
+            addresses[slot] = address;
+            count++;
+        }
+
+        /**
+         * 线性探测的删除：把后续同一探测链上的条目前移填补空位，不使用墓碑
+         */
+        private void removeSlot(int slot) {
+            int mask = addresses.length - 1;
+            int hole = slot;
+            for (int i = (slot + 1) & mask; addresses[i] != 0; i = (i + 1) & mask) {
+                int ideal = (int) hashes[i] & mask;
+                if(((i - ideal) & mask) >= ((i - hole) & mask)) {
+                    hashes[hole] = hashes[i];
+                    addresses[hole] = addresses[i];
+                    hole = i;
+                }
+            }
+            addresses[hole] = 0;
+            count--;
+        }
+
+        private void resize() {
+            long[] oldHashes = hashes;
+            long[] oldAddresses = addresses;
+            this.hashes = new long[oldHashes.length * 2];
+            this.addresses = new long[oldAddresses.length * 2];
+            int mask = addresses.length - 1;
+            for (int i = 0; i < oldAddresses.length; i++) {
+                if(oldAddresses[i] == 0) continue;
+                int slot = (int) oldHashes[i] & mask;
+                while (addresses[slot] != 0) slot = (slot + 1) & mask;
+                hashes[slot] = oldHashes[i];
+                addresses[slot] = oldAddresses[i];
+            }
+        }
+
+        private ByteBuffer slab(long address) {
+            return slabs[(int) (address >>> 32) - 1];
+        }
+
+        private static int offset(long address) {
+            return (int) address;
+        }
+    }
+}
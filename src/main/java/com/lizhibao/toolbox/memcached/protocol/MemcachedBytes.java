@@ -0,0 +1,143 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.danga.MemCached.MemCachedClient;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接通过协议读写原始字节，不经过 TransCoder 的序列化/反序列化，适用于已经序列化好的数据(protobuf、JSON 等)。
+ * 写入时 flags 与 MemCachedClient 存储 byte[] 时相同，可以继续通过 get 读取为 byte[]；
+ * 读取时原样返回服务器上的数据，不做任何解码(包括 MemCachedClient 压缩过的数据)。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public final class MemcachedBytes {
+    private static final byte[] STORED = "STORED".getBytes(StandardCharsets.US_ASCII);
+
+    private MemcachedBytes() {
+    }
+
+    /**
+     * 读取原始字节
+     * @param pool 连接池
+     * @param key 缓存key
+     * @return 不存在或读取失败时返回 null
+     */
+    public static byte[] get(MemcachedConnectionPool pool, String key) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("get ").writeAscii(wireKey).writeCrlf().flush();
+
+            long header = connection.readValueHeader();
+            if(header < 0) return null;
+
+            byte[] value = new byte[(int) header];
+            connection.readFully(value, 0, value.length);
+            connection.readCrlf();
+            if(connection.readValueHeader() >= 0) throw new IOException("Unexpected VALUE after " + key);
+            return value;
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => get {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return null;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * 读取原始字节到调用方提供的缓冲区，数据从连接的读缓冲区直接写入 dst。
+     * dst 剩余空间不足时不写入任何数据，position 保持不变，调用方可按返回的长度重新分配后再次读取
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param dst 目标缓冲区
+     * @return 数据长度；不存在或读取失败时返回 -1
+     */
+    public static int get(MemcachedConnectionPool pool, String key, ByteBuffer dst) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("get ").writeAscii(wireKey).writeCrlf().flush();
+
+            long header = connection.readValueHeader();
+            if(header < 0) return -1;
+
+            int length = (int) header;
+            if(length <= dst.remaining()) connection.readFully(dst, length);
+            else connection.skip(length);
+            connection.readCrlf();
+            if(connection.readValueHeader() >= 0) throw new IOException("Unexpected VALUE after " + key);
+            return length;
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => get {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return -1;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * 存储原始字节
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param value 数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致
+     * @return true / false
+     */
+    public static boolean set(MemcachedConnectionPool pool, String key, byte[] value, int offset, int length, long expired) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            writeHeader(connection, wireKey, length, expired).write(value, offset, length).writeCrlf().flush();
+            return connection.readLineEquals(STORED);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => set {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return false;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * 存储 ByteBuffer 的剩余内容，较大的数据(包括直接内存)直接写入 socket，不拷贝到堆内；value 的 position 不变
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致
+     * @return true / false
+     */
+    public static boolean set(MemcachedConnectionPool pool, String key, ByteBuffer value, long expired) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            writeHeader(connection, wireKey, value.remaining(), expired).write(value.duplicate()).writeCrlf().flush();
+            return connection.readLineEquals(STORED);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => set {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return false;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private static MemcachedConnection writeHeader(MemcachedConnection connection, String wireKey, int length, long expired) throws IOException {
+        return connection.writeAscii("set ").writeAscii(wireKey).write((byte) ' ')
+                .writeDecimal(MemCachedClient.MARKER_BYTEARR).write((byte) ' ')
+                .writeDecimal(expired / 1000).write((byte) ' ')
+                .writeDecimal(length).writeCrlf();
+    }
+}
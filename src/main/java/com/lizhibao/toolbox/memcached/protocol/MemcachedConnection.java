@@ -0,0 +1,415 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基于阻塞 SocketChannel 的 memcached 文本协议连接。
+ * 写入走 SocketChannel，ByteBuffer（包括内存映射文件的切片）可以直接写入 socket 而不经过堆内拷贝；
+ * 读取走 socket 适配的输入流，以便 soTimeout 生效。
+ * 一个连接同一时间只允许一个线程使用，由 {@link MemcachedConnectionPool} 负责借出和归还。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedConnection implements Closeable {
+    static final byte[] CRLF = {'\r', '\n'};
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final String host;
+    private final SocketChannel channel;
+    private final InputStream input;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private final byte[] digits = new byte[20];
+    /**
+     * 最近一次 {@link #readValueHeader()} 读到的 key 和 cas
+     */
+    private final byte[] valueKey = new byte[MemcachedKeys.MAX_KEY_LENGTH];
+    private int valueKeyLength;
+    private long valueCas;
+    private int readPosition;
+    private int readLimit;
+    private int readTimeout;
+    private boolean broken;
+    private long lastUsed = System.currentTimeMillis();
+    private MemcachedSizeSampler sizeSampler;
+    /**
+     * 本次调用的截止时间，0 表示只受 readTimeout 限制
+     */
+    private long deadline;
+
+    /**
+     * 建立连接
+     * @param host 服务器地址，格式为 host:port
+     * @param connectTimeout 建立连接的超时时间(毫秒)
+     * @param readTimeout 阻塞读取的超时时间(毫秒)
+     * @param nagle 与 danga 客户端一致，该值直接作为 TCP_NODELAY 使用
+     */
+    public MemcachedConnection(String host, int connectTimeout, int readTimeout, boolean nagle) throws IOException {
+        this.host = host;
+        this.readTimeout = readTimeout;
+        this.channel = SocketChannel.open();
+        try {
+            channel.socket().setTcpNoDelay(nagle);
+            channel.socket().setKeepAlive(true);
+            channel.socket().connect(toAddress(host), connectTimeout);
+            channel.socket().setSoTimeout(readTimeout);
+            this.input = channel.socket().getInputStream();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * 设置数据大小抽样，抽样开启时 {@link #readValueHeader()} 读到的每个 VALUE 都会被记录
+     */
+    public void setSizeSampler(MemcachedSizeSampler sizeSampler) {
+        this.sizeSampler = sizeSampler;
+    }
+
+    /**
+     * 连接在读写过程中出错后，响应流已经无法对齐，必须标记为损坏并关闭
+     */
+    public void markBroken() {
+        this.broken = true;
+    }
+
+    public boolean isBroken() {
+        return broken || !channel.isOpen();
+    }
+
+    /**
+     * 调整本次调用的读取超时时间
+     * @param timeout 超时时间(毫秒)，0 表示不超时
+     */
+    public void setReadTimeout(int timeout) throws IOException {
+        if(timeout == readTimeout) return;
+        channel.socket().setSoTimeout(timeout);
+        this.readTimeout = timeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * 设置本次调用的截止时间，之后每次阻塞读取的超时时间为剩余时间，到期后抛出 SocketTimeoutException
+     * @param deadline 截止时间(System.nanoTime)，见 {@link MemcachedDeadline}；0 表示取消
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public MemcachedConnection write(byte b) throws IOException {
+        if(!writeBuffer.hasRemaining()) flushBuffer();
+        writeBuffer.put(b);
+        return this;
+    }
+
+    public MemcachedConnection write(byte[] src) throws IOException {
+        return this.write(src, 0, src.length);
+    }
+
+    public MemcachedConnection write(byte[] src, int offset, int length) throws IOException {
+        if(length > writeBuffer.remaining()) flushBuffer();
+        if(length > writeBuffer.capacity()) {
+            writeFully(ByteBuffer.wrap(src, offset, length));
+        } else {
+            writeBuffer.put(src, offset, length);
+        }
+        return this;
+    }
+
+    /**
+     * 写入 ByteBuffer 的剩余内容，较大的数据直接写入 socket 而不拷贝到写缓冲区
+     * @param src 数据，写入后 position 移动到 limit
+     */
+    public MemcachedConnection write(ByteBuffer src) throws IOException {
+        if(src.remaining() <= writeBuffer.remaining()) {
+            writeBuffer.put(src);
+            return this;
+        }
+        flushBuffer();
+        if(src.remaining() <= writeBuffer.capacity() / 4) {
+            writeBuffer.put(src);
+        } else {
+            writeFully(src);
+        }
+        return this;
+    }
+
+    /**
+     * 写入 ASCII 字符串（命令名、key 等），不分配临时数组
+     */
+    public MemcachedConnection writeAscii(CharSequence value) throws IOException {
+        for (int i = 0, len = value.length(); i < len; i++) {
+            if(!writeBuffer.hasRemaining()) flushBuffer();
+            writeBuffer.put((byte) value.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * 以十进制文本写入数值，不分配临时字符串
+     */
+    public MemcachedConnection writeDecimal(long value) throws IOException {
+        if(value == 0) return this.write((byte) '0');
+        if(value < 0) {
+            this.write((byte) '-');
+            if(value == Long.MIN_VALUE) return this.writeAscii("9223372036854775808");
+            value = -value;
+        }
+        int pos = digits.length;
+        while (value > 0) {
+            digits[--pos] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        return this.write(digits, pos, digits.length - pos);
+    }
+
+    public MemcachedConnection writeCrlf() throws IOException {
+        return this.write(CRLF, 0, CRLF.length);
+    }
+
+    /**
+     * 将写缓冲区中的数据全部发送出去
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * 读取一行响应（不包含结尾的 \r\n）
+     * @return String
+     */
+    public String readLine() throws IOException {
+        StringBuilder builder = null;
+        while (true) {
+            if(readPosition >= readLimit) fill();
+            for (int i = readPosition; i < readLimit; i++) {
+                if(readBuffer[i] != '\n') continue;
+
+                int end = i > readPosition && readBuffer[i - 1] == '\r' ? i - 1 : i;
+                String part = new String(readBuffer, readPosition, end - readPosition, StandardCharsets.ISO_8859_1);
+                readPosition = i + 1;
+                if(builder == null) return part;
+
+                builder.append(part);
+                int length = builder.length();
+                if(end == i && length > 0 && builder.charAt(length - 1) == '\r') builder.setLength(length - 1);
+                return builder.toString();
+            }
+            if(builder == null) builder = new StringBuilder(128);
+            builder.append(new String(readBuffer, readPosition, readLimit - readPosition, StandardCharsets.ISO_8859_1));
+            readPosition = readLimit;
+        }
+    }
+
+    /**
+     * 读取一个字节
+     */
+    public int readByte() throws IOException {
+        if(readPosition >= readLimit) fill();
+        return readBuffer[readPosition++] & 0xFF;
+    }
+
+    /**
+     * 不分配对象地读取 get/gets 的一行响应头：VALUE &lt;key&gt; &lt;flags&gt; &lt;bytes&gt; [&lt;cas&gt;] 或 END。
+     * key 和 cas 保存在连接中，通过 {@link #valueKeyEquals(String)}、{@link #getValueCas()} 获取
+     * @return END 时返回 -1，否则高 32 位为 flags，低 32 位为数据长度
+     */
+    public long readValueHeader() throws IOException {
+        int first = readByte();
+        if(first == 'E') {
+            int second = readByte();
+            if(second != 'N') throw new IOException("Unexpected response from " + host + ": E" + (char) second + readLine());
+            if(readByte() != 'D') throw new IOException("Malformed response from " + host);
+            expectCrlf();
+            return -1;
+        }
+        if(first != 'V' || readByte() != 'A' || readByte() != 'L' || readByte() != 'U' || readByte() != 'E' || readByte() != ' ') {
+            throw new IOException("Unexpected response from " + host + ": " + (char) first + readLine());
+        }
+
+        int length = 0;
+        int b;
+        while ((b = readByte()) != ' ') {
+            if(length < valueKey.length) valueKey[length] = (byte) b;
+            length++;
+        }
+        this.valueKeyLength = length;
+
+        long flags = 0;
+        while ((b = readByte()) != ' ') flags = flags * 10 + (b - '0');
+        long bytes = 0;
+        while ((b = readByte()) >= '0' && b <= '9') bytes = bytes * 10 + (b - '0');
+        long cas = 0;
+        if(b == ' ') {
+            while ((b = readByte()) >= '0' && b <= '9') cas = cas * 10 + (b - '0');
+        }
+        this.valueCas = cas;
+        if(b != '\r' || readByte() != '\n') throw new IOException("Malformed VALUE line from " + host);
+        if(sizeSampler != null && sizeSampler.isEnabled()) sizeSampler.record(length, bytes);
+        return (flags << 32) | bytes;
+    }
+
+    /**
+     * 读取一行响应并判断是否与指定的内容相同，不分配对象
+     * @param expected 期望的响应，例如 STORED
+     * @return true / false
+     */
+    public boolean readLineEquals(byte[] expected) throws IOException {
+        boolean equals = true;
+        int index = 0;
+        int b;
+        while ((b = readByte()) != '\n') {
+            if(b == '\r') continue;
+            if(index >= expected.length || expected[index] != (byte) b) equals = false;
+            index++;
+        }
+        return equals && index == expected.length;
+    }
+
+    /**
+     * 最近一次读到的 VALUE 的 key 是否与指定的 key 相同
+     */
+    public boolean valueKeyEquals(String key) {
+        int length = key.length();
+        if(length != valueKeyLength || length > valueKey.length) return false;
+        for (int i = 0; i < length; i++) {
+            if((valueKey[i] & 0xFF) != key.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 最近一次 gets 读到的 cas，get 时为 0
+     */
+    public long getValueCas() {
+        return valueCas;
+    }
+
+    /**
+     * 读取指定长度的数据到数组中
+     */
+    public void readFully(byte[] dst, int offset, int length) throws IOException {
+        int buffered = Math.min(length, readLimit - readPosition);
+        if(buffered > 0) {
+            System.arraycopy(readBuffer, readPosition, dst, offset, buffered);
+            readPosition += buffered;
+            offset += buffered;
+            length -= buffered;
+        }
+        while (length > 0) {
+            awaitDeadline();
+            int n = input.read(dst, offset, length);
+            if(n < 0) throw new EOFException("Connection closed by " + host);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 读取指定长度的数据到 ByteBuffer 中
+     */
+    public void readFully(ByteBuffer dst, int length) throws IOException {
+        while (length > 0) {
+            if(readPosition >= readLimit) fill();
+            int n = Math.min(length, readLimit - readPosition);
+            dst.put(readBuffer, readPosition, n);
+            readPosition += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 跳过指定长度的数据
+     */
+    public void skip(long length) throws IOException {
+        while (length > 0) {
+            if(readPosition >= readLimit) fill();
+            int n = (int) Math.min(length, readLimit - readPosition);
+            readPosition += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 读取数据块之后的 \r\n
+     */
+    public void readCrlf() throws IOException {
+        skip(CRLF.length);
+    }
+
+    private void expectCrlf() throws IOException {
+        if(readByte() != '\r' || readByte() != '\n') throw new IOException("Malformed response from " + host);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 关闭失败不影响后续使用
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MemcachedConnection(" + host + ")";
+    }
+
+    private void fill() throws IOException {
+        awaitDeadline();
+        int n = input.read(readBuffer, 0, readBuffer.length);
+        if(n < 0) throw new EOFException("Connection closed by " + host);
+        readPosition = 0;
+        readLimit = n;
+    }
+
+    private void awaitDeadline() throws IOException {
+        if(deadline == 0) return;
+
+        long remaining = MemcachedDeadline.remaining(deadline);
+        if(remaining <= 0) throw new SocketTimeoutException("Deadline exceeded when reading from " + host);
+        setReadTimeout((int) Math.min(Integer.MAX_VALUE, remaining));
+    }
+
+    private void flushBuffer() throws IOException {
+        writeBuffer.flip();
+        try {
+            writeFully(writeBuffer);
+        } finally {
+            writeBuffer.clear();
+        }
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) channel.write(src);
+    }
+
+    static InetSocketAddress toAddress(String host) {
+        int index = host.lastIndexOf(':');
+        if(index < 0) return new InetSocketAddress(host, 11211);
+        return new InetSocketAddress(host.substring(0, index), Integer.parseInt(host.substring(index + 1).trim()));
+    }
+}
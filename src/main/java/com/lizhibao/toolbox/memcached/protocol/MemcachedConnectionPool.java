@@ -0,0 +1,300 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 直连 memcached 协议的连接池，每个缓存名称(name)一个，按服务器分别缓存空闲连接。
+ * 与 danga 的 SockIOPool 相互独立，用于批量预热、导出等需要流水线(pipeline)读写的场景。
+ * 连接在首次使用时才会建立，空闲超过 maxIdle 毫秒的连接在借出或归还时关闭。
+ * 开启 virtualThreadFriendly 时每台服务器借出的连接数不超过 maxConn，用完后借出方通过 ReentrantLock 的 Condition 等待归还，
+ * 不使用 synchronized，虚拟线程等待期间可以让出载体线程。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedConnectionPool implements Closeable {
+    private final MemcachedConfig config;
+    private final MemcachedLocator locator;
+    private final Map<String, HostPool> hosts = new ConcurrentHashMap<>();
+    private final MemcachedSizeSampler sizeSampler = new MemcachedSizeSampler();
+    /**
+     * 是否限制每台服务器借出的连接数，见 {@link MemcachedConfig#getVirtualThreadFriendly()}
+     */
+    private final boolean bounded;
+    private volatile boolean closed;
+
+    public MemcachedConnectionPool(MemcachedConfig config) {
+        this.config = config;
+        this.bounded = Boolean.TRUE.equals(config.getVirtualThreadFriendly());
+        this.sizeSampler.setEnabled(Boolean.TRUE.equals(config.getSizeSampling()));
+        String[] servers = Arrays.stream(config.getServers().split(",")).map(String::trim).toArray(String[]::new);
+        Integer[] weights = Arrays.stream(config.getWeights().split(",")).map(String::trim).map(Integer::parseInt).toArray(Integer[]::new);
+        this.locator = new MemcachedLocator(servers, weights, config.getHashingAlg());
+        for (String server : servers) hosts.put(server, new HostPool());
+    }
+
+    public MemcachedConfig getConfig() {
+        return config;
+    }
+
+    public MemcachedLocator getLocator() {
+        return locator;
+    }
+
+    /**
+     * 通过该连接池读取到的数据大小抽样
+     */
+    public MemcachedSizeSampler getSizeSampler() {
+        return sizeSampler;
+    }
+
+    public String[] getServers() {
+        return locator.getServers();
+    }
+
+    /**
+     * 获取 key 所在的服务器
+     * @param key 缓存key
+     * @return host:port
+     */
+    public String locate(String key) {
+        return locator.locate(key);
+    }
+
+    /**
+     * 按照 MemCachedClient 相同的规则转换 key：开启 key 清理(enableKeyStrictMode 为空或 true)时进行 URL 编码，
+     * 无需编码的 key 原样返回，见 {@link MemcachedKeys}
+     * @param key 缓存key
+     * @return 实际发送给服务器的 key
+     */
+    public String encodeKey(String key) {
+        return MemcachedKeys.encode(key, !Boolean.FALSE.equals(config.getEnableKeyStrictMode()));
+    }
+
+    /**
+     * 借出一个到指定服务器的连接，没有空闲连接时新建
+     * @param host 服务器地址
+     * @return MemcachedConnection
+     */
+    public MemcachedConnection borrow(String host) throws IOException {
+        return this.borrow(host, MemcachedDeadline.current());
+    }
+
+    /**
+     * 借出一个到指定服务器的连接，连接的读取受截止时间限制，归还时取消。
+     * 限制借出连接数时，借出数达到 maxConn 后最多等待 socketConnectTimeout(或截止时间的剩余时间)，超时抛出 SocketTimeoutException
+     * @param host 服务器地址
+     * @param deadline 截止时间，见 {@link MemcachedDeadline}；0 表示只受 socketTimeout 限制
+     * @return MemcachedConnection
+     */
+    public MemcachedConnection borrow(String host, long deadline) throws IOException {
+        if(closed) throw new IOException("Connection pool " + config.getName() + " is closed");
+
+        int connectTimeout = config.getSocketConnectTimeout();
+        if(deadline != 0) {
+            long remaining = MemcachedDeadline.remaining(deadline);
+            if(remaining <= 0) throw new SocketTimeoutException("Deadline exceeded before sending to " + host);
+            connectTimeout = (int) Math.min(connectTimeout <= 0 ? Integer.MAX_VALUE : connectTimeout, remaining);
+        }
+
+        HostPool pool = hosts.computeIfAbsent(host, h -> new HostPool());
+        if(bounded) {
+            acquire(pool, host, connectTimeout);
+        } else {
+            pool.activeCount.incrementAndGet();
+        }
+
+        try {
+            MemcachedConnection connection;
+            long now = System.currentTimeMillis();
+            while ((connection = pool.idle.pollFirst()) != null) {
+                pool.idleCount.decrementAndGet();
+                if(!connection.isBroken() && !idleTooLong(connection, now)) {
+                    connection.setDeadline(deadline);
+                    return connection;
+                }
+                connection.close();
+            }
+
+            if(log.isDebugEnabled()) log.debug("{} => open connection to {}", config.getName(), host);
+            connection = new MemcachedConnection(host, connectTimeout, config.getSocketTimeout(), config.getNagle());
+            connection.setSizeSampler(sizeSampler);
+            connection.setDeadline(deadline);
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            pool.activeCount.decrementAndGet();
+            if(bounded) pool.signal();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还连接，损坏的连接或超出空闲上限的连接直接关闭，同时关闭空闲超过 maxIdle 的连接
+     * @param connection 连接
+     */
+    public void release(MemcachedConnection connection) {
+        if(connection == null) return;
+
+        HostPool pool = hosts.get(connection.getHost());
+        if(pool == null) {
+            connection.close();
+            return;
+        }
+
+        try {
+            if(closed || connection.isBroken() || pool.idleCount.get() >= config.getMaxConn()) {
+                connection.close();
+                return;
+            }
+
+            try {
+                connection.setDeadline(0);
+                connection.setReadTimeout(config.getSocketTimeout());
+            } catch (IOException e) {
+                connection.close();
+                return;
+            }
+            pool.idleCount.incrementAndGet();
+            pool.idle.offerFirst(connection);
+            evictIdle(pool);
+        } finally {
+            // 先放回空闲队列再唤醒，等待的线程可以直接复用这个连接
+            pool.activeCount.decrementAndGet();
+            if(bounded) pool.signal();
+        }
+    }
+
+    /**
+     * 到指定服务器的空闲连接数
+     */
+    public int getIdleCount(String host) {
+        HostPool pool = hosts.get(host);
+        return pool == null ? 0 : pool.idleCount.get();
+    }
+
+    /**
+     * 到指定服务器已借出未归还的连接数
+     */
+    public int getActiveCount(String host) {
+        HostPool pool = hosts.get(host);
+        return pool == null ? 0 : pool.activeCount.get();
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        for (HostPool pool : hosts.values()) {
+            MemcachedConnection connection;
+            while ((connection = pool.idle.pollFirst()) != null) {
+                pool.idleCount.decrementAndGet();
+                connection.close();
+            }
+            if(bounded) pool.signalAll();
+        }
+    }
+
+    /**
+     * 空闲队列按归还顺序排列，最久未使用的连接在队尾，从队尾关闭空闲超过 maxIdle 的连接
+     */
+    private void evictIdle(HostPool pool) {
+        long now = System.currentTimeMillis();
+        MemcachedConnection oldest;
+        while ((oldest = pool.idle.peekLast()) != null && idleTooLong(oldest, now)) {
+            // 期间可能已经被其他线程借出
+            if(!pool.idle.removeLastOccurrence(oldest)) continue;
+            pool.idleCount.decrementAndGet();
+            oldest.close();
+        }
+    }
+
+    private boolean idleTooLong(MemcachedConnection connection, long now) {
+        Integer maxIdle = config.getMaxIdle();
+        return maxIdle != null && maxIdle > 0 && now - connection.getLastUsed() > maxIdle;
+    }
+
+    /**
+     * 占用一个借出名额，名额用完时等待归还
+     * @param pool 服务器的连接池
+     * @param host 服务器地址
+     * @param timeout 最长等待时间(毫秒)，0 表示不限
+     */
+    private void acquire(HostPool pool, String host, int timeout) throws IOException {
+        long remaining = timeout <= 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(timeout);
+        pool.lock.lock();
+        try {
+            // 已有线程在等待时排在它们之后，避免刚归还的连接总被新来的线程抢走
+            if(pool.waiters == 0 && pool.activeCount.get() < config.getMaxConn()) {
+                pool.activeCount.incrementAndGet();
+                return;
+            }
+
+            pool.waiters++;
+            try {
+                do {
+                    if(closed) throw new IOException("Connection pool " + config.getName() + " is closed");
+                    if(remaining <= 0) {
+                        throw new SocketTimeoutException("No connection to " + host + " available in " + timeout + "ms, maxConn = " + config.getMaxConn());
+                    }
+                    remaining = pool.available.awaitNanos(remaining);
+                } while (pool.activeCount.get() >= config.getMaxConn());
+                pool.activeCount.incrementAndGet();
+            } finally {
+                pool.waiters--;
+                // 还有空余名额时继续唤醒下一个等待的线程
+                if(pool.waiters > 0 && pool.activeCount.get() < config.getMaxConn()) pool.available.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for connection to " + host);
+        } finally {
+            pool.lock.unlock();
+        }
+    }
+
+    private static class HostPool {
+        private final ConcurrentLinkedDeque<MemcachedConnection> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+        private final AtomicInteger activeCount = new AtomicInteger();
+        /**
+         * 只在限制借出连接数时使用
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        /**
+         * 正在等待借出名额的线程数，只在持有 lock 时访问
+         */
+        private int waiters;
+
+        private void signal() {
+            lock.lock();
+            try {
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void signalAll() {
+            lock.lock();
+            try {
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
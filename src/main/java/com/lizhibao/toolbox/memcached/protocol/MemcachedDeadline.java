@@ -0,0 +1,69 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 当前线程的调用截止时间。在 {@link #call(long, Supplier)} 范围内，直连协议的操作从连接池借出连接时带上截止时间，
+ * 每次阻塞读取的超时时间为剩余时间(可以大于或小于 socketTimeout)，到期后按读取失败处理，返回未命中或部分结果。
+ * 嵌套调用时取更早的截止时间。danga 客户端的读写仍然使用连接池的 socketTimeout
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public final class MemcachedDeadline {
+    /**
+     * 截止时间(System.nanoTime)，0 表示没有截止时间
+     */
+    private static final ThreadLocal<long[]> DEADLINE = ThreadLocal.withInitial(() -> new long[1]);
+
+    private MemcachedDeadline() {
+    }
+
+    /**
+     * 在指定的时间内执行
+     * @param timeout 超时时间(毫秒)，小于等于 0 时不设置截止时间
+     * @param action 操作
+     * @return 操作的返回值
+     */
+    public static <T> T call(long timeout, Supplier<T> action) {
+        if(timeout <= 0) return action.get();
+
+        long[] holder = DEADLINE.get();
+        long previous = holder[0];
+        long deadline = of(timeout);
+        if(previous == 0 || deadline - previous < 0) holder[0] = deadline;
+        try {
+            return action.get();
+        } finally {
+            holder[0] = previous;
+        }
+    }
+
+    /**
+     * @return 当前线程的截止时间，没有截止时间时返回 0
+     */
+    public static long current() {
+        return DEADLINE.get()[0];
+    }
+
+    /**
+     * 从现在开始经过 timeout 毫秒的截止时间
+     * @param timeout 超时时间(毫秒)
+     * @return 截止时间，timeout 小于等于 0 时返回 0
+     */
+    public static long of(long timeout) {
+        if(timeout <= 0) return 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        return deadline == 0 ? 1 : deadline;
+    }
+
+    /**
+     * 距离截止时间的毫秒数(向上取整)
+     * @param deadline 截止时间
+     * @return 已经到期时返回小于等于 0 的值
+     */
+    public static long remaining(long deadline) {
+        long nanos = deadline - System.nanoTime();
+        return nanos <= 0 ? 0 : (nanos + 999_999) / 1_000_000;
+    }
+}
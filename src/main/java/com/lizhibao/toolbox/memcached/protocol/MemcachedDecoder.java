@@ -0,0 +1,89 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.danga.MemCached.MemCachedClient;
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.schooner.MemCached.AbstractTransCoder;
+import com.schooner.MemCached.NativeHandler;
+import com.schooner.MemCached.ObjectTransCoder;
+import com.schooner.MemCached.TransCoder;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 按照 MemCachedClient.get 相同的规则把服务器返回的 flags 和数据解码为对象，
+ * 供直连协议读取的数据(近端缓存、并行批量读取等)使用；直连协议写入的数据按 MemCachedClient.set 相同的规则编码
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedDecoder {
+    private final TransCoder transCoder;
+    private final boolean primitiveAsString;
+    private final String encoding;
+
+    public MemcachedDecoder(MemcachedConfig config, TransCoder transCoder) {
+        this.transCoder = transCoder == null ? new ObjectTransCoder() : transCoder;
+        this.primitiveAsString = Boolean.TRUE.equals(config.getIsPrimitiveAsString());
+        this.encoding = StringUtils.hasText(config.getDefaultEncoding()) ? config.getDefaultEncoding() : "UTF-8";
+    }
+
+    /**
+     * 解码
+     * @param flags 服务器返回的 flags
+     * @param value 服务器返回的数据
+     * @return 数据为空时返回 null
+     * @throws IOException 数据格式错误
+     */
+    public Object decode(int flags, byte[] value) throws IOException {
+        if(value.length == 0) return null;
+
+        boolean compressed = (flags & MemCachedClient.F_COMPRESSED) == MemCachedClient.F_COMPRESSED;
+        if(NativeHandler.isHandled(flags)) {
+            byte[] data = compressed ? decompress(value) : value;
+            return primitiveAsString ? new String(data, encoding) : NativeHandler.decode(data, flags);
+        }
+
+        InputStream input = new ByteArrayInputStream(value);
+        if(compressed) input = new GZIPInputStream(input);
+        return transCoder.decode(input);
+    }
+
+    /**
+     * 写入时使用的 flags，与 MemCachedClient.set 相同
+     * @param value 数据
+     * @return flags
+     */
+    public int flags(Object value) {
+        return primitiveAsString ? MemCachedClient.MARKER_STRING : NativeHandler.getMarkerFlag(value);
+    }
+
+    /**
+     * 编码，与 MemCachedClient.set 相同：基本类型由 NativeHandler 编码，其他对象由 TransCoder 序列化
+     * @param value 数据
+     * @return 写入服务器的数据
+     * @throws IOException TransCoder 不支持写入普通输出流或序列化失败
+     */
+    public byte[] encode(Object value) throws IOException {
+        if(primitiveAsString) return value.toString().getBytes(encoding);
+        if(NativeHandler.getMarkerFlag(value) != MemCachedClient.MARKER_OTHERS) return NativeHandler.encode(value);
+        if(!(transCoder instanceof AbstractTransCoder)) throw new IOException("Unsupported TransCoder: " + transCoder.getClass().getName());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+        ((AbstractTransCoder) transCoder).encode(output, value);
+        return output.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] value) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(value.length * 2);
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(value))) {
+            byte[] buffer = new byte[2048];
+            int count;
+            while ((count = input.read(buffer)) != -1) output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+}
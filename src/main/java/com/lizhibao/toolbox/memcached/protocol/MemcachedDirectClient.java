@@ -0,0 +1,390 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.danga.MemCached.MemCachedClient;
+import com.schooner.MemCached.MemcachedItem;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不经过 danga 客户端读写的 MemCachedClient，开启 virtualThreadFriendly 时由 MemcachedManager 包装原客户端。
+ * danga 的 SockIOPool 和 MemCachedClient 在 synchronized 中进行 socket 读写，虚拟线程在其中阻塞时会占住载体线程；
+ * 这里常用的读写全部通过 {@link MemcachedConnectionPool} 完成，借出连接通过 ReentrantLock 等待，读写使用阻塞 I/O，过程中没有 synchronized。
+ * 数据格式、key 的编码规则和返回值与 danga 客户端一致，两种模式可以读写同一份数据；
+ * 带 hashCode 参数的重载、stats、flushAll、sync 等其他方法仍然交给原客户端处理
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedDirectClient extends MemCachedClient {
+    private static final byte[] STORED = "STORED".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELETED = "DELETED".getBytes(StandardCharsets.US_ASCII);
+    private static final String NOT_FOUND = "NOT_FOUND";
+    /**
+     * 同一台服务器一次 get 最多发送的 key 数量，避免请求和响应同时占满 socket 缓冲区
+     */
+    private static final int BATCH_SIZE = 100;
+
+    private final MemcachedConnectionPool pool;
+    private final MemcachedDecoder decoder;
+    /**
+     * 开启 fastKeyEncoding 时传入的 key 已经由 MemcachedKeys 编码(与关闭 key 清理的 danga 客户端一致)，不再重复编码
+     */
+    private final boolean encodeKeys;
+    private final String encoding;
+
+    /**
+     * @param client 原客户端，未覆盖的方法交给它处理
+     * @param pool 直连协议的连接池
+     * @param decoder 与原客户端编码规则一致的解码器
+     */
+    public MemcachedDirectClient(MemCachedClient client, MemcachedConnectionPool pool, MemcachedDecoder decoder) {
+        super(client);
+        this.pool = pool;
+        this.decoder = decoder;
+        this.encodeKeys = !Boolean.TRUE.equals(pool.getConfig().getFastKeyEncoding());
+        this.encoding = StringUtils.hasText(pool.getConfig().getDefaultEncoding()) ? pool.getConfig().getDefaultEncoding() : "UTF-8";
+    }
+
+    public MemcachedConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    @Override
+    public boolean keyExists(String key) {
+        return this.get(key) != null;
+    }
+
+    @Override
+    public boolean delete(String key) {
+        if(key == null) return false;
+
+        String wireKey = wireKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("delete ").writeAscii(wireKey).writeCrlf().flush();
+            return connection.readLineEquals(DELETED);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => delete {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return false;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public boolean set(String key, Object value) {
+        return store("set", key, value, null, 0);
+    }
+
+    @Override
+    public boolean set(String key, Object value, Date expiry) {
+        return store("set", key, value, expiry, 0);
+    }
+
+    @Override
+    public boolean add(String key, Object value) {
+        return store("add", key, value, null, 0);
+    }
+
+    @Override
+    public boolean add(String key, Object value, Date expiry) {
+        return store("add", key, value, expiry, 0);
+    }
+
+    @Override
+    public boolean replace(String key, Object value) {
+        return store("replace", key, value, null, 0);
+    }
+
+    @Override
+    public boolean replace(String key, Object value, Date expiry) {
+        return store("replace", key, value, expiry, 0);
+    }
+
+    @Override
+    public boolean append(String key, Object value) {
+        return store("append", key, value, null, 0);
+    }
+
+    @Override
+    public boolean prepend(String key, Object value) {
+        return store("prepend", key, value, null, 0);
+    }
+
+    @Override
+    public boolean cas(String key, Object value, long casUnique) {
+        return store("cas", key, value, null, casUnique);
+    }
+
+    @Override
+    public boolean cas(String key, Object value, Date expiry, long casUnique) {
+        return store("cas", key, value, expiry, casUnique);
+    }
+
+    @Override
+    public Object get(String key) {
+        MemcachedItem item = fetch("get", key, false);
+        return item == null ? null : item.value;
+    }
+
+    @Override
+    public MemcachedItem gets(String key) {
+        return fetch("gets", key, false);
+    }
+
+    @Override
+    public boolean storeCounter(String key, Long counter) {
+        return store("set", key, counter, null, 0);
+    }
+
+    @Override
+    public boolean storeCounter(String key, Long counter, Date date) {
+        return store("set", key, counter, date, 0);
+    }
+
+    @Override
+    public long getCounter(String key) {
+        MemcachedItem item = fetch("get", key, true);
+        if(item == null) return -1;
+
+        try {
+            return Long.parseLong(((String) item.value).trim());
+        } catch (NumberFormatException e) {
+            log.info("{} => counter {} is not a number", pool.getConfig().getName(), key);
+            return -1;
+        }
+    }
+
+    @Override
+    public long incr(String key) {
+        return arithmetic("incr ", key, 1);
+    }
+
+    @Override
+    public long incr(String key, long inc) {
+        return arithmetic("incr ", key, inc);
+    }
+
+    @Override
+    public long decr(String key) {
+        return arithmetic("decr ", key, 1);
+    }
+
+    @Override
+    public long decr(String key, long inc) {
+        return arithmetic("decr ", key, inc);
+    }
+
+    @Override
+    public long addOrIncr(String key) {
+        return this.addOrIncr(key, 0);
+    }
+
+    /**
+     * 与 danga 客户端相同：先以文本 add 初始值，已存在时再 incr
+     */
+    @Override
+    public long addOrIncr(String key, long inc) {
+        return store("add", key, "" + inc, null, 0) ? inc : arithmetic("incr ", key, inc);
+    }
+
+    @Override
+    public long addOrDecr(String key) {
+        return this.addOrDecr(key, 0);
+    }
+
+    @Override
+    public long addOrDecr(String key, long inc) {
+        return store("add", key, "" + inc, null, 0) ? inc : arithmetic("decr ", key, inc);
+    }
+
+    @Override
+    public Object[] getMultiArray(String[] keys) {
+        Map<String, Object> data = this.getMulti(keys);
+        if(data == null) return null;
+
+        Object[] result = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) result[i] = data.get(keys[i]);
+        return result;
+    }
+
+    /**
+     * 批量读取，按服务器分组后依次对每台服务器以流水线方式发送 get，每 100 个 key 一次
+     */
+    @Override
+    public Map<String, Object> getMulti(String[] keys) {
+        if(keys == null || keys.length == 0) return null;
+
+        Map<String, Object> result = new HashMap<>((int) (keys.length / 0.75f) + 1);
+        String[] wireKeys = new String[keys.length];
+        Map<String, List<Integer>> servers = new LinkedHashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if(keys[i] == null) continue;
+            wireKeys[i] = wireKey(keys[i]);
+            servers.computeIfAbsent(pool.locate(wireKeys[i]), s -> new ArrayList<>()).add(i);
+        }
+
+        for (Map.Entry<String, List<Integer>> entry : servers.entrySet()) {
+            String server = entry.getKey();
+            List<Integer> indexes = entry.getValue();
+            MemcachedConnection connection = null;
+            try {
+                connection = pool.borrow(server);
+                for (int from = 0; from < indexes.size(); from += BATCH_SIZE) {
+                    int to = Math.min(indexes.size(), from + BATCH_SIZE);
+                    connection.writeAscii("get");
+                    for (int i = from; i < to; i++) connection.write((byte) ' ').writeAscii(wireKeys[indexes.get(i)]);
+                    connection.writeCrlf().flush();
+
+                    // 服务器按请求顺序返回命中的 key，未命中的 key 直接跳过
+                    int position = from;
+                    long header;
+                    while ((header = connection.readValueHeader()) >= 0) {
+                        while (position < to && !connection.valueKeyEquals(wireKeys[indexes.get(position)])) position++;
+                        if(position >= to) throw new IOException("Unexpected VALUE from " + server);
+
+                        byte[] data = new byte[(int) header];
+                        connection.readFully(data, 0, data.length);
+                        connection.readCrlf();
+
+                        int index = indexes.get(position++);
+                        try {
+                            Object value = decoder.decode((int) (header >>> 32), data);
+                            if(value != null) result.put(keys[index], value);
+                        } catch (Exception e) {
+                            log.warn("{} => decode {} failed: {}", pool.getConfig().getName(), keys[index], e.getMessage());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if(connection != null) connection.markBroken();
+                log.warn("{} => get {} keys from {} failed: {}", pool.getConfig().getName(), indexes.size(), server, e.getMessage());
+            } finally {
+                pool.release(connection);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * set/add/replace/append/prepend/cas，flags 和数据编码与 danga 客户端相同
+     * @param command 命令
+     * @param key 缓存key
+     * @param value 数据，为 null 时不写入
+     * @param expiry 过期时间，为 null 时永不过期
+     * @param casUnique cas 令牌，只有 cas 命令使用
+     * @return 服务器返回 STORED 时为 true
+     */
+    private boolean store(String command, String key, Object value, Date expiry, long casUnique) {
+        if(key == null || value == null) return false;
+
+        byte[] data;
+        try {
+            data = decoder.encode(value);
+        } catch (IOException e) {
+            log.error("{} => encode {} failed", pool.getConfig().getName(), key, e);
+            return false;
+        }
+
+        String wireKey = wireKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii(command).write((byte) ' ').writeAscii(wireKey).write((byte) ' ')
+                    .writeDecimal(decoder.flags(value)).write((byte) ' ')
+                    .writeDecimal(expiry == null ? 0 : expiry.getTime() / 1000).write((byte) ' ')
+                    .writeDecimal(data.length);
+            if("cas".equals(command)) connection.write((byte) ' ').writeDecimal(casUnique);
+            connection.writeCrlf().write(data).writeCrlf().flush();
+            return connection.readLineEquals(STORED);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => {} {} failed: {}", pool.getConfig().getName(), command, key, e.getMessage());
+            return false;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * get/gets 单个 key
+     * @param command 命令
+     * @param key 缓存key
+     * @param asString true: 不解码，按 defaultEncoding 转为字符串(与 danga 读取计数器的方式相同)
+     * @return 不存在或失败时返回 null
+     */
+    private MemcachedItem fetch(String command, String key, boolean asString) {
+        if(key == null) return null;
+
+        String wireKey = wireKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii(command).write((byte) ' ').writeAscii(wireKey).writeCrlf().flush();
+
+            long header = connection.readValueHeader();
+            if(header < 0) return null;
+
+            byte[] data = new byte[(int) header];
+            connection.readFully(data, 0, data.length);
+            connection.readCrlf();
+            long casUnique = connection.getValueCas();
+            if(connection.readValueHeader() >= 0) throw new IOException("Unexpected VALUE after " + key);
+
+            MemcachedItem item = new MemcachedItem();
+            item.casUnique = casUnique;
+            item.value = asString ? new String(data, encoding) : decoder.decode((int) (header >>> 32), data);
+            return item.value == null ? null : item;
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => {} {} failed: {}", pool.getConfig().getName(), command, key, e.getMessage());
+            return null;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * incr/decr
+     * @param command 命令，包含结尾的空格
+     * @param key 缓存key
+     * @param delta 增量
+     * @return 新值，不存在或失败时返回 -1
+     */
+    private long arithmetic(String command, String key, long delta) {
+        if(key == null) return -1;
+
+        String wireKey = wireKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii(command).writeAscii(wireKey).write((byte) ' ').writeDecimal(delta).writeCrlf().flush();
+
+            String line = connection.readLine();
+            if(!line.isEmpty() && Character.isDigit(line.charAt(0))) return Long.parseLong(line.trim());
+            if(!NOT_FOUND.equals(line)) log.error("{} => {}{} failed: {}", pool.getConfig().getName(), command, key, line);
+            return -1;
+        } catch (IOException | NumberFormatException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => {}{} failed: {}", pool.getConfig().getName(), command, key, e.getMessage());
+            return -1;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private String wireKey(String key) {
+        return encodeKeys ? pool.encodeKey(key) : key;
+    }
+}
@@ -0,0 +1,214 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * key 校验与编码。
+ * 合法的 key 只需一次遍历，不分配任何对象，原样返回；只有包含需要编码的字符时才编码，
+ * 编码结果与 MemCachedClient 开启 key 清理时使用的 URLEncoder.encode(key, "UTF-8") 完全一致，已有数据不受影响。
+ * 超过 250 字节的 key 会被替换为 前缀#SHA-1，长度固定不超过 250。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public final class MemcachedKeys {
+    /**
+     * memcached 协议允许的最大 key 长度(字节)
+     */
+    public static final int MAX_KEY_LENGTH = 250;
+    /**
+     * 超长 key 摘要前保留的原始 key 长度
+     */
+    private static final int DIGEST_PREFIX_LENGTH = 200;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final char[] DIGEST_HEX = "0123456789abcdef".toCharArray();
+    /**
+     * URLEncoder 不编码的字符：字母、数字、.-*_
+     */
+    private static final boolean[] URL_SAFE = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) URL_SAFE[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) URL_SAFE[c] = true;
+        for (char c = '0'; c <= '9'; c++) URL_SAFE[c] = true;
+        URL_SAFE['.'] = URL_SAFE['-'] = URL_SAFE['*'] = URL_SAFE['_'] = true;
+    }
+
+    private MemcachedKeys() {
+    }
+
+    /**
+     * 是否可以直接发送给服务器：1 ~ 250 个可见 ASCII 字符，不包含空格和控制字符
+     * @param key 缓存key
+     * @return true / false
+     */
+    public static boolean isLegal(String key) {
+        int length = key.length();
+        if(length == 0 || length > MAX_KEY_LENGTH) return false;
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if(c <= ' ' || c >= 0x7F) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 编码后是否与原 key 相同：1 ~ 250 个字母、数字或 .-*_
+     * @param key 缓存key
+     * @return true / false
+     */
+    public static boolean isUrlSafe(String key) {
+        int length = key.length();
+        if(length == 0 || length > MAX_KEY_LENGTH) return false;
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if(c >= 0x80 || !URL_SAFE[c]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 编码 key
+     * @param key 缓存key
+     * @param sanitize true: 与 URLEncoder 相同的编码；false: 不编码，只处理超长 key
+     * @return 无需编码时返回原对象
+     */
+    public static String encode(String key, boolean sanitize) {
+        if(sanitize ? isUrlSafe(key) : key.length() <= MAX_KEY_LENGTH / 3 || !tooLong(key)) return key;
+
+        String encoded = sanitize ? urlEncode(key) : key;
+        return tooLong(encoded) ? digest(encoded) : encoded;
+    }
+
+    /**
+     * 批量编码 key
+     * @param keys 缓存keys
+     * @param sanitize true: 与 URLEncoder 相同的编码；false: 不编码，只处理超长 key
+     * @return 全部无需编码时返回原数组，否则返回新数组
+     */
+    public static String[] encode(String[] keys, boolean sanitize) {
+        String[] result = keys;
+        for (int i = 0; i < keys.length; i++) {
+            String encoded = encode(keys[i], sanitize);
+            if(encoded == keys[i]) continue;
+
+            if(result == keys) result = keys.clone();
+            result[i] = encoded;
+        }
+        return result;
+    }
+
+    /**
+     * 按缓存配置转换传给 MemCachedClient 的 key。
+     * 只有开启 fastKeyEncoding 时才由这里编码(此时客户端自身的 key 清理已关闭)，否则原样返回由客户端处理
+     * @param config 缓存配置
+     * @param key 缓存key
+     * @return String
+     */
+    public static String clientKey(MemcachedConfig config, String key) {
+        if(!Boolean.TRUE.equals(config.getFastKeyEncoding()) || key == null) return key;
+        return encode(key, !Boolean.FALSE.equals(config.getEnableKeyStrictMode()));
+    }
+
+    /**
+     * 批量转换传给 MemCachedClient 的 key，见 {@link #clientKey(MemcachedConfig, String)}
+     * @param config 缓存配置
+     * @param keys 缓存keys
+     * @return 无需转换时返回原数组
+     */
+    public static String[] clientKeys(MemcachedConfig config, String[] keys) {
+        if(!Boolean.TRUE.equals(config.getFastKeyEncoding()) || keys == null) return keys;
+        return encode(keys, !Boolean.FALSE.equals(config.getEnableKeyStrictMode()));
+    }
+
+    /**
+     * 将以转换后 key 为键的结果还原为调用方传入的 key
+     * @param keys 调用方传入的 keys
+     * @param encoded {@link #clientKeys} 的返回值
+     * @param result MemCachedClient 返回的结果
+     * @return 无需还原时返回原 Map
+     */
+    public static <V> Map<String, V> restoreKeys(String[] keys, String[] encoded, Map<String, V> result) {
+        if(result == null || keys == encoded) return result;
+
+        Map<String, V> restored = new HashMap<>(result.size() * 4 / 3 + 1);
+        for (int i = 0; i < keys.length; i++) {
+            if(result.containsKey(encoded[i])) restored.put(keys[i], result.get(encoded[i]));
+        }
+        return restored;
+    }
+
+    /**
+     * UTF-8 编码后是否超过 250 字节
+     */
+    private static boolean tooLong(String key) {
+        int length = key.length();
+        if(length > MAX_KEY_LENGTH) return true;
+
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if(c < 0x80) bytes++;
+            else if(c < 0x800) bytes += 2;
+            else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(key.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else bytes += 3;
+        }
+        return bytes > MAX_KEY_LENGTH;
+    }
+
+    /**
+     * 与 URLEncoder.encode(key, "UTF-8") 结果一致：空格编码为 +，连续的需编码字符整体按 UTF-8 编码为 %XX
+     */
+    private static String urlEncode(String key) {
+        int length = key.length();
+        StringBuilder builder = new StringBuilder(length + 16);
+        int i = 0;
+        while (i < length) {
+            char c = key.charAt(i);
+            if(c == ' ') {
+                builder.append('+');
+                i++;
+            } else if(c < 0x80 && URL_SAFE[c]) {
+                builder.append(c);
+                i++;
+            } else {
+                int start = i;
+                do {
+                    i++;
+                } while (i < length && (c = key.charAt(i)) != ' ' && (c >= 0x80 || !URL_SAFE[c]));
+                for (byte b : key.substring(start, i).getBytes(StandardCharsets.UTF_8)) {
+                    builder.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 超长 key 替换为 前缀#SHA-1，前缀保留原 key 前 200 个字符便于排查，前缀按 UTF-8 超过 200 字节时只保留摘要
+     */
+    private static String digest(String key) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder builder = new StringBuilder(DIGEST_PREFIX_LENGTH + 1 + hash.length * 2);
+        int end = Math.min(DIGEST_PREFIX_LENGTH, key.length());
+        if(Character.isHighSurrogate(key.charAt(end - 1))) end--;
+        String prefix = key.substring(0, end);
+        if(prefix.getBytes(StandardCharsets.UTF_8).length <= DIGEST_PREFIX_LENGTH) builder.append(prefix);
+        builder.append('#');
+        for (byte b : hash) builder.append(DIGEST_HEX[(b >> 4) & 0xF]).append(DIGEST_HEX[b & 0xF]);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,194 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.danga.MemCached.SockIOPool;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 按照 danga 客户端相同的 hash 算法和 bucket 规则计算 key 所在的服务器，
+ * 保证直接走协议的操作与 MemCachedClient 命中同一台服务器。
+ * 不包含 danga 的 failover 重新 hash 逻辑，服务器宕机时由调用方自行处理。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedLocator {
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+    /**
+     * ASCII key 计算 hash 时使用的临时数组，避免每次调用 getBytes
+     */
+    private static final ThreadLocal<byte[]> KEY_BYTES = ThreadLocal.withInitial(() -> new byte[MemcachedKeys.MAX_KEY_LENGTH]);
+
+    private final int hashingAlg;
+    private final String[] servers;
+    private final String[] buckets;
+    private final TreeMap<Long, String> consistentBuckets;
+
+    /**
+     * @param servers 服务器列表
+     * @param weights 权重，和服务器列表的位置一一对应，可以为空
+     * @param hashingAlg hash算法，取值与 {@link SockIOPool#setHashingAlg(int)} 一致
+     */
+    public MemcachedLocator(String[] servers, Integer[] weights, int hashingAlg) {
+        this.hashingAlg = hashingAlg;
+        this.servers = servers.clone();
+
+        if(hashingAlg == SockIOPool.CONSISTENT_HASH) {
+            this.buckets = null;
+            this.consistentBuckets = consistentBuckets(servers, weights);
+        } else {
+            List<String> list = new ArrayList<>();
+            for (int i = 0; i < servers.length; i++) {
+                int weight = weights != null && weights.length > i && weights[i] != null ? weights[i] : 1;
+                for (int k = 0; k < weight; k++) list.add(servers[i]);
+            }
+            this.buckets = list.toArray(new String[0]);
+            this.consistentBuckets = null;
+        }
+    }
+
+    public String[] getServers() {
+        return servers.clone();
+    }
+
+    /**
+     * 获取服务器在 {@link #getServers()} 中的位置
+     * @param server host:port
+     * @return 不存在时返回 -1
+     */
+    public int indexOf(String server) {
+        for (int i = 0; i < servers.length; i++) {
+            if(servers[i].equals(server)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 获取 key 所在的服务器
+     * @param key 缓存key
+     * @return host:port
+     */
+    public String locate(String key) {
+        long hash;
+        byte[] bytes;
+        switch (hashingAlg) {
+            case SockIOPool.OLD_COMPAT_HASH:
+                hash = 0;
+                for (int i = 0, len = key.length(); i < len; i++) hash = (hash * 33) + key.charAt(i);
+                break;
+            case SockIOPool.NEW_COMPAT_HASH:
+            case SockIOPool.CONSISTENT_HASH:
+                int length = key.length();
+                if(length <= MemcachedKeys.MAX_KEY_LENGTH && isAscii(key)) {
+                    bytes = KEY_BYTES.get();
+                    for (int i = 0; i < length; i++) bytes[i] = (byte) key.charAt(i);
+                } else {
+                    bytes = key.getBytes();
+                    length = bytes.length;
+                }
+                hash = hashingAlg == SockIOPool.NEW_COMPAT_HASH ? crc32(bytes, 0, length) : md5(bytes, 0, length);
+                break;
+            default:
+                hash = key.hashCode();
+        }
+        return bucket(hash);
+    }
+
+    /**
+     * 获取 key 所在的服务器，key 为 ASCII 编码的字节，结果与 {@link #locate(String)} 一致
+     * @param key 缓存key
+     * @param offset 起始位置
+     * @param length 长度
+     * @return host:port
+     */
+    public String locate(byte[] key, int offset, int length) {
+        long hash = 0;
+        switch (hashingAlg) {
+            case SockIOPool.OLD_COMPAT_HASH:
+                for (int i = offset; i < offset + length; i++) hash = (hash * 33) + (key[i] & 0xFF);
+                break;
+            case SockIOPool.NEW_COMPAT_HASH:
+                hash = crc32(key, offset, length);
+                break;
+            case SockIOPool.CONSISTENT_HASH:
+                hash = md5(key, offset, length);
+                break;
+            default:
+                int h = 0;
+                for (int i = offset; i < offset + length; i++) h = 31 * h + (key[i] & 0xFF);
+                hash = h;
+        }
+        return bucket(hash);
+    }
+
+    private String bucket(long hash) {
+        if(consistentBuckets != null) {
+            Map.Entry<Long, String> entry = consistentBuckets.ceilingEntry(hash);
+            return entry == null ? consistentBuckets.firstEntry().getValue() : entry.getValue();
+        }
+        long bucket = hash % buckets.length;
+        if(bucket < 0) bucket *= -1;
+        return buckets[(int) bucket];
+    }
+
+    private static boolean isAscii(String key) {
+        for (int i = 0, len = key.length(); i < len; i++) {
+            if(key.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    private static long crc32(byte[] key, int offset, int length) {
+        CRC32 checksum = CRC.get();
+        checksum.reset();
+        checksum.update(key, offset, length);
+        return (checksum.getValue() >> 16) & 0x7fff;
+    }
+
+    private static long md5(byte[] key, int offset, int length) {
+        MessageDigest md5 = MD5.get();
+        md5.reset();
+        md5.update(key, offset, length);
+        byte[] digest = md5.digest();
+        return ((long) (digest[3] & 0xFF) << 24) | ((long) (digest[2] & 0xFF) << 16)
+                | ((long) (digest[1] & 0xFF) << 8) | (long) (digest[0] & 0xFF);
+    }
+
+    private static TreeMap<Long, String> consistentBuckets(String[] servers, Integer[] weights) {
+        TreeMap<Long, String> result = new TreeMap<>();
+        int totalWeight = 0;
+        if(weights != null) {
+            for (Integer weight : weights) totalWeight += weight == null ? 1 : weight;
+        } else {
+            totalWeight = servers.length;
+        }
+
+        MessageDigest md5 = MD5.get();
+        for (int i = 0; i < servers.length; i++) {
+            int weight = weights != null && weights.length > i && weights[i] != null ? weights[i] : 1;
+            double factor = Math.floor(((double) (40 * servers.length * weight)) / (double) totalWeight);
+            for (long j = 0; j < factor; j++) {
+                byte[] d = md5.digest((servers[i] + "-" + j).getBytes(StandardCharsets.ISO_8859_1));
+                for (int h = 0; h < 4; h++) {
+                    long k = ((long) (d[3 + h * 4] & 0xFF) << 24) | ((long) (d[2 + h * 4] & 0xFF) << 16)
+                            | ((long) (d[1 + h * 4] & 0xFF) << 8) | ((long) (d[h * 4] & 0xFF));
+                    result.put(k, servers[i]);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,304 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.lizhibao.toolbox.memcached.model.MemcachedMetaResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * meta 协议(memcached 1.6+)：一次往返完成读取并返回 TTL / cas、读取并更新过期时间、
+ * 防击穿的 win / stale 标记、带 cas 的写入和删除、带初始值的计数等组合操作。
+ * 数据的 flags 和编码与 MemCachedClient 相同，可以与其他操作混用
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public final class MemcachedMeta {
+    /**
+     * 批量读取时同一台服务器一次往返最多发送的请求数，避免请求和响应同时占满 socket 缓冲区
+     */
+    private static final int BATCH_SIZE = 100;
+
+    private MemcachedMeta() {
+    }
+
+    /**
+     * mg：读取数据，按参数同时返回 TTL / cas、更新过期时间、不存在时创建或提前回源
+     * @param pool 连接池
+     * @param decoder 解码器
+     * @param key 缓存key
+     * @param options 参数
+     * @return 读取失败时返回 null
+     */
+    public static MemcachedMetaResult get(MemcachedConnectionPool pool, MemcachedDecoder decoder, String key, MemcachedMetaOptions options) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            writeGet(connection, wireKey, options).writeCrlf().flush();
+            return read(connection, decoder, false, null);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => mg {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return null;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * 批量 mg：同一台服务器上的请求带上序号(opaque)以流水线方式发送，以 mn 结束，未命中的 key 不返回响应
+     * @param pool 连接池
+     * @param decoder 解码器
+     * @param keys 缓存keys
+     * @param options 参数
+     * @return 有响应的 key 和结果；读取失败的服务器上的 key 视为未命中
+     */
+    public static Map<String, MemcachedMetaResult> getMulti(MemcachedConnectionPool pool, MemcachedDecoder decoder, String[] keys, MemcachedMetaOptions options) {
+        Map<String, MemcachedMetaResult> result = new HashMap<>((int) (keys.length / 0.75f) + 1);
+        String[] wireKeys = new String[keys.length];
+        Map<String, List<Integer>> servers = new LinkedHashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            wireKeys[i] = pool.encodeKey(keys[i]);
+            servers.computeIfAbsent(pool.locate(wireKeys[i]), s -> new ArrayList<>()).add(i);
+        }
+
+        for (Map.Entry<String, List<Integer>> entry : servers.entrySet()) {
+            String server = entry.getKey();
+            List<Integer> indexes = entry.getValue();
+            MemcachedConnection connection = null;
+            int[] opaque = new int[1];
+            try {
+                connection = pool.borrow(server);
+                for (int from = 0; from < indexes.size(); from += BATCH_SIZE) {
+                    int to = Math.min(indexes.size(), from + BATCH_SIZE);
+                    for (int i = from; i < to; i++) {
+                        int index = indexes.get(i);
+                        writeGet(connection, wireKeys[index], options).writeAscii(" q O").writeDecimal(index).writeCrlf();
+                    }
+                    connection.writeAscii("mn").writeCrlf().flush();
+
+                    MemcachedMetaResult response;
+                    while ((response = read(connection, decoder, false, opaque)) != null) {
+                        int index = opaque[0];
+                        if(index < 0 || index >= keys.length) throw new IOException("Unexpected opaque from " + server + ": " + index);
+                        result.put(keys[index], response);
+                    }
+                }
+            } catch (IOException e) {
+                if(connection != null) connection.markBroken();
+                log.warn("{} => mg {} keys from {} failed: {}", pool.getConfig().getName(), indexes.size(), server, e.getMessage());
+            } finally {
+                pool.release(connection);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * ms：写入数据，按参数只在 cas 一致时写入、返回新的 cas、以 ADD / REPLACE / APPEND 等模式写入
+     * @param pool 连接池
+     * @param decoder 编码器
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致
+     * @param options 参数
+     * @return 写入失败时返回 null
+     */
+    public static MemcachedMetaResult set(MemcachedConnectionPool pool, MemcachedDecoder decoder, String key, Object value, long expired, MemcachedMetaOptions options) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            byte[] data = decoder.encode(value);
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("ms ").writeAscii(wireKey).write((byte) ' ').writeDecimal(data.length)
+                    .writeAscii(" F").writeDecimal(decoder.flags(value))
+                    .writeAscii(" T").writeDecimal(seconds(expired));
+            if(options.isReturnCas()) connection.writeAscii(" c");
+            if(options.getCompareCas() != null) connection.writeAscii(" C").writeDecimal(options.getCompareCas());
+            if(options.isInvalidate()) connection.writeAscii(" I");
+            if(options.getMode() != null) connection.writeAscii(" M").write((byte) options.getMode().getFlag());
+            connection.writeCrlf().write(data).writeCrlf().flush();
+            return read(connection, decoder, false, null);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => ms {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return null;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * md：删除数据，按参数只在 cas 一致时删除，或者只标记为过期
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param options 参数
+     * @return 删除失败时返回 null
+     */
+    public static MemcachedMetaResult delete(MemcachedConnectionPool pool, String key, MemcachedMetaOptions options) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("md ").writeAscii(wireKey);
+            if(options.getCompareCas() != null) connection.writeAscii(" C").writeDecimal(options.getCompareCas());
+            if(options.isInvalidate()) connection.writeAscii(" I");
+            if(options.getTouch() != null) connection.writeAscii(" T").writeDecimal(seconds(options.getTouch()));
+            connection.writeCrlf().flush();
+            return read(connection, null, false, null);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => md {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return null;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * ma：计数器增减，按参数不存在时以初始值创建、同时更新过期时间、返回新值
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param options 参数
+     * @return 失败时返回 null
+     */
+    public static MemcachedMetaResult arithmetic(MemcachedConnectionPool pool, String key, MemcachedMetaOptions options) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("ma ").writeAscii(wireKey).writeAscii(" D").writeDecimal(options.getDelta());
+            if(options.isReturnValue()) connection.writeAscii(" v");
+            if(options.isReturnTtl()) connection.writeAscii(" t");
+            if(options.isReturnCas()) connection.writeAscii(" c");
+            if(options.getVivify() != null) {
+                connection.writeAscii(" N").writeDecimal(seconds(options.getVivify())).writeAscii(" J").writeDecimal(options.getInitial());
+            }
+            if(options.getTouch() != null) connection.writeAscii(" T").writeDecimal(seconds(options.getTouch()));
+            if(options.getCompareCas() != null) connection.writeAscii(" C").writeDecimal(options.getCompareCas());
+            if(options.getMode() != null) connection.writeAscii(" M").write((byte) options.getMode().getFlag());
+            connection.writeCrlf().flush();
+            return read(connection, null, true, null);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => ma {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return null;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private static MemcachedConnection writeGet(MemcachedConnection connection, String wireKey, MemcachedMetaOptions options) throws IOException {
+        connection.writeAscii("mg ").writeAscii(wireKey);
+        if(options.isReturnValue()) connection.writeAscii(" v f");
+        if(options.isReturnTtl()) connection.writeAscii(" t");
+        if(options.isReturnCas()) connection.writeAscii(" c");
+        if(options.getTouch() != null) connection.writeAscii(" T").writeDecimal(seconds(options.getTouch()));
+        if(options.getVivify() != null) connection.writeAscii(" N").writeDecimal(seconds(options.getVivify()));
+        if(options.getRecache() != null) connection.writeAscii(" R").writeDecimal(seconds(options.getRecache()));
+        return connection;
+    }
+
+    /**
+     * 读取一个响应
+     * @param decoder 解码 mg 返回的数据，为 null 时不读取数据
+     * @param number 数据为 ma 返回的计数器的值
+     * @param opaque 不为 null 时保存响应中的请求序号，没有时为 -1
+     * @return 读到 mn 的响应 MN 时返回 null
+     */
+    private static MemcachedMetaResult read(MemcachedConnection connection, MemcachedDecoder decoder, boolean number, int[] opaque) throws IOException {
+        String line = connection.readLine();
+        if(line.equals("MN")) return null;
+        if(line.length() < 2 || (line.length() > 2 && line.charAt(2) != ' ')) {
+            throw new IOException("Unexpected response from " + connection.getHost() + ": " + line);
+        }
+
+        MemcachedMetaResult result = new MemcachedMetaResult();
+        if(opaque != null) opaque[0] = -1;
+        String code = line.substring(0, 2);
+        int position = 3;
+        int size = -1;
+        switch (code) {
+            case "HD": result.setStatus(MemcachedMetaResult.Status.OK); break;
+            case "EN": result.setStatus(MemcachedMetaResult.Status.MISS); break;
+            case "NS": result.setStatus(MemcachedMetaResult.Status.NOT_STORED); break;
+            case "EX": result.setStatus(MemcachedMetaResult.Status.EXISTS); break;
+            case "NF": result.setStatus(MemcachedMetaResult.Status.NOT_FOUND); break;
+            case "VA":
+                result.setStatus(MemcachedMetaResult.Status.VALUE);
+                int end = line.indexOf(' ', position);
+                if(end < 0) end = line.length();
+                size = parseInt(line, position, end, connection);
+                position = end + 1;
+                break;
+            default:
+                throw new IOException("Unexpected response from " + connection.getHost() + ": " + line);
+        }
+
+        int flags = 0;
+        while (position < line.length()) {
+            int end = line.indexOf(' ', position);
+            if(end < 0) end = line.length();
+            if(end > position) {
+                char flag = line.charAt(position);
+                switch (flag) {
+                    case 'f': flags = parseInt(line, position + 1, end, connection); break;
+                    case 'c': result.setCas(parseLong(line, position + 1, end, connection)); break;
+                    case 't':
+                        long ttl = parseLong(line, position + 1, end, connection);
+                        result.setTtl(ttl < 0 ? -1L : ttl * 1000);
+                        break;
+                    case 'O': if(opaque != null) opaque[0] = parseInt(line, position + 1, end, connection); break;
+                    case 'W': result.setWin(true); break;
+                    case 'X': result.setStale(true); break;
+                    case 'Z': result.setAlreadyWon(true); break;
+                    default: break;
+                }
+            }
+            position = end + 1;
+        }
+
+        if(size >= 0) {
+            byte[] data = new byte[size];
+            connection.readFully(data, 0, size);
+            connection.readCrlf();
+            if(number) {
+                String value = new String(data, 0, size, StandardCharsets.US_ASCII).trim();
+                result.setNumber(parseLong(value, 0, value.length(), connection));
+            } else if(decoder != null) {
+                result.setValue(decoder.decode(flags, data));
+            }
+        }
+        return result;
+    }
+
+    private static int parseInt(String line, int from, int to, MemcachedConnection connection) throws IOException {
+        try {
+            return Integer.parseInt(line.substring(from, to));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed response from " + connection.getHost() + ": " + line);
+        }
+    }
+
+    private static long parseLong(String line, int from, int to, MemcachedConnection connection) throws IOException {
+        try {
+            return Long.parseLong(line.substring(from, to));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed response from " + connection.getHost() + ": " + line);
+        }
+    }
+
+    /**
+     * 毫秒换算为秒，不足 1 秒按 1 秒，避免被服务器视为永不过期
+     */
+    static long seconds(long millis) {
+        return millis <= 0 ? millis : (millis + 999) / 1000;
+    }
+}
@@ -0,0 +1,79 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * meta 协议(mg / ms / md / ma)的参数，时间单位均为毫秒，发送时换算为秒；不适用于当前命令的参数被忽略
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@Accessors(chain = true)
+public class MemcachedMetaOptions {
+    /**
+     * mg / ma：返回数据(ma 为计数器的值)
+     */
+    private boolean returnValue = true;
+    /**
+     * 返回 cas，用于之后的 {@link #compareCas}
+     */
+    private boolean returnCas;
+    /**
+     * mg / ma：返回剩余过期时间
+     */
+    private boolean returnTtl;
+    /**
+     * mg / ma：同时更新过期时间(get-and-touch)；md 配合 {@link #invalidate} 时更新标记为过期的数据的过期时间
+     */
+    private Long touch;
+    /**
+     * mg / ma：不存在时创建(mg 创建空数据并返回 win 标记，只有一个调用方负责回源；ma 以 {@link #initial} 创建)，值为创建数据的过期时间
+     */
+    private Long vivify;
+    /**
+     * mg：剩余过期时间小于该值时，第一个调用方获得 win 标记提前回源，其他调用方继续读取旧数据
+     */
+    private Long recache;
+    /**
+     * ms / md / ma：cas 与服务器上的值相同时才执行
+     */
+    private Long compareCas;
+    /**
+     * ms：cas 比服务器上的旧时把数据写入并标记为过期(stale)；md：不删除，只标记为过期，之后的 mg 返回旧数据和 win 标记
+     */
+    private boolean invalidate;
+    /**
+     * ms / ma 的模式，默认 ms 为 SET，ma 为 INCR
+     */
+    private Mode mode;
+    /**
+     * ma：增量
+     */
+    private long delta = 1;
+    /**
+     * ma：配合 {@link #vivify} 创建计数器时的初始值；服务器创建的计数器 flags 为 0，
+     * 只能通过 ma(delta 为 0 即为读取)或 incr / decr 读写，不能通过 get / getCounter 解码
+     */
+    private long initial;
+
+    public enum Mode {
+        SET('S'),
+        ADD('E'),
+        REPLACE('R'),
+        APPEND('A'),
+        PREPEND('P'),
+        INCR('I'),
+        DECR('D');
+
+        private final char flag;
+
+        Mode(char flag) {
+            this.flag = flag;
+        }
+
+        public char getFlag() {
+            return flag;
+        }
+    }
+}
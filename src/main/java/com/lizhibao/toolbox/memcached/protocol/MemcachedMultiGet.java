@@ -0,0 +1,224 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行批量读取：key 按所在服务器分组，每组再按 batchSize 拆分为多个 get 请求，所有请求并行发送，
+ * 一台服务器变慢只影响它自己的 key；设置 timeout 后到期返回已经完成的部分结果。
+ * 请求由共享的守护线程池执行，线程池繁忙时排队，超时后仍在排队的请求不再发送，已发送请求的读取也在超时后中止。
+ * 排队的请求数有上限(QUEUE_SIZE)，队列已满时由调用线程直接执行该请求，调用方因此被减速，不会无限堆积请求。
+ * 在 {@link MemcachedDeadline#call} 范围内调用时，以截止时间和 timeout 中较早的为准。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public final class MemcachedMultiGet {
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+    /**
+     * 线程池最多排队的请求数
+     */
+    private static final int QUEUE_SIZE = 4096;
+    private static volatile ExecutorService executor;
+
+    private MemcachedMultiGet() {
+    }
+
+    /**
+     * 并行批量读取
+     * @param pool 连接池
+     * @param decoder 解码器
+     * @param keys 缓存keys
+     * @param options 读取参数
+     * @return 命中的 key 和数据，不包含未命中、读取失败或超时的 key
+     */
+    public static Map<String, Object> get(MemcachedConnectionPool pool, MemcachedDecoder decoder, String[] keys, MemcachedMultiGetOptions options) {
+        int count = keys.length;
+        if(count == 0) return new HashMap<>();
+
+        // 调用线程的截止时间早于 timeout 时以截止时间为准，各请求的读取同样受该时间限制
+        long timeout = options.getTimeout();
+        long deadline = MemcachedDeadline.current();
+        if(deadline != 0) {
+            long remaining = MemcachedDeadline.remaining(deadline);
+            if(remaining <= 0) return new HashMap<>();
+            if(timeout <= 0 || remaining < timeout) timeout = remaining;
+        }
+        deadline = MemcachedDeadline.of(timeout);
+
+        MemcachedLocator locator = pool.getLocator();
+        String[] servers = locator.getServers();
+        String[] wireKeys = MemcachedKeys.encode(keys, !Boolean.FALSE.equals(pool.getConfig().getEnableKeyStrictMode()));
+
+        // 按服务器分组，组内保持原顺序
+        int[] owners = new int[count];
+        int[] starts = new int[servers.length + 1];
+        for (int i = 0; i < count; i++) {
+            owners[i] = locator.indexOf(locator.locate(wireKeys[i]));
+            starts[owners[i] + 1]++;
+        }
+        for (int server = 0; server < servers.length; server++) starts[server + 1] += starts[server];
+        int[] order = new int[count];
+        int[] positions = starts.clone();
+        for (int i = 0; i < count; i++) order[positions[owners[i]]++] = i;
+
+        Object[] values = new Object[count];
+        int batchSize = Math.max(1, options.getBatchSize());
+        List<Batch> batches = new ArrayList<>(count / batchSize + servers.length);
+        // 各服务器的请求交替排列，线程不足时每台服务器都能尽早开始，慢服务器不会占满线程池
+        for (int offset = 0, added = -1; added != 0; offset += batchSize) {
+            added = 0;
+            for (int server = 0; server < servers.length; server++) {
+                int from = starts[server] + offset;
+                if(from >= starts[server + 1]) continue;
+                batches.add(new Batch(pool, decoder, servers[server], keys, wireKeys, order, from, Math.min(from + batchSize, starts[server + 1]), values, deadline));
+                added++;
+            }
+        }
+
+        if(batches.size() == 1) {
+            // 读取受截止时间限制，单个请求直接由调用线程执行
+            batches.get(0).run();
+        } else {
+            // 不限制时间时第一个请求由调用线程执行，少一次线程切换
+            int first = timeout <= 0 ? 1 : 0;
+            List<Future<?>> futures = new ArrayList<>(batches.size());
+            for (int i = first; i < batches.size(); i++) futures.add(executor().submit(batches.get(i)));
+            if(first == 1) batches.get(0).run();
+
+            for (Future<?> future : futures) {
+                try {
+                    if(timeout <= 0) future.get();
+                    else future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if(log.isDebugEnabled()) log.debug("{} => getMulti timed out after {} ms", pool.getConfig().getName(), timeout);
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    log.warn("{} => getMulti failed: {}", pool.getConfig().getName(), e.getCause().getMessage());
+                }
+            }
+            // 还在排队的请求不再发送
+            for (Future<?> future : futures) future.cancel(false);
+        }
+
+        int hits = 0;
+        for (Batch batch : batches) if(batch.done) hits += batch.hits;
+
+        Map<String, Object> result = new HashMap<>((int) (hits / 0.75f) + 1);
+        for (Batch batch : batches) {
+            if(!batch.done) continue;
+            for (int i = batch.from; i < batch.to; i++) {
+                int index = order[i];
+                if(values[index] != null) result.put(keys[index], values[index]);
+            }
+        }
+        return result;
+    }
+
+    private static ExecutorService executor() {
+        ExecutorService current = executor;
+        if(current != null) return current;
+
+        synchronized (MemcachedMultiGet.class) {
+            if(executor == null) {
+                int threads = Math.max(32, Runtime.getRuntime().availableProcessors() * 4);
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "memcached-multiget-" + THREAD_INDEX.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+                pool.allowCoreThreadTimeOut(true);
+                executor = pool;
+            }
+            return executor;
+        }
+    }
+
+    /**
+     * 同一台服务器上 order[from, to) 对应的 key，作为一个 get 请求发送
+     */
+    private static final class Batch implements Runnable {
+        private final MemcachedConnectionPool pool;
+        private final MemcachedDecoder decoder;
+        private final String server;
+        private final String[] keys;
+        private final String[] wireKeys;
+        private final int[] order;
+        private final int from;
+        private final int to;
+        private final Object[] values;
+        private final long deadline;
+        private int hits;
+        /**
+         * 在写入 values 之后设置，读取到 true 时本批次的结果可见
+         */
+        private volatile boolean done;
+
+        private Batch(MemcachedConnectionPool pool, MemcachedDecoder decoder, String server, String[] keys, String[] wireKeys,
+                      int[] order, int from, int to, Object[] values, long deadline) {
+            this.pool = pool;
+            this.decoder = decoder;
+            this.server = server;
+            this.keys = keys;
+            this.wireKeys = wireKeys;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.values = values;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            MemcachedConnection connection = null;
+            try {
+                connection = pool.borrow(server, deadline);
+                connection.writeAscii("get");
+                for (int i = from; i < to; i++) connection.write((byte) ' ').writeAscii(wireKeys[order[i]]);
+                connection.writeCrlf().flush();
+
+                // 服务器按请求顺序返回命中的 key，未命中的 key 直接跳过
+                int position = from;
+                long header;
+                while ((header = connection.readValueHeader()) >= 0) {
+                    while (position < to && !connection.valueKeyEquals(wireKeys[order[position]])) position++;
+                    if(position >= to) throw new IOException("Unexpected VALUE from " + server);
+
+                    byte[] data = new byte[(int) header];
+                    connection.readFully(data, 0, data.length);
+                    connection.readCrlf();
+
+                    int index = order[position++];
+                    try {
+                        values[index] = decoder.decode((int) (header >>> 32), data);
+                        if(values[index] != null) hits++;
+                    } catch (Exception e) {
+                        log.warn("{} => decode {} failed: {}", pool.getConfig().getName(), keys[index], e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                if(connection != null) connection.markBroken();
+                log.warn("{} => get from {} failed: {}", pool.getConfig().getName(), server, e.getMessage());
+            } finally {
+                pool.release(connection);
+                this.done = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 并行批量读取参数
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@Accessors(chain = true)
+public class MemcachedMultiGetOptions {
+    /**
+     * 单个 get 请求最多包含的 key 数量，同一台服务器上的 key 按该值拆分为多个请求并行发送
+     */
+    private int batchSize = 100;
+    /**
+     * 整体等待时间(毫秒)，到期后返回已经完成的部分结果，未完成请求中的 key 视为未命中；
+     * 已发送请求的读取同样在到期后中止；0 表示等待所有请求完成(单个请求仍受 socketTimeout 限制)
+     */
+    private long timeout = 0;
+}
@@ -0,0 +1,327 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.danga.MemCached.MemCachedClient;
+import com.schooner.MemCached.NativeHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 直接通过协议读写 long/int/boolean，数据格式与 MemCachedClient 完全一致：
+ * 默认按 NativeHandler 的二进制格式(大端)存储，isPrimitiveAsString 为 true 时存储为十进制文本(flags 为字符串)，
+ * 读取时按 flags 识别两种格式，计数器(incr/addOrIncr 写入的文本)也可以直接读取。
+ * 读写过程中不装箱，也不分配 Object，批量读取直接填充调用方传入的数组。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public final class MemcachedPrimitives {
+    private static final byte[] STORED = "STORED".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private MemcachedPrimitives() {
+    }
+
+    /**
+     * 读取一个 long
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param missing 不存在、格式不符或读取失败时的返回值
+     * @return long
+     */
+    public static long getLong(MemcachedConnectionPool pool, String key, long missing) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("get ").writeAscii(wireKey).writeCrlf().flush();
+
+            long header = connection.readValueHeader();
+            if(header < 0) return missing;
+
+            long value = missing;
+            try {
+                value = readNumber(connection, header);
+            } catch (NumberFormatException e) {
+                if(log.isDebugEnabled()) log.debug("{} => {} is not a number", pool.getConfig().getName(), key);
+            }
+            if(connection.readValueHeader() >= 0) throw new IOException("Unexpected VALUE after " + key);
+            return value;
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => get {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return missing;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * 批量读取 long，按服务器分组后每台服务器一次 get
+     * @param pool 连接池
+     * @param keys 缓存keys
+     * @param values 与 keys 一一对应的结果数组，长度不小于 keys
+     * @param missing 不存在、格式不符或读取失败的位置填充的值
+     * @return 命中的数量
+     */
+    public static int getLongs(MemcachedConnectionPool pool, String[] keys, long[] values, long missing) {
+        if(values.length < keys.length) throw new IllegalArgumentException("values.length < keys.length");
+        return fill(pool, keys, values, null, missing);
+    }
+
+    /**
+     * 批量读取 int，见 {@link #getLongs}
+     * @param pool 连接池
+     * @param keys 缓存keys
+     * @param values 与 keys 一一对应的结果数组，长度不小于 keys
+     * @param missing 不存在、格式不符或读取失败的位置填充的值
+     * @return 命中的数量
+     */
+    public static int getInts(MemcachedConnectionPool pool, String[] keys, int[] values, int missing) {
+        if(values.length < keys.length) throw new IllegalArgumentException("values.length < keys.length");
+        return fill(pool, keys, null, values, missing);
+    }
+
+    /**
+     * 存储一个 long
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致
+     * @return true / false
+     */
+    public static boolean setLong(MemcachedConnectionPool pool, String key, long value, long expired) {
+        return store(pool, key, MemCachedClient.MARKER_LONG, value, expired);
+    }
+
+    /**
+     * 存储一个 int
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致
+     * @return true / false
+     */
+    public static boolean setInt(MemcachedConnectionPool pool, String key, int value, long expired) {
+        return store(pool, key, MemCachedClient.MARKER_INTEGER, value, expired);
+    }
+
+    /**
+     * 存储一个 boolean
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param value 数值
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致
+     * @return true / false
+     */
+    public static boolean setBoolean(MemcachedConnectionPool pool, String key, boolean value, long expired) {
+        return store(pool, key, MemCachedClient.MARKER_BOOLEAN, value ? 1 : 0, expired);
+    }
+
+    private static boolean store(MemcachedConnectionPool pool, String key, int marker, long value, long expired) {
+        boolean asString = Boolean.TRUE.equals(pool.getConfig().getIsPrimitiveAsString());
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("set ").writeAscii(wireKey).write((byte) ' ')
+                    .writeDecimal(asString ? MemCachedClient.MARKER_STRING : marker).write((byte) ' ')
+                    .writeDecimal(expired / 1000).write((byte) ' ');
+            if(asString && marker == MemCachedClient.MARKER_BOOLEAN) {
+                byte[] text = value != 0 ? TRUE : FALSE;
+                connection.writeDecimal(text.length).writeCrlf().write(text);
+            } else if(asString) {
+                connection.writeDecimal(decimalLength(value)).writeCrlf().writeDecimal(value);
+            } else if(marker == MemCachedClient.MARKER_LONG) {
+                connection.writeDecimal(8).writeCrlf();
+                for (int shift = 56; shift >= 0; shift -= 8) connection.write((byte) (value >> shift));
+            } else if(marker == MemCachedClient.MARKER_INTEGER) {
+                connection.writeDecimal(4).writeCrlf();
+                for (int shift = 24; shift >= 0; shift -= 8) connection.write((byte) (value >> shift));
+            } else {
+                connection.writeDecimal(1).writeCrlf().write((byte) value);
+            }
+            connection.writeCrlf().flush();
+            return connection.readLineEquals(STORED);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => set {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return false;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private static int fill(MemcachedConnectionPool pool, String[] keys, long[] longs, int[] ints, long missing) {
+        int count = keys.length;
+        MemcachedLocator locator = pool.getLocator();
+        String[] servers = locator.getServers();
+        String[] wireKeys = MemcachedKeys.encode(keys, !Boolean.FALSE.equals(pool.getConfig().getEnableKeyStrictMode()));
+        int[] owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            owners[i] = locator.indexOf(locator.locate(wireKeys[i]));
+            if(longs != null) longs[i] = missing;
+            else ints[i] = (int) missing;
+        }
+
+        int hits = 0;
+        for (int server = 0; server < servers.length; server++) {
+            MemcachedConnection connection = null;
+            try {
+                int first = -1;
+                for (int i = 0; i < count; i++) {
+                    if(owners[i] != server) continue;
+                    if(connection == null) {
+                        connection = pool.borrow(servers[server]);
+                        connection.writeAscii("get");
+                        first = i;
+                    }
+                    connection.write((byte) ' ').writeAscii(wireKeys[i]);
+                }
+                if(connection == null) continue;
+                connection.writeCrlf().flush();
+
+                // 服务器按请求顺序返回命中的 key，未命中的 key 直接跳过
+                int index = first;
+                long header;
+                while ((header = connection.readValueHeader()) >= 0) {
+                    while (index < count && (owners[index] != server || !connection.valueKeyEquals(wireKeys[index]))) index++;
+                    if(index >= count) throw new IOException("Unexpected VALUE from " + servers[server]);
+
+                    try {
+                        long value = readNumber(connection, header);
+                        if(longs != null) longs[index] = value;
+                        else ints[index] = (int) value;
+                        hits++;
+                    } catch (NumberFormatException e) {
+                        if(log.isDebugEnabled()) log.debug("{} => {} is not a number", pool.getConfig().getName(), keys[index]);
+                    }
+                    index++;
+                }
+            } catch (IOException e) {
+                if(connection != null) connection.markBroken();
+                log.warn("{} => get from {} failed: {}", pool.getConfig().getName(), servers[server], e.getMessage());
+            } finally {
+                pool.release(connection);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * 读取 VALUE 的数据块(包括结尾的 \r\n)并转换为数值，格式不符时数据块同样会被读完，保证连接仍然可用
+     * @throws NumberFormatException 格式不符
+     */
+    private static long readNumber(MemcachedConnection connection, long header) throws IOException {
+        int flags = (int) (header >>> 32);
+        int length = (int) header;
+        if((flags & MemCachedClient.F_COMPRESSED) == MemCachedClient.F_COMPRESSED) {
+            byte[] data = new byte[length];
+            connection.readFully(data, 0, length);
+            connection.readCrlf();
+            return decompressed(data, flags);
+        }
+
+        long value;
+        if(isMarker(flags, MemCachedClient.MARKER_BYTE) && length == 1) {
+            value = (byte) connection.readByte();
+        } else if(isMarker(flags, MemCachedClient.MARKER_BOOLEAN) && length == 1) {
+            value = connection.readByte() == 1 ? 1 : 0;
+        } else if((isMarker(flags, MemCachedClient.MARKER_INTEGER) || isMarker(flags, MemCachedClient.MARKER_CHARACTER)
+                || isMarker(flags, MemCachedClient.MARKER_SHORT)) && length == 4) {
+            value = (int) readBigEndian(connection, 4);
+        } else if(isMarker(flags, MemCachedClient.MARKER_LONG) && length == 8) {
+            value = readBigEndian(connection, 8);
+        } else if(isMarker(flags, MemCachedClient.MARKER_STRING) || isMarker(flags, MemCachedClient.MARKER_STRINGBUFFER)
+                || isMarker(flags, MemCachedClient.MARKER_STRINGBUILDER)) {
+            return readText(connection, length);
+        } else {
+            connection.skip(length);
+            connection.readCrlf();
+            throw new NumberFormatException("flags " + flags);
+        }
+        connection.readCrlf();
+        return value;
+    }
+
+    /**
+     * 解析十进制文本或 true/false，允许 incr 之后服务器在结尾补的空格
+     */
+    private static long readText(MemcachedConnection connection, int length) throws IOException {
+        long value = 0;
+        boolean negative = false;
+        boolean valid = length > 0;
+        boolean digits = false;
+        boolean trailing = false;
+        int first = -1;
+        for (int i = 0; i < length; i++) {
+            int b = connection.readByte();
+            if(i == 0) first = b;
+            if(b == ' ') {
+                trailing = true;
+            } else if(trailing) {
+                valid = false;
+            } else if(b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digits = true;
+            } else if(b == '-' && i == 0) {
+                negative = true;
+            } else {
+                valid = false;
+            }
+        }
+        connection.readCrlf();
+
+        if(valid && digits) return negative ? -value : value;
+        if(first == 't' && length == TRUE.length) return 1;
+        if(first == 'f' && length == FALSE.length) return 0;
+        throw new NumberFormatException();
+    }
+
+    private static long decompressed(byte[] data, int flags) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 2);
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[2048];
+            int n;
+            while ((n = input.read(buffer)) != -1) output.write(buffer, 0, n);
+        }
+
+        Object value = NativeHandler.isHandled(flags) ? NativeHandler.decode(output.toByteArray(), flags) : null;
+        if(value instanceof Number) return ((Number) value).longValue();
+        if(value instanceof Boolean) return (Boolean) value ? 1 : 0;
+        if(value instanceof CharSequence) {
+            String text = value.toString().trim();
+            if("true".equals(text)) return 1;
+            if("false".equals(text)) return 0;
+            return Long.parseLong(text);
+        }
+        throw new NumberFormatException("flags " + flags);
+    }
+
+    private static long readBigEndian(MemcachedConnection connection, int length) throws IOException {
+        long value = 0;
+        for (int i = 0; i < length; i++) value = (value << 8) | connection.readByte();
+        return value;
+    }
+
+    private static boolean isMarker(int flags, int marker) {
+        return (flags & marker) == marker;
+    }
+
+    private static int decimalLength(long value) {
+        if(value == Long.MIN_VALUE) return 20;
+        int length = value < 0 ? 2 : 1;
+        long abs = Math.abs(value);
+        while (abs >= 10) {
+            abs /= 10;
+            length++;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,86 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 客户端读取到的数据大小的均匀抽样(蓄水池抽样)，用于分析 slab 的内存利用率。
+ * 记录的是估算的 item 大小：item 头部 + key + 数据 + 结尾的 \r\n。
+ * 每次记录都要更新共享的计数并生成随机数，默认关闭，只有开启后连接才会记录，关闭时读取数据只多一次 volatile 读
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedSizeSampler {
+    /**
+     * memcached item 头部的大小(开启 cas 时)
+     */
+    public static final int ITEM_HEADER = 56;
+    private static final int DEFAULT_CAPACITY = 10_000;
+
+    private final AtomicIntegerArray samples;
+    private final AtomicLong count = new AtomicLong();
+    private volatile boolean enabled;
+
+    public MemcachedSizeSampler() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MemcachedSizeSampler(int capacity) {
+        this.samples = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * 记录一个 item
+     * @param keyLength key 的字节数
+     * @param valueLength 数据的字节数
+     */
+    public void record(int keyLength, long valueLength) {
+        int size = (int) Math.min(Integer.MAX_VALUE, ITEM_HEADER + keyLength + 1 + valueLength + 2);
+        long n = count.incrementAndGet();
+        if(n <= samples.length()) {
+            samples.set((int) (n - 1), size);
+            return;
+        }
+
+        long slot = ThreadLocalRandom.current().nextLong(n);
+        if(slot < samples.length()) samples.set((int) slot, size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return 累计记录的 item 数量
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return 排序后的样本
+     */
+    public int[] snapshot() {
+        int length = (int) Math.min(count.get(), samples.length());
+        int[] result = new int[length];
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            int value = samples.get(i);
+            if(value > 0) result[size++] = value;
+        }
+        result = size == length ? result : Arrays.copyOf(result, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < samples.length(); i++) samples.set(i, 0);
+        count.set(0);
+    }
+}
@@ -0,0 +1,186 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 只更新过期时间的 touch 和读取的同时更新过期时间的 gat(memcached 1.5.3+)，
+ * 滑动过期不再需要 get + set 重写整个数据。批量操作按服务器分组，每台服务器以流水线方式发送
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public final class MemcachedTouch {
+    private static final byte[] TOUCHED = "TOUCHED".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * 同一台服务器一次往返最多发送的 key 数量，避免请求和响应同时占满 socket 缓冲区
+     */
+    private static final int BATCH_SIZE = 100;
+
+    private MemcachedTouch() {
+    }
+
+    /**
+     * 更新过期时间
+     * @param pool 连接池
+     * @param key 缓存key
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致，不足 1 秒按 1 秒
+     * @return 不存在或失败时返回 false
+     */
+    public static boolean touch(MemcachedConnectionPool pool, String key, long expired) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("touch ").writeAscii(wireKey).write((byte) ' ').writeDecimal(MemcachedMeta.seconds(expired)).writeCrlf().flush();
+            return connection.readLineEquals(TOUCHED);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => touch {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return false;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * 批量更新过期时间
+     * @param pool 连接池
+     * @param keys 缓存keys
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致，不足 1 秒按 1 秒
+     * @return 更新成功的 key，不存在或所在服务器失败的 key 不包含在内
+     */
+    public static Set<String> touch(MemcachedConnectionPool pool, String[] keys, long expired) {
+        Set<String> touched = new HashSet<>((int) (keys.length / 0.75f) + 1);
+        String[] wireKeys = new String[keys.length];
+        Map<String, List<Integer>> servers = group(pool, keys, wireKeys);
+        for (Map.Entry<String, List<Integer>> entry : servers.entrySet()) {
+            String server = entry.getKey();
+            List<Integer> indexes = entry.getValue();
+            MemcachedConnection connection = null;
+            try {
+                connection = pool.borrow(server);
+                for (int from = 0; from < indexes.size(); from += BATCH_SIZE) {
+                    int to = Math.min(indexes.size(), from + BATCH_SIZE);
+                    for (int i = from; i < to; i++) {
+                        connection.writeAscii("touch ").writeAscii(wireKeys[indexes.get(i)]).write((byte) ' ').writeDecimal(MemcachedMeta.seconds(expired)).writeCrlf();
+                    }
+                    connection.flush();
+                    for (int i = from; i < to; i++) {
+                        if(connection.readLineEquals(TOUCHED)) touched.add(keys[indexes.get(i)]);
+                    }
+                }
+            } catch (IOException e) {
+                if(connection != null) connection.markBroken();
+                log.warn("{} => touch {} keys on {} failed: {}", pool.getConfig().getName(), indexes.size(), server, e.getMessage());
+            } finally {
+                pool.release(connection);
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * 读取数据并更新过期时间
+     * @param pool 连接池
+     * @param decoder 解码器
+     * @param key 缓存key
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致，不足 1 秒按 1 秒
+     * @return 不存在或失败时返回 null
+     */
+    public static Object getAndTouch(MemcachedConnectionPool pool, MemcachedDecoder decoder, String key, long expired) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("gat ").writeDecimal(MemcachedMeta.seconds(expired)).write((byte) ' ').writeAscii(wireKey).writeCrlf().flush();
+
+            long header = connection.readValueHeader();
+            if(header < 0) return null;
+
+            byte[] data = new byte[(int) header];
+            connection.readFully(data, 0, data.length);
+            connection.readCrlf();
+            if(connection.readValueHeader() >= 0) throw new IOException("Unexpected VALUE after " + key);
+            return decoder.decode((int) (header >>> 32), data);
+        } catch (IOException e) {
+            if(connection != null) connection.markBroken();
+            log.warn("{} => gat {} failed: {}", pool.getConfig().getName(), key, e.getMessage());
+            return null;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * 批量读取数据并更新过期时间，每台服务器每 100 个 key 一次 gat
+     * @param pool 连接池
+     * @param decoder 解码器
+     * @param keys 缓存keys
+     * @param expired 过期时间，与 MemCachedClient 的 Date 参数含义一致，不足 1 秒按 1 秒
+     * @return 命中的 key 和数据
+     */
+    public static Map<String, Object> getAndTouch(MemcachedConnectionPool pool, MemcachedDecoder decoder, String[] keys, long expired) {
+        Map<String, Object> result = new HashMap<>((int) (keys.length / 0.75f) + 1);
+        String[] wireKeys = new String[keys.length];
+        Map<String, List<Integer>> servers = group(pool, keys, wireKeys);
+        for (Map.Entry<String, List<Integer>> entry : servers.entrySet()) {
+            String server = entry.getKey();
+            List<Integer> indexes = entry.getValue();
+            MemcachedConnection connection = null;
+            try {
+                connection = pool.borrow(server);
+                for (int from = 0; from < indexes.size(); from += BATCH_SIZE) {
+                    int to = Math.min(indexes.size(), from + BATCH_SIZE);
+                    connection.writeAscii("gat ").writeDecimal(MemcachedMeta.seconds(expired));
+                    for (int i = from; i < to; i++) connection.write((byte) ' ').writeAscii(wireKeys[indexes.get(i)]);
+                    connection.writeCrlf().flush();
+
+                    // 服务器按请求顺序返回命中的 key，未命中的 key 直接跳过
+                    int position = from;
+                    long header;
+                    while ((header = connection.readValueHeader()) >= 0) {
+                        while (position < to && !connection.valueKeyEquals(wireKeys[indexes.get(position)])) position++;
+                        if(position >= to) throw new IOException("Unexpected VALUE from " + server);
+
+                        byte[] data = new byte[(int) header];
+                        connection.readFully(data, 0, data.length);
+                        connection.readCrlf();
+
+                        int index = indexes.get(position++);
+                        try {
+                            Object value = decoder.decode((int) (header >>> 32), data);
+                            if(value != null) result.put(keys[index], value);
+                        } catch (Exception e) {
+                            log.warn("{} => decode {} failed: {}", pool.getConfig().getName(), keys[index], e.getMessage());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if(connection != null) connection.markBroken();
+                log.warn("{} => gat {} keys from {} failed: {}", pool.getConfig().getName(), indexes.size(), server, e.getMessage());
+            } finally {
+                pool.release(connection);
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, List<Integer>> group(MemcachedConnectionPool pool, String[] keys, String[] wireKeys) {
+        Map<String, List<Integer>> servers = new LinkedHashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            wireKeys[i] = pool.encodeKey(keys[i]);
+            servers.computeIfAbsent(pool.locate(wireKeys[i]), s -> new ArrayList<>()).add(i);
+        }
+        return servers;
+    }
+}
@@ -0,0 +1,35 @@
+package com.lizhibao.toolbox.memcached.ratelimit;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 限流参数，固定时间窗口
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@Accessors(chain = true)
+public class MemcachedRateLimitOptions {
+    /**
+     * 每个窗口允许的请求数(所有实例合计)
+     */
+    private long limit;
+    /**
+     * 窗口长度(毫秒)
+     */
+    private long window = 1000;
+    /**
+     * 每个窗口拆分的子 key 数量，额度平均分配到各个子 key，分散到不同的服务器，最多 64
+     */
+    private int shards = 4;
+    /**
+     * 每次通过 incr 预取的令牌数，0 表示自动取每个子 key 额度的 1/10。
+     * 越大网络请求越少，但窗口结束时各实例未用完的令牌会被浪费，实际通过的请求可能少于 limit
+     */
+    private long lease = 0;
+    /**
+     * 服务器不可用时是否放行
+     */
+    private boolean failOpen = true;
+}
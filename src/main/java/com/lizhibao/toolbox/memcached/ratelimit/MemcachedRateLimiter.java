@@ -0,0 +1,206 @@
+package com.lizhibao.toolbox.memcached.ratelimit;
+
+import com.danga.MemCached.MemCachedClient;
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedKeys;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于 incr 的分布式限流(固定窗口)。
+ * 每个窗口的额度平均拆分到多个子 key(key:窗口序号:分片)，各实例通过 incr 一次预取一批令牌，
+ * 之后在本地扣减，令牌用完或窗口切换时才访问服务器；某个子 key 额度用完后换下一个子 key，全部用完才拒绝。
+ * 窗口序号由本地时钟计算，各实例之间的时钟偏差会体现为窗口边界的偏差。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedRateLimiter {
+    private static final int MAX_SHARDS = 64;
+    /**
+     * 本地窗口状态超过该数量时清理已经结束的窗口
+     */
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final MemcachedManager manager;
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+    public MemcachedRateLimiter(MemcachedManager manager) {
+        this.manager = manager;
+        // 服务器列表重新配置后丢弃绑定旧客户端的本地状态，窗口计数保存在服务器上
+        manager.addListener((name, current) -> limiters.keySet().removeIf(id -> id.startsWith(name + '\n')));
+    }
+
+    /**
+     * 获取一个令牌
+     * @param name 缓存名称
+     * @param key 限流key
+     * @param options 限流参数
+     * @return true: 放行；false: 超出限制或缓存名称不存在
+     */
+    public boolean tryAcquire(String name, String key, MemcachedRateLimitOptions options) {
+        return this.tryAcquire(name, key, 1, options);
+    }
+
+    /**
+     * 获取指定数量的令牌
+     * @param name 缓存名称
+     * @param key 限流key
+     * @param permits 令牌数
+     * @param options 限流参数
+     * @return true: 放行；false: 超出限制或缓存名称不存在
+     */
+    public boolean tryAcquire(String name, String key, long permits, MemcachedRateLimitOptions options) {
+        if(permits <= 0) return true;
+        if(permits > options.getLimit()) return false;
+
+        Limiter limiter = this.limiter(name, key, options);
+        return limiter != null && limiter.tryAcquire(permits);
+    }
+
+    private Limiter limiter(String name, String key, MemcachedRateLimitOptions options) {
+        String id = name + '\n' + key;
+        Limiter limiter = limiters.get(id);
+        if(limiter != null && limiter.matches(options)) return limiter;
+
+        MyMemCachedClient cachedClient = manager.getClients().get(name);
+        if(cachedClient == null || cachedClient.getClient() == null) return null;
+
+        if(limiters.size() >= SWEEP_THRESHOLD) sweep();
+
+        // 并发创建时只保留一个实例，已经预取的令牌不会被另一个实例覆盖
+        return limiters.compute(id, (k, current) -> current != null && current.matches(options)
+                ? current : new Limiter(cachedClient.getClient(), cachedClient.getConfig(), key, options));
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        limiters.values().removeIf(limiter -> limiter.windowId < now / limiter.window - 1);
+    }
+
+    /**
+     * 单个限流 key 在本实例内的状态
+     */
+    private static class Limiter {
+        private final MemCachedClient client;
+        private final MemcachedConfig config;
+        private final String key;
+        private final long limit;
+        private final long window;
+        private final int shards;
+        private final long lease;
+        private final boolean failOpen;
+        private final AtomicLong tokens = new AtomicLong();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long windowId = -1;
+        /**
+         * 当前窗口已用完额度的分片，只在持有 lock 时访问
+         */
+        private long exhausted;
+        private int shard;
+
+        private Limiter(MemCachedClient client, MemcachedConfig config, String key, MemcachedRateLimitOptions options) {
+            if(options.getLimit() <= 0 || options.getWindow() <= 0) throw new IllegalArgumentException("Invalid rate limit: " + options);
+
+            this.client = client;
+            this.config = config;
+            this.key = key;
+            this.limit = options.getLimit();
+            this.window = options.getWindow();
+            this.shards = shards(options);
+            this.lease = options.getLease() > 0 ? options.getLease() : Math.max(1, limit / shards / 10);
+            this.failOpen = options.isFailOpen();
+        }
+
+        private boolean matches(MemcachedRateLimitOptions options) {
+            return limit == options.getLimit() && window == options.getWindow() && failOpen == options.isFailOpen()
+                    && shards == shards(options) && (options.getLease() <= 0 || lease == options.getLease());
+        }
+
+        /**
+         * 实际使用的分片数：1 ~ 64，且不超过额度
+         */
+        private static int shards(MemcachedRateLimitOptions options) {
+            return (int) Math.max(1, Math.min(Math.min(MAX_SHARDS, options.getShards()), options.getLimit()));
+        }
+
+        private boolean tryAcquire(long permits) {
+            long id = System.currentTimeMillis() / window;
+            while (true) {
+                if(windowId == id) {
+                    long available = tokens.get();
+                    if(available >= permits) {
+                        if(tokens.compareAndSet(available, available - permits)) return true;
+                        continue;
+                    }
+                }
+
+                lock.lock();
+                try {
+                    if(windowId != id) {
+                        tokens.set(0);
+                        this.exhausted = 0;
+                        this.shard = ThreadLocalRandom.current().nextInt(shards);
+                        this.windowId = id;
+                    }
+                    if(tokens.get() < permits) {
+                        Boolean leased = this.lease(id, permits - tokens.get());
+                        if(leased == null) return failOpen;
+                        if(!leased) return false;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * 从服务器预取令牌直到本地令牌数不少于 needed，只在持有 lock 时调用
+         * @return true: 预取成功；false: 当前窗口所有分片的额度都已用完；null: 服务器不可用
+         */
+        private Boolean lease(long id, long needed) {
+            long remaining = needed;
+            while (remaining > 0) {
+                if(Long.bitCount(exhausted) >= shards) return false;
+                while ((exhausted & (1L << shard)) != 0) shard = (shard + 1) % shards;
+
+                long quota = limit / shards + (shard < limit % shards ? 1 : 0);
+                long want = Math.max(lease, remaining);
+                long count = this.incr(key + ':' + id + ':' + shard, want);
+                if(count < 0) {
+                    log.warn("{} => rate limit incr failed, {}", key, failOpen ? "allowed" : "denied");
+                    return null;
+                }
+
+                long granted = Math.min(want, quota - (count - want));
+                if(count >= quota) {
+                    this.exhausted |= 1L << shard;
+                    shard = (shard + 1) % shards;
+                }
+                if(granted > 0) {
+                    tokens.addAndGet(granted);
+                    remaining -= granted;
+                }
+            }
+            return true;
+        }
+
+        private long incr(String subKey, long delta) {
+            subKey = MemcachedKeys.clientKey(config, subKey);
+            long count = client.incr(subKey, delta);
+            if(count >= 0) return count;
+
+            // 子 key 只需要存活到窗口结束，多保留一个窗口用于容忍时钟偏差
+            if(client.add(subKey, String.valueOf(delta), new Date(window * 2 + 1000))) return delta;
+            return client.incr(subKey, delta);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.lizhibao.toolbox.memcached.slab;
+
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.model.MemcachedSlabClassReport;
+import com.lizhibao.toolbox.memcached.model.MemcachedSlabReport;
+import com.lizhibao.toolbox.memcached.model.MemcachedStatsItem;
+import com.lizhibao.toolbox.memcached.model.MemcachedStatsItems;
+import com.lizhibao.toolbox.memcached.model.MemcachedStatsSlab;
+import com.lizhibao.toolbox.memcached.model.MemcachedStatsSlabs;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMultiGet;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedMultiGetOptions;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedSizeSampler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * slab 内存利用率分析：根据 stats slabs / stats items 计算每个 slab class 的浪费字节数和淘汰压力，
+ * 再用客户端抽样得到的 item 大小分布模拟不同增长因子(-f)下的浪费比例，给出调整建议。
+ * item 大小来自直连协议读取到的数据(批量读取、原始字节、近端缓存、导出等)，
+ * 需要配置 sizeSampling 才会持续记录；未开启或只使用 danga 客户端读取时没有样本，可以先调用 {@link #sample(String, String[])} 读取一批有代表性的 key。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedSlabAnalyzer {
+    /**
+     * 默认配置下最小的 chunk 大小
+     */
+    private static final int MIN_CHUNK_SIZE = 96;
+    private static final int CHUNK_ALIGN = 8;
+    private static final long DEFAULT_PAGE_SIZE = 1024 * 1024;
+    /**
+     * 默认配置下的增长因子，slab class 不足以推算时使用
+     */
+    private static final double DEFAULT_GROWTH_FACTOR = 1.25;
+    private static final double[] CANDIDATE_FACTORS = {1.05, 1.08, 1.10, 1.15, 1.20, 1.25};
+    /**
+     * 样本少于该数量时不给出增长因子建议
+     */
+    private static final int MIN_SAMPLES = 100;
+    /**
+     * 浪费比例至少降低该值才建议调整增长因子
+     */
+    private static final double MIN_IMPROVEMENT = 0.03;
+    private static final double HIGH_WASTE_RATIO = 0.3;
+
+    private final MemcachedManager manager;
+    private final MemcachedTemplate template;
+
+    public MemcachedSlabAnalyzer(MemcachedManager manager, MemcachedTemplate template) {
+        this.manager = manager;
+        this.template = template;
+    }
+
+    /**
+     * 读取一批 key 作为 item 大小的样本，读取到的数据直接丢弃；未开启 sizeSampling 时只在读取期间临时开启抽样
+     * @param name 缓存名称
+     * @param keys 缓存keys
+     * @return 累计的样本数量
+     */
+    public long sample(String name, String[] keys) {
+        MyMemCachedClient cachedClient = client(name);
+        MemcachedSizeSampler sampler = cachedClient.getConnectionPool().getSizeSampler();
+        boolean enabled = sampler.isEnabled();
+        sampler.setEnabled(true);
+        try {
+            MemcachedMultiGet.get(cachedClient.getConnectionPool(), cachedClient.getDecoder(), keys, new MemcachedMultiGetOptions());
+        } finally {
+            if(!enabled) sampler.setEnabled(false);
+        }
+        return sampler.getCount();
+    }
+
+    /**
+     * 分析各台服务器的 slab 内存利用率
+     * @param name 缓存名称
+     * @return 每台服务器一份报告，服务器不可用时返回空列表
+     */
+    public List<MemcachedSlabReport> analyze(String name) {
+        MemcachedSizeSampler sampler = client(name).getConnectionPool().getSizeSampler();
+        int[] samples = sampler.snapshot();
+
+        Map<String, Map<Integer, MemcachedStatsItem>> itemsByServer = new HashMap<>();
+        for (MemcachedStatsItems items : template.statsItemsToModel(name)) {
+            Map<Integer, MemcachedStatsItem> bySlab = new HashMap<>();
+            for (MemcachedStatsItem item : items.getItems()) bySlab.put((int) parse(item.getSlabId()), item);
+            itemsByServer.put(items.getServer(), bySlab);
+        }
+
+        List<MemcachedSlabReport> reports = new ArrayList<>();
+        for (MemcachedStatsSlabs slabs : template.statsSlabsToModel(name)) {
+            Map<Integer, MemcachedStatsItem> items = itemsByServer.get(slabs.getServer());
+            MemcachedSlabReport report = analyze(slabs, items == null ? new HashMap<>() : items, samples);
+            reports.add(report);
+            if(log.isDebugEnabled()) log.debug("{} => {} slab waste {}, recommendations {}", name, report.getServer(), report.getWasteRatio(), report.getRecommendations());
+        }
+        return reports;
+    }
+
+    /**
+     * 分析一台服务器的 slab
+     * @param slabs stats slabs
+     * @param items stats items，按 slab id 索引
+     * @param samples 排序后的 item 大小样本
+     */
+    static MemcachedSlabReport analyze(MemcachedStatsSlabs slabs, Map<Integer, MemcachedStatsItem> items, int[] samples) {
+        MemcachedSlabReport report = new MemcachedSlabReport();
+        report.setServer(slabs.getServer());
+        report.setTotalMalloced(parse(slabs.getTotal_malloced()));
+
+        long pageSize = 0;
+        for (MemcachedStatsSlab slab : slabs.getSlabs()) {
+            MemcachedSlabClassReport clazz = new MemcachedSlabClassReport();
+            clazz.setSlabId((int) parse(slab.getSlabId()));
+            clazz.setChunkSize(parse(slab.getChunk_size()));
+            clazz.setTotalPages(parse(slab.getTotal_pages()));
+            clazz.setUsedChunks(parse(slab.getUsed_chunks()));
+            clazz.setFreeChunks(parse(slab.getFree_chunks()) + parse(slab.getFree_chunks_end()));
+            clazz.setRequestedBytes(parse(slab.getMem_requested()));
+            long used = clazz.getUsedChunks() * clazz.getChunkSize();
+            clazz.setWastedBytes(Math.max(0, used - clazz.getRequestedBytes()));
+            clazz.setWasteRatio(ratio(clazz.getWastedBytes(), used));
+            pageSize = Math.max(pageSize, clazz.getChunkSize() * parse(slab.getChunks_per_page()));
+
+            MemcachedStatsItem item = items.get(clazz.getSlabId());
+            if(item != null) {
+                clazz.setEvicted(parse(item.getEvicted()));
+                clazz.setEvictedTime(parse(item.getEvicted_time()));
+                clazz.setEvictedUnfetched(parse(item.getEvicted_unfetched()));
+                clazz.setOutOfMemory(parse(item.getOutofmemory()));
+                clazz.setAge(parse(item.getAge()));
+            }
+            clazz.setEvictionPressure(ratio(clazz.getEvicted(), clazz.getEvicted() + clazz.getUsedChunks()));
+            report.getClasses().add(clazz);
+        }
+        report.getClasses().sort(Comparator.comparingInt(MemcachedSlabClassReport::getSlabId));
+        // chunk_size * chunks_per_page 不一定正好是整页，按 KB 向上取整
+        report.setPageSize(pageSize > 0 ? (pageSize + 1023) / 1024 * 1024 : DEFAULT_PAGE_SIZE);
+
+        long wasted = 0, used = 0;
+        for (MemcachedSlabClassReport clazz : report.getClasses()) {
+            wasted += clazz.getWastedBytes();
+            used += clazz.getUsedChunks() * clazz.getChunkSize();
+            report.setEvicted(report.getEvicted() + clazz.getEvicted());
+        }
+        report.setWastedBytes(wasted);
+        report.setWasteRatio(ratio(wasted, used));
+        double factor = growthFactor(report.getClasses());
+        report.setGrowthFactor(factor > 1 ? factor : DEFAULT_GROWTH_FACTOR);
+
+        analyzeSamples(report, samples);
+        recommend(report, samples);
+        return report;
+    }
+
+    /**
+     * 统计样本分布，并模拟各候选增长因子下的浪费比例
+     */
+    private static void analyzeSamples(MemcachedSlabReport report, int[] samples) {
+        report.setSampleCount(samples.length);
+        if(samples.length == 0) return;
+
+        report.setSizeP50(percentile(samples, 0.5));
+        report.setSizeP90(percentile(samples, 0.9));
+        report.setSizeP99(percentile(samples, 0.99));
+
+        // stats slabs 只列出已分配内存的 class，按推算的增长因子还原完整的 chunk 大小
+        long minChunkSize = MIN_CHUNK_SIZE;
+        List<MemcachedSlabClassReport> classes = report.getClasses();
+        if(!classes.isEmpty() && classes.get(0).getSlabId() == 1 && classes.get(0).getChunkSize() > 0) minChunkSize = classes.get(0).getChunkSize();
+        report.setSampleWasteRatio(waste(chunkSizes(minChunkSize, report.getGrowthFactor(), report.getPageSize()), samples));
+
+        for (int sample : samples) {
+            MemcachedSlabClassReport clazz = classOf(report.getClasses(), sample);
+            if(clazz != null) clazz.setSamples(clazz.getSamples() + 1);
+        }
+
+        if(samples.length < MIN_SAMPLES) return;
+
+        double best = Double.MAX_VALUE;
+        double[] wastes = new double[CANDIDATE_FACTORS.length];
+        for (int i = 0; i < CANDIDATE_FACTORS.length; i++) {
+            wastes[i] = waste(chunkSizes(minChunkSize, CANDIDATE_FACTORS[i], report.getPageSize()), samples);
+            best = Math.min(best, wastes[i]);
+        }
+        // 浪费比例相近时选择更大的增长因子，slab class 越少，各 class 之间抢占内存的问题越小
+        for (int i = CANDIDATE_FACTORS.length - 1; i >= 0; i--) {
+            if(wastes[i] <= best + 0.01) {
+                report.setRecommendedGrowthFactor(CANDIDATE_FACTORS[i]);
+                report.setRecommendedWasteRatio(wastes[i]);
+                break;
+            }
+        }
+    }
+
+    private static void recommend(MemcachedSlabReport report, int[] samples) {
+        List<String> recommendations = report.getRecommendations();
+        if(report.getRecommendedGrowthFactor() > 0
+                && report.getSampleWasteRatio() - report.getRecommendedWasteRatio() >= MIN_IMPROVEMENT
+                && Math.abs(report.getRecommendedGrowthFactor() - report.getGrowthFactor()) >= 0.005) {
+            recommendations.add(String.format("将增长因子从 -f %.2f 调整为 -f %.2f，按样本估算浪费比例从 %.1f%% 降低到 %.1f%%",
+                    report.getGrowthFactor(), report.getRecommendedGrowthFactor(),
+                    report.getSampleWasteRatio() * 100, report.getRecommendedWasteRatio() * 100));
+        }
+
+        boolean outOfMemory = false, evicting = false, hasFree = false;
+        for (MemcachedSlabClassReport clazz : report.getClasses()) {
+            if(clazz.getOutOfMemory() > 0) outOfMemory = true;
+            if(clazz.getEvicted() > 0) evicting = true;
+            if(clazz.getFreeChunks() * clazz.getChunkSize() >= report.getPageSize()) hasFree = true;
+            if(clazz.getUsedChunks() > 0 && clazz.getWasteRatio() > HIGH_WASTE_RATIO) {
+                recommendations.add(String.format("slab %d (chunk %d 字节) 浪费 %.1f%%，该大小区间的数据较集中，可考虑调整增长因子或数据大小",
+                        clazz.getSlabId(), clazz.getChunkSize(), clazz.getWasteRatio() * 100));
+            }
+        }
+        if(outOfMemory || evicting && hasFree) {
+            recommendations.add("部分 slab class 在淘汰数据或分配失败，而其他 class 仍有空闲内存，建议开启 -o slab_reassign,slab_automove=1");
+        }
+        if(samples.length > 0 && samples[samples.length - 1] > report.getPageSize()) {
+            recommendations.add(String.format("存在超过页大小 %d 字节的数据(最大 %d 字节)，需要调大 -I 或拆分数据",
+                    report.getPageSize(), samples[samples.length - 1]));
+        }
+    }
+
+    /**
+     * 相邻 chunk 大小比值的最小值：chunk 大小按 8 字节向上对齐，比值只会大于实际的增长因子，小 chunk 偏差更明显
+     */
+    private static double growthFactor(List<MemcachedSlabClassReport> classes) {
+        double factor = Double.MAX_VALUE;
+        for (int i = 1; i < classes.size(); i++) {
+            MemcachedSlabClassReport previous = classes.get(i - 1), current = classes.get(i);
+            if(current.getSlabId() == previous.getSlabId() + 1 && previous.getChunkSize() > 0) {
+                factor = Math.min(factor, (double) current.getChunkSize() / previous.getChunkSize());
+            }
+        }
+        if(factor == Double.MAX_VALUE) return 0;
+
+        return Math.round(factor * 100) / 100.0;
+    }
+
+    /**
+     * 按 memcached 的规则生成 chunk 大小：从最小 chunk 开始按增长因子递增并按 8 字节对齐，最后一个 class 为整页
+     */
+    private static long[] chunkSizes(long minChunkSize, double factor, long pageSize) {
+        long[] sizes = new long[64];
+        int count = 0;
+        double size = minChunkSize;
+        while (size <= pageSize / 2.0) {
+            long aligned = ((long) Math.ceil(size) + CHUNK_ALIGN - 1) / CHUNK_ALIGN * CHUNK_ALIGN;
+            if(count == sizes.length) sizes = Arrays.copyOf(sizes, count * 2);
+            sizes[count++] = aligned;
+            size = aligned * factor;
+        }
+        if(count == sizes.length) sizes = Arrays.copyOf(sizes, count + 1);
+        sizes[count++] = pageSize;
+        return Arrays.copyOf(sizes, count);
+    }
+
+    /**
+     * 样本存入指定 chunk 大小时的浪费比例，超过最大 chunk 的样本不计入
+     */
+    private static double waste(long[] chunkSizes, int[] samples) {
+        long wasted = 0, allocated = 0;
+        int index = 0;
+        // samples 已排序，chunk 大小只需要单向移动
+        for (int sample : samples) {
+            while (index < chunkSizes.length && chunkSizes[index] < sample) index++;
+            if(index == chunkSizes.length) break;
+            wasted += chunkSizes[index] - sample;
+            allocated += chunkSizes[index];
+        }
+        return ratio(wasted, allocated);
+    }
+
+    private static MemcachedSlabClassReport classOf(List<MemcachedSlabClassReport> classes, int size) {
+        for (MemcachedSlabClassReport clazz : classes) {
+            if(clazz.getChunkSize() >= size) return clazz;
+        }
+        return null;
+    }
+
+    private static long percentile(int[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double ratio(long value, long total) {
+        return total <= 0 ? 0 : (double) value / total;
+    }
+
+    private static long parse(String value) {
+        if(value == null) return 0;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private MyMemCachedClient client(String name) {
+        MyMemCachedClient cachedClient = manager.getClients().get(name);
+        if(cachedClient == null || cachedClient.getConnectionPool() == null) throw new IllegalArgumentException("Unknown memcached client: " + name);
+        return cachedClient;
+    }
+}
@@ -0,0 +1,37 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import com.lizhibao.toolbox.memcached.model.MemcachedSnapshotReport;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.function.Consumer;
+
+/**
+ * 快照导出参数
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@Accessors(chain = true)
+public class MemcachedExportOptions {
+    /**
+     * 每次批量获取(get k1 k2 ...)的 key 数量，同时也是导出过程中驻留内存的最大 key 数量
+     */
+    private int batchSize = 100;
+    /**
+     * 每秒最多导出的记录数，0 表示不限速
+     */
+    private long maxRecordsPerSecond = 0;
+    /**
+     * 每个 slab 最多导出的 key 数量，0 表示不限制（服务器端 cachedump 仍有自身的输出上限）
+     */
+    private int limitPerSlab = 0;
+    /**
+     * 进度回调的间隔(毫秒)
+     */
+    private long progressInterval = 5000;
+    /**
+     * 进度回调，为空时只输出日志
+     */
+    private Consumer<MemcachedSnapshotReport> progressListener;
+}
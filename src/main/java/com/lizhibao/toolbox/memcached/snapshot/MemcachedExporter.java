@@ -0,0 +1,243 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.model.MemcachedSnapshotReport;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将缓存内容导出为快照文件，可通过 {@link MemcachedWarmer} 恢复到新的集群。
+ * 逐台服务器通过 stats items / stats cachedump 发现 key，再按批次通过 get k1 k2 ... 获取原始数据，
+ * 获取到的 value 直接从连接读入文件写缓冲区，任意时刻内存中只保留一个批次的 key。
+ * cachedump 只能列出服务器愿意输出的部分 key（见 {@link com.lizhibao.toolbox.memcached.MemcachedTemplate#statsCacheDump}），导出结果不保证完整。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedExporter {
+    private final MemcachedManager manager;
+
+    public MemcachedExporter(MemcachedManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * 使用默认参数导出
+     * @param name 缓存名称
+     * @param file 快照文件
+     * @return MemcachedSnapshotReport
+     */
+    public MemcachedSnapshotReport export(String name, Path file) throws IOException {
+        return this.export(name, file, new MemcachedExportOptions());
+    }
+
+    /**
+     * 导出，先写入同目录下的临时文件，完成后再替换目标文件
+     * @param name 缓存名称
+     * @param file 快照文件
+     * @param options 导出参数
+     * @return MemcachedSnapshotReport
+     */
+    public MemcachedSnapshotReport export(String name, Path file, MemcachedExportOptions options) throws IOException {
+        MyMemCachedClient cachedClient = manager.getClients().get(name);
+        if(cachedClient == null) throw new IllegalArgumentException("Unknown memcached client: " + name);
+
+        MemcachedConnectionPool pool = cachedClient.getConnectionPool();
+        Export export = new Export(new MemcachedSnapshotReport(name, file.toString()), options);
+
+        Map<String, List<Integer>> slabs = new LinkedHashMap<>();
+        for (String server : pool.getServers()) {
+            MemcachedConnection connection = pool.borrow(server);
+            try {
+                slabs.put(server, slabIds(connection, export));
+            } catch (IOException e) {
+                connection.markBroken();
+                log.warn("{} => skip {} when exporting: {}", name, server, e.getMessage());
+            } finally {
+                pool.release(connection);
+            }
+        }
+
+        log.info("{} => export to {}, about {} items on {} servers", name, file, export.total, slabs.size());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (MemcachedSnapshotWriter writer = new MemcachedSnapshotWriter(temp)) {
+            for (Map.Entry<String, List<Integer>> entry : slabs.entrySet()) {
+                exportServer(pool, entry.getKey(), entry.getValue(), writer, export);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        export.report.setFinished(true);
+        export.report(true);
+        return export.report;
+    }
+
+    private void exportServer(MemcachedConnectionPool pool, String server, List<Integer> slabIds,
+                              MemcachedSnapshotWriter writer, Export export) throws IOException {
+        MemcachedConnection dump = null;
+        MemcachedConnection fetch = null;
+        Map<String, Long> batch = new HashMap<>();
+        try {
+            dump = pool.borrow(server);
+            fetch = pool.borrow(server);
+            long started = serverStartTime(dump);
+            long now = System.currentTimeMillis() / 1000;
+            int batchSize = Math.max(1, export.options.getBatchSize());
+
+            for (Integer slabId : slabIds) {
+                dump.writeAscii("stats cachedump ").writeDecimal(slabId).write((byte) ' ')
+                        .writeDecimal(export.options.getLimitPerSlab()).writeCrlf().flush();
+
+                String line;
+                while (!"END".equals(line = dump.readLine())) {
+                    if(!line.startsWith("ITEM ")) throw new IOException("Unexpected cachedump response: " + line);
+
+                    // ITEM <key> [<bytes> b; <exptime> s]
+                    int keyEnd = line.indexOf(" [", 5);
+                    long exptime = Long.parseLong(line.substring(line.lastIndexOf("; ") + 2, line.length() - 3));
+                    if(exptime <= started + 1) exptime = 0;
+                    if(exptime != 0 && exptime <= now) {
+                        export.report.setExpired(export.report.getExpired() + 1);
+                        continue;
+                    }
+
+                    batch.put(line.substring(5, keyEnd), exptime);
+                    if(batch.size() >= batchSize) fetch(fetch, batch, writer, export);
+                }
+                if(!batch.isEmpty()) fetch(fetch, batch, writer, export);
+            }
+        } catch (IOException e) {
+            if(dump != null) dump.markBroken();
+            if(fetch != null) fetch.markBroken();
+            // 写文件失败时快照已不可信，交给调用方删除临时文件
+            if(writer.isBroken()) throw e;
+
+            // 读取失败的记录已被 writer 丢弃，批次中尚未写入的 key 都计为失败
+            MemcachedSnapshotReport report = export.report;
+            report.setFailed(report.getFailed() + batch.size());
+            report.setRecords(writer.getRecords());
+            report.setStored(writer.getRecords());
+            report.setBytes(writer.getBytes());
+            export.processed += batch.size();
+            log.warn("{} => export from {} aborted: {}", pool.getConfig().getName(), server, e.getMessage());
+        } finally {
+            pool.release(dump);
+            pool.release(fetch);
+        }
+    }
+
+    private void fetch(MemcachedConnection connection, Map<String, Long> batch, MemcachedSnapshotWriter writer,
+                       Export export) throws IOException {
+        export.pacer.acquire(batch.size());
+
+        connection.writeAscii("get");
+        for (String key : batch.keySet()) connection.write((byte) ' ').writeAscii(key);
+        connection.writeCrlf().flush();
+
+        String line;
+        while (!"END".equals(line = connection.readLine())) {
+            // VALUE <key> <flags> <bytes>
+            String[] parts = line.split(" ");
+            if(parts.length < 4 || !"VALUE".equals(parts[0])) throw new IOException("Unexpected get response: " + line);
+
+            Long exptime = batch.get(parts[1]);
+            int flags = (int) Long.parseLong(parts[2]);
+            int length = Integer.parseInt(parts[3]);
+            writer.write(parts[1].getBytes(StandardCharsets.ISO_8859_1), flags, exptime == null ? 0 : exptime, length, connection);
+            // 写入完整后才从批次中移除，中途失败时批次中剩下的就是未导出的 key
+            if(exptime != null) {
+                batch.remove(parts[1]);
+                export.processed++;
+            }
+            connection.readCrlf();
+        }
+
+        // 批次中剩下的 key 已过期或被淘汰
+        MemcachedSnapshotReport report = export.report;
+        report.setRecords(writer.getRecords());
+        report.setStored(writer.getRecords());
+        report.setBytes(writer.getBytes());
+        report.setExpired(report.getExpired() + batch.size());
+        export.processed += batch.size();
+        batch.clear();
+        export.report(false);
+    }
+
+    private static long serverStartTime(MemcachedConnection connection) throws IOException {
+        connection.writeAscii("stats").writeCrlf().flush();
+        long time = 0;
+        long uptime = 0;
+        String line;
+        while (!"END".equals(line = connection.readLine())) {
+            if(line.startsWith("STAT time ")) time = Long.parseLong(line.substring(10).trim());
+            else if(line.startsWith("STAT uptime ")) uptime = Long.parseLong(line.substring(12).trim());
+        }
+        return time - uptime;
+    }
+
+    private static List<Integer> slabIds(MemcachedConnection connection, Export export) throws IOException {
+        connection.writeAscii("stats items").writeCrlf().flush();
+        List<Integer> result = new ArrayList<>();
+        String line;
+        while (!"END".equals(line = connection.readLine())) {
+            // STAT items:<slabId>:number <count>
+            if(!line.startsWith("STAT items:")) continue;
+
+            String[] parts = line.split(" ");
+            String[] keys = parts[1].split(":");
+            if(keys.length == 3 && "number".equals(keys[2])) {
+                result.add(Integer.parseInt(keys[1]));
+                export.total += Long.parseLong(parts[2].trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 导出过程中的状态，只在调用线程中访问
+     */
+    private static class Export {
+        private final MemcachedSnapshotReport report;
+        private final MemcachedExportOptions options;
+        private final MemcachedPacer pacer;
+        private final long start = System.currentTimeMillis();
+        private long lastReport = start;
+        private long total;
+        private long processed;
+
+        private Export(MemcachedSnapshotReport report, MemcachedExportOptions options) {
+            this.report = report;
+            this.options = options;
+            this.pacer = new MemcachedPacer(options.getMaxRecordsPerSecond());
+        }
+
+        private void report(boolean force) {
+            long now = System.currentTimeMillis();
+            if(!force && now - lastReport < options.getProgressInterval()) return;
+
+            this.lastReport = now;
+            report.setElapsedMillis(now - start);
+            report.setProgress(report.isFinished() || total == 0 ? 1 : Math.min(1, (double) processed / total));
+            log.info("{} => export {} {}%, {} records, {} expired or missing, {} failed, {} records/s, {} KB/s",
+                    report.getName(), report.getFile(), String.format("%.1f", report.getProgress() * 100), report.getRecords(),
+                    report.getExpired(), report.getFailed(), (long) report.getRecordsPerSecond(), (long) report.getBytesPerSecond() / 1024);
+            if(options.getProgressListener() != null) options.getProgressListener().accept(report);
+        }
+    }
+}
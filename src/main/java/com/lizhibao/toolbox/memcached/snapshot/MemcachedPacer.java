@@ -0,0 +1,32 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按固定速率发放许可，许可不足时阻塞调用线程，用于预热和导出的限速。
+ * 非线程安全，只在单个调度线程中使用。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+class MemcachedPacer {
+    private final long intervalNanos;
+    private long next = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond 每秒发放的许可数，0 表示不限速
+     */
+    MemcachedPacer(long permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+    }
+
+    void acquire(int permits) {
+        if(intervalNanos == 0) return;
+
+        long now = System.nanoTime();
+        if(next < now) next = now;
+        long wait = next - now;
+        next += permits * intervalNanos;
+        if(wait > 0) LockSupport.parkNanos(wait);
+    }
+}
@@ -0,0 +1,24 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+/**
+ * 缓存快照文件格式，所有数值均为大端序：
+ * <pre>
+ * 文件头: magic(int) version(int)
+ * 记录:   keyLength(unsigned short) key(bytes) flags(int) exptime(int, 绝对时间戳秒, 0 表示永不过期) valueLength(int) value(bytes)
+ * </pre>
+ * value 保存的是服务器上的原始字节和 flags，恢复后 MemCachedClient 可以按原样解码。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public final class MemcachedSnapshot {
+    public static final int MAGIC = 0x4D43534E;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    /**
+     * 记录中除 key 和 value 之外的固定长度：keyLength + flags + exptime + valueLength
+     */
+    public static final int RECORD_OVERHEAD = 2 + 4 + 4 + 4;
+
+    private MemcachedSnapshot() {
+    }
+}
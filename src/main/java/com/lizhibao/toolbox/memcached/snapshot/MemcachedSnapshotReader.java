@@ -0,0 +1,101 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 通过内存映射顺序读取快照文件，记录中的 value 直接引用映射区域，不做拷贝。
+ * 文件按窗口分段映射，单条记录跨越窗口时从记录起始位置重新映射。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedSnapshotReader implements Closeable {
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    public MemcachedSnapshotReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+            int offset = ensure(0, MemcachedSnapshot.HEADER_SIZE);
+            if(window.getInt(offset) != MemcachedSnapshot.MAGIC) throw new IOException("Not a memcached snapshot: " + file);
+
+            int version = window.getInt(offset + 4);
+            if(version != MemcachedSnapshot.VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            this.position = MemcachedSnapshot.HEADER_SIZE;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取下一条记录
+     * @return 没有更多记录时返回 null
+     */
+    public MemcachedSnapshotRecord next() throws IOException {
+        if(position >= size) return null;
+
+        int offset = ensure(position, 2);
+        int keyLength = window.getShort(offset) & 0xFFFF;
+        int headerLength = MemcachedSnapshot.RECORD_OVERHEAD + keyLength;
+
+        offset = ensure(position, headerLength);
+        int valueLength = window.getInt(offset + headerLength - 4);
+        if(valueLength < 0) throw new IOException("Corrupted snapshot record at " + position);
+
+        offset = ensure(position, (long) headerLength + valueLength);
+        byte[] key = new byte[keyLength];
+        ByteBuffer buffer = window.duplicate();
+        buffer.position(offset + 2);
+        buffer.get(key);
+        int flags = buffer.getInt();
+        long exptime = buffer.getInt() & 0xFFFFFFFFL;
+        buffer.position(offset + headerLength).limit(offset + headerLength + valueLength);
+
+        position += headerLength + valueLength;
+        return new MemcachedSnapshotRecord(key, flags, exptime, buffer.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * 已读取的字节数
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * 文件总字节数
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.window = null;
+        channel.close();
+    }
+
+    private int ensure(long start, long length) throws IOException {
+        if(start + length > size) throw new EOFException("Truncated snapshot at " + start);
+
+        if(window == null || start < windowStart || start + length > windowStart + window.limit()) {
+            long mapSize = Math.min(Math.max(WINDOW_SIZE, length), size - start);
+            this.window = channel.map(FileChannel.MapMode.READ_ONLY, start, mapSize);
+            this.windowStart = start;
+        }
+        return (int) (start - windowStart);
+    }
+}
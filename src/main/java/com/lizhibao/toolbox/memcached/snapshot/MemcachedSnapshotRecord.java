@@ -0,0 +1,36 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 快照中的一条记录
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Getter
+@AllArgsConstructor
+public class MemcachedSnapshotRecord {
+    /**
+     * 缓存key(ASCII)
+     */
+    private final byte[] key;
+    /**
+     * danga 客户端写入时的 flags
+     */
+    private final int flags;
+    /**
+     * 过期时间，绝对时间戳(秒)，0 表示永不过期
+     */
+    private final long exptime;
+    /**
+     * 原始数据，读取快照时为内存映射文件的只读切片
+     */
+    private final ByteBuffer value;
+
+    public int size() {
+        return MemcachedSnapshot.RECORD_OVERHEAD + key.length + value.remaining();
+    }
+}
@@ -0,0 +1,158 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 通过 FileChannel 顺序写入快照文件，记录先写入固定大小的直接缓冲区，写满后整体刷盘，
+ * 大于缓冲区的 value 分段写入，内存占用与记录数量无关。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedSnapshotWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long records;
+    private long bytes;
+    /**
+     * 写入文件失败后为 true，此时文件内容已不可信
+     */
+    private boolean broken;
+
+    public MemcachedSnapshotWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        buffer.putInt(MemcachedSnapshot.MAGIC).putInt(MemcachedSnapshot.VERSION);
+        this.bytes = MemcachedSnapshot.HEADER_SIZE;
+    }
+
+    /**
+     * 写入一条记录
+     * @param key 缓存key(ASCII)
+     * @param flags danga 客户端写入时的 flags
+     * @param exptime 过期时间，绝对时间戳(秒)，0 表示永不过期
+     * @param value 原始数据
+     */
+    public void write(byte[] key, int flags, long exptime, ByteBuffer value) throws IOException {
+        int length = value.remaining();
+        writeHeader(key, flags, exptime, length);
+        while (value.hasRemaining()) {
+            if(!buffer.hasRemaining()) flushBuffer();
+            int n = Math.min(buffer.remaining(), value.remaining());
+            ByteBuffer part = value.duplicate();
+            part.limit(part.position() + n);
+            buffer.put(part);
+            value.position(value.position() + n);
+        }
+        finish(key.length, length);
+    }
+
+    /**
+     * 写入一条记录，value 直接从连接中读取到写缓冲区，不经过中间数组。
+     * 从连接读取失败时丢弃这条不完整的记录(包括已经刷盘的部分)，文件回到上一条完整记录的末尾，可以继续写入
+     * @param key 缓存key(ASCII)
+     * @param flags danga 客户端写入时的 flags
+     * @param exptime 过期时间，绝对时间戳(秒)，0 表示永不过期
+     * @param length value 长度
+     * @param source 正在读取 VALUE 数据块的连接
+     */
+    public void write(byte[] key, int flags, long exptime, int length, MemcachedConnection source) throws IOException {
+        writeHeader(key, flags, exptime, length);
+        int left = length;
+        while (left > 0) {
+            if(!buffer.hasRemaining()) flushBuffer();
+            int n = Math.min(buffer.remaining(), left);
+            try {
+                source.readFully(buffer, n);
+            } catch (IOException e) {
+                rollback();
+                throw e;
+            }
+            left -= n;
+        }
+        finish(key.length, length);
+    }
+
+    /**
+     * 写入文件是否失败过，失败后不能再继续写入
+     */
+    public boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * 已写入的记录数
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * 已写入的字节数（包含文件头）
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeHeader(byte[] key, int flags, long exptime, int length) throws IOException {
+        if(key.length == 0 || key.length > 0xFFFF) throw new IllegalArgumentException("Invalid key length " + key.length);
+
+        if(buffer.remaining() < MemcachedSnapshot.RECORD_OVERHEAD + key.length) flushBuffer();
+        buffer.putShort((short) key.length).put(key).putInt(flags).putInt((int) exptime).putInt(length);
+    }
+
+    private void finish(int keyLength, int valueLength) {
+        this.records++;
+        this.bytes += MemcachedSnapshot.RECORD_OVERHEAD + keyLength + valueLength;
+    }
+
+    private void flushBuffer() throws IOException {
+        if(broken) throw new IOException("Snapshot writer is broken");
+
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            this.broken = true;
+            throw e;
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 回到上一条完整记录的末尾(bytes)：未刷盘的部分直接丢弃，已刷盘的部分截断
+     */
+    private void rollback() throws IOException {
+        try {
+            long flushed = channel.position();
+            if(flushed <= bytes) {
+                buffer.limit(buffer.capacity()).position((int) (bytes - flushed));
+                return;
+            }
+
+            channel.truncate(bytes);
+            channel.position(bytes);
+            buffer.clear();
+        } catch (IOException e) {
+            this.broken = true;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.model.MemcachedSnapshotReport;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 从快照文件批量预热缓存。
+ * 读取线程通过内存映射顺序读取快照，按 key 所在服务器分组后交给每台服务器的写入线程，
+ * 写入线程以流水线方式批量发送 add/set 命令后再统一读取响应，并按配置限速，避免预热挤占线上流量。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedWarmer {
+    private static final List<MemcachedSnapshotRecord> END = Collections.emptyList();
+
+    private final MemcachedManager manager;
+
+    public MemcachedWarmer(MemcachedManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * 使用默认参数预热
+     * @param name 缓存名称
+     * @param file 快照文件
+     * @return MemcachedSnapshotReport
+     */
+    public MemcachedSnapshotReport warmUp(String name, Path file) throws IOException {
+        return this.warmUp(name, file, new MemcachedWarmupOptions());
+    }
+
+    /**
+     * 预热
+     * @param name 缓存名称
+     * @param file 快照文件
+     * @param options 预热参数
+     * @return MemcachedSnapshotReport
+     */
+    public MemcachedSnapshotReport warmUp(String name, Path file, MemcachedWarmupOptions options) throws IOException {
+        MyMemCachedClient cachedClient = manager.getClients().get(name);
+        if(cachedClient == null) throw new IllegalArgumentException("Unknown memcached client: " + name);
+
+        MemcachedConnectionPool pool = cachedClient.getConnectionPool();
+        String command = options.isOverwrite() ? "set" : "add";
+        int parallelism = Math.max(1, options.getParallelism());
+        int batchSize = Math.max(1, options.getBatchSize());
+        String[] servers = pool.getServers();
+
+        Progress progress = new Progress(name, file.toString());
+        Map<String, BlockingQueue<List<MemcachedSnapshotRecord>>> queues = new HashMap<>();
+        Map<String, List<MemcachedSnapshotRecord>> batches = new HashMap<>();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(servers.length * parallelism, r -> {
+            Thread thread = new Thread(r, "memcached-warmer-" + name + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("{} => warm up from {}, parallelism {}, batch {}, limit {}/s", name, file, parallelism, batchSize, options.getMaxRecordsPerSecond());
+        try (MemcachedSnapshotReader reader = new MemcachedSnapshotReader(file)) {
+            for (String server : servers) {
+                BlockingQueue<List<MemcachedSnapshotRecord>> queue = new ArrayBlockingQueue<>(parallelism * 2);
+                queues.put(server, queue);
+                batches.put(server, new ArrayList<>(batchSize));
+                for (int i = 0; i < parallelism; i++) {
+                    executor.execute(() -> write(pool, server, queue, command, progress));
+                }
+            }
+
+            MemcachedPacer pacer = new MemcachedPacer(options.getMaxRecordsPerSecond());
+            long nowSeconds = System.currentTimeMillis() / 1000;
+            long lastReport = System.currentTimeMillis();
+            MemcachedSnapshotRecord record;
+            while ((record = reader.next()) != null) {
+                progress.records.increment();
+                progress.bytes.add(record.size());
+                if(record.getExptime() != 0 && record.getExptime() <= nowSeconds) {
+                    progress.expired.increment();
+                    continue;
+                }
+
+                String server = pool.getLocator().locate(record.getKey(), 0, record.getKey().length);
+                List<MemcachedSnapshotRecord> batch = batches.get(server);
+                batch.add(record);
+                if(batch.size() >= batchSize) {
+                    pacer.acquire(batch.size());
+                    queues.get(server).put(batch);
+                    batches.put(server, new ArrayList<>(batchSize));
+                }
+
+                long now = System.currentTimeMillis();
+                if(now - lastReport >= options.getProgressInterval()) {
+                    lastReport = now;
+                    nowSeconds = now / 1000;
+                    report(progress.snapshot(reader), options);
+                }
+            }
+
+            for (Map.Entry<String, List<MemcachedSnapshotRecord>> entry : batches.entrySet()) {
+                if(entry.getValue().isEmpty()) continue;
+                pacer.acquire(entry.getValue().size());
+                queues.get(entry.getKey()).put(entry.getValue());
+            }
+            for (BlockingQueue<List<MemcachedSnapshotRecord>> queue : queues.values()) {
+                for (int i = 0; i < parallelism; i++) queue.put(END);
+            }
+
+            executor.shutdown();
+            while (!executor.awaitTermination(options.getProgressInterval(), TimeUnit.MILLISECONDS)) {
+                report(progress.snapshot(reader), options);
+            }
+
+            MemcachedSnapshotReport result = progress.snapshot(reader);
+            result.setFinished(true);
+            report(result, options);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Warm up interrupted: " + name, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void write(MemcachedConnectionPool pool, String server, BlockingQueue<List<MemcachedSnapshotRecord>> queue,
+                       String command, Progress progress) {
+        MemcachedConnection connection = null;
+        try {
+            List<MemcachedSnapshotRecord> batch;
+            while ((batch = queue.take()) != END) {
+                try {
+                    if(connection == null) connection = pool.borrow(server);
+                    writeBatch(connection, batch, command, progress);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("{} => warm up batch of {} failed on {}: {}", pool.getConfig().getName(), batch.size(), server, e.getMessage());
+                    progress.failed.add(batch.size());
+                    if(connection != null) {
+                        connection.markBroken();
+                        pool.release(connection);
+                        connection = null;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private void writeBatch(MemcachedConnection connection, List<MemcachedSnapshotRecord> batch, String command,
+                            Progress progress) throws IOException {
+        for (MemcachedSnapshotRecord record : batch) {
+            connection.writeAscii(command).write((byte) ' ')
+                    .write(record.getKey()).write((byte) ' ')
+                    .writeDecimal(record.getFlags() & 0xFFFFFFFFL).write((byte) ' ')
+                    .writeDecimal(record.getExptime()).write((byte) ' ')
+                    .writeDecimal(record.getValue().remaining()).writeCrlf()
+                    .write(record.getValue().duplicate()).writeCrlf();
+        }
+        connection.flush();
+
+        for (int i = 0; i < batch.size(); i++) {
+            String line = connection.readLine();
+            if("STORED".equals(line)) {
+                progress.stored.increment();
+            } else if("NOT_STORED".equals(line) || "EXISTS".equals(line)) {
+                progress.notStored.increment();
+            } else {
+                if(log.isDebugEnabled()) log.debug("{} => {}", connection.getHost(), line);
+                progress.failed.increment();
+            }
+        }
+    }
+
+    private static void report(MemcachedSnapshotReport report, MemcachedWarmupOptions options) {
+        log.info("{} => warm up {} {}%, {} records, {} stored, {} not stored, {} expired, {} failed, {} records/s, {} KB/s",
+                report.getName(), report.getFile(), String.format("%.1f", report.getProgress() * 100), report.getRecords(),
+                report.getStored(), report.getNotStored(), report.getExpired(), report.getFailed(),
+                (long) report.getRecordsPerSecond(), (long) report.getBytesPerSecond() / 1024);
+        if(options.getProgressListener() != null) options.getProgressListener().accept(report);
+    }
+
+    /**
+     * 读取线程和写入线程共享的计数器
+     */
+    private static class Progress {
+        private final String name;
+        private final String file;
+        private final long start = System.currentTimeMillis();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder stored = new LongAdder();
+        private final LongAdder notStored = new LongAdder();
+        private final LongAdder expired = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        private Progress(String name, String file) {
+            this.name = name;
+            this.file = file;
+        }
+
+        private MemcachedSnapshotReport snapshot(MemcachedSnapshotReader reader) {
+            MemcachedSnapshotReport report = new MemcachedSnapshotReport(name, file);
+            report.setRecords(records.sum());
+            report.setBytes(bytes.sum());
+            report.setStored(stored.sum());
+            report.setNotStored(notStored.sum());
+            report.setExpired(expired.sum());
+            report.setFailed(failed.sum());
+            report.setProgress(reader.getSize() == 0 ? 1 : (double) reader.getPosition() / reader.getSize());
+            report.setElapsedMillis(System.currentTimeMillis() - start);
+            return report;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import com.lizhibao.toolbox.memcached.model.MemcachedSnapshotReport;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.function.Consumer;
+
+/**
+ * 快照预热参数
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@Accessors(chain = true)
+public class MemcachedWarmupOptions {
+    /**
+     * 每台服务器并行写入的连接数
+     */
+    private int parallelism = 2;
+    /**
+     * 每次流水线写入的记录数
+     */
+    private int batchSize = 100;
+    /**
+     * 每秒最多写入的记录数，0 表示不限速
+     */
+    private long maxRecordsPerSecond = 0;
+    /**
+     * true: 使用 set 覆盖已存在的 key；false: 使用 add，不覆盖线上已经写入的新数据
+     */
+    private boolean overwrite = false;
+    /**
+     * 进度回调的间隔(毫秒)
+     */
+    private long progressInterval = 5000;
+    /**
+     * 进度回调，为空时只输出日志
+     */
+    private Consumer<MemcachedSnapshotReport> progressListener;
+}
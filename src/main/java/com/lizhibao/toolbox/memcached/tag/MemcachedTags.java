@@ -0,0 +1,202 @@
+package com.lizhibao.toolbox.memcached.tag;
+
+import com.lizhibao.toolbox.memcached.MemcachedOperations;
+import com.lizhibao.toolbox.memcached.model.MemcachedTagged;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于标签的批量失效：每个标签在服务器上有一个版本号，带标签写入的数据记录写入时各标签的版本号，
+ * 读取时通过一次批量 get 校验版本号，任一标签的版本号变化即视为未命中。
+ * 使一个标签失效只需要一次 incr，与带有该标签的数据数量无关；版本号在本地缓存 tagCacheTtl，
+ * 其他实例使标签失效后，本实例最多延迟该时间可见。
+ * 版本号首次创建(或被服务器淘汰后重新创建)时取当前时间戳，保证不会回退到旧版本。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public final class MemcachedTags {
+    /**
+     * 版本号 key 的前缀
+     */
+    private static final String VERSION_PREFIX = "__tag:";
+    /**
+     * 本地缓存的版本号超过该数量时清理已过期的版本号
+     */
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final MemcachedOperations operations;
+    private final long cacheTtl;
+    private final Map<String, Version> versions = new ConcurrentHashMap<>();
+
+    public MemcachedTags(MemcachedOperations operations) {
+        this.operations = operations;
+        Long ttl = operations.getConfig().getTagCacheTtl();
+        this.cacheTtl = ttl == null || ttl < 0 ? 0 : ttl;
+    }
+
+    /**
+     * 存储带标签的数据
+     * @param key 缓存key
+     * @param value 数据
+     * @param expired 过期时间
+     * @param tags 标签
+     * @return true / false
+     */
+    public boolean set(String key, Object value, long expired, String[] tags) {
+        long[] current = this.versions(tags);
+        if(current == null) return false;
+
+        return operations.set(key, new MemcachedTagged(value, tags, current), expired);
+    }
+
+    /**
+     * 获取数据并校验标签版本号
+     * @param key 缓存key
+     * @return 未命中、标签已失效或服务器不可用时返回 null
+     */
+    public Object get(String key) {
+        Object cached = operations.get(key);
+        if(!(cached instanceof MemcachedTagged)) return cached;
+
+        MemcachedTagged tagged = (MemcachedTagged) cached;
+        long[] current = this.versions(tagged.getTags());
+        return current != null && Arrays.equals(current, tagged.getVersions()) ? tagged.getValue() : null;
+    }
+
+    /**
+     * 批量获取数据，所有数据的标签合并为一次批量校验
+     * @param keys 缓存keys
+     * @return 有效的数据
+     */
+    public Map<String, Object> getMulti(String[] keys) {
+        Map<String, Object> cached = operations.getMulti(keys);
+        Map<String, Object> result = new HashMap<>((int) (keys.length / 0.75f) + 1);
+        if(cached == null || cached.isEmpty()) return result;
+
+        Set<String> tags = new LinkedHashSet<>();
+        for (Object value : cached.values()) {
+            if(value instanceof MemcachedTagged) {
+                for (String tag : ((MemcachedTagged) value).getTags()) tags.add(tag);
+            }
+        }
+        String[] allTags = tags.toArray(new String[0]);
+        long[] loaded = this.versions(allTags);
+        if(loaded == null) return result;
+
+        Map<String, Long> current = new HashMap<>((int) (allTags.length / 0.75f) + 1);
+        for (int i = 0; i < allTags.length; i++) current.put(allTags[i], loaded[i]);
+
+        for (Map.Entry<String, Object> entry : cached.entrySet()) {
+            Object value = entry.getValue();
+            if(!(value instanceof MemcachedTagged)) {
+                result.put(entry.getKey(), value);
+            } else if(matches((MemcachedTagged) value, current)) {
+                result.put(entry.getKey(), ((MemcachedTagged) value).getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 使带有该标签的所有数据失效
+     * @param tag 标签
+     * @return true / false
+     */
+    public boolean invalidate(String tag) {
+        String versionKey = VERSION_PREFIX + tag;
+        long value = operations.incr(versionKey, 1);
+        if(value < 0) {
+            // 版本号不存在时直接创建新的版本号，与旧版本不同即可
+            long now = System.currentTimeMillis();
+            value = operations.add(versionKey, String.valueOf(now)) ? now : operations.incr(versionKey, 1);
+        }
+        if(value < 0) {
+            log.warn("{} => invalidate tag {} failed", operations.getName(), tag);
+            versions.remove(tag);
+            return false;
+        }
+
+        versions.put(tag, new Version(value, System.currentTimeMillis() + cacheTtl));
+        return true;
+    }
+
+    /**
+     * 获取标签当前的版本号，本地缓存中没有的标签通过一次批量 get 读取，服务器上不存在的版本号以当前时间戳创建
+     * @param tags 标签
+     * @return 与 tags 一一对应的版本号，服务器不可用时返回 null
+     */
+    public long[] versions(String[] tags) {
+        long now = System.currentTimeMillis();
+        long[] result = new long[tags.length];
+        List<Integer> missing = null;
+        for (int i = 0; i < tags.length; i++) {
+            Version version = versions.get(tags[i]);
+            if(version != null && version.expiresAt > now) {
+                result[i] = version.value;
+            } else {
+                if(missing == null) missing = new ArrayList<>();
+                missing.add(i);
+            }
+        }
+        if(missing == null) return result;
+
+        String[] versionKeys = new String[missing.size()];
+        for (int i = 0; i < versionKeys.length; i++) versionKeys[i] = VERSION_PREFIX + tags[missing.get(i)];
+        Map<String, Object> loaded = operations.getMulti(versionKeys);
+
+        if(versions.size() >= SWEEP_THRESHOLD) versions.values().removeIf(version -> version.expiresAt <= now);
+        for (int i = 0; i < versionKeys.length; i++) {
+            long value = parse(loaded == null ? null : loaded.get(versionKeys[i]));
+            if(value < 0 && operations.add(versionKeys[i], String.valueOf(now))) value = now;
+            // 其他实例同时创建了版本号
+            if(value < 0) value = operations.getCounter(versionKeys[i]);
+            if(value < 0) return null;
+
+            int index = missing.get(i);
+            result[index] = value;
+            versions.put(tags[index], new Version(value, now + cacheTtl));
+        }
+        return result;
+    }
+
+    /**
+     * 数据记录的版本号是否与当前版本号一致
+     */
+    private static boolean matches(MemcachedTagged tagged, Map<String, Long> current) {
+        String[] recorded = tagged.getTags();
+        for (int i = 0; i < recorded.length; i++) {
+            Long version = current.get(recorded[i]);
+            if(version == null || version != tagged.getVersions()[i]) return false;
+        }
+        return true;
+    }
+
+    private static long parse(Object value) {
+        if(value instanceof Number) return ((Number) value).longValue();
+        if(value == null) return -1;
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class Version {
+        private final long value;
+        private final long expiresAt;
+
+        private Version(long value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的耗时直方图(微秒)，用于回放和压测报告中的分位数。
+ * 小于 32 的值精确记录，更大的值按 2 的幂分段、每段 16 个桶，分位数的相对误差不超过 1/16，内存占用固定。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedLatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * @param micros 耗时(微秒)，小于 0 时按 0 记录
+     */
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试直到更新成功或者已有更大的值
+        }
+    }
+
+    /**
+     * 分位数
+     * @param percentile 0 ~ 100
+     * @return 该分位所在桶的上界(微秒)，不超过最大值；没有记录时返回 0
+     */
+    public long percentile(double percentile) {
+        long total = count.sum();
+        if(total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= rank) return Math.min(max.get(), upperBound(i));
+        }
+        return max.get();
+    }
+
+    /**
+     * 记录的次数
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 最大耗时(微秒)
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 平均耗时(微秒)
+     */
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    private static int bucket(long value) {
+        if(value < 2 * SUB_BUCKETS) return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long upperBound(int bucket) {
+        if(bucket < 2 * SUB_BUCKETS) return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,480 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 只监听 127.0.0.1 的内存版 memcached，实现 danga 客户端用到的文本协议命令
+ * (get/gets/gat/gats、set/add/replace/append/prepend/cas、delete、incr/decr、touch、flush_all、version、stats)，
+ * 用于在没有 memcached 的环境中回放流量、压测和故障注入，不限制内存也不做淘汰，不能用于生产。
+ * 每个连接一个线程，同一连接上流水线发送的命令在输入缓冲区读空后才统一刷出响应。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedLoopbackServer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE = 8192;
+    private static final long MAX_RELATIVE_EXPTIME = TimeUnit.DAYS.toSeconds(30);
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Item> items = new ConcurrentHashMap<>();
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final AtomicLong casUnique = new AtomicLong();
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder totalConnections = new LongAdder();
+    private final LongAdder gets = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder sets = new LongAdder();
+    private final long startMillis = System.currentTimeMillis();
+    private volatile boolean closed;
+
+    /**
+     * 监听随机端口
+     */
+    public MemcachedLoopbackServer() throws IOException {
+        this(0);
+    }
+
+    /**
+     * @param port 监听端口，0 表示随机端口
+     */
+    public MemcachedLoopbackServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+        Thread acceptor = new Thread(this::accept, "memcached-loopback-accept-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * 监听的端口
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 服务器地址，格式与 {@link MemcachedConfig#getServers()} 一致
+     */
+    public String getAddress() {
+        return InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort();
+    }
+
+    /**
+     * 指向本服务器的客户端配置，其余参数为默认值
+     * @param name 缓存名称
+     * @return MemcachedConfig
+     */
+    public MemcachedConfig config(String name) {
+        MemcachedConfig config = new MemcachedConfig();
+        config.setName(name);
+        config.setServers(getAddress());
+        config.setWeights("1");
+        return config;
+    }
+
+    /**
+     * 当前保存的数据条数(包括已过期但还没有被访问到的数据)
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * 清空所有数据
+     */
+    public void clear() {
+        items.clear();
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.debug("close loopback server failed: {}", e.getMessage());
+        }
+        for (Socket socket : sockets) closeQuietly(socket);
+        items.clear();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                if(closed) {
+                    closeQuietly(socket);
+                    break;
+                }
+                Thread thread = new Thread(() -> serve(socket), "memcached-loopback-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if(!closed) log.warn("loopback server accept failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        connections.incrementAndGet();
+        totalConnections.increment();
+        try (InputStream in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE)) {
+            String line;
+            while (!closed && (line = readLine(in)) != null) {
+                if(!handle(line, in, out)) break;
+                if(in.available() == 0) out.flush();
+            }
+            out.flush();
+        } catch (IOException e) {
+            // 客户端断开或服务器关闭
+        } finally {
+            connections.decrementAndGet();
+            sockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * 处理一条命令
+     * @return false 表示关闭连接
+     */
+    private boolean handle(String line, InputStream in, OutputStream out) throws IOException {
+        String[] parts = split(line);
+        if(parts.length == 0) {
+            write(out, "ERROR");
+            return true;
+        }
+
+        try {
+            switch (parts[0]) {
+                case "get":
+                case "gets":
+                    retrieve(parts, 1, parts[0].equals("gets"), null, out);
+                    return true;
+                case "gat":
+                case "gats":
+                    if(parts.length < 3) break;
+                    retrieve(parts, 2, parts[0].equals("gats"), Long.parseLong(parts[1]), out);
+                    return true;
+                case "set":
+                case "add":
+                case "replace":
+                case "append":
+                case "prepend":
+                case "cas":
+                    store(parts, in, out);
+                    return true;
+                case "delete":
+                    if(parts.length < 2) break;
+                    Item removed = items.remove(parts[1]);
+                    reply(out, parts, 2, removed != null && !removed.expired(System.currentTimeMillis()) ? "DELETED" : "NOT_FOUND");
+                    return true;
+                case "incr":
+                case "decr":
+                    if(parts.length < 3) break;
+                    arithmetic(parts, out);
+                    return true;
+                case "touch":
+                    if(parts.length < 3) break;
+                    touch(parts, out);
+                    return true;
+                case "flush_all":
+                    items.clear();
+                    reply(out, parts, parts.length > 1 && !"noreply".equals(parts[1]) ? 2 : 1, "OK");
+                    return true;
+                case "version":
+                    write(out, "VERSION 1.6.0-loopback");
+                    return true;
+                case "stats":
+                    stats(parts, out);
+                    return true;
+                case "quit":
+                    return false;
+                default:
+                    write(out, "ERROR");
+                    return true;
+            }
+        } catch (NumberFormatException e) {
+            write(out, "CLIENT_ERROR bad command line format");
+            return true;
+        }
+        write(out, "ERROR");
+        return true;
+    }
+
+    private void retrieve(String[] parts, int from, boolean withCas, Long exptime, OutputStream out) throws IOException {
+        long now = System.currentTimeMillis();
+        for (int i = from; i < parts.length; i++) {
+            String key = parts[i];
+            gets.increment();
+            Item item = exptime == null ? live(key, now) : items.computeIfPresent(key, (k, old) -> {
+                Item current = live(old, now);
+                return current == null ? null : current.withExpiresAt(expiresAt(exptime, now));
+            });
+            if(item == null) continue;
+
+            hits.increment();
+            StringBuilder header = new StringBuilder(key.length() + 32).append("VALUE ").append(key).append(' ')
+                    .append(Integer.toUnsignedString(item.flags)).append(' ').append(item.data.length);
+            if(withCas) header.append(' ').append(item.cas);
+            write(out, header.toString());
+            out.write(item.data);
+            out.write(CRLF);
+        }
+        write(out, "END");
+    }
+
+    private void store(String[] parts, InputStream in, OutputStream out) throws IOException {
+        String command = parts[0];
+        boolean cas = command.equals("cas");
+        if(parts.length < (cas ? 6 : 5)) {
+            write(out, "ERROR");
+            return;
+        }
+
+        String key = parts[1];
+        int flags = (int) Long.parseLong(parts[2]);
+        long exptime = Long.parseLong(parts[3]);
+        int length = Integer.parseInt(parts[4]);
+        long expected = cas ? Long.parseLong(parts[5]) : 0;
+        if(length < 0) throw new NumberFormatException("negative length");
+
+        byte[] data = new byte[length];
+        readFully(in, data);
+        if(in.read() != '\r' || in.read() != '\n') {
+            write(out, "CLIENT_ERROR bad data chunk");
+            return;
+        }
+
+        sets.increment();
+        long now = System.currentTimeMillis();
+        String[] result = new String[1];
+        items.compute(key, (k, old) -> {
+            Item current = live(old, now);
+            switch (command) {
+                case "add":
+                    if(current != null) {
+                        result[0] = "NOT_STORED";
+                        return current;
+                    }
+                    break;
+                case "replace":
+                    if(current == null) {
+                        result[0] = "NOT_STORED";
+                        return null;
+                    }
+                    break;
+                case "append":
+                case "prepend":
+                    if(current == null) {
+                        result[0] = "NOT_STORED";
+                        return null;
+                    }
+                    result[0] = "STORED";
+                    return current.withData(command.equals("append") ? concat(current.data, data) : concat(data, current.data), casUnique.incrementAndGet());
+                case "cas":
+                    if(current == null || current.cas != expected) {
+                        result[0] = current == null ? "NOT_FOUND" : "EXISTS";
+                        return current;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            result[0] = "STORED";
+            return new Item(flags, expiresAt(exptime, now), data, casUnique.incrementAndGet());
+        });
+        reply(out, parts, cas ? 6 : 5, result[0]);
+    }
+
+    private void arithmetic(String[] parts, OutputStream out) throws IOException {
+        boolean incr = parts[0].equals("incr");
+        long delta = Long.parseUnsignedLong(parts[2]);
+        long now = System.currentTimeMillis();
+        String[] result = new String[1];
+        items.computeIfPresent(parts[1], (k, old) -> {
+            Item current = live(old, now);
+            if(current == null) return null;
+
+            long value;
+            try {
+                value = Long.parseUnsignedLong(new String(current.data, StandardCharsets.US_ASCII).trim());
+            } catch (NumberFormatException e) {
+                result[0] = "CLIENT_ERROR cannot increment or decrement non-numeric value";
+                return current;
+            }
+            value = incr ? value + delta : (Long.compareUnsigned(value, delta) < 0 ? 0 : value - delta);
+            result[0] = Long.toUnsignedString(value);
+            return current.withData(result[0].getBytes(StandardCharsets.US_ASCII), casUnique.incrementAndGet());
+        });
+        reply(out, parts, 3, result[0] == null ? "NOT_FOUND" : result[0]);
+    }
+
+    private void touch(String[] parts, OutputStream out) throws IOException {
+        long exptime = Long.parseLong(parts[2]);
+        long now = System.currentTimeMillis();
+        Item touched = items.computeIfPresent(parts[1], (k, old) -> {
+            Item current = live(old, now);
+            return current == null ? null : current.withExpiresAt(expiresAt(exptime, now));
+        });
+        reply(out, parts, 3, touched != null ? "TOUCHED" : "NOT_FOUND");
+    }
+
+    private void stats(String[] parts, OutputStream out) throws IOException {
+        if(parts.length == 1) {
+            long now = System.currentTimeMillis();
+            write(out, "STAT pid 0");
+            write(out, "STAT uptime " + TimeUnit.MILLISECONDS.toSeconds(now - startMillis));
+            write(out, "STAT time " + TimeUnit.MILLISECONDS.toSeconds(now));
+            write(out, "STAT version 1.6.0-loopback");
+            write(out, "STAT curr_connections " + connections.get());
+            write(out, "STAT total_connections " + totalConnections.sum());
+            write(out, "STAT cmd_get " + gets.sum());
+            write(out, "STAT cmd_set " + sets.sum());
+            write(out, "STAT get_hits " + hits.sum());
+            write(out, "STAT get_misses " + (gets.sum() - hits.sum()));
+            write(out, "STAT curr_items " + items.size());
+        }
+        write(out, "END");
+    }
+
+    private Item live(String key, long now) {
+        Item item = items.get(key);
+        if(item == null || !item.expired(now)) return item;
+
+        items.remove(key, item);
+        return null;
+    }
+
+    private static Item live(Item item, long now) {
+        return item == null || item.expired(now) ? null : item;
+    }
+
+    /**
+     * 与 memcached 相同：0 表示永不过期，不超过 30 天为相对时间，否则为绝对时间戳(秒)，负数表示立即过期
+     */
+    private static long expiresAt(long exptime, long now) {
+        if(exptime == 0) return 0;
+        if(exptime < 0) return 1;
+        return exptime <= MAX_RELATIVE_EXPTIME ? now + TimeUnit.SECONDS.toMillis(exptime) : TimeUnit.SECONDS.toMillis(exptime);
+    }
+
+    private static void reply(OutputStream out, String[] parts, int noreplyIndex, String response) throws IOException {
+        if(parts.length > noreplyIndex && "noreply".equals(parts[noreplyIndex])) return;
+        write(out, response);
+    }
+
+    private static void write(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if(b < 0) {
+                if(line.length() == 0) return null;
+                throw new EOFException("Truncated command");
+            }
+            if(line.length() >= MAX_LINE) throw new IOException("Command line too long");
+            line.append((char) b);
+        }
+        int length = line.length();
+        if(length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+        return line.toString();
+    }
+
+    private static void readFully(InputStream in, byte[] data) throws IOException {
+        int read = 0;
+        while (read < data.length) {
+            int n = in.read(data, read, data.length - read);
+            if(n < 0) throw new EOFException("Truncated data block");
+            read += n;
+        }
+    }
+
+    private static String[] split(String line) {
+        StringTokenizer tokenizer = new StringTokenizer(line, " ");
+        String[] parts = new String[tokenizer.countTokens()];
+        for (int i = 0; i < parts.length; i++) parts[i] = tokenizer.nextToken();
+        return parts;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * 不可变的数据项，修改时整体替换
+     */
+    private static final class Item {
+        private final int flags;
+        /**
+         * 过期的时间戳(毫秒)，0 表示永不过期
+         */
+        private final long expiresAt;
+        private final byte[] data;
+        private final long cas;
+
+        private Item(int flags, long expiresAt, byte[] data, long cas) {
+            this.flags = flags;
+            this.expiresAt = expiresAt;
+            this.data = data;
+            this.cas = cas;
+        }
+
+        private boolean expired(long now) {
+            return expiresAt != 0 && now >= expiresAt;
+        }
+
+        private Item withData(byte[] data, long cas) {
+            return new Item(flags, expiresAt, data, cas);
+        }
+
+        private Item withExpiresAt(long expiresAt) {
+            return new Item(flags, expiresAt, data, cas);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 流量回放参数
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Data
+@Accessors(chain = true)
+public class MemcachedReplayOptions {
+    /**
+     * 回放到的缓存名称，为空时回放到记录中的缓存名称
+     */
+    private String name;
+    /**
+     * 回放速度倍数，1 表示按记录时的到达间隔，2 表示间隔缩短一半；0 表示不等待，尽快回放。
+     * 采样比例为 0.1 的记录按 10 倍速回放可以近似还原完整流量
+     */
+    private double speed = 1.0;
+    /**
+     * 同时执行的最大操作数，达到后调度线程等待，落后的时间记录在 maxLagMillis 中
+     */
+    private int concurrency = 16;
+    /**
+     * 回放 key 的前缀，key 由前缀和记录中的 key 哈希组成
+     */
+    private String keyPrefix = "replay:";
+    /**
+     * 读取未命中且记录中有数据大小时，写入同样大小的数据，使后续读取的命中情况接近线上
+     */
+    private boolean fillMisses = true;
+    /**
+     * 记录中没有数据大小的写入操作使用的数据大小(字节)
+     */
+    private int defaultValueSize = 128;
+    /**
+     * 最多回放的操作数，0 表示全部
+     */
+    private long maxOperations = 0;
+}
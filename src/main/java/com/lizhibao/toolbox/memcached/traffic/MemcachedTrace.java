@@ -0,0 +1,42 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+/**
+ * 流量记录文件格式，定长数值为大端序，varint 为无符号 LEB128：
+ * <pre>
+ * 文件头: magic(int) version(int) startMillis(long, 开始记录的时间戳) sampleRate(double, 采样比例)
+ * 符号:   kind(byte, 1) id(varint) length(varint) text(UTF-8)
+ * 操作:   kind(byte, 2) delay(varint, 与上一条操作的间隔, 微秒) name(varint, 符号id) type(varint, 符号id)
+ *         valueSize(varint, 数据大小 + 1, 0 表示未知) expired(varint, 过期时间, 秒) keyCount(varint) keyHash(long) * keyCount
+ * </pre>
+ * 缓存名称和操作类型第一次出现时写入一条符号记录，之后只引用 id；key 只保存 64 位 FNV-1a 哈希，不保存原文。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public final class MemcachedTrace {
+    public static final int MAGIC = 0x4D435452;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    public static final byte KIND_SYMBOL = 1;
+    public static final byte KIND_OPERATION = 2;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private MemcachedTrace() {
+    }
+
+    /**
+     * key 的 64 位 FNV-1a 哈希，按 UTF-16 字符计算
+     * @param key 缓存key
+     * @return 哈希值
+     */
+    public static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+            if(c > 0xFF) hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,106 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 顺序读取流量记录
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedTraceReader implements Closeable {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final DataInputStream input;
+    private final long startMillis;
+    private final double sampleRate;
+    private final List<String> symbols = new ArrayList<>();
+
+    public MemcachedTraceReader(Path file) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        try {
+            if(input.readInt() != MemcachedTrace.MAGIC) throw new IOException("Not a memcached trace: " + file);
+
+            int version = input.readInt();
+            if(version != MemcachedTrace.VERSION) throw new IOException("Unsupported trace version " + version + ": " + file);
+            this.startMillis = input.readLong();
+            this.sampleRate = input.readDouble();
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取下一条操作
+     * @return 没有更多记录时返回 null
+     */
+    public MemcachedTraceRecord next() throws IOException {
+        while (true) {
+            int kind = input.read();
+            if(kind < 0) return null;
+
+            if(kind == MemcachedTrace.KIND_SYMBOL) {
+                int id = (int) readVarint();
+                byte[] text = new byte[(int) readVarint()];
+                input.readFully(text);
+                if(id != symbols.size()) throw new IOException("Corrupted trace symbol " + id);
+                symbols.add(new String(text, StandardCharsets.UTF_8));
+                continue;
+            }
+            if(kind != MemcachedTrace.KIND_OPERATION) throw new IOException("Corrupted trace record kind " + kind);
+
+            long delay = readVarint();
+            String name = symbol(readVarint());
+            String type = symbol(readVarint());
+            int valueSize = (int) (readVarint() - 1);
+            long expired = readVarint();
+            long[] keyHashes = new long[(int) readVarint()];
+            for (int i = 0; i < keyHashes.length; i++) keyHashes[i] = input.readLong();
+            return new MemcachedTraceRecord(delay, name, type, keyHashes, valueSize, expired);
+        }
+    }
+
+    /**
+     * 开始记录的时间戳(毫秒)
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * 记录时的采样比例
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private String symbol(long id) throws IOException {
+        if(id < 0 || id >= symbols.size()) throw new IOException("Unknown trace symbol " + id);
+        return symbols.get((int) id);
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.read();
+            if(b < 0) throw new EOFException("Truncated trace");
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupted trace varint");
+    }
+}
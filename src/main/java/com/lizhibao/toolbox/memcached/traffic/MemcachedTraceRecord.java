@@ -0,0 +1,38 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 流量记录中的一次操作
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Getter
+@AllArgsConstructor
+public class MemcachedTraceRecord {
+    /**
+     * 与上一条操作的间隔(微秒)
+     */
+    private final long delay;
+    /**
+     * 缓存名称
+     */
+    private final String name;
+    /**
+     * 操作类型，对应 {@link com.lizhibao.toolbox.memcached.interceptor.MemcachedOperationType} 的名称
+     */
+    private final String type;
+    /**
+     * key 的哈希，单个 key 的操作长度为 1，没有 key 的操作长度为 0
+     */
+    private final long[] keyHashes;
+    /**
+     * 写入或读取到的数据大小(字节)，-1 表示未知
+     */
+    private final int valueSize;
+    /**
+     * 过期时间(秒)
+     */
+    private final long expired;
+}
@@ -0,0 +1,131 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 通过 FileChannel 顺序写入流量记录，记录先写入固定大小的直接缓冲区，写满后整体刷盘。
+ * 非线程安全，只在记录线程中使用。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedTraceWriter implements Closeable {
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /**
+     * 一条操作记录中除 key 哈希之外的最大长度：kind + 6 个 varint
+     */
+    private static final int MAX_OPERATION_HEADER = 1 + 6 * 10;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Map<String, Integer> symbols = new HashMap<>();
+    private long records;
+    private long bytes;
+
+    public MemcachedTraceWriter(Path file, long startMillis, double sampleRate) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        buffer.putInt(MemcachedTrace.MAGIC).putInt(MemcachedTrace.VERSION).putLong(startMillis).putDouble(sampleRate);
+        this.bytes = MemcachedTrace.HEADER_SIZE;
+    }
+
+    /**
+     * 写入一条操作
+     * @param delay 与上一条操作的间隔(微秒)
+     * @param name 缓存名称
+     * @param type 操作类型
+     * @param keyHashes key 的哈希
+     * @param valueSize 数据大小，-1 表示未知
+     * @param expired 过期时间(秒)
+     */
+    public void write(long delay, String name, String type, long[] keyHashes, int valueSize, long expired) throws IOException {
+        int nameId = symbol(name);
+        int typeId = symbol(type);
+
+        ensure(MAX_OPERATION_HEADER);
+        int start = buffer.position();
+        buffer.put(MemcachedTrace.KIND_OPERATION);
+        putVarint(Math.max(0, delay));
+        putVarint(nameId);
+        putVarint(typeId);
+        putVarint(Math.max(-1, valueSize) + 1L);
+        putVarint(Math.max(0, expired));
+        putVarint(keyHashes.length);
+        this.bytes += buffer.position() - start;
+        for (long hash : keyHashes) {
+            ensure(8);
+            buffer.putLong(hash);
+        }
+        this.bytes += 8L * keyHashes.length;
+        this.records++;
+    }
+
+    /**
+     * 已写入的操作数
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * 已写入的字节数（包含文件头）
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * 将缓冲区中的记录写入文件
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private int symbol(String text) throws IOException {
+        Integer id = symbols.get(text);
+        if(id != null) return id;
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ensure(1 + 10 + 10 + bytes.length);
+        int start = buffer.position();
+        int created = symbols.size();
+        buffer.put(MemcachedTrace.KIND_SYMBOL);
+        putVarint(created);
+        putVarint(bytes.length);
+        buffer.put(bytes);
+        this.bytes += buffer.position() - start;
+        symbols.put(text, created);
+        return created;
+    }
+
+    private void ensure(int length) throws IOException {
+        if(buffer.remaining() < length) flush();
+        if(buffer.remaining() < length) throw new IllegalArgumentException("Trace record too large: " + length);
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
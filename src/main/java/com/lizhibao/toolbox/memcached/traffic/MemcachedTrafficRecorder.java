@@ -0,0 +1,242 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedInterceptor;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedInvocation;
+import com.lizhibao.toolbox.memcached.interceptor.MemcachedOperation;
+import com.lizhibao.toolbox.memcached.model.MemcachedMetaResult;
+import com.schooner.MemCached.MemcachedItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流量记录：作为拦截器按比例采样操作(类型、key 哈希、数据大小、缓存名称、到达间隔)，
+ * 由后台线程写入紧凑的二进制文件，供 {@link MemcachedTrafficReplayer} 回放。
+ * 注册为 Spring Bean 后生效，调用 {@link #start(Path, double)} 之前 {@link #isActive()} 返回 false，
+ * 调用方跳过该拦截器(没有其他生效的拦截器时也不创建操作描述)，每次操作只多一次 volatile 读取；
+ * 调用线程只把采样结果放入有界队列，队列满时丢弃并计数，不会阻塞业务调用。
+ * 数据大小只统计不需要序列化就能得到的类型(byte[]、ByteBuffer、字符串、数字)，其他对象记为未知。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedTrafficRecorder implements MemcachedInterceptor, Closeable {
+    private static final int DEFAULT_QUEUE_SIZE = 65536;
+    private static final long[] NO_KEYS = new long[0];
+
+    private final int queueSize;
+    private volatile Session session;
+
+    public MemcachedTrafficRecorder() {
+        this(DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param queueSize 等待写入的采样数上限，超过后丢弃
+     */
+    public MemcachedTrafficRecorder(int queueSize) {
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    /**
+     * 开始记录所有操作
+     * @param file 记录文件，已存在时覆盖
+     */
+    public void start(Path file) throws IOException {
+        this.start(file, 1.0);
+    }
+
+    /**
+     * 开始按比例采样记录，已经在记录时先结束之前的记录
+     * @param file 记录文件，已存在时覆盖
+     * @param sampleRate 采样比例，0 ~ 1
+     */
+    public synchronized void start(Path file, double sampleRate) throws IOException {
+        if(sampleRate <= 0 || sampleRate > 1) throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+
+        this.stop();
+        Session created = new Session(new MemcachedTraceWriter(file, System.currentTimeMillis(), sampleRate), sampleRate, queueSize);
+        created.thread.start();
+        this.session = created;
+        log.info("traffic recording to {}, sample rate {}", file, sampleRate);
+    }
+
+    /**
+     * 结束记录，等待队列中的采样写入文件
+     * @return 写入的操作数，没有在记录时返回 0
+     */
+    public synchronized long stop() {
+        Session current = this.session;
+        if(current == null) return 0;
+
+        this.session = null;
+        current.stopped = true;
+        try {
+            current.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("traffic recording stopped, {} operations, {} bytes, {} dropped", current.writer.getRecords(), current.writer.getBytes(), current.dropped.sum());
+        return current.writer.getRecords();
+    }
+
+    /**
+     * 是否正在记录
+     */
+    public boolean isRecording() {
+        return session != null;
+    }
+
+    /**
+     * 只在记录期间生效
+     */
+    @Override
+    public boolean isActive() {
+        return session != null;
+    }
+
+    /**
+     * 本次记录中因队列已满而丢弃的采样数
+     */
+    public long getDropped() {
+        Session current = this.session;
+        return current == null ? 0 : current.dropped.sum();
+    }
+
+    @Override
+    public void close() {
+        this.stop();
+    }
+
+    @Override
+    public <T> T intercept(MemcachedOperation operation, MemcachedInvocation<T> invocation) {
+        Session current = this.session;
+        if(current == null || (current.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= current.sampleRate)) {
+            return invocation.proceed(operation);
+        }
+
+        long arrival = System.nanoTime();
+        T result = invocation.proceed(operation);
+        int valueSize = operation.getType().isWrite() ? sizeOf(operation.getValue()) : sizeOf(result);
+        if(!current.queue.offer(new Sample(arrival, operation, valueSize))) current.dropped.increment();
+        return result;
+    }
+
+    /**
+     * 不需要序列化就能得到的数据大小，批量读取的结果取命中数据的平均大小
+     */
+    private static int sizeOf(Object value) {
+        if(value == null) return -1;
+        if(value instanceof Optional) return sizeOf(((Optional<?>) value).orElse(null));
+        if(value instanceof byte[]) return ((byte[]) value).length;
+        if(value instanceof ByteBuffer) return ((ByteBuffer) value).remaining();
+        if(value instanceof CharSequence) return ((CharSequence) value).length();
+        if(value instanceof Number || value instanceof Boolean || value instanceof Character) return 8;
+        if(value instanceof MemcachedItem) return sizeOf(((MemcachedItem) value).getValue());
+        if(value instanceof MemcachedMetaResult) return sizeOf(((MemcachedMetaResult) value).getValue());
+        if(value instanceof Map) return average(((Map<?, ?>) value).values().toArray());
+        if(value instanceof Object[]) return average((Object[]) value);
+        return -1;
+    }
+
+    private static int average(Object[] values) {
+        long total = 0;
+        int known = 0;
+        for (Object value : values) {
+            int size = sizeOf(value);
+            if(size < 0) continue;
+            total += size;
+            known++;
+        }
+        return known == 0 ? -1 : (int) (total / known);
+    }
+
+    private static final class Sample {
+        private final long arrival;
+        private final String name;
+        private final String type;
+        private final long[] keyHashes;
+        private final int valueSize;
+        private final long expired;
+
+        private Sample(long arrival, MemcachedOperation operation, int valueSize) {
+            this.arrival = arrival;
+            this.name = operation.getName();
+            this.type = operation.getType().name();
+            this.valueSize = valueSize;
+            this.expired = TimeUnit.MILLISECONDS.toSeconds(operation.getExpired());
+
+            if(operation.getKey() != null) {
+                this.keyHashes = new long[]{MemcachedTrace.hash(operation.getKey())};
+            } else if(operation.getKeys() != null) {
+                String[] keys = operation.getKeys();
+                this.keyHashes = new long[keys.length];
+                for (int i = 0; i < keys.length; i++) keyHashes[i] = keys[i] == null ? 0 : MemcachedTrace.hash(keys[i]);
+            } else {
+                this.keyHashes = NO_KEYS;
+            }
+        }
+    }
+
+    /**
+     * 一次记录：采样队列和写入线程
+     */
+    private static final class Session implements Runnable {
+        private final MemcachedTraceWriter writer;
+        private final double sampleRate;
+        private final BlockingQueue<Sample> queue;
+        private final LongAdder dropped = new LongAdder();
+        private final Thread thread;
+        private volatile boolean stopped;
+        private boolean started;
+        private long last;
+
+        private Session(MemcachedTraceWriter writer, double sampleRate, int queueSize) {
+            this.writer = writer;
+            this.sampleRate = sampleRate;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.thread = new Thread(this, "memcached-traffic-recorder");
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped || !queue.isEmpty()) {
+                    Sample sample = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if(sample == null) {
+                        writer.flush();
+                        continue;
+                    }
+                    // 多个线程的采样进入队列的顺序与到达顺序可能略有差异，间隔不会小于 0
+                    long delay = !started || sample.arrival - last <= 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(sample.arrival - last);
+                    if(!started || sample.arrival - last > 0) {
+                        this.last = sample.arrival;
+                        this.started = true;
+                    }
+                    writer.write(delay, sample.name, sample.type, sample.keyHashes, sample.valueSize, sample.expired);
+                }
+            } catch (IOException e) {
+                log.error("traffic recording failed", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    log.warn("close traffic recording failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
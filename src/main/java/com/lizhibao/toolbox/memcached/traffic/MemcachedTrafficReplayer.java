@@ -0,0 +1,293 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import com.lizhibao.toolbox.memcached.MemcachedOperations;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.model.MemcachedReplayReport;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 回放 {@link MemcachedTrafficRecorder} 记录的流量，按记录时的到达间隔(可加速)驱动指定的缓存名称，统计吞吐和耗时分位数，
+ * 用于在大促前评估连接池和集群容量。目标可以是线上同规格的集群，也可以是 {@link MemcachedLoopbackServer}。
+ * key 由前缀和记录中的 key 哈希组成，保持与线上相同的 key 数量和访问分布；写入的数据为同样大小的字节数组。
+ * flush_all、stats 等操作不回放。回放经过模板的拦截器，同一进程中不要同时记录和回放。
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+@Slf4j
+public class MemcachedTrafficReplayer {
+    private final MemcachedTemplate template;
+
+    public MemcachedTrafficReplayer(MemcachedTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * 使用默认参数回放
+     * @param file 记录文件
+     * @return MemcachedReplayReport
+     */
+    public MemcachedReplayReport replay(Path file) throws IOException {
+        return this.replay(file, new MemcachedReplayOptions());
+    }
+
+    /**
+     * 回放
+     * @param file 记录文件
+     * @param options 回放参数
+     * @return MemcachedReplayReport
+     */
+    public MemcachedReplayReport replay(Path file, MemcachedReplayOptions options) throws IOException {
+        int concurrency = Math.max(1, options.getConcurrency());
+        double speed = Math.max(0, options.getSpeed());
+        Progress progress = new Progress();
+        Map<String, MemcachedOperations> handles = new HashMap<>();
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "memcached-replay-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        MemcachedReplayReport report = new MemcachedReplayReport();
+        report.setFile(file.toString());
+        report.setSpeed(speed);
+        log.info("replay {} at {}x, concurrency {}", file, speed, concurrency);
+
+        long start = System.nanoTime();
+        long offset = 0;
+        long operations = 0;
+        long maxLag = 0;
+        try (MemcachedTraceReader reader = new MemcachedTraceReader(file)) {
+            report.setSampleRate(reader.getSampleRate());
+            MemcachedTraceRecord record;
+            while ((record = reader.next()) != null) {
+                if(options.getMaxOperations() > 0 && operations >= options.getMaxOperations()) break;
+                if(speed > 0) offset += (long) (TimeUnit.MICROSECONDS.toNanos(record.getDelay()) / speed);
+
+                Action action = Action.of(record.getType());
+                MemcachedOperations handle = action == null || record.getKeyHashes().length == 0 ? null : handle(handles, options.getName() != null ? options.getName() : record.getName());
+                if(handle == null) {
+                    progress.skipped.increment();
+                    continue;
+                }
+
+                if(speed > 0) {
+                    long wait;
+                    while ((wait = start + offset - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+                }
+                permits.acquire();
+                if(speed > 0) maxLag = Math.max(maxLag, System.nanoTime() - start - offset);
+
+                operations++;
+                progress.byType.computeIfAbsent(record.getType(), t -> new LongAdder()).increment();
+                MemcachedTraceRecord current = record;
+                executor.execute(() -> {
+                    try {
+                        execute(handle, action, current, options, progress);
+                    } catch (RuntimeException e) {
+                        progress.failed.increment();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            permits.acquire(concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("replay {} interrupted", file);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        MemcachedLatencyHistogram latency = progress.latency;
+        report.setOperations(operations);
+        report.setSkipped(progress.skipped.sum());
+        report.setMisses(progress.misses.sum());
+        report.setFailed(progress.failed.sum());
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        report.setMaxLagMillis(TimeUnit.NANOSECONDS.toMillis(maxLag));
+        report.setMeanLatency(latency.getMean());
+        report.setP50Latency(latency.percentile(50));
+        report.setP90Latency(latency.percentile(90));
+        report.setP99Latency(latency.percentile(99));
+        report.setP999Latency(latency.percentile(99.9));
+        report.setMaxLatency(latency.getMax());
+        Map<String, Long> byType = new LinkedHashMap<>();
+        progress.byType.forEach((type, count) -> byType.put(type, count.sum()));
+        report.setOperationsByType(byType);
+        log.info("replay {} finished: {}", file, report);
+        return report;
+    }
+
+    private MemcachedOperations handle(Map<String, MemcachedOperations> handles, String name) {
+        if(handles.containsKey(name)) return handles.get(name);
+
+        MemcachedOperations handle;
+        try {
+            handle = template.forName(name);
+        } catch (IllegalArgumentException e) {
+            log.warn("replay skips unknown memcached client {}", name);
+            handle = null;
+        }
+        handles.put(name, handle);
+        return handle;
+    }
+
+    private static void execute(MemcachedOperations handle, Action action, MemcachedTraceRecord record, MemcachedReplayOptions options, Progress progress) {
+        long[] hashes = record.getKeyHashes();
+        String[] keys = new String[hashes.length];
+        for (int i = 0; i < hashes.length; i++) keys[i] = options.getKeyPrefix() + Long.toHexString(hashes[i]);
+        String key = keys[0];
+        long expired = TimeUnit.SECONDS.toMillis(record.getExpired());
+        int valueSize = record.getValueSize() >= 0 ? record.getValueSize() : options.getDefaultValueSize();
+
+        // 只统计回放的操作本身，填充未命中的数据不计入耗时
+        List<String> missed = null;
+        long begin = System.nanoTime();
+        switch (action) {
+            case READ:
+                if(handle.get(key) == null) missed = single(key);
+                break;
+            case GET_AND_TOUCH:
+                if(handle.getAndTouch(key, expired) == null) missed = single(key);
+                break;
+            case MULTI_READ:
+                Map<String, Object> found = handle.getMulti(keys);
+                missed = missing(keys, found == null ? null : found.keySet());
+                break;
+            case GET_AND_TOUCH_MULTI:
+                Map<String, Object> touched = handle.getAndTouchMulti(keys, expired);
+                missed = missing(keys, touched == null ? null : touched.keySet());
+                break;
+            case WRITE:
+                if(!handle.set(key, new byte[valueSize], expired)) progress.failed.increment();
+                break;
+            case COUNTER:
+                if(handle.addOrIncr(key, 1) < 0) progress.failed.increment();
+                break;
+            case DELETE:
+                handle.delete(key);
+                break;
+            case TOUCH:
+                if(!handle.touch(key, expired)) progress.misses.increment();
+                break;
+            case TOUCH_MULTI:
+                progress.misses.add(keys.length - handle.touchMulti(keys, expired).size());
+                break;
+            default:
+                break;
+        }
+        progress.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin));
+
+        if(missed == null || missed.isEmpty()) return;
+        progress.misses.add(missed.size());
+        if(!options.isFillMisses() || record.getValueSize() <= 0) return;
+        for (String miss : missed) handle.set(miss, new byte[record.getValueSize()], expired);
+    }
+
+    private static List<String> single(String key) {
+        List<String> missed = new ArrayList<>(1);
+        missed.add(key);
+        return missed;
+    }
+
+    private static List<String> missing(String[] keys, Set<String> found) {
+        List<String> missed = new ArrayList<>();
+        for (String key : keys) {
+            if(found == null || !found.contains(key)) missed.add(key);
+        }
+        return missed;
+    }
+
+    /**
+     * 回放时执行的操作，记录中的操作类型按语义归类
+     */
+    private enum Action {
+        READ, MULTI_READ, WRITE, COUNTER, DELETE, TOUCH, TOUCH_MULTI, GET_AND_TOUCH, GET_AND_TOUCH_MULTI;
+
+        /**
+         * @param type 记录中的操作类型
+         * @return 不回放的操作类型返回 null
+         */
+        private static Action of(String type) {
+            switch (type) {
+                case "GET":
+                case "GET_OR_LOAD":
+                case "GET_OR_LOAD_EARLY":
+                case "GETS":
+                case "GET_BYTES":
+                case "GET_LONG":
+                case "GET_COUNTER":
+                case "META_GET":
+                case "KEY_EXISTS":
+                    return READ;
+                case "GET_MULTI":
+                case "GET_MULTI_ARRAY":
+                case "GET_LONGS":
+                case "GET_INTS":
+                case "META_GET_MULTI":
+                    return MULTI_READ;
+                case "SET":
+                case "ADD":
+                case "REPLACE":
+                case "APPEND":
+                case "PREPEND":
+                case "SET_WITH_SOFT_EXPIRED":
+                case "CAS":
+                case "UPDATE":
+                case "SET_LONG":
+                case "SET_INT":
+                case "SET_BOOLEAN":
+                case "SET_BYTES":
+                case "META_SET":
+                    return WRITE;
+                case "STORE_COUNTER":
+                case "ADD_OR_INCR":
+                case "ADD_OR_DECR":
+                case "INCR":
+                case "DECR":
+                case "META_ARITHMETIC":
+                    return COUNTER;
+                case "DELETE":
+                case "META_DELETE":
+                    return DELETE;
+                case "TOUCH":
+                    return TOUCH;
+                case "TOUCH_MULTI":
+                    return TOUCH_MULTI;
+                case "GET_AND_TOUCH":
+                    return GET_AND_TOUCH;
+                case "GET_AND_TOUCH_MULTI":
+                    return GET_AND_TOUCH_MULTI;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class Progress {
+        private final MemcachedLatencyHistogram latency = new MemcachedLatencyHistogram();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final Map<String, LongAdder> byType = new ConcurrentHashMap<>();
+    }
+}
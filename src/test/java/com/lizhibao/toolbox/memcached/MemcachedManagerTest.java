@@ -0,0 +1,179 @@
+package com.lizhibao.toolbox.memcached;
+
+import com.danga.MemCached.SockIOPool;
+import com.lizhibao.toolbox.memcached.model.MyMemCachedClient;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 运行时重新配置服务器列表：新连接池按代数命名并原子替换，通知监听，旧连接池延迟排空；无法连接时保留原来的客户端
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedManagerTest extends TestCase {
+    private MemcachedLoopbackServer first;
+    private MemcachedLoopbackServer second;
+    private MemcachedManager manager;
+    private MemcachedTemplate template;
+    private String name;
+    private final List<Object[]> events = new CopyOnWriteArrayList<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        first = new MemcachedLoopbackServer();
+        second = new MemcachedLoopbackServer();
+        // danga 的连接池按名称全局注册，每个用例使用不同的名称
+        name = "manager-test-" + getName();
+        manager = new MemcachedManager(properties(config(name, first)));
+        manager.addListener((changed, current) -> events.add(new Object[]{changed, current}));
+        template = new MemcachedTemplate(manager);
+    }
+
+    @Override
+    protected void tearDown() {
+        second.close();
+        first.close();
+    }
+
+    public void testReconfigureSwapsPool() throws Exception {
+        assertTrue(template.set("k", "v", 60_000L));
+        MyMemCachedClient previous = manager.getClients().get(name);
+        assertEquals(name, previous.getPoolName());
+
+        Set<String> changed = manager.reconfigure(Collections.singletonList(config(name, second))).get(5, TimeUnit.SECONDS);
+        assertEquals(Collections.singleton(name), changed);
+
+        MyMemCachedClient current = manager.getClients().get(name);
+        assertNotSame(previous, current);
+        assertTrue(current.getPoolName().startsWith(name + "#"));
+        assertEquals(second.getAddress(), current.getConfig().getServers());
+        assertEquals(1, events.size());
+        assertEquals(name, events.get(0)[0]);
+        assertSame(current, events.get(0)[1]);
+
+        // 新的调用使用新的服务器
+        assertFalse(template.get("k").isPresent());
+        assertTrue(template.set("k", "v2", 60_000L));
+        assertEquals(1, second.size());
+        assertEquals("v2", template.get("k").orElse(null));
+
+        // 旧连接池在 max(socketTimeout, maxBusyTime) 之后关闭，关闭前仍可使用
+        assertTrue(SockIOPool.getInstance(name).isInitialized());
+        previous.getConnectionPool().release(previous.getConnectionPool().borrow(first.getAddress()));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (SockIOPool.getInstance(name).isInitialized()) {
+            assertTrue("timeout waiting for drain", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+        try {
+            previous.getConnectionPool().borrow(first.getAddress());
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("closed"));
+        }
+        assertTrue(current.getConnectionPool().getIdleCount(second.getAddress()) > 0);
+
+        // 每次切换使用新的代数
+        manager.reconfigure(Collections.singletonList(config(name, first))).get(5, TimeUnit.SECONDS);
+        MyMemCachedClient next = manager.getClients().get(name);
+        assertFalse(next.getPoolName().equals(current.getPoolName()));
+        assertEquals("v", template.get("k").orElse(null));
+    }
+
+    /**
+     * 配置没有变化时不切换，也不通知
+     */
+    public void testUnchanged() throws Exception {
+        MyMemCachedClient previous = manager.getClients().get(name);
+        assertTrue(manager.reconfigure(Collections.singletonList(config(name, first))).get(5, TimeUnit.SECONDS).isEmpty());
+        assertSame(previous, manager.getClients().get(name));
+        assertTrue(events.isEmpty());
+    }
+
+    /**
+     * 新的服务器全部无法连接时保留原来的客户端
+     */
+    public void testKeepPreviousWhenUnreachable() throws Exception {
+        assertTrue(template.set("k", "v", 60_000L));
+        MyMemCachedClient previous = manager.getClients().get(name);
+
+        MemcachedConfig unreachable = config(name, first);
+        unreachable.setServers(InetAddress.getLoopbackAddress().getHostAddress() + ":" + unusedPort());
+        unreachable.setSocketConnectTimeout(300);
+        assertTrue(manager.reconfigure(Collections.singletonList(unreachable)).get(10, TimeUnit.SECONDS).isEmpty());
+        assertSame(previous, manager.getClients().get(name));
+        assertTrue(events.isEmpty());
+        assertEquals("v", template.get("k").orElse(null));
+    }
+
+    /**
+     * 配置中不再存在的缓存名称被移除，监听收到 null
+     */
+    public void testRemoveAndAdd() throws Exception {
+        String added = name + "-added";
+        List<MemcachedConfig> nodes = new ArrayList<>(Arrays.asList(config(name, first), config(added, second)));
+        assertEquals(Collections.singleton(added), manager.reconfigure(nodes).get(5, TimeUnit.SECONDS));
+        assertEquals(added + "#", manager.getClients().get(added).getPoolName().substring(0, added.length() + 1));
+        assertTrue(template.set(added, "k", "v", 60_000L));
+        assertEquals(1, second.size());
+
+        MyMemCachedClient removed = manager.getClients().get(added);
+        assertEquals(Collections.singleton(added), manager.reconfigure(Collections.singletonList(config(name, first))).get(5, TimeUnit.SECONDS));
+        assertNull(manager.getClients().get(added));
+        assertFalse(template.get(added, "k").isPresent());
+        assertEquals(2, events.size());
+        assertEquals(added, events.get(1)[0]);
+        assertNull(events.get(1)[1]);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (SockIOPool.getInstance(removed.getPoolName()).isInitialized()) {
+            assertTrue("timeout waiting for drain", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    public void testEmptyNodes() throws Exception {
+        try {
+            manager.reconfigure(Collections.emptyList()).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertNotNull(manager.getClients().get(name));
+    }
+
+    private static MemcachedConfig config(String name, MemcachedLoopbackServer server) {
+        MemcachedConfig config = server.config(name);
+        config.setMaintSleep(0);
+        config.setInitConn(1);
+        config.setMinConn(1);
+        // 旧连接池的排空延迟为 max(socketTimeout, maxBusyTime)
+        config.setSocketTimeout(1000);
+        config.setMaxBusyTime(1000);
+        return config;
+    }
+
+    private static MemcachedProperties properties(MemcachedConfig config) {
+        MemcachedProperties properties = new MemcachedProperties();
+        properties.setNodes(Collections.singletonList(config));
+        return properties;
+    }
+
+    private static int unusedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.lizhibao.toolbox.memcached;
+
+import com.lizhibao.toolbox.memcached.cas.MemcachedCasContention;
+import com.lizhibao.toolbox.memcached.model.MemcachedCasStats;
+import com.lizhibao.toolbox.memcached.model.MemcachedEnvelope;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import com.schooner.MemCached.MemcachedItem;
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * MemcachedTemplate 的组合操作：软过期后台刷新、提前过期和过期时间抖动、cas 重载的参数顺序、update 的重试和冲突统计
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedTemplateTest extends TestCase {
+    private static final long MAX_RELATIVE_EXPIRED = 30L * 24 * 3600 * 1000;
+
+    private MemcachedLoopbackServer server;
+    private MemcachedTemplate template;
+    private String name;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        // danga 的连接池按名称全局注册，每个用例使用不同的名称
+        name = "template-test-" + getName();
+        template = new MemcachedTemplate(new MemcachedManager(properties(config(name))));
+    }
+
+    @Override
+    protected void tearDown() {
+        server.close();
+    }
+
+    public void testCas() {
+        assertTrue(template.set("k", "v1", 60_000L));
+        MemcachedItem item = template.gets("k").orElse(null);
+        assertNotNull(item);
+
+        assertTrue(template.cas("k", "v2", item.getCasUnique()));
+        assertEquals("v2", template.get("k").orElse(null));
+        // 令牌已经失效
+        assertFalse(template.cas(name, "k", "v3", item.getCasUnique()));
+        assertEquals("v2", template.get(name, "k").orElse(null));
+    }
+
+    public void testCasWithExpired() throws Exception {
+        assertTrue(template.set("k", "v1", 60_000L));
+        long casUnique = template.gets("k").orElse(null).getCasUnique();
+
+        // 参数顺序颠倒时令牌为 1000，不会匹配
+        assertFalse(template.cas("k", "v2", casUnique, 1000L));
+        assertTrue(template.cas("k", "v2", 1000L, casUnique));
+        assertEquals("v2", template.get("k").orElse(null));
+
+        long next = template.gets(name, "k").orElse(null).getCasUnique();
+        assertFalse(template.cas(name, "k", "v3", 60_000L, casUnique));
+        assertTrue(template.cas(name, "k", "v3", 1000L, next));
+
+        // 按 1 秒过期
+        Thread.sleep(2100);
+        assertFalse(template.get("k").isPresent());
+    }
+
+    /**
+     * 超过软过期时间后立即返回旧数据，多次读取只触发一次后台刷新
+     */
+    public void testGetOrLoadReturnsStaleAndRefreshesOnce() throws Exception {
+        assertTrue(template.setWithSoftExpired("k", "old", 0L, 60_000L));
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<String> loader = () -> {
+            loads.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "new";
+        };
+        for (int i = 0; i < 10; i++) assertEquals("old", template.getOrLoad("k", 60_000L, 60_000L, loader).orElse(null));
+
+        release.countDown();
+        awaitValue("k", "new", loader);
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * 其他实例持有刷新锁时不刷新，锁释放后的下一次读取才刷新
+     */
+    public void testGetOrLoadSkipsRefreshWhenLocked() throws Exception {
+        assertTrue(template.setWithSoftExpired("k", "old", 0L, 60_000L));
+        assertTrue(template.add("k:refresh", Boolean.TRUE, 60_000L));
+
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<String> loader = () -> "new" + loads.incrementAndGet();
+        assertEquals("old", template.getOrLoad("k", 60_000L, 60_000L, loader).orElse(null));
+        Thread.sleep(500);
+        assertEquals(0, loads.get());
+        assertEquals("old", template.getOrLoad("k", 60_000L, 60_000L, loader).orElse(null));
+
+        assertTrue(template.delete("k:refresh"));
+        awaitValue("k", "new1", loader);
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * 未命中时同步加载并写入
+     */
+    public void testGetOrLoadMiss() {
+        assertEquals("v", template.getOrLoad("k", 60_000L, 60_000L, () -> "v").orElse(null));
+        assertEquals("v", template.getOrLoad("k", 60_000L, 60_000L, () -> "other").orElse(null));
+        assertFalse(template.getOrLoad("none", 60_000L, 60_000L, () -> null).isPresent());
+    }
+
+    public void testJitterWithinBounds() {
+        MemcachedConfig config = new MemcachedConfig();
+        assertEquals(1000L, MemcachedTemplate.jitter(config, 1000L));
+        assertEquals(1000L, MemcachedTemplate.jitter(null, 1000L));
+
+        config.setExpiredJitter(0.1);
+        for (int i = 0; i < 1000; i++) {
+            long jittered = MemcachedTemplate.jitter(config, 60_000L);
+            assertTrue(jittered + "", jittered >= 60_000L && jittered <= 66_000L);
+        }
+        assertEquals(0L, MemcachedTemplate.jitter(config, 0L));
+        assertEquals(-1L, MemcachedTemplate.jitter(config, -1L));
+        // 超过 30 天的值是绝对时间戳，不抖动
+        long timestamp = System.currentTimeMillis() + 60_000L;
+        assertEquals(timestamp, MemcachedTemplate.jitter(config, timestamp));
+    }
+
+    /**
+     * 接近 30 天的相对过期时间抖动后不能超过 30 天
+     */
+    public void testJitterNearMaxRelativeExpired() {
+        MemcachedConfig config = new MemcachedConfig();
+        config.setExpiredJitter(0.5);
+        for (long expired : new long[]{MAX_RELATIVE_EXPIRED - 1000, MAX_RELATIVE_EXPIRED - 1, MAX_RELATIVE_EXPIRED}) {
+            for (int i = 0; i < 1000; i++) {
+                long jittered = MemcachedTemplate.jitter(config, expired);
+                assertTrue(jittered + "", jittered >= expired && jittered <= MAX_RELATIVE_EXPIRED);
+            }
+        }
+
+        MemcachedConfig jittered = config(name + "-jitter");
+        jittered.setExpiredJitter(0.5);
+        MemcachedTemplate template = new MemcachedTemplate(new MemcachedManager(properties(jittered)));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(template.set("k" + i, "v", MAX_RELATIVE_EXPIRED - 1000));
+            assertEquals("v", template.get("k" + i).orElse(null));
+        }
+
+        long now = System.currentTimeMillis();
+        assertTrue(template.setWithSoftExpired("soft", "v", 60_000L, MAX_RELATIVE_EXPIRED - 1000));
+        MemcachedEnvelope envelope = (MemcachedEnvelope) template.get("soft").orElse(null);
+        assertNotNull(envelope);
+        assertTrue(envelope.getExpireAt() >= now + MAX_RELATIVE_EXPIRED - 1000);
+        assertTrue(envelope.getExpireAt() <= System.currentTimeMillis() + MAX_RELATIVE_EXPIRED);
+        assertEquals("v", template.getOrLoadEarly("soft", MAX_RELATIVE_EXPIRED - 1000, 1.0, () -> "recomputed").orElse(null));
+    }
+
+    /**
+     * 距离过期时间等于 delta * beta 时重新计算的概率为 1/e，越接近过期概率越高
+     */
+    public void testXFetchProbability() {
+        long now = 1_000_000L;
+        MemcachedEnvelope envelope = new MemcachedEnvelope("v", now, now + 1000, 1000);
+        assertEquals(0.368, recomputeRate(envelope, now, 1.0), 0.01);
+        assertEquals(0.607, recomputeRate(envelope, now, 2.0), 0.01);
+        assertEquals(0.0, recomputeRate(envelope, now - 100_000, 1.0), 0.01);
+        assertEquals(1.0, recomputeRate(envelope, now + 1000, 1.0));
+        assertTrue(recomputeRate(envelope, now + 500, 1.0) > recomputeRate(envelope, now, 1.0));
+        // 计算耗时越长越早重新计算
+        assertTrue(recomputeRate(new MemcachedEnvelope("v", now, now + 1000, 5000), now, 1.0) > 0.8);
+
+        assertFalse(new MemcachedEnvelope("v", now, 0, 1000).shouldRecompute(now, 1.0, 0.999));
+    }
+
+    /**
+     * 远未过期时不提前计算，已写入的数据耗时为 loader 的实际耗时
+     */
+    public void testGetOrLoadEarly() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<String> loader = () -> {
+            loads.incrementAndGet();
+            return "v";
+        };
+        for (int i = 0; i < 100; i++) assertEquals("v", template.getOrLoadEarly("k", 600_000L, 1.0, loader).orElse(null));
+        assertEquals(1, loads.get());
+
+        // 已经过了硬过期时间点的数据总是重新计算
+        long now = System.currentTimeMillis();
+        assertTrue(template.set("stale", new MemcachedEnvelope("old", now - 2000, now - 1000, 10), 60_000L));
+        assertEquals("v", template.getOrLoadEarly("stale", 600_000L, 1.0, loader).orElse(null));
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * 不存在时通过 add 写入；add 被其他写入抢先时重新读取，基于对方写入的值重试
+     */
+    public void testUpdateAddsWhenMissing() {
+        assertEquals(Integer.valueOf(1), template.<Integer>update("k", v -> v == null ? 1 : v + 1, 60_000L).orElse(null));
+        assertEquals(Integer.valueOf(2), template.<Integer>update("k", v -> v == null ? 1 : v + 1, 60_000L).orElse(null));
+        assertEquals(2, template.get("k").orElse(null));
+        // 没有冲突时不记录统计
+        assertTrue(template.getCasHotKeys(10).isEmpty());
+
+        AtomicInteger calls = new AtomicInteger();
+        Optional<Integer> value = template.update("other", v -> {
+            // 第一次计算期间其他实例写入了该 key
+            if(calls.incrementAndGet() == 1) assertTrue(template.add("other", 10, 60_000L));
+            return v == null ? 1 : v + 1;
+        }, 60_000L);
+        assertEquals(Integer.valueOf(11), value.orElse(null));
+        assertEquals(2, calls.get());
+        MemcachedCasStats stats = template.getCasHotKeys(name, 10).get(0);
+        assertEquals("other", stats.getKey());
+        assertEquals(1, stats.getConflicts());
+        assertEquals(1, stats.getUpdates());
+        assertEquals(0, stats.getExhausted());
+
+        // fn 返回 null 时放弃更新
+        assertFalse(template.update("k", v -> null, 60_000L).isPresent());
+        assertEquals(2, template.get("k").orElse(null));
+    }
+
+    /**
+     * 每次计算期间都被其他写入抢先时，尝试 casMaxAttempts 次后放弃，冲突和放弃次数计入统计
+     */
+    public void testUpdateGivesUpAfterMaxAttempts() {
+        MemcachedConfig config = config(name + "-limited");
+        config.setCasMaxAttempts(3);
+        config.setCasBackoff(0L);
+        MemcachedTemplate template = new MemcachedTemplate(new MemcachedManager(properties(config)));
+        assertTrue(template.set("hot", 0, 60_000L));
+
+        AtomicInteger calls = new AtomicInteger();
+        assertFalse(template.<Integer>update("hot", v -> {
+            assertTrue(template.set("hot", -calls.incrementAndGet(), 60_000L));
+            return 100;
+        }, 60_000L).isPresent());
+        assertEquals(3, calls.get());
+        assertEquals(-3, template.get("hot").orElse(null));
+
+        assertEquals(Integer.valueOf(-2), template.<Integer>update("hot", v -> v + 1, 60_000L).orElse(null));
+        assertTrue(template.<Integer>update("cold", v -> {
+            if(calls.incrementAndGet() == 4) assertTrue(template.set("cold", 0, 60_000L));
+            return 1;
+        }, 60_000L).isPresent());
+
+        List<MemcachedCasStats> hotKeys = template.getCasHotKeys(config.getName(), 10);
+        assertEquals(2, hotKeys.size());
+        assertEquals("hot", hotKeys.get(0).getKey());
+        assertEquals(3, hotKeys.get(0).getConflicts());
+        assertEquals(1, hotKeys.get(0).getExhausted());
+        assertEquals(1, hotKeys.get(0).getUpdates());
+        assertTrue(hotKeys.get(0).getLastConflictAt() > 0);
+        assertEquals("cold", hotKeys.get(1).getKey());
+        assertEquals(1, hotKeys.get(1).getConflicts());
+        assertEquals(1, template.getCasHotKeys(config.getName(), 1).size());
+
+        template.resetCasStats();
+        assertTrue(template.getCasHotKeys(10).isEmpty());
+    }
+
+    /**
+     * 第 n 次冲突后随机等待 0 ~ casBackoff * 2^(n-1) 毫秒，最多 casBackoff * 64；线程被中断时放弃重试并保留中断标记
+     */
+    public void testUpdateBackoff() {
+        MemcachedConfig config = new MemcachedConfig();
+        config.setCasBackoff(0L);
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) assertTrue(MemcachedCasContention.backoff(config, 10));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+
+        config.setCasBackoff(1L);
+        long total = 0;
+        for (int i = 0; i < 20; i++) {
+            start = System.nanoTime();
+            assertTrue(MemcachedCasContention.backoff(config, 100));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed + " ms", elapsed < 64 + 50);
+            total += elapsed;
+        }
+        // 20 次均匀随机等待的总和小于单次上限的概率可以忽略
+        assertTrue(total + " ms", total >= 64);
+
+        // 退避期间被中断：放弃重试，不再调用 fn
+        MemcachedConfig interrupted = config(name + "-interrupted");
+        interrupted.setCasBackoff(60_000L);
+        MemcachedTemplate template = new MemcachedTemplate(new MemcachedManager(properties(interrupted)));
+        assertTrue(template.set("k", 0, 60_000L));
+        Thread caller = Thread.currentThread();
+        Thread interrupter = new Thread(() -> {
+            while (caller.getState() != Thread.State.TIMED_WAITING) Thread.yield();
+            caller.interrupt();
+        });
+        AtomicInteger calls = new AtomicInteger();
+        start = System.nanoTime();
+        try {
+            assertFalse(template.<Integer>update("k", v -> {
+                if(calls.incrementAndGet() == 1) {
+                    assertTrue(template.set("k", v - 1, 60_000L));
+                    interrupter.start();
+                }
+                return v + 1;
+            }, 60_000L).isPresent());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(1, calls.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertEquals(0, template.getCasHotKeys(10).get(0).getExhausted());
+    }
+
+    private static double recomputeRate(MemcachedEnvelope envelope, long now, double beta) {
+        int samples = 100_000;
+        int recompute = 0;
+        for (int i = 0; i < samples; i++) {
+            if(envelope.shouldRecompute(now, beta, (i + 0.5) / samples)) recompute++;
+        }
+        return (double) recompute / samples;
+    }
+
+    private MemcachedConfig config(String name) {
+        MemcachedConfig config = server.config(name);
+        config.setMaintSleep(0);
+        config.setInitConn(1);
+        config.setMinConn(1);
+        return config;
+    }
+
+    private static MemcachedProperties properties(MemcachedConfig config) {
+        MemcachedProperties properties = new MemcachedProperties();
+        properties.setNodes(Collections.singletonList(config));
+        return properties;
+    }
+
+    private void awaitValue(String key, String expected, Supplier<String> loader) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!expected.equals(template.getOrLoad(key, 60_000L, 60_000L, loader).orElse(null))) {
+            assertTrue("timeout waiting for " + expected, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.lizhibao.toolbox.memcached.counter;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.fault.MemcachedFault;
+import com.lizhibao.toolbox.memcached.fault.MemcachedFaultProxy;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓冲计数器：增量在本地合并，按间隔、阈值或关闭时写入服务器，写入失败的增量退回本地
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedCounterBufferTest extends TestCase {
+    private MemcachedLoopbackServer server;
+    private MemcachedCounterBuffer buffer;
+    private String name;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        // danga 的连接池按名称全局注册，每个用例使用不同的名称
+        name = "counter-test-" + getName();
+    }
+
+    @Override
+    protected void tearDown() {
+        if(buffer != null) buffer.close();
+        server.close();
+    }
+
+    /**
+     * 并发增量只在本地合并，刷新时每个 key 只发送一次合计值
+     */
+    public void testMergeLocally() throws Exception {
+        buffer = buffer(0L, 0L);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    buffer.incr(name, "a");
+                    buffer.incr(name, "b", 2);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(8000, buffer.getPending(name, "a"));
+        assertEquals(16000, buffer.getPending(name, "b"));
+        assertEquals(0, server.size());
+        assertEquals(8000, buffer.get(name, "a"));
+
+        buffer.flush(name);
+        assertEquals(0, buffer.getPending(name, "a"));
+        assertEquals(8000, buffer.get(name, "a"));
+        assertEquals(16000, buffer.get(name, "b"));
+
+        buffer.incr(name, "a", -3000);
+        buffer.flush();
+        assertEquals(5000, buffer.get(name, "a"));
+    }
+
+    public void testFlushOnInterval() throws Exception {
+        buffer = buffer(100L, 0L);
+        assertTrue(buffer.incr(name, "a", 5));
+        awaitRemote("a", 5);
+        assertEquals(0, buffer.getPending(name, "a"));
+    }
+
+    public void testFlushOnThreshold() throws Exception {
+        buffer = buffer(0L, 10L);
+        for (int i = 0; i < 9; i++) buffer.incr(name, "a");
+        Thread.sleep(200);
+        assertEquals(0, server.size());
+
+        buffer.incr(name, "a");
+        awaitRemote("a", 10);
+    }
+
+    public void testFlushOnClose() {
+        buffer = buffer(0L, 0L);
+        assertTrue(buffer.incr(name, "a", 7));
+        buffer.close();
+        assertEquals(7, buffer.get(name, "a"));
+        assertFalse(buffer.incr(name, "a"));
+        assertFalse(buffer.incr("unknown", "a"));
+    }
+
+    /**
+     * 服务器不可用时增量退回本地，恢复后写入且只计入一次
+     */
+    public void testKeepDeltaWhenIncrFails() throws Exception {
+        try (MemcachedFaultProxy proxy = new MemcachedFaultProxy(server.getAddress())) {
+            buffer = buffer(0L, 0L, proxy.getAddress());
+            assertTrue(buffer.incr(name, "a", 3));
+            buffer.flush(name);
+            assertEquals("3", remote("a"));
+
+            proxy.inject(MemcachedFault.reset());
+            assertTrue(buffer.incr(name, "a", 4));
+            buffer.flush(name);
+            assertEquals(4, buffer.getPending(name, "a"));
+            assertEquals("3", remote("a"));
+
+            proxy.clear();
+            // 故障期间断开的连接在恢复后的第一次使用时才会发现
+            long deadline = System.currentTimeMillis() + 5000;
+            while (buffer.getPending(name, "a") != 0) {
+                assertTrue("timeout waiting for flush", System.currentTimeMillis() < deadline);
+                buffer.flush(name);
+            }
+            assertEquals("7", remote("a"));
+        }
+    }
+
+    /**
+     * 不存在的计数器只创建正数，减少不存在的计数器时丢弃增量；服务器上的计数器不小于 0
+     */
+    public void testDecrement() {
+        buffer = buffer(0L, 0L);
+        buffer.incr(name, "missing", -5);
+        buffer.flush(name);
+        assertEquals(0, buffer.getPending(name, "missing"));
+        assertEquals(0, server.size());
+
+        buffer.incr(name, "a", 2);
+        buffer.flush(name);
+        buffer.incr(name, "a", -5);
+        buffer.flush(name);
+        assertEquals(0, buffer.get(name, "a"));
+    }
+
+    private MemcachedCounterBuffer buffer(long interval, long threshold) {
+        return buffer(interval, threshold, server.getAddress());
+    }
+
+    private MemcachedCounterBuffer buffer(long interval, long threshold, String servers) {
+        MemcachedConfig config = server.config(name);
+        config.setServers(servers);
+        config.setMaintSleep(0);
+        config.setInitConn(1);
+        config.setMinConn(1);
+        config.setCounterFlushInterval(interval);
+        config.setCounterFlushThreshold(threshold);
+        MemcachedProperties properties = new MemcachedProperties();
+        properties.setNodes(Collections.singletonList(config));
+        return new MemcachedCounterBuffer(new MemcachedManager(properties));
+    }
+
+    /**
+     * 不经过 danga 客户端直接读取服务器上的值
+     */
+    private String remote(String key) throws IOException {
+        MemcachedConnection connection = new MemcachedConnection(server.getAddress(), 1000, 1000, true);
+        try {
+            connection.writeAscii("get ").writeAscii(key).writeCrlf().flush();
+            long header = connection.readValueHeader();
+            if(header < 0) return null;
+
+            byte[] value = new byte[(int) header];
+            connection.readFully(value, 0, value.length);
+            return new String(value, StandardCharsets.US_ASCII);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void awaitRemote(String key, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.size() == 0 || buffer.get(name, key) != expected || buffer.getPending(name, key) != 0) {
+            assertTrue("timeout waiting for " + expected, System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.lizhibao.toolbox.memcached.interceptor;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedTrafficRecorder;
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 拦截器链跳过未生效的拦截器，全部未生效时调用方直接执行实际操作；流量记录只在记录期间生效
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedInterceptorChainTest extends TestCase {
+
+    public void testSkipInactive() {
+        Recording outer = new Recording("outer");
+        Recording inner = new Recording("inner");
+        List<String> calls = new ArrayList<>();
+        outer.calls = calls;
+        inner.calls = calls;
+        MemcachedInterceptorChain chain = MemcachedInterceptorChain.of(Arrays.asList(outer, inner));
+        assertNull(MemcachedInterceptorChain.of(Collections.emptyList()));
+        assertTrue(chain.isActive());
+
+        MemcachedOperation operation = MemcachedOperation.of(MemcachedOperationType.GET, "name", "k", null);
+        assertEquals("k", chain.invoke(operation, MemcachedOperation::getKey));
+        assertEquals(Arrays.asList("outer", "inner"), calls);
+
+        calls.clear();
+        outer.active = false;
+        assertTrue(chain.isActive());
+        assertEquals("k", chain.invoke(operation, MemcachedOperation::getKey));
+        assertEquals(Collections.singletonList("inner"), calls);
+
+        calls.clear();
+        inner.active = false;
+        assertFalse(chain.isActive());
+        assertEquals("k", chain.invoke(operation, MemcachedOperation::getKey));
+        assertTrue(calls.isEmpty());
+    }
+
+    /**
+     * 未开始记录时流量记录不生效，模板直接执行实际操作
+     */
+    public void testIdleRecorder() throws Exception {
+        Path file = Files.createTempFile("memcached-trace", ".bin");
+        try (MemcachedLoopbackServer server = new MemcachedLoopbackServer();
+             MemcachedTrafficRecorder recorder = new MemcachedTrafficRecorder()) {
+            Recording counting = new Recording("counting");
+            counting.active = false;
+            MemcachedConfig config = server.config("interceptor-test-idle-recorder");
+            config.setMaintSleep(0);
+            config.setInitConn(1);
+            config.setMinConn(1);
+            MemcachedProperties properties = new MemcachedProperties();
+            properties.setNodes(Collections.singletonList(config));
+            MemcachedTemplate template = new MemcachedTemplate(new MemcachedManager(properties), Arrays.asList(recorder, counting));
+
+            assertFalse(recorder.isActive());
+            assertTrue(template.set("k", "v", 60_000L));
+            assertEquals("v", template.get("k").orElse(null));
+            assertTrue(counting.calls.isEmpty());
+
+            recorder.start(file);
+            assertTrue(recorder.isActive());
+            assertEquals("v", template.get("k").orElse(null));
+            assertTrue(template.delete("k"));
+            assertEquals(2, recorder.stop());
+            assertFalse(recorder.isActive());
+            assertTrue(counting.calls.isEmpty());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static final class Recording implements MemcachedInterceptor {
+        private final String id;
+        private volatile boolean active = true;
+        private List<String> calls = new ArrayList<>();
+
+        private Recording(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public <T> T intercept(MemcachedOperation operation, MemcachedInvocation<T> invocation) {
+            calls.add(id);
+            return invocation.proceed(operation);
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+    }
+}
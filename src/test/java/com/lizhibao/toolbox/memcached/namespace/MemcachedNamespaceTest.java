@@ -0,0 +1,142 @@
+package com.lizhibao.toolbox.memcached.namespace;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 命名空间失效后旧版本的 key 不再可达，版本号不存在(首次使用或被淘汰)时以当前时间戳重新创建
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedNamespaceTest extends TestCase {
+    private MemcachedLoopbackServer server;
+    private String name;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        // danga 的连接池按名称全局注册，每个用例使用不同的名称
+        name = "namespace-test-" + getName();
+    }
+
+    @Override
+    protected void tearDown() {
+        server.close();
+    }
+
+    public void testInvalidateMakesOldKeysUnreachable() {
+        MemcachedTemplate template = template(name, 0L);
+        MemcachedNamespace namespace = template.namespace("user");
+        assertSame(namespace, template.namespace("user"));
+
+        assertTrue(namespace.set("a", "1", 60_000L));
+        assertTrue(namespace.set("b", "2", 60_000L));
+        assertEquals("1", namespace.get("a"));
+        assertTrue(namespace.keyExists("b"));
+        long generation = namespace.generation();
+        String oldKey = namespace.key("a");
+        assertEquals("user:" + generation + ":a", oldKey);
+
+        assertTrue(template.invalidateNamespace("user"));
+        assertEquals(generation + 1, namespace.generation());
+        assertNull(namespace.get("a"));
+        assertFalse(namespace.keyExists("b"));
+        assertTrue(namespace.getMulti(new String[]{"a", "b"}).isEmpty());
+        // 旧数据仍在服务器上，只是不再被访问
+        assertEquals("1", template.get(oldKey).orElse(null));
+
+        assertTrue(namespace.add("a", "3", 60_000L));
+        assertFalse(namespace.add("a", "4", 60_000L));
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("a", "3");
+        assertEquals(expected, namespace.getMulti(new String[]{"a", "b"}));
+
+        // 其他命名空间不受影响
+        MemcachedNamespace other = template.namespace("order");
+        assertTrue(other.set("a", "x", 60_000L));
+        assertTrue(namespace.invalidate());
+        assertEquals("x", other.get("a"));
+    }
+
+    /**
+     * 版本号不存在时以当前时间戳创建；被服务器淘汰后重新创建的版本号不会回退到旧版本
+     */
+    public void testMissingGenerationKey() throws Exception {
+        MemcachedTemplate template = template(name, 0L);
+        MemcachedNamespace namespace = template.namespace("user");
+
+        long before = System.currentTimeMillis();
+        long generation = namespace.generation();
+        assertTrue(generation >= before && generation <= System.currentTimeMillis());
+        assertEquals(generation, namespace.generation());
+        assertTrue(namespace.set("a", "1", 60_000L));
+
+        // 模拟版本号被淘汰
+        Thread.sleep(5);
+        assertTrue(template.delete("__ns:user"));
+        assertNull(namespace.get("a"));
+        assertTrue(namespace.generation() > generation);
+
+        // 版本号不存在时失效直接创建新的版本号
+        assertTrue(template.delete("__ns:user"));
+        Thread.sleep(5);
+        assertTrue(namespace.invalidate());
+        assertTrue(namespace.generation() > generation);
+        assertNull(namespace.get("a"));
+
+        assertEquals(5, namespace.addOrIncr("counter", 5));
+        assertEquals(7, namespace.incr("counter", 2));
+        assertEquals(6, namespace.decr("counter", 1));
+        assertTrue(namespace.delete("counter"));
+        assertEquals(-1, namespace.incr("counter", 1));
+    }
+
+    /**
+     * 其他实例使命名空间失效后，本实例在本地缓存的版本号过期后可见
+     */
+    public void testInvalidateFromOtherInstance() throws Exception {
+        MemcachedNamespace local = template(name, 300L).namespace("user");
+        MemcachedNamespace remote = template(name + "-remote", 0L).namespace("user");
+
+        assertTrue(local.set("a", "1", 60_000L));
+        assertEquals("1", remote.get("a"));
+        assertTrue(remote.invalidate());
+        assertNull(remote.get("a"));
+        assertEquals("1", local.get("a"));
+
+        Thread.sleep(400);
+        assertNull(local.get("a"));
+        assertEquals(remote.generation(), local.generation());
+    }
+
+    public void testServerUnavailable() {
+        MemcachedNamespace namespace = template(name, 0L).namespace("user");
+        server.close();
+
+        assertEquals(-1, namespace.generation());
+        assertNull(namespace.key("a"));
+        assertFalse(namespace.set("a", "1", 60_000L));
+        assertNull(namespace.get("a"));
+        assertTrue(namespace.getMulti(new String[]{"a"}).isEmpty());
+        assertFalse(namespace.invalidate());
+    }
+
+    private MemcachedTemplate template(String name, long cacheTtl) {
+        MemcachedConfig config = server.config(name);
+        config.setMaintSleep(0);
+        config.setInitConn(1);
+        config.setMinConn(1);
+        config.setNamespaceCacheTtl(cacheTtl);
+        MemcachedProperties properties = new MemcachedProperties();
+        properties.setNodes(Collections.singletonList(config));
+        return new MemcachedTemplate(new MemcachedManager(properties));
+    }
+}
@@ -0,0 +1,156 @@
+package com.lizhibao.toolbox.memcached.nearcache;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedDecoder;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 近端缓存的命中、失效(线性探测的后移删除)和 slab 写满后的压缩淘汰
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedNearCacheTest extends TestCase {
+    private MemcachedLoopbackServer server;
+    private MemcachedConnectionPool pool;
+    private MemcachedDecoder decoder;
+    private MemcachedNearCache nearCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        MemcachedConfig config = server.config("near-cache-test");
+        config.setIsPrimitiveAsString(true);
+        // 最小容量：16 段 * 4 个 64KB 的 slab
+        config.setNearCacheCapacity(1L);
+        config.setNearCacheTtl(60_000L);
+        pool = new MemcachedConnectionPool(config);
+        decoder = new MemcachedDecoder(config, null);
+        nearCache = new MemcachedNearCache(config, pool, decoder);
+    }
+
+    @Override
+    protected void tearDown() {
+        pool.close();
+        server.close();
+    }
+
+    public void testHitAndInvalidate() throws Exception {
+        set("a", "1");
+        assertNull(nearCache.get("missing"));
+        assertEquals("1", nearCache.get("a"));
+        assertEquals("1", nearCache.get("a"));
+        assertEquals(1, nearCache.getHits());
+        assertEquals(2, nearCache.getMisses());
+
+        set("a", "2");
+        assertEquals("1", nearCache.get("a"));
+        nearCache.invalidate("a");
+        assertEquals("2", nearCache.get("a"));
+        assertEquals(1, nearCache.size());
+
+        nearCache.clear();
+        assertEquals(0, nearCache.size());
+        assertEquals("2", nearCache.get("a"));
+    }
+
+    /**
+     * 大量 key 形成较长的探测链，删除一半后其余 key 仍然全部命中，删除的 key 全部未命中
+     */
+    public void testInvalidateKeepsProbeChains() throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 8000; i++) {
+            keys.add("k" + i);
+            set("k" + i, "v" + i);
+        }
+        for (String key : keys) nearCache.get(key);
+        assertEquals(keys.size(), nearCache.size());
+
+        Random random = new Random(36);
+        for (int round = 0; round < 3; round++) {
+            Collections.shuffle(keys, random);
+            List<String> removed = keys.subList(0, keys.size() / 2);
+            List<String> kept = keys.subList(keys.size() / 2, keys.size());
+            for (String key : removed) nearCache.invalidate(key);
+            assertEquals(kept.size(), nearCache.size());
+
+            long hits = nearCache.getHits();
+            for (String key : kept) assertEquals("v" + key.substring(1), nearCache.get(key));
+            assertEquals(hits + kept.size(), nearCache.getHits());
+
+            long misses = nearCache.getMisses();
+            for (String key : removed) assertEquals("v" + key.substring(1), nearCache.get(key));
+            assertEquals(misses + removed.size(), nearCache.getMisses());
+            assertEquals(keys.size(), nearCache.size());
+        }
+    }
+
+    /**
+     * 数据量超过容量时淘汰没有被访问过的数据，内存不超过容量，持续被访问的数据压缩后保留
+     */
+    public void testEviction() throws Exception {
+        String padding = repeat('x', 4000);
+        List<String> hot = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            hot.add("hot" + i);
+            set("hot" + i, "hot" + i + padding);
+            nearCache.get("hot" + i);
+        }
+
+        for (int i = 0; i < 3000; i++) {
+            set("cold" + i, "cold" + i + padding);
+            assertEquals("cold" + i + padding, nearCache.get("cold" + i));
+            for (String key : hot) assertEquals(key + padding, nearCache.get(key));
+        }
+
+        assertTrue(nearCache.memory() <= 4 * 1024 * 1024);
+        assertTrue(nearCache.size() < 3000 / 2);
+
+        long misses = nearCache.getMisses();
+        for (String key : hot) assertEquals(key + padding, nearCache.get(key));
+        assertEquals(misses, nearCache.getMisses());
+
+        // 淘汰后重新读取的数据仍然正确
+        for (int i = 0; i < 3000; i += 7) assertEquals("cold" + i + padding, nearCache.get("cold" + i));
+    }
+
+    /**
+     * 超过 slab 一半的数据不保存到本地
+     */
+    public void testLargeValueNotCached() throws Exception {
+        String value = repeat('y', 40 * 1024);
+        set("large", value);
+        assertEquals(value, nearCache.get("large"));
+        assertEquals(value, nearCache.get("large"));
+        assertEquals(0, nearCache.getHits());
+        assertEquals(0, nearCache.size());
+    }
+
+    private void set(String key, String value) throws IOException {
+        byte[] data = decoder.encode(value);
+        MemcachedConnection connection = pool.borrow(pool.locate(key));
+        try {
+            connection.writeAscii("set ").writeAscii(key).writeAscii(" ").writeDecimal(decoder.flags(value))
+                    .writeAscii(" 0 ").writeDecimal(data.length).writeCrlf()
+                    .write(data).writeCrlf().flush();
+            assertEquals("STORED", connection.readLine());
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,179 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 直连协议的连接池：空闲超过 maxIdle 的连接被关闭，限制借出数(virtualThreadFriendly)时等待归还和等待超时
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedConnectionPoolTest extends TestCase {
+    private MemcachedLoopbackServer server;
+    private String host;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        host = server.getAddress();
+    }
+
+    @Override
+    protected void tearDown() {
+        server.close();
+    }
+
+    /**
+     * 借出时跳过并关闭空闲超时的连接，归还时从队尾关闭空闲超时的连接
+     */
+    public void testEvictIdle() throws Exception {
+        MemcachedConfig config = config(false);
+        config.setMaxConn(2);
+        config.setMaxIdle(200);
+        try (MemcachedConnectionPool pool = new MemcachedConnectionPool(config)) {
+            MemcachedConnection first = pool.borrow(host);
+            MemcachedConnection second = pool.borrow(host);
+            pool.release(first);
+            pool.release(second);
+            assertEquals(2, pool.getIdleCount(host));
+            // 后归还的先借出
+            assertSame(second, pool.borrow(host));
+            pool.release(second);
+
+            Thread.sleep(300);
+            MemcachedConnection fresh = pool.borrow(host);
+            assertNotSame(first, fresh);
+            assertNotSame(second, fresh);
+            assertEquals(0, pool.getIdleCount(host));
+
+            MemcachedConnection other = pool.borrow(host);
+            pool.release(other);
+            Thread.sleep(300);
+            version(fresh);
+            pool.release(fresh);
+            assertEquals(1, pool.getIdleCount(host));
+            assertSame(fresh, pool.borrow(host));
+            pool.release(fresh);
+        }
+
+        // maxIdle 为 0 时不关闭空闲连接
+        config.setMaxIdle(0);
+        try (MemcachedConnectionPool pool = new MemcachedConnectionPool(config)) {
+            MemcachedConnection connection = pool.borrow(host);
+            pool.release(connection);
+            Thread.sleep(300);
+            assertSame(connection, pool.borrow(host));
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * 借出数达到 maxConn 后等待归还，归还的连接直接交给等待的线程
+     */
+    public void testBoundedWait() throws Exception {
+        MemcachedConfig config = config(true);
+        config.setSocketConnectTimeout(5000);
+        try (MemcachedConnectionPool pool = new MemcachedConnectionPool(config)) {
+            MemcachedConnection held = pool.borrow(host);
+            CompletableFuture<MemcachedConnection> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.borrow(host);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(waiting.isDone());
+            assertEquals(1, pool.getActiveCount(host));
+
+            pool.release(held);
+            MemcachedConnection borrowed = waiting.get(2, TimeUnit.SECONDS);
+            assertSame(held, borrowed);
+            assertEquals(1, pool.getActiveCount(host));
+            version(borrowed);
+            pool.release(borrowed);
+            assertEquals(0, pool.getActiveCount(host));
+        }
+    }
+
+    /**
+     * 最多等待 socketConnectTimeout，截止时间更早时按截止时间；超时不占用借出名额
+     */
+    public void testBoundedWaitTimeout() throws Exception {
+        MemcachedConfig config = config(true);
+        config.setSocketConnectTimeout(300);
+        try (MemcachedConnectionPool pool = new MemcachedConnectionPool(config)) {
+            MemcachedConnection held = pool.borrow(host);
+
+            long start = System.currentTimeMillis();
+            try {
+                pool.borrow(host);
+                fail();
+            } catch (SocketTimeoutException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("maxConn = 1"));
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue(elapsed + " ms", elapsed >= 250 && elapsed < 2000);
+
+            start = System.currentTimeMillis();
+            try {
+                pool.borrow(host, MemcachedDeadline.of(50));
+                fail();
+            } catch (SocketTimeoutException e) {
+                // 截止时间早于 socketConnectTimeout
+            }
+            assertTrue(System.currentTimeMillis() - start < 250);
+            assertEquals(1, pool.getActiveCount(host));
+
+            pool.release(held);
+            assertSame(held, pool.borrow(host));
+            pool.release(held);
+            assertEquals(0, pool.getActiveCount(host));
+        }
+    }
+
+    /**
+     * 连接池关闭时唤醒等待的线程
+     */
+    public void testCloseWakesWaiters() throws Exception {
+        MemcachedConfig config = config(true);
+        config.setSocketConnectTimeout(0);
+        MemcachedConnectionPool pool = new MemcachedConnectionPool(config);
+        MemcachedConnection held = pool.borrow(host);
+        CompletableFuture<Throwable> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                pool.borrow(host);
+                return null;
+            } catch (IOException e) {
+                return e;
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(waiting.isDone());
+
+        pool.close();
+        Throwable error = waiting.get(2, TimeUnit.SECONDS);
+        assertNotNull(error);
+        assertTrue(error.getMessage(), error.getMessage().contains("closed"));
+        pool.release(held);
+        assertEquals(0, pool.getIdleCount(host));
+    }
+
+    private MemcachedConfig config(boolean bounded) {
+        MemcachedConfig config = server.config("pool-test-" + getName());
+        config.setMaxConn(1);
+        config.setVirtualThreadFriendly(bounded);
+        return config;
+    }
+
+    private static void version(MemcachedConnection connection) throws IOException {
+        connection.writeAscii("version").writeCrlf().flush();
+        assertTrue(connection.readLine().startsWith("VERSION"));
+    }
+}
@@ -0,0 +1,210 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.fault.MemcachedFault;
+import com.lizhibao.toolbox.memcached.fault.MemcachedFaultProxy;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * 线程的截止时间：作为直连协议每次读取的超时时间，范围结束(包括抛出异常)后清除，归还的连接恢复 socketTimeout
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedDeadlineTest extends TestCase {
+    private MemcachedLoopbackServer server;
+    private MemcachedFaultProxy proxy;
+    private String name;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        proxy = new MemcachedFaultProxy(server.getAddress());
+        // danga 的连接池按名称全局注册，每个用例使用不同的名称
+        name = "deadline-test-" + getName();
+    }
+
+    @Override
+    protected void tearDown() {
+        proxy.close();
+        server.close();
+    }
+
+    /**
+     * 嵌套调用取更早的截止时间，范围结束后恢复外层的截止时间
+     */
+    public void testNestedCall() {
+        assertEquals(0, MemcachedDeadline.current());
+        MemcachedDeadline.call(10_000, () -> {
+            long outer = MemcachedDeadline.current();
+            assertTrue(MemcachedDeadline.remaining(outer) > 9_000);
+
+            MemcachedDeadline.call(100, () -> {
+                assertTrue(MemcachedDeadline.remaining(MemcachedDeadline.current()) <= 100);
+                // 更晚的截止时间不会延长外层的限制
+                MemcachedDeadline.call(60_000, () -> {
+                    assertTrue(MemcachedDeadline.remaining(MemcachedDeadline.current()) <= 100);
+                    return null;
+                });
+                return null;
+            });
+            assertEquals(outer, MemcachedDeadline.current());
+
+            // 小于等于 0 时不设置截止时间
+            MemcachedDeadline.call(0, () -> {
+                assertEquals(outer, MemcachedDeadline.current());
+                return null;
+            });
+            return null;
+        });
+        assertEquals(0, MemcachedDeadline.current());
+    }
+
+    public void testClearedOnException() {
+        MemcachedTemplate template = template(server.getAddress(), 3000);
+        try {
+            template.withTimeout(1000, () -> {
+                assertTrue(MemcachedDeadline.current() != 0);
+                throw new IllegalStateException("failed");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals(0, MemcachedDeadline.current());
+
+        try {
+            MemcachedDeadline.call(1000, () -> MemcachedDeadline.call(500, () -> {
+                throw new IllegalStateException("nested");
+            }));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("nested", e.getMessage());
+        }
+        assertEquals(0, MemcachedDeadline.current());
+    }
+
+    public void testRemaining() {
+        assertEquals(0, MemcachedDeadline.of(0));
+        assertEquals(0, MemcachedDeadline.of(-1));
+        assertEquals(0, MemcachedDeadline.remaining(System.nanoTime() - 1));
+        // 向上取整
+        assertEquals(1, MemcachedDeadline.remaining(System.nanoTime() + 1_000));
+        long remaining = MemcachedDeadline.remaining(MemcachedDeadline.of(1000));
+        assertTrue(remaining > 900 && remaining <= 1000);
+    }
+
+    /**
+     * 截止时间早于 socketTimeout 时按截止时间超时，返回未命中，之后同一线程的读取不再受该截止时间限制
+     */
+    public void testDeadlineShorterThanSocketTimeout() throws Exception {
+        MemcachedTemplate template = template(proxy.getAddress(), 3000);
+        assertTrue(template.set("k", "v", 60_000L));
+
+        proxy.inject(MemcachedFault.latency(2000));
+        long start = System.currentTimeMillis();
+        Optional<Object> value = template.withTimeout(300, () -> template.get("k"));
+        long elapsed = System.currentTimeMillis() - start;
+        assertFalse(value.isPresent());
+        assertTrue(elapsed + " ms", elapsed < 1500);
+        assertEquals(0, MemcachedDeadline.current());
+
+        proxy.clear();
+        assertEquals("v", template.get("k", 300).orElse(null));
+        assertEquals("v", template.get("k").orElse(null));
+    }
+
+    /**
+     * 截止时间可以长于 socketTimeout，读取的超时时间为剩余时间；归还的连接恢复 socketTimeout
+     */
+    public void testDeadlineLongerThanSocketTimeout() throws Exception {
+        MemcachedConfig config = config(proxy.getAddress(), 200);
+        try (MemcachedConnectionPool pool = new MemcachedConnectionPool(config)) {
+            set(pool, "k", "v");
+            proxy.inject(MemcachedFault.latency(500));
+
+            assertEquals("v", MemcachedDeadline.call(3000, () -> get(pool, "k")));
+            assertEquals(1, pool.getIdleCount(proxy.getAddress()));
+
+            // 归还后恢复 socketTimeout
+            MemcachedConnection connection = pool.borrow(proxy.getAddress());
+            try {
+                assertEquals(200, connection.getReadTimeout());
+                connection.writeAscii("get k").writeCrlf().flush();
+                connection.readValueHeader();
+                fail();
+            } catch (SocketTimeoutException e) {
+                connection.markBroken();
+            } finally {
+                pool.release(connection);
+            }
+        }
+    }
+
+    /**
+     * 已经到期时不再发送请求
+     */
+    public void testExpiredDeadline() throws Exception {
+        MemcachedConfig config = config(proxy.getAddress(), 3000);
+        try (MemcachedConnectionPool pool = new MemcachedConnectionPool(config)) {
+            set(pool, "k", "v");
+            MemcachedDeadline.call(50, () -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                assertTrue(MemcachedMultiGet.get(pool, new MemcachedDecoder(config, null), new String[]{"k"}, new MemcachedMultiGetOptions()).isEmpty());
+                try {
+                    pool.borrow(proxy.getAddress());
+                    fail();
+                } catch (IOException e) {
+                    // 到期
+                }
+                return null;
+            });
+        }
+    }
+
+    private MemcachedTemplate template(String servers, int socketTimeout) {
+        MemcachedConfig config = config(servers, socketTimeout);
+        config.setMaintSleep(0);
+        config.setInitConn(1);
+        config.setMinConn(1);
+        MemcachedProperties properties = new MemcachedProperties();
+        properties.setNodes(Collections.singletonList(config));
+        return new MemcachedTemplate(new MemcachedManager(properties));
+    }
+
+    private MemcachedConfig config(String servers, int socketTimeout) {
+        MemcachedConfig config = server.config(name);
+        config.setServers(servers);
+        config.setSocketTimeout(socketTimeout);
+        config.setIsPrimitiveAsString(true);
+        return config;
+    }
+
+    private static void set(MemcachedConnectionPool pool, String key, String value) throws IOException {
+        MemcachedConnection connection = pool.borrow(pool.locate(key));
+        try {
+            connection.writeAscii("set ").writeAscii(key).writeAscii(" 0 0 ").writeDecimal(value.length()).writeCrlf()
+                    .writeAscii(value).writeCrlf().flush();
+            assertEquals("STORED", connection.readLine());
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private static String get(MemcachedConnectionPool pool, String key) {
+        byte[] value = MemcachedBytes.get(pool, key);
+        return value == null ? null : new String(value);
+    }
+}
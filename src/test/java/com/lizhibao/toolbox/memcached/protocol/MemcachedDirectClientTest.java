@@ -0,0 +1,203 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.danga.MemCached.MemCachedClient;
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 直连客户端与 danga 客户端读写同一份数据：flags 和数据格式一致，双向都能读到对方写入的值
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedDirectClientTest extends TestCase {
+    private MemcachedLoopbackServer server;
+    private String name;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        // danga 的连接池按名称全局注册，每个用例使用不同的名称
+        name = "direct-test-" + getName();
+    }
+
+    @Override
+    protected void tearDown() {
+        server.close();
+    }
+
+    public void testRoundTrip() {
+        roundTrip(null);
+    }
+
+    public void testRoundTripPrimitiveAsString() {
+        roundTrip(true);
+    }
+
+    /**
+     * 计数器以十进制字符串存储(isPrimitiveAsString)，incr/decr 的结果两边一致
+     */
+    public void testCounter() {
+        MemCachedClient danga = client(name + "-danga", false, true);
+        MemCachedClient direct = client(name + "-direct", true, true);
+
+        assertTrue(danga.storeCounter("counter", 10L));
+        assertEquals(10, direct.getCounter("counter"));
+        assertEquals(15, direct.incr("counter", 5));
+        assertEquals(15, danga.getCounter("counter"));
+        assertEquals(12, danga.decr("counter", 3));
+        assertEquals(12, direct.getCounter("counter"));
+        assertEquals(1, direct.addOrIncr("other", 1));
+        assertEquals(1, danga.getCounter("other"));
+        assertEquals(3, danga.addOrIncr("other", 2));
+        assertEquals(3, direct.getCounter("other"));
+        assertEquals(-1, direct.getCounter("missing"));
+        assertTrue(direct.storeCounter("stored", 7L));
+        assertEquals(7, danga.getCounter("stored"));
+        assertEquals(8, danga.incr("stored"));
+    }
+
+    /**
+     * 未开启 isPrimitiveAsString 时 storeCounter 按二进制写入 Long，两边的 getCounter 都读不到(与 danga 客户端的行为一致)
+     */
+    public void testCounterWithoutPrimitiveAsString() {
+        MemCachedClient danga = client(name + "-danga", false, null);
+        MemCachedClient direct = client(name + "-direct", true, null);
+
+        assertTrue(danga.storeCounter("danga", 10L));
+        assertTrue(direct.storeCounter("direct", 10L));
+        for (String key : new String[]{"danga", "direct"}) {
+            assertEquals(Long.valueOf(10L), danga.get(key));
+            assertEquals(Long.valueOf(10L), direct.get(key));
+            assertEquals(danga.getCounter(key), direct.getCounter(key));
+        }
+    }
+
+    private void roundTrip(Boolean primitiveAsString) {
+        MemCachedClient danga = client(name + "-danga", false, primitiveAsString);
+        MemCachedClient direct = client(name + "-direct", true, primitiveAsString);
+        assertFalse(danga instanceof MemcachedDirectClient);
+        assertTrue(direct instanceof MemcachedDirectClient);
+
+        Map<String, Object> values = values();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            assertTrue(entry.getKey(), danga.set("danga:" + entry.getKey(), entry.getValue()));
+            assertTrue(entry.getKey(), direct.set("direct:" + entry.getKey(), entry.getValue()));
+        }
+
+        MemcachedConnectionPool pool = ((MemcachedDirectClient) direct).getConnectionPool();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            String key = entry.getKey();
+            // 两边写入的 flags 和数据完全相同
+            assertTrue(key, Arrays.equals(raw(pool, "danga:" + key), raw(pool, "direct:" + key)));
+
+            Object expected = danga.get("danga:" + key);
+            if(primitiveAsString == null) assertValue(key, entry.getValue(), expected);
+            assertValue(key, expected, direct.get("danga:" + key));
+            assertValue(key, expected, danga.get("direct:" + key));
+            assertValue(key, expected, direct.get("direct:" + key));
+        }
+
+        // 批量读取
+        String[] keys = values.keySet().stream().map(key -> "direct:" + key).toArray(String[]::new);
+        Map<String, Object> fromDanga = danga.getMulti(keys);
+        Map<String, Object> fromDirect = direct.getMulti(keys);
+        assertEquals(keys.length, fromDanga.size());
+        assertEquals(keys.length, fromDirect.size());
+        for (String key : keys) assertValue(key, fromDanga.get(key), fromDirect.get(key));
+
+        // 与 danga 客户端相同，空字符串读取为 null
+        assertTrue(danga.set("empty", ""));
+        assertTrue(direct.set("empty-direct", ""));
+        for (String key : new String[]{"empty", "empty-direct"}) {
+            assertNull(danga.get(key));
+            assertNull(direct.get(key));
+        }
+
+        // 需要编码的 key 两边编码规则一致
+        assertTrue(danga.set("key with spaces", "v"));
+        assertEquals("v", direct.get("key with spaces"));
+        assertTrue(direct.delete("key with spaces"));
+        assertNull(danga.get("key with spaces"));
+    }
+
+    private MemCachedClient client(String name, boolean direct, Boolean primitiveAsString) {
+        MemcachedConfig config = server.config(name);
+        config.setMaintSleep(0);
+        config.setInitConn(1);
+        config.setMinConn(1);
+        config.setIsPrimitiveAsString(primitiveAsString);
+        config.setVirtualThreadFriendly(direct);
+        MemcachedProperties properties = new MemcachedProperties();
+        properties.setNodes(Collections.singletonList(config));
+        return new MemcachedManager(properties).getClients().get(name).getClient();
+    }
+
+    private static Map<String, Object> values() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("string", "中文 value");
+        values.put("int", 42);
+        values.put("long", Long.MAX_VALUE);
+        values.put("short", (short) -7);
+        values.put("byte", (byte) 3);
+        values.put("boolean", true);
+        values.put("double", 3.25);
+        values.put("float", 1.5f);
+        values.put("char", 'x');
+        values.put("bytes", new byte[]{0, 1, -1, 13, 10});
+        values.put("date", new Date(1_700_000_000_000L));
+        values.put("builder", new StringBuilder("sb"));
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("a", 1);
+        map.put("b", Arrays.asList("x", "y"));
+        values.put("object", map);
+        char[] large = new char[200_000];
+        Arrays.fill(large, 'z');
+        values.put("large", new String(large));
+        return values;
+    }
+
+    /**
+     * 服务器上保存的 flags(前 4 个字节)和数据
+     */
+    private static byte[] raw(MemcachedConnectionPool pool, String key) {
+        String wireKey = pool.encodeKey(key);
+        MemcachedConnection connection = null;
+        try {
+            connection = pool.borrow(pool.locate(wireKey));
+            connection.writeAscii("get ").writeAscii(wireKey).writeCrlf().flush();
+            long header = connection.readValueHeader();
+            assertTrue(key, header >= 0);
+            byte[] data = new byte[4 + (int) header];
+            int flags = (int) (header >>> 32);
+            for (int i = 0; i < 4; i++) data[i] = (byte) (flags >>> (24 - 8 * i));
+            connection.readFully(data, 4, data.length - 4);
+            connection.readCrlf();
+            assertTrue(key, connection.readValueHeader() < 0);
+            return data;
+        } catch (IOException e) {
+            throw new AssertionError(key, e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private static void assertValue(String message, Object expected, Object actual) {
+        if(expected instanceof byte[]) {
+            assertTrue(message, actual instanceof byte[] && Arrays.equals((byte[]) expected, (byte[]) actual));
+        } else if(expected instanceof StringBuilder) {
+            assertEquals(message, expected.toString(), String.valueOf(actual));
+        } else {
+            assertEquals(message, expected, actual);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * MemcachedKeys 的编码结果必须与 danga 客户端开启 key 清理时(URLEncoder.encode(key, "UTF-8"))一致
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedKeysTest extends TestCase {
+    private static final String[] KEYS = {
+            "user:1", "a b", "a+b", "100%", "k~!@#$^&()=", "中文key", "emoji😀", "tab\tnew\nline",
+            "a.b-c*d_e", "  ", "x y z", "/path/to?q=1&r=2", "été", "mixed 中 a😀b c"
+    };
+
+    public void testLegalKeyReturnedAsIs() {
+        String key = "a.b-c*d_e0123456789";
+        assertSame(key, MemcachedKeys.encode(key, true));
+        assertSame(key, MemcachedKeys.encode(key, false));
+
+        String[] keys = {"a", "b.c"};
+        assertSame(keys, MemcachedKeys.encode(keys, true));
+    }
+
+    public void testSameAsUrlEncoder() throws Exception {
+        for (String key : KEYS) {
+            assertEquals(key, URLEncoder.encode(key, "UTF-8"), MemcachedKeys.encode(key, true));
+        }
+
+        Random random = new Random(26);
+        for (int n = 0; n < 10_000; n++) {
+            StringBuilder builder = new StringBuilder();
+            int length = 1 + random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                int kind = random.nextInt(4);
+                if(kind == 0) builder.append((char) random.nextInt(0x80));
+                else if(kind == 1) builder.append((char) (0x80 + random.nextInt(0x780)));
+                else if(kind == 2) builder.append((char) (0x4E00 + random.nextInt(0x5000)));
+                else builder.appendCodePoint(0x1F600 + random.nextInt(0x50));
+            }
+            String key = builder.toString();
+            String expected = URLEncoder.encode(key, "UTF-8");
+            String encoded = MemcachedKeys.encode(key, true);
+            if(expected.length() <= MemcachedKeys.MAX_KEY_LENGTH) assertEquals(key, expected, encoded);
+            else assertEquals(key, expected.substring(0, 200), encoded.substring(0, 200));
+        }
+    }
+
+    public void testBatchEncodeOnlyCopiesWhenNeeded() throws Exception {
+        String[] keys = {"a", "b c", "d"};
+        String[] encoded = MemcachedKeys.encode(keys, true);
+        assertNotSame(keys, encoded);
+        assertSame(keys[0], encoded[0]);
+        assertEquals("b+c", encoded[1]);
+        assertEquals("b c", keys[1]);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("b+c", 1);
+        Map<String, Object> restored = MemcachedKeys.restoreKeys(keys, encoded, result);
+        assertEquals(Collections.singletonMap("b c", 1), restored);
+    }
+
+    public void testTooLongKeyDigested() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 300; i++) builder.append('k');
+        String key = builder.toString();
+
+        String encoded = MemcachedKeys.encode(key, true);
+        assertTrue(encoded.length() <= MemcachedKeys.MAX_KEY_LENGTH);
+        assertTrue(encoded.startsWith(key.substring(0, 200) + "#"));
+        assertEquals(encoded, MemcachedKeys.encode(key, false));
+        assertFalse(encoded.equals(MemcachedKeys.encode(key + "x", true)));
+
+        // 编码后才超长的 key 按编码结果取摘要
+        StringBuilder wide = new StringBuilder();
+        for (int i = 0; i < 100; i++) wide.append('中');
+        String encodedWide = MemcachedKeys.encode(wide.toString(), true);
+        assertTrue(URLEncoder.encode(wide.toString(), "UTF-8").length() > MemcachedKeys.MAX_KEY_LENGTH);
+        assertTrue(encodedWide.getBytes(StandardCharsets.UTF_8).length <= MemcachedKeys.MAX_KEY_LENGTH);
+        assertTrue(encodedWide.startsWith("%E4%B8%AD"));
+
+        // 不清理时按 UTF-8 字节数判断，前缀超过 200 字节时只保留摘要
+        String raw = MemcachedKeys.encode(wide.toString(), false);
+        assertEquals(41, raw.length());
+        assertEquals('#', raw.charAt(0));
+        String limit = wide.substring(0, 83);
+        assertSame(limit, MemcachedKeys.encode(limit, false));
+    }
+
+    public void testIsLegal() {
+        assertTrue(MemcachedKeys.isLegal("a:b/c%"));
+        assertFalse(MemcachedKeys.isLegal(""));
+        assertFalse(MemcachedKeys.isLegal("a b"));
+        assertFalse(MemcachedKeys.isLegal("aé"));
+        assertFalse(MemcachedKeys.isUrlSafe("a:b"));
+    }
+
+    /**
+     * 通过 danga 客户端(自身清理 key)写入，直连协议按 encodeKey 转换后的 key 能读到同一条数据
+     */
+    public void testSameAsClientSanitizing() throws Exception {
+        try (MemcachedLoopbackServer server = new MemcachedLoopbackServer()) {
+            MemcachedConfig config = server.config("keys-test");
+            config.setMaintSleep(0);
+            config.setInitConn(1);
+            config.setMinConn(1);
+            config.setIsPrimitiveAsString(true);
+            MemcachedProperties properties = new MemcachedProperties();
+            properties.setNodes(Collections.singletonList(config));
+            MemcachedTemplate template = new MemcachedTemplate(new MemcachedManager(properties));
+
+            try (MemcachedConnectionPool pool = new MemcachedConnectionPool(config)) {
+                for (String key : KEYS) {
+                    assertTrue(key, template.set(key, key, 60_000L));
+
+                    MemcachedConnection connection = pool.borrow(pool.locate(pool.encodeKey(key)));
+                    try {
+                        connection.writeAscii("get ").writeAscii(pool.encodeKey(key)).writeCrlf().flush();
+                        long header = connection.readValueHeader();
+                        assertTrue(key, header >= 0);
+                        byte[] value = new byte[(int) header];
+                        connection.readFully(value, 0, value.length);
+                        connection.readCrlf();
+                        assertEquals(-1, connection.readValueHeader());
+                        assertEquals(key, new String(value, StandardCharsets.UTF_8));
+                    } finally {
+                        pool.release(connection);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.model.MemcachedMetaResult;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * meta 协议：mg / ms / md / ma 的参数编码和响应解析，服务器按脚本返回响应
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedMetaTest extends TestCase {
+    private ScriptedServer server;
+    private MemcachedConnectionPool pool;
+    private MemcachedDecoder decoder;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new ScriptedServer();
+        MemcachedConfig config = new MemcachedConfig();
+        config.setName("meta-test-" + getName());
+        config.setServers(server.getAddress());
+        config.setWeights("1");
+        config.setIsPrimitiveAsString(true);
+        pool = new MemcachedConnectionPool(config);
+        decoder = new MemcachedDecoder(config, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pool.close();
+        server.close();
+    }
+
+    public void testGet() throws Exception {
+        server.reply(value("v", " t10 c42"));
+        MemcachedMetaOptions options = new MemcachedMetaOptions().setReturnTtl(true).setReturnCas(true).setTouch(1500L);
+        MemcachedMetaResult result = MemcachedMeta.get(pool, decoder, "k", options);
+        assertEquals(Collections.singletonList("mg k v f t c T2"), server.requests());
+        assertEquals(MemcachedMetaResult.Status.VALUE, result.getStatus());
+        assertEquals("v", result.getValue());
+        assertEquals(Long.valueOf(10_000L), result.getTtl());
+        assertEquals(42, result.getCas());
+
+        // 不过期的数据 TTL 为 -1
+        server.reply("HD t-1 W X Z\r\n");
+        result = MemcachedMeta.get(pool, decoder, "k", new MemcachedMetaOptions().setReturnValue(false).setReturnTtl(true)
+                .setVivify(500L).setRecache(30_000L));
+        assertEquals("mg k t N1 R30", server.requests().get(1));
+        assertEquals(MemcachedMetaResult.Status.OK, result.getStatus());
+        assertEquals(Long.valueOf(-1L), result.getTtl());
+        assertTrue(result.isWin());
+        assertTrue(result.isStale());
+        assertTrue(result.isAlreadyWon());
+
+        server.reply("EN\r\n");
+        result = MemcachedMeta.get(pool, decoder, "k", new MemcachedMetaOptions());
+        assertEquals("mg k v f", server.requests().get(2));
+        assertEquals(MemcachedMetaResult.Status.MISS, result.getStatus());
+        assertNull(result.getValue());
+    }
+
+    /**
+     * 批量读取以 q 抑制未命中的响应，按 O 的序号对应 key，以 mn 结束
+     */
+    public void testGetMulti() throws Exception {
+        server.reply(value("1", " O0"), "", value("3", " O2"), "MN\r\n");
+        Map<String, MemcachedMetaResult> result = MemcachedMeta.getMulti(pool, decoder, new String[]{"a", "b", "c"}, new MemcachedMetaOptions());
+        assertEquals(Arrays.asList("mg a v f q O0", "mg b v f q O1", "mg c v f q O2", "mn"), server.requests());
+        assertEquals(2, result.size());
+        assertEquals("1", result.get("a").getValue());
+        assertEquals("3", result.get("c").getValue());
+    }
+
+    public void testSet() throws Exception {
+        server.reply("HD c8\r\n");
+        MemcachedMetaOptions options = new MemcachedMetaOptions().setReturnCas(true).setCompareCas(7L).setInvalidate(true)
+                .setMode(MemcachedMetaOptions.Mode.ADD);
+        MemcachedMetaResult result = MemcachedMeta.set(pool, decoder, "k", "value", 1500L, options);
+        assertEquals(Arrays.asList("ms k 5 F" + decoder.flags("value") + " T2 c C7 I ME", "value"), server.requests());
+        assertEquals(MemcachedMetaResult.Status.OK, result.getStatus());
+        assertEquals(8, result.getCas());
+
+        server.reply("NS\r\n", "EX\r\n");
+        assertEquals(MemcachedMetaResult.Status.NOT_STORED, MemcachedMeta.set(pool, decoder, "k", "v", 0L, new MemcachedMetaOptions()).getStatus());
+        assertEquals("ms k 1 F" + decoder.flags("v") + " T0", server.requests().get(2));
+        assertEquals(MemcachedMetaResult.Status.EXISTS, MemcachedMeta.set(pool, decoder, "k", "v", 60_000L, new MemcachedMetaOptions()).getStatus());
+        assertEquals("ms k 1 F" + decoder.flags("v") + " T60", server.requests().get(4));
+    }
+
+    public void testDelete() throws Exception {
+        server.reply("HD\r\n", "NF\r\n");
+        MemcachedMetaOptions options = new MemcachedMetaOptions().setCompareCas(7L).setInvalidate(true).setTouch(999L);
+        assertEquals(MemcachedMetaResult.Status.OK, MemcachedMeta.delete(pool, "k", options).getStatus());
+        assertEquals(MemcachedMetaResult.Status.NOT_FOUND, MemcachedMeta.delete(pool, "k", new MemcachedMetaOptions()).getStatus());
+        assertEquals(Arrays.asList("md k C7 I T1", "md k"), server.requests());
+    }
+
+    public void testArithmetic() throws Exception {
+        server.reply("VA 2 t60 c9\r\n15\r\n");
+        MemcachedMetaOptions options = new MemcachedMetaOptions().setDelta(5).setReturnTtl(true).setReturnCas(true)
+                .setVivify(60_000L).setInitial(10).setTouch(1001L).setCompareCas(3L).setMode(MemcachedMetaOptions.Mode.DECR);
+        MemcachedMetaResult result = MemcachedMeta.arithmetic(pool, "k", options);
+        assertEquals(Collections.singletonList("ma k D5 v t c N60 J10 T2 C3 MD"), server.requests());
+        assertEquals(MemcachedMetaResult.Status.VALUE, result.getStatus());
+        assertEquals(15, result.getNumber());
+        assertEquals(Long.valueOf(60_000L), result.getTtl());
+        assertEquals(9, result.getCas());
+    }
+
+    /**
+     * 无法解析的响应按读取失败处理，返回 null 并丢弃连接，不抛出 NumberFormatException
+     */
+    public void testMalformedResponse() throws Exception {
+        String[] responses = {"HD cabc\r\n", "HD t1x\r\n", "VA 2\r\nxx\r\n", "VA x\r\n", "SERVER_ERROR out of memory\r\n"};
+        for (String response : responses) {
+            server.reply(response);
+            MemcachedMetaResult result = response.startsWith("VA 2")
+                    ? MemcachedMeta.arithmetic(pool, "k", new MemcachedMetaOptions())
+                    : MemcachedMeta.get(pool, decoder, "k", new MemcachedMetaOptions());
+            assertNull(response, result);
+            assertEquals(response, 0, pool.getIdleCount(server.getAddress()));
+        }
+
+        server.reply("HD\r\n");
+        assertEquals(MemcachedMetaResult.Status.OK, MemcachedMeta.delete(pool, "k", new MemcachedMetaOptions()).getStatus());
+        assertEquals(1, pool.getIdleCount(server.getAddress()));
+    }
+
+    private String value(String value, String flags) throws IOException {
+        byte[] data = decoder.encode(value);
+        return "VA " + data.length + " f" + decoder.flags(value) + flags + "\r\n" + new String(data, StandardCharsets.UTF_8) + "\r\n";
+    }
+
+    /**
+     * 记录收到的请求行，每个请求按顺序返回预先设置的响应(空字符串表示不返回)；ms 的数据行同样被记录
+     */
+    private static final class ScriptedServer implements Closeable {
+        private final ServerSocket serverSocket;
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        private final Queue<String> responses = new ConcurrentLinkedQueue<>();
+
+        private ScriptedServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::accept, "meta-test-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private String getAddress() {
+            return serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+        }
+
+        private void reply(String... lines) {
+            responses.addAll(Arrays.asList(lines));
+        }
+
+        private List<String> requests() {
+            synchronized (requests) {
+                return new ArrayList<>(requests);
+            }
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread handler = new Thread(() -> handle(socket), "meta-test-handler");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (Socket closing = socket) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(closing.getInputStream(), StandardCharsets.UTF_8));
+                OutputStream out = closing.getOutputStream();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    requests.add(line);
+                    if(line.startsWith("ms ")) requests.add(reader.readLine());
+                    String response = responses.poll();
+                    if(response == null) return;
+                    out.write(response.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+                // 连接关闭
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.fault.MemcachedFault;
+import com.lizhibao.toolbox.memcached.fault.MemcachedFaultProxy;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 并行批量读取：按服务器分组、按 batchSize 拆分请求，超时后只返回已经完成的部分结果
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedMultiGetTest extends TestCase {
+    private final List<Closeable> resources = new ArrayList<>();
+
+    @Override
+    protected void tearDown() throws Exception {
+        Collections.reverse(resources);
+        for (Closeable resource : resources) resource.close();
+    }
+
+    /**
+     * 每个 get 请求只包含同一台服务器上的 key，且不超过 batchSize 个，所有 key 恰好发送一次
+     */
+    public void testBatchPerServer() throws Exception {
+        RecordingServer first = open(new RecordingServer());
+        RecordingServer second = open(new RecordingServer());
+        MemcachedConfig config = config("multiget-test-batch", first.getAddress(), second.getAddress());
+        MemcachedConnectionPool pool = open(new MemcachedConnectionPool(config));
+        MemcachedDecoder decoder = new MemcachedDecoder(config, null);
+
+        String[] keys = new String[50];
+        for (int i = 0; i < keys.length; i++) keys[i] = "k" + i;
+        Map<String, Object> result = MemcachedMultiGet.get(pool, decoder, keys, new MemcachedMultiGetOptions().setBatchSize(3));
+        assertTrue(result.isEmpty());
+
+        Set<String> sent = new HashSet<>();
+        for (RecordingServer server : Arrays.asList(first, second)) {
+            int count = 0;
+            for (List<String> request : server.requests) {
+                assertTrue(request.toString(), request.size() >= 1 && request.size() <= 3);
+                for (String key : request) {
+                    assertEquals(key, server.getAddress(), pool.locate(key));
+                    assertTrue(key, sent.add(key));
+                    count++;
+                }
+            }
+            assertTrue(count > 0);
+            assertEquals((count + 2) / 3, server.requests.size());
+        }
+        assertEquals(keys.length, sent.size());
+    }
+
+    public void testHitsAndMisses() throws Exception {
+        MemcachedLoopbackServer first = open(new MemcachedLoopbackServer());
+        MemcachedLoopbackServer second = open(new MemcachedLoopbackServer());
+        MemcachedConfig config = config("multiget-test-hits", first.getAddress(), second.getAddress());
+        MemcachedConnectionPool pool = open(new MemcachedConnectionPool(config));
+        MemcachedDecoder decoder = new MemcachedDecoder(config, null);
+
+        String[] keys = new String[40];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "k" + i;
+            if(i % 4 != 0) set(pool, decoder, keys[i], "v" + i);
+        }
+        Map<String, Object> result = MemcachedMultiGet.get(pool, decoder, keys, new MemcachedMultiGetOptions().setBatchSize(3));
+        assertEquals(30, result.size());
+        for (int i = 0; i < keys.length; i++) assertEquals(i % 4 == 0 ? null : "v" + i, result.get(keys[i]));
+        assertTrue(first.size() > 0);
+        assertTrue(second.size() > 0);
+
+        // 单个请求由调用线程执行
+        assertEquals(Collections.singletonMap("k1", "v1"), MemcachedMultiGet.get(pool, decoder, new String[]{"k1", "k4"}, new MemcachedMultiGetOptions()));
+    }
+
+    /**
+     * 一台服务器变慢时，到期只返回其他服务器上的结果，不等待慢服务器
+     */
+    public void testPartialResultOnTimeout() throws Exception {
+        MemcachedLoopbackServer fast = open(new MemcachedLoopbackServer());
+        MemcachedLoopbackServer slow = open(new MemcachedLoopbackServer());
+        MemcachedFaultProxy proxy = open(new MemcachedFaultProxy(slow.getAddress()));
+        MemcachedConfig config = config("multiget-test-timeout", fast.getAddress(), proxy.getAddress());
+        MemcachedConnectionPool pool = open(new MemcachedConnectionPool(config));
+        MemcachedDecoder decoder = new MemcachedDecoder(config, null);
+
+        String[] keys = new String[40];
+        Map<String, Object> expected = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "k" + i;
+            set(pool, decoder, keys[i], "v" + i);
+            if(pool.locate(keys[i]).equals(fast.getAddress())) expected.put(keys[i], "v" + i);
+        }
+        assertTrue(expected.size() > 0 && expected.size() < keys.length);
+
+        proxy.inject(MemcachedFault.latency(2000));
+        long start = System.currentTimeMillis();
+        Map<String, Object> result = MemcachedMultiGet.get(pool, decoder, keys, new MemcachedMultiGetOptions().setBatchSize(5).setTimeout(300));
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(expected, result);
+        assertTrue(elapsed + " ms", elapsed < 1500);
+
+        // 故障恢复后超时中止的连接已经丢弃，再次读取得到全部结果
+        proxy.clear();
+        assertEquals(keys.length, MemcachedMultiGet.get(pool, decoder, keys, new MemcachedMultiGetOptions().setBatchSize(5)).size());
+    }
+
+    private <T extends Closeable> T open(T resource) {
+        resources.add(resource);
+        return resource;
+    }
+
+    private static MemcachedConfig config(String name, String first, String second) {
+        MemcachedConfig config = new MemcachedConfig();
+        config.setName(name);
+        config.setServers(first + "," + second);
+        config.setWeights("1,1");
+        config.setIsPrimitiveAsString(true);
+        return config;
+    }
+
+    private static void set(MemcachedConnectionPool pool, MemcachedDecoder decoder, String key, String value) throws IOException {
+        byte[] data = decoder.encode(value);
+        MemcachedConnection connection = pool.borrow(pool.locate(key));
+        try {
+            connection.writeAscii("set ").writeAscii(key).writeAscii(" ").writeDecimal(decoder.flags(value))
+                    .writeAscii(" 0 ").writeDecimal(data.length).writeCrlf()
+                    .write(data).writeCrlf().flush();
+            assertEquals("STORED", connection.readLine());
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * 记录收到的 get 请求，所有 key 都按未命中返回
+     */
+    private static final class RecordingServer implements Closeable {
+        private final ServerSocket serverSocket;
+        private final List<List<String>> requests = Collections.synchronizedList(new ArrayList<>());
+
+        private RecordingServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::accept, "multiget-test-recorder");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private String getAddress() {
+            return serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread handler = new Thread(() -> handle(socket), "multiget-test-handler");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (Socket closing = socket) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(closing.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream out = closing.getOutputStream();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if(!line.startsWith("get ")) continue;
+                    requests.add(Arrays.asList(line.substring(4).split(" ")));
+                    out.write("END\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+                // 连接关闭
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
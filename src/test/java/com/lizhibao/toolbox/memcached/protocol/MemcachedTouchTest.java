@@ -0,0 +1,71 @@
+package com.lizhibao.toolbox.memcached.protocol;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * touch / gat 更新过期时间；不足 1 秒的过期时间按 1 秒发送，不会变成 0(永不过期)
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedTouchTest extends TestCase {
+    private MemcachedLoopbackServer server;
+    private MemcachedConnectionPool pool;
+    private MemcachedDecoder decoder;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        MemcachedConfig config = server.config("touch-test-" + getName());
+        config.setIsPrimitiveAsString(true);
+        pool = new MemcachedConnectionPool(config);
+        decoder = new MemcachedDecoder(config, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pool.close();
+        server.close();
+    }
+
+    public void testTouch() {
+        assertTrue(set("a", "1"));
+        assertTrue(set("b", "2"));
+        assertTrue(MemcachedTouch.touch(pool, "a", 60_000L));
+        assertFalse(MemcachedTouch.touch(pool, "missing", 60_000L));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), MemcachedTouch.touch(pool, new String[]{"a", "b", "missing"}, 60_000L));
+
+        assertEquals("1", MemcachedTouch.getAndTouch(pool, decoder, "a", 60_000L));
+        assertNull(MemcachedTouch.getAndTouch(pool, decoder, "missing", 60_000L));
+        Map<String, Object> values = MemcachedTouch.getAndTouch(pool, decoder, new String[]{"a", "b", "missing"}, 60_000L);
+        assertEquals(2, values.size());
+        assertEquals("2", values.get("b"));
+    }
+
+    /**
+     * 500 毫秒按 1 秒发送，数据在 1 秒后过期；换算为 0 时会变成永不过期
+     */
+    public void testSubSecondTtl() throws Exception {
+        for (String key : new String[]{"touch", "touch-multi", "gat", "gat-multi"}) assertTrue(set(key, "v"));
+
+        assertTrue(MemcachedTouch.touch(pool, "touch", 500L));
+        assertEquals(Collections.singleton("touch-multi"), MemcachedTouch.touch(pool, new String[]{"touch-multi"}, 500L));
+        assertEquals("v", MemcachedTouch.getAndTouch(pool, decoder, "gat", 500L));
+        assertEquals("v", MemcachedTouch.getAndTouch(pool, decoder, new String[]{"gat-multi"}, 500L).get("gat-multi"));
+        assertEquals(4, server.size());
+
+        Thread.sleep(1200);
+        for (String key : new String[]{"touch", "touch-multi", "gat", "gat-multi"}) assertNull(key, MemcachedBytes.get(pool, key));
+    }
+
+    private boolean set(String key, String value) {
+        byte[] data = value.getBytes();
+        return MemcachedBytes.set(pool, key, data, 0, data.length, 0L);
+    }
+}
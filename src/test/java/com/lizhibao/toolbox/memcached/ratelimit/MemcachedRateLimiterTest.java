@@ -0,0 +1,105 @@
+package com.lizhibao.toolbox.memcached.ratelimit;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.util.Collections;
+
+/**
+ * 额度按分片拆分后，所有实例合计通过的请求数恰好等于 limit
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedRateLimiterTest extends TestCase {
+    private static final long WINDOW = 60_000;
+
+    private MemcachedLoopbackServer server;
+    private MemcachedManager manager;
+    private String name;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        // danga 的连接池按名称全局注册，每个用例使用不同的名称
+        name = "rate-limit-test-" + getName();
+        MemcachedConfig config = server.config(name);
+        config.setMaintSleep(0);
+        config.setInitConn(1);
+        config.setMinConn(1);
+        MemcachedProperties properties = new MemcachedProperties();
+        properties.setNodes(Collections.singletonList(config));
+        manager = new MemcachedManager(properties);
+
+        // 避免用例跨过窗口边界
+        while (System.currentTimeMillis() % WINDOW > WINDOW - 5000) Thread.sleep(100);
+    }
+
+    @Override
+    protected void tearDown() {
+        server.close();
+    }
+
+    public void testLimitAcrossInstances() {
+        MemcachedRateLimitOptions options = new MemcachedRateLimitOptions().setLimit(10).setWindow(WINDOW).setShards(4).setLease(1);
+        MemcachedRateLimiter first = new MemcachedRateLimiter(manager);
+        MemcachedRateLimiter second = new MemcachedRateLimiter(manager);
+
+        int allowed = 0;
+        for (int i = 0; i < 30; i++) {
+            if((i % 2 == 0 ? first : second).tryAcquire(name, "api", options)) allowed++;
+        }
+        assertEquals(10, allowed);
+        assertFalse(first.tryAcquire(name, "api", options));
+        assertTrue(first.tryAcquire(name, "other", options));
+    }
+
+    /**
+     * 预取的令牌数大于分片额度时只发放分片剩余的额度，额度不能整除分片数时余数分给前几个分片
+     */
+    public void testLeaseClampedToShardQuota() {
+        MemcachedRateLimitOptions options = new MemcachedRateLimitOptions().setLimit(10).setWindow(WINDOW).setShards(3).setLease(100);
+        MemcachedRateLimiter limiter = new MemcachedRateLimiter(manager);
+
+        int allowed = 0;
+        for (int i = 0; i < 30; i++) {
+            if(limiter.tryAcquire(name, "api", options)) allowed++;
+        }
+        assertEquals(10, allowed);
+        assertEquals(3, server.size());
+    }
+
+    public void testPermits() {
+        MemcachedRateLimitOptions options = new MemcachedRateLimitOptions().setLimit(10).setWindow(WINDOW).setShards(2).setLease(1);
+        MemcachedRateLimiter limiter = new MemcachedRateLimiter(manager);
+
+        assertTrue(limiter.tryAcquire(name, "api", 0, options));
+        assertFalse(limiter.tryAcquire(name, "api", 11, options));
+        assertTrue(limiter.tryAcquire(name, "api", 7, options));
+        assertFalse(limiter.tryAcquire(name, "api", 4, options));
+        assertTrue(limiter.tryAcquire(name, "api", 3, options));
+        assertFalse(limiter.tryAcquire(name, "api", options));
+    }
+
+    /**
+     * 分片数不超过额度
+     */
+    public void testShardsCappedByLimit() {
+        MemcachedRateLimitOptions options = new MemcachedRateLimitOptions().setLimit(3).setWindow(WINDOW).setShards(8);
+        MemcachedRateLimiter limiter = new MemcachedRateLimiter(manager);
+
+        int allowed = 0;
+        for (int i = 0; i < 10; i++) {
+            if(limiter.tryAcquire(name, "api", options)) allowed++;
+        }
+        assertEquals(3, allowed);
+        assertEquals(3, server.size());
+    }
+
+    public void testUnknownName() {
+        MemcachedRateLimitOptions options = new MemcachedRateLimitOptions().setLimit(10).setWindow(WINDOW);
+        assertFalse(new MemcachedRateLimiter(manager).tryAcquire("unknown", "api", options));
+    }
+}
@@ -0,0 +1,183 @@
+package com.lizhibao.toolbox.memcached.slab;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.model.MemcachedSlabClassReport;
+import com.lizhibao.toolbox.memcached.model.MemcachedSlabReport;
+import com.lizhibao.toolbox.memcached.model.MemcachedStatsItem;
+import com.lizhibao.toolbox.memcached.model.MemcachedStatsSlab;
+import com.lizhibao.toolbox.memcached.model.MemcachedStatsSlabs;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedBytes;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnectionPool;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedSizeSampler;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * slab 分析：按样本模拟增长因子给出调整建议，识别淘汰与空闲并存、浪费过高和超过页大小的数据；样本默认不记录
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedSlabAnalyzerTest extends TestCase {
+    /**
+     * 默认配置(-f 1.25)下前几个 slab class 的 chunk 大小
+     */
+    private static final long[] CHUNK_SIZES = {96, 120, 152, 192, 240, 304, 384, 480};
+    private static final long PAGE_SIZE = 1024 * 1024;
+
+    /**
+     * 数据集中在 121 ~ 128 字节时，-f 1.25 下都落在 152 字节的 chunk 中，更小的增长因子能明显降低浪费
+     */
+    public void testRecommendGrowthFactor() {
+        int[] samples = new int[1000];
+        for (int i = 0; i < samples.length; i++) samples[i] = 121 + i % 8;
+        Arrays.sort(samples);
+
+        MemcachedSlabReport report = MemcachedSlabAnalyzer.analyze(slabs(3, 1000, 1000 * 125), new HashMap<>(), samples);
+        assertEquals(1.25, report.getGrowthFactor(), 0.001);
+        assertEquals(PAGE_SIZE, report.getPageSize());
+        assertEquals(1000, report.getSampleCount());
+        assertEquals(124, report.getSizeP50());
+        assertEquals(128, report.getSizeP99());
+        assertEquals(1000, classOf(report, 3).getSamples());
+        assertTrue(report.getSampleWasteRatio() > 0.15);
+
+        assertEquals(1.10, report.getRecommendedGrowthFactor(), 0.001);
+        assertTrue(report.getRecommendedWasteRatio() < 0.05);
+        assertTrue(report.getRecommendations().toString(), report.getRecommendations().get(0).contains("-f 1.25 调整为 -f 1.10"));
+        // slab 3 的实际浪费 (152 - 125) / 152 < 30%
+        assertEquals(1, report.getRecommendations().size());
+        assertEquals(1000 * 27, classOf(report, 3).getWastedBytes());
+    }
+
+    /**
+     * 样本不足或当前增长因子已经合适时不给出增长因子建议
+     */
+    public void testNoGrowthFactorRecommendation() {
+        int[] few = {121, 122, 123};
+        MemcachedSlabReport report = MemcachedSlabAnalyzer.analyze(slabs(3, 10, 10 * 140), new HashMap<>(), few);
+        assertEquals(0.0, report.getRecommendedGrowthFactor());
+        assertTrue(report.getRecommendations().toString(), report.getRecommendations().isEmpty());
+
+        // 数据正好填满 -f 1.25 的 chunk
+        int[] fitted = new int[500];
+        for (int i = 0; i < fitted.length; i++) fitted[i] = (int) CHUNK_SIZES[i % CHUNK_SIZES.length];
+        Arrays.sort(fitted);
+        report = MemcachedSlabAnalyzer.analyze(slabs(3, 10, 10 * 140), new HashMap<>(), fitted);
+        assertEquals(0.0, report.getSampleWasteRatio(), 0.0001);
+        assertTrue(report.getRecommendations().toString(), report.getRecommendations().isEmpty());
+
+        report = MemcachedSlabAnalyzer.analyze(slabs(3, 10, 10 * 140), new HashMap<>(), new int[0]);
+        assertEquals(0, report.getSampleCount());
+        assertTrue(report.getRecommendations().isEmpty());
+    }
+
+    /**
+     * 一个 class 在淘汰而其他 class 有整页空闲时建议 slab_automove；浪费过高的 class 和超过页大小的数据单独提示
+     */
+    public void testEvictionWasteAndOversized() {
+        MemcachedStatsSlabs slabs = slabs(3, 1000, 1000 * 140);
+        // slab 6 只用了 304 字节 chunk 的一小部分
+        MemcachedStatsSlab wasteful = slabs.getSlabs().get(5);
+        wasteful.setUsed_chunks("100");
+        wasteful.setMem_requested(String.valueOf(100 * 200));
+        // slab 8 有超过一页的空闲 chunk
+        MemcachedStatsSlab idle = slabs.getSlabs().get(7);
+        idle.setFree_chunks(String.valueOf(PAGE_SIZE / 480 + 1));
+
+        MemcachedStatsItem evicting = new MemcachedStatsItem("3");
+        evicting.setEvicted("500");
+        Map<Integer, MemcachedStatsItem> items = new HashMap<>();
+        items.put(3, evicting);
+
+        int[] samples = {140, 200, (int) PAGE_SIZE + 1};
+        MemcachedSlabReport report = MemcachedSlabAnalyzer.analyze(slabs, items, samples);
+        assertEquals(500, report.getEvicted());
+        assertEquals(0.333, classOf(report, 3).getEvictionPressure(), 0.001);
+
+        String recommendations = report.getRecommendations().toString();
+        assertEquals(recommendations, 3, report.getRecommendations().size());
+        assertTrue(recommendations, recommendations.contains("slab 6 (chunk 304 字节)"));
+        assertTrue(recommendations, recommendations.contains("slab_reassign,slab_automove=1"));
+        assertTrue(recommendations, recommendations.contains("-I"));
+
+        // 没有空闲内存时淘汰不提示 automove
+        idle.setFree_chunks("0");
+        report = MemcachedSlabAnalyzer.analyze(slabs, items, new int[0]);
+        assertFalse(report.getRecommendations().toString().contains("slab_automove"));
+    }
+
+    /**
+     * 默认不记录读取到的数据大小，开启 sizeSampling 后记录；sample 只在读取期间临时开启
+     */
+    public void testSizeSamplingOptIn() throws Exception {
+        try (MemcachedLoopbackServer server = new MemcachedLoopbackServer()) {
+            MemcachedConfig config = server.config("slab-test-sampling");
+            config.setMaintSleep(0);
+            config.setInitConn(1);
+            config.setMinConn(1);
+            MemcachedProperties properties = new MemcachedProperties();
+            properties.setNodes(Collections.singletonList(config));
+            MemcachedManager manager = new MemcachedManager(properties);
+            MemcachedConnectionPool pool = manager.getClients().get(config.getName()).getConnectionPool();
+            MemcachedSizeSampler sampler = pool.getSizeSampler();
+
+            assertTrue(MemcachedBytes.set(pool, "a", new byte[100], 0, 100, 60_000L));
+            assertTrue(MemcachedBytes.set(pool, "b", new byte[200], 0, 200, 60_000L));
+            assertFalse(sampler.isEnabled());
+            assertNotNull(MemcachedBytes.get(pool, "a"));
+            assertEquals(0, sampler.getCount());
+
+            MemcachedSlabAnalyzer analyzer = new MemcachedSlabAnalyzer(manager, new MemcachedTemplate(manager));
+            assertEquals(2, analyzer.sample(config.getName(), new String[]{"a", "b", "missing"}));
+            assertFalse(sampler.isEnabled());
+            assertEquals(MemcachedSizeSampler.ITEM_HEADER + 1 + 1 + 100 + 2, sampler.snapshot()[0]);
+            assertNotNull(MemcachedBytes.get(pool, "b"));
+            assertEquals(2, sampler.getCount());
+
+            MemcachedConfig enabled = new MemcachedConfig();
+            enabled.setName("slab-test-sampling-enabled");
+            enabled.setServers(server.getAddress());
+            enabled.setWeights("1");
+            enabled.setSizeSampling(true);
+            try (MemcachedConnectionPool sampled = new MemcachedConnectionPool(enabled)) {
+                assertNotNull(MemcachedBytes.get(sampled, "b"));
+                assertEquals(1, sampled.getSizeSampler().getCount());
+            }
+        }
+    }
+
+    /**
+     * 按默认 chunk 大小生成 stats slabs，只有 usedSlab 有数据
+     */
+    private static MemcachedStatsSlabs slabs(int usedSlab, long usedChunks, long requested) {
+        MemcachedStatsSlabs slabs = new MemcachedStatsSlabs("127.0.0.1:11211");
+        slabs.setTotal_malloced(String.valueOf(CHUNK_SIZES.length * PAGE_SIZE));
+        for (int i = 0; i < CHUNK_SIZES.length; i++) {
+            MemcachedStatsSlab slab = new MemcachedStatsSlab(String.valueOf(i + 1));
+            slab.setChunk_size(String.valueOf(CHUNK_SIZES[i]));
+            slab.setChunks_per_page(String.valueOf(PAGE_SIZE / CHUNK_SIZES[i]));
+            slab.setTotal_pages("1");
+            slab.setUsed_chunks(i + 1 == usedSlab ? String.valueOf(usedChunks) : "0");
+            slab.setFree_chunks("0");
+            slab.setFree_chunks_end("0");
+            slab.setMem_requested(i + 1 == usedSlab ? String.valueOf(requested) : "0");
+            slabs.addItems(slab);
+        }
+        return slabs;
+    }
+
+    private static MemcachedSlabClassReport classOf(MemcachedSlabReport report, int slabId) {
+        for (MemcachedSlabClassReport clazz : report.getClasses()) {
+            if(clazz.getSlabId() == slabId) return clazz;
+        }
+        throw new AssertionError("slab " + slabId);
+    }
+}
@@ -0,0 +1,136 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import com.lizhibao.toolbox.memcached.protocol.MemcachedConnection;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 快照文件的写入、读取，以及从连接读取失败时丢弃不完整的记录
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedSnapshotTest extends TestCase {
+    private Path file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = Files.createTempFile("memcached-snapshot", ".bin");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    public void testRoundTrip() throws Exception {
+        Random random = new Random(27);
+        byte[][] values = new byte[500][];
+        long bytes;
+        try (MemcachedSnapshotWriter writer = new MemcachedSnapshotWriter(file)) {
+            for (int i = 0; i < values.length; i++) {
+                // 包含空数据和超过写缓冲区(1MB)的数据
+                values[i] = new byte[i == 7 ? 3 * 1024 * 1024 : i % 50 == 0 ? 0 : random.nextInt(20_000)];
+                random.nextBytes(values[i]);
+                writer.write(key(i), i, i == 0 ? 0 : 0xFFFFFFFFL - i, ByteBuffer.wrap(values[i]));
+            }
+            assertEquals(values.length, writer.getRecords());
+            assertFalse(writer.isBroken());
+            bytes = writer.getBytes();
+        }
+        assertEquals(Files.size(file), bytes);
+
+        try (MemcachedSnapshotReader reader = new MemcachedSnapshotReader(file)) {
+            for (int i = 0; i < values.length; i++) {
+                MemcachedSnapshotRecord record = reader.next();
+                assertNotNull(record);
+                assertTrue(Arrays.equals(key(i), record.getKey()));
+                assertEquals(i, record.getFlags());
+                assertEquals(i == 0 ? 0 : 0xFFFFFFFFL - i, record.getExptime());
+                assertEquals(ByteBuffer.wrap(values[i]), record.getValue());
+                assertTrue(record.getValue().isReadOnly());
+            }
+            assertNull(reader.next());
+            assertEquals(reader.getSize(), reader.getPosition());
+        }
+    }
+
+    public void testRejectsOtherFiles() throws Exception {
+        Files.write(file, "not a snapshot".getBytes(StandardCharsets.US_ASCII));
+        try {
+            new MemcachedSnapshotReader(file).close();
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Not a memcached snapshot"));
+        }
+    }
+
+    /**
+     * 未刷盘的不完整记录直接丢弃
+     */
+    public void testRollbackBuffered() throws Exception {
+        assertRollback(100, 5000);
+    }
+
+    /**
+     * 已经部分刷盘(超过写缓冲区)的不完整记录被截断
+     */
+    public void testRollbackFlushed() throws Exception {
+        assertRollback(1536 * 1024, 3 * 1024 * 1024);
+    }
+
+    private void assertRollback(int sent, int length) throws Exception {
+        byte[] first = "first".getBytes(StandardCharsets.US_ASCII);
+        byte[] last = "last".getBytes(StandardCharsets.US_ASCII);
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             MemcachedSnapshotWriter writer = new MemcachedSnapshotWriter(file)) {
+            Thread sender = new Thread(() -> {
+                try (Socket socket = server.accept(); OutputStream output = socket.getOutputStream()) {
+                    output.write(new byte[sent]);
+                } catch (IOException e) {
+                    // 由读取方断言
+                }
+            });
+            sender.start();
+
+            writer.write(key(1), 1, 0, ByteBuffer.wrap(first));
+            InetSocketAddress address = (InetSocketAddress) server.getLocalSocketAddress();
+            MemcachedConnection connection = new MemcachedConnection(address.getHostString() + ":" + address.getPort(), 1000, 5000, true);
+            try {
+                writer.write(key(2), 2, 0, length, connection);
+                fail();
+            } catch (IOException e) {
+                assertFalse(writer.isBroken());
+            } finally {
+                connection.close();
+                sender.join();
+            }
+            writer.write(key(3), 3, 0, ByteBuffer.wrap(last));
+            assertEquals(2, writer.getRecords());
+        }
+
+        try (MemcachedSnapshotReader reader = new MemcachedSnapshotReader(file)) {
+            assertEquals(MemcachedSnapshot.HEADER_SIZE + 2L * MemcachedSnapshot.RECORD_OVERHEAD + 2 * key(1).length + first.length + last.length, reader.getSize());
+            assertEquals(1, reader.next().getFlags());
+            MemcachedSnapshotRecord record = reader.next();
+            assertEquals(3, record.getFlags());
+            assertEquals(ByteBuffer.wrap(last), record.getValue());
+            assertNull(reader.next());
+        }
+    }
+
+    private static byte[] key(int i) {
+        return ("key:" + i).getBytes(StandardCharsets.US_ASCII);
+    }
+}
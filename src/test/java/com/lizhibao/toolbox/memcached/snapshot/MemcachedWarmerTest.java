@@ -0,0 +1,113 @@
+package com.lizhibao.toolbox.memcached.snapshot;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.model.MemcachedSnapshotReport;
+import com.lizhibao.toolbox.memcached.protocol.MemcachedDecoder;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 从快照文件预热：按服务器分批流水线写入，默认 add 不覆盖已有数据，跳过已过期的记录
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedWarmerTest extends TestCase {
+    private static final int RECORDS = 250;
+    private static final int EXPIRED = 5;
+
+    private MemcachedLoopbackServer server;
+    private MemcachedConfig config;
+    private MemcachedManager manager;
+    private MemcachedTemplate template;
+    private Path file;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        // danga 的连接池按名称全局注册，每个用例使用不同的名称
+        config = server.config("warmer-test-" + getName());
+        config.setMaintSleep(0);
+        config.setInitConn(1);
+        config.setMinConn(1);
+        config.setIsPrimitiveAsString(true);
+        MemcachedProperties properties = new MemcachedProperties();
+        properties.setNodes(Collections.singletonList(config));
+        manager = new MemcachedManager(properties);
+        template = new MemcachedTemplate(manager);
+        file = Files.createTempFile("memcached-snapshot", ".bin");
+        writeSnapshot();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+        server.close();
+    }
+
+    public void testWarmUp() throws Exception {
+        assertTrue(template.set("k0", "online", 60_000L));
+
+        List<MemcachedSnapshotReport> reports = new CopyOnWriteArrayList<>();
+        MemcachedWarmupOptions options = new MemcachedWarmupOptions().setBatchSize(16).setProgressListener(reports::add);
+        MemcachedSnapshotReport report = new MemcachedWarmer(manager).warmUp(config.getName(), file, options);
+        assertTrue(report.isFinished());
+        assertEquals(1.0, report.getProgress());
+        assertEquals(RECORDS + EXPIRED, report.getRecords());
+        assertEquals(RECORDS - 1, report.getStored());
+        assertEquals(1, report.getNotStored());
+        assertEquals(EXPIRED, report.getExpired());
+        assertEquals(0, report.getFailed());
+        assertTrue(reports.get(reports.size() - 1).isFinished());
+
+        // 已有的数据不被覆盖，过期的记录不写入
+        assertEquals("online", template.get("k0").orElse(null));
+        assertEquals("v1", template.get("k1").orElse(null));
+        assertEquals("v" + (RECORDS - 1), template.get("k" + (RECORDS - 1)).orElse(null));
+        assertFalse(template.get("expired0").isPresent());
+        assertEquals(RECORDS, server.size());
+    }
+
+    public void testOverwrite() throws Exception {
+        assertTrue(template.set("k0", "online", 60_000L));
+
+        MemcachedWarmupOptions options = new MemcachedWarmupOptions().setOverwrite(true).setParallelism(1);
+        MemcachedSnapshotReport report = new MemcachedWarmer(manager).warmUp(config.getName(), file, options);
+        assertEquals(RECORDS, report.getStored());
+        assertEquals(0, report.getNotStored());
+        assertEquals("v0", template.get("k0").orElse(null));
+    }
+
+    public void testUnknownName() throws Exception {
+        try {
+            new MemcachedWarmer(manager).warmUp("unknown", file);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("unknown"));
+        }
+    }
+
+    private void writeSnapshot() throws Exception {
+        MemcachedDecoder decoder = new MemcachedDecoder(config, null);
+        long expiredAt = System.currentTimeMillis() / 1000 - 10;
+        try (MemcachedSnapshotWriter writer = new MemcachedSnapshotWriter(file)) {
+            for (int i = 0; i < RECORDS; i++) {
+                String value = "v" + i;
+                writer.write(("k" + i).getBytes(StandardCharsets.US_ASCII), decoder.flags(value), 0, ByteBuffer.wrap(decoder.encode(value)));
+                if(i < EXPIRED) {
+                    writer.write(("expired" + i).getBytes(StandardCharsets.US_ASCII), decoder.flags(value), expiredAt, ByteBuffer.wrap(decoder.encode(value)));
+                }
+            }
+        }
+    }
+}
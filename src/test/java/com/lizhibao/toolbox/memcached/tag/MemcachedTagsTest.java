@@ -0,0 +1,138 @@
+package com.lizhibao.toolbox.memcached.tag;
+
+import com.lizhibao.toolbox.memcached.MemcachedConfig;
+import com.lizhibao.toolbox.memcached.MemcachedManager;
+import com.lizhibao.toolbox.memcached.MemcachedProperties;
+import com.lizhibao.toolbox.memcached.MemcachedTemplate;
+import com.lizhibao.toolbox.memcached.traffic.MemcachedLoopbackServer;
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 标签失效后带有该标签的数据不再可达，版本号不存在(首次使用或被淘汰)时以当前时间戳重新创建
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedTagsTest extends TestCase {
+    private static final String[] KEYS = {"ab", "a", "b", "plain", "missing"};
+
+    private MemcachedLoopbackServer server;
+    private String name;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MemcachedLoopbackServer();
+        // danga 的连接池按名称全局注册，每个用例使用不同的名称
+        name = "tags-test-" + getName();
+    }
+
+    @Override
+    protected void tearDown() {
+        server.close();
+    }
+
+    public void testInvalidateMakesTaggedKeysUnreachable() {
+        MemcachedTemplate template = template(name, 0L);
+        assertTrue(template.setTagged("ab", "1", 60_000L, new String[]{"a", "b"}));
+        assertTrue(template.setTagged("a", "2", 60_000L, new String[]{"a"}));
+        assertTrue(template.setTagged("b", "3", 60_000L, new String[]{"b"}));
+        assertTrue(template.set("plain", "4", 60_000L));
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("ab", "1");
+        expected.put("a", "2");
+        expected.put("b", "3");
+        expected.put("plain", "4");
+        assertEquals(expected, template.getMultiTagged(KEYS).orElse(null));
+        assertEquals("1", template.getTagged("ab").orElse(null));
+
+        assertTrue(template.invalidateTag("a"));
+        assertFalse(template.getTagged("ab").isPresent());
+        assertFalse(template.getTagged("a").isPresent());
+        assertEquals("3", template.getTagged("b").orElse(null));
+        // 不带标签的数据不校验版本号
+        assertEquals("4", template.getTagged("plain").orElse(null));
+        expected.remove("ab");
+        expected.remove("a");
+        assertEquals(expected, template.getMultiTagged(KEYS).orElse(null));
+
+        // 失效后重新写入的数据记录新的版本号
+        assertTrue(template.setTagged("a", "5", 60_000L, new String[]{"a"}));
+        assertEquals("5", template.getTagged("a").orElse(null));
+        assertTrue(template.invalidateTag("b"));
+        assertEquals("5", template.getTagged("a").orElse(null));
+        assertFalse(template.getTagged("b").isPresent());
+    }
+
+    /**
+     * 版本号不存在时以当前时间戳创建；被服务器淘汰后重新创建的版本号不会回退到旧版本，旧数据不再可达
+     */
+    public void testMissingVersionKey() throws Exception {
+        MemcachedTemplate template = template(name, 0L);
+        MemcachedTags tags = new MemcachedTags(template.forName(name));
+
+        long before = System.currentTimeMillis();
+        long[] versions = tags.versions(new String[]{"a", "b"});
+        assertEquals(2, versions.length);
+        assertTrue(versions[0] >= before && versions[0] <= System.currentTimeMillis());
+        assertTrue(versions[1] >= before && versions[1] <= System.currentTimeMillis());
+        assertTrue(template.setTagged("ab", "1", 60_000L, new String[]{"a", "b"}));
+        assertEquals("1", template.getTagged("ab").orElse(null));
+
+        // 模拟版本号被淘汰
+        Thread.sleep(5);
+        assertTrue(template.delete("__tag:b"));
+        assertFalse(template.getTagged("ab").isPresent());
+        assertTrue(tags.versions(new String[]{"b"})[0] > versions[1]);
+        assertEquals(versions[0], tags.versions(new String[]{"a"})[0]);
+
+        // 版本号不存在时失效直接创建新的版本号
+        assertFalse(template.keyExists("__tag:c"));
+        assertTrue(template.invalidateTag("c"));
+        assertTrue(template.keyExists("__tag:c"));
+        assertTrue(template.invalidateTag("never-used"));
+        assertTrue(tags.versions(new String[]{"never-used"})[0] >= before);
+    }
+
+    /**
+     * 其他实例使标签失效后，本实例在本地缓存的版本号过期后可见
+     */
+    public void testInvalidateFromOtherInstance() throws Exception {
+        MemcachedTemplate local = template(name, 300L);
+        MemcachedTemplate remote = template(name + "-remote", 0L);
+
+        assertTrue(local.setTagged("k", "1", 60_000L, new String[]{"a"}));
+        assertEquals("1", remote.getTagged(name + "-remote", "k").orElse(null));
+        assertTrue(remote.invalidateTag("a"));
+        assertFalse(remote.getTagged("k").isPresent());
+        assertEquals("1", local.getTagged("k").orElse(null));
+
+        Thread.sleep(400);
+        assertFalse(local.getTagged("k").isPresent());
+    }
+
+    public void testServerUnavailable() {
+        MemcachedTemplate template = template(name, 0L);
+        assertTrue(template.setTagged("k", "1", 60_000L, new String[]{"a"}));
+        server.close();
+
+        assertFalse(template.setTagged("k", "2", 60_000L, new String[]{"a"}));
+        assertFalse(template.getTagged("k").isPresent());
+        assertTrue(template.getMultiTagged(new String[]{"k"}).orElse(null).isEmpty());
+        assertFalse(template.invalidateTag("a"));
+    }
+
+    private MemcachedTemplate template(String name, long cacheTtl) {
+        MemcachedConfig config = server.config(name);
+        config.setMaintSleep(0);
+        config.setInitConn(1);
+        config.setMinConn(1);
+        config.setTagCacheTtl(cacheTtl);
+        MemcachedProperties properties = new MemcachedProperties();
+        properties.setNodes(Collections.singletonList(config));
+        return new MemcachedTemplate(new MemcachedManager(properties));
+    }
+}
@@ -0,0 +1,60 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import junit.framework.TestCase;
+
+/**
+ * 直方图的分桶和分位数：小于 32 的值精确，更大的值相对误差不超过 1/16
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedLatencyHistogramTest extends TestCase {
+
+    public void testEmpty() {
+        MemcachedLatencyHistogram histogram = new MemcachedLatencyHistogram();
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getMean());
+    }
+
+    public void testSmallValuesExact() {
+        MemcachedLatencyHistogram histogram = new MemcachedLatencyHistogram();
+        for (int i = 0; i < 32; i++) histogram.record(i);
+        for (int i = 0; i < 32; i++) assertEquals(i, histogram.percentile((i + 1) * 100.0 / 32));
+        assertEquals(0, histogram.percentile(0));
+    }
+
+    public void testRelativeError() {
+        long[] values = {32, 33, 47, 48, 63, 64, 65, 1000, 4095, 4096, 123_456_789L, Long.MAX_VALUE / 2, Long.MAX_VALUE};
+        for (long value : values) {
+            MemcachedLatencyHistogram histogram = new MemcachedLatencyHistogram();
+            // 再记录一个更大的值，分位数返回桶的上界而不是最大值
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE);
+            long upper = histogram.percentile(50);
+            assertTrue(value + " -> " + upper, upper >= value);
+            assertTrue(value + " -> " + upper, upper - value <= value / 16);
+        }
+    }
+
+    public void testPercentiles() {
+        MemcachedLatencyHistogram histogram = new MemcachedLatencyHistogram();
+        for (int i = 1; i <= 1000; i++) histogram.record(i);
+        histogram.record(-10);
+
+        assertEquals(1001, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500500 / 1001.0, histogram.getMean(), 1e-9);
+        assertEquals(1000, histogram.percentile(100));
+        assertEquals(0, histogram.percentile(0));
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(1001 * percentile / 100) - 1;
+            long actual = histogram.percentile(percentile);
+            assertTrue(percentile + " -> " + actual, actual >= exact && actual - exact <= exact / 16);
+        }
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.percentile(99));
+    }
+}
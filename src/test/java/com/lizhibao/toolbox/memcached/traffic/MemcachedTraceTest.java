@@ -0,0 +1,62 @@
+package com.lizhibao.toolbox.memcached.traffic;
+
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 流量记录文件的写入和读取，varint 覆盖单字节到 10 字节的各种长度
+ * @author lizhibao
+ * @date 2026-10-19
+ */
+public class MemcachedTraceTest extends TestCase {
+    private static final long[] VALUES = {
+            0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, 1L << 35, 1L << 56, Long.MAX_VALUE
+    };
+
+    public void testRoundTrip() throws Exception {
+        Path file = Files.createTempFile("memcached-trace", ".bin");
+        try {
+            long records;
+            try (MemcachedTraceWriter writer = new MemcachedTraceWriter(file, 1_700_000_000_000L, 0.25)) {
+                for (int i = 0; i < VALUES.length; i++) {
+                    long[] hashes = new long[i % 3];
+                    for (int j = 0; j < hashes.length; j++) hashes[j] = MemcachedTrace.hash("key" + i + ":" + j);
+                    writer.write(VALUES[i], "name" + i % 2, i % 2 == 0 ? "GET" : "SET", hashes, (int) Math.min(Integer.MAX_VALUE, VALUES[i]), VALUES[i]);
+                }
+                // 负数按约定写入：间隔和过期时间为 0，数据大小为 -1(未知)
+                writer.write(-5, "中文名称", "DELETE", new long[]{-1L, Long.MIN_VALUE}, -7, -1);
+                records = writer.getRecords();
+            }
+            assertEquals(VALUES.length + 1, records);
+
+            try (MemcachedTraceReader reader = new MemcachedTraceReader(file)) {
+                assertEquals(1_700_000_000_000L, reader.getStartMillis());
+                assertEquals(0.25, reader.getSampleRate());
+                for (int i = 0; i < VALUES.length; i++) {
+                    MemcachedTraceRecord record = reader.next();
+                    assertEquals(VALUES[i], record.getDelay());
+                    assertEquals("name" + i % 2, record.getName());
+                    assertEquals(i % 2 == 0 ? "GET" : "SET", record.getType());
+                    assertEquals(i % 3, record.getKeyHashes().length);
+                    for (int j = 0; j < i % 3; j++) assertEquals(MemcachedTrace.hash("key" + i + ":" + j), record.getKeyHashes()[j]);
+                    assertEquals((int) Math.min(Integer.MAX_VALUE, VALUES[i]), record.getValueSize());
+                    assertEquals(VALUES[i], record.getExpired());
+                }
+
+                MemcachedTraceRecord last = reader.next();
+                assertEquals(0, last.getDelay());
+                assertEquals("中文名称", last.getName());
+                assertEquals("DELETE", last.getType());
+                assertTrue(Arrays.equals(new long[]{-1L, Long.MIN_VALUE}, last.getKeyHashes()));
+                assertEquals(-1, last.getValueSize());
+                assertEquals(0, last.getExpired());
+                assertNull(reader.next());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}